@@ -0,0 +1,402 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.StringTokenizer;
+
+import org.apache.xerces.parsers.SAXParser;
+import org.apache.xerces.validators.dtd.DTDGrammarCache;
+
+import org.xml.sax.HandlerBase;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A content model benchmark. This program generates documents whose
+ * root element has a content model with a wide choice of children,
+ * such as (header,(c0|c1|...|cN)*,footer), and measures how fast the
+ * SAX parser validates them against the DTD. The DTD is external and
+ * is kept in a grammar cache, so the content model is built once and
+ * the time measured is spent scanning and validating the children.
+ *
+ * @version
+ */
+public class ContentModelBenchmark {
+
+    //
+    // Constants
+    //
+
+    /** Default numbers of alternatives in the choice. */
+    private static final int[] DEFAULT_CHOICES = { 4, 16, 64, 256 };
+
+    /** Default number of children of the root element. */
+    private static final int DEFAULT_CHILDREN = 100000;
+
+    /** Default measurement time per benchmark, in milliseconds. */
+    private static final long DEFAULT_TIME = 2000;
+
+    /** Default warmup time per benchmark, in milliseconds. */
+    private static final long DEFAULT_WARMUP = 1000;
+
+    //
+    // Data
+    //
+
+    /** Corpus directory. */
+    private File fCorpus;
+
+    /** Number of children of the root element. */
+    private int fChildren = DEFAULT_CHILDREN;
+
+    /** Measurement time. */
+    private long fTime = DEFAULT_TIME;
+
+    /** Warmup time. */
+    private long fWarmup = DEFAULT_WARMUP;
+
+    /** Output. */
+    private PrintWriter fOut = new PrintWriter(System.out, true);
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a benchmark over the corpus in the given directory. */
+    public ContentModelBenchmark(File corpus, int children) {
+        fCorpus = corpus;
+        fChildren = children;
+    }
+
+    //
+    // Public methods
+    //
+
+    /** Sets the measurement and warmup time, in milliseconds. */
+    public void setTime(long time, long warmup) {
+        fTime = time;
+        fWarmup = warmup;
+    }
+
+    /** Runs the benchmark for each number of choices. */
+    public void run(int[] choices) throws Exception {
+
+        fCorpus.mkdirs();
+        fOut.println("choices  children      docs/s  children/s");
+        for (int i = 0; i < choices.length; i++) {
+            File dtd = new File(fCorpus, "wide-" + choices[i] + ".dtd");
+            File xml = new File(fCorpus, "wide-" + choices[i] + "-" + fChildren + ".xml");
+            if (!dtd.exists()) {
+                writeGrammar(dtd, choices[i]);
+            }
+            if (!xml.exists()) {
+                writeDocument(xml, dtd, choices[i]);
+            }
+            byte[] bytes = readFile(xml);
+            String systemId = xml.toURL().toString();
+            SAXParser parser = new SAXParser();
+            parser.setDocumentHandler(new HandlerBase());
+            parser.setErrorHandler(new ErrorHandler());
+            parser.setFeature("http://xml.org/sax/features/validation", true);
+            parser.setDTDGrammarCache(new DTDGrammarCache());
+            measure(parser, bytes, systemId, fWarmup);
+            long[] result = measure(parser, bytes, systemId, fTime);
+            double seconds = result[1] / 1000.0;
+            double docs = result[0] / seconds;
+            StringBuffer str = new StringBuffer();
+            pad(str, String.valueOf(choices[i]), 9);
+            pad(str, String.valueOf(fChildren), 9);
+            padLeft(str, format(docs), 11);
+            padLeft(str, String.valueOf(Math.round(docs * fChildren)), 12);
+            fOut.println(str.toString());
+        }
+
+    } // run(int[])
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Parses the document repeatedly for the given time and returns the
+     * number of parses and the elapsed time.
+     */
+    private long[] measure(SAXParser parser, byte[] bytes, String systemId,
+                           long time) throws Exception {
+
+        long start = System.currentTimeMillis();
+        long end = start + time;
+        long count = 0;
+        long now;
+        do {
+            InputSource source = new InputSource(new ByteArrayInputStream(bytes));
+            source.setSystemId(systemId);
+            parser.parse(source);
+            count++;
+            now = System.currentTimeMillis();
+        } while (now < end);
+        return new long[] { count, now - start };
+
+    } // measure(SAXParser,byte[],String,long):long[]
+
+    /** Writes a grammar with the given number of choices. */
+    private void writeGrammar(File file, int choices) throws IOException {
+
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF8"));
+        out.print("<!ELEMENT catalog (header,(");
+        for (int i = 0; i < choices; i++) {
+            if (i > 0) {
+                out.print('|');
+            }
+            out.print("item");
+            out.print(i);
+        }
+        out.println(")*,footer)>");
+        out.println("<!ELEMENT header EMPTY>");
+        out.println("<!ELEMENT footer EMPTY>");
+        for (int i = 0; i < choices; i++) {
+            out.print("<!ELEMENT item");
+            out.print(i);
+            out.println(" EMPTY>");
+        }
+        out.close();
+
+    } // writeGrammar(File,int)
+
+    /** Writes a document that uses every choice in turn. */
+    private void writeDocument(File file, File dtd, int choices)
+        throws IOException {
+
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF8"));
+        out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        out.print("<!DOCTYPE catalog SYSTEM \"");
+        out.print(dtd.getName());
+        out.println("\">");
+        out.println("<catalog>");
+        out.println(" <header/>");
+        for (int i = 0; i < fChildren; i++) {
+            out.print(" <item");
+            out.print((i * 7) % choices);
+            out.println("/>");
+        }
+        out.println(" <footer/>");
+        out.println("</catalog>");
+        out.close();
+
+    } // writeDocument(File,File,int)
+
+    /** Reads a file into memory. */
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int)file.length()];
+        java.io.FileInputStream in = new java.io.FileInputStream(file);
+        int offset = 0;
+        while (offset < bytes.length) {
+            int count = in.read(bytes, offset, bytes.length - offset);
+            if (count == -1) {
+                break;
+            }
+            offset += count;
+        }
+        in.close();
+        return bytes;
+    }
+
+    /** Formats a number with one decimal. */
+    private static String format(double value) {
+        long tenths = Math.round(value * 10);
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+
+    /** Appends a string padded on the right. */
+    private static void pad(StringBuffer str, String s, int width) {
+        str.append(s);
+        for (int i = s.length(); i < width; i++) {
+            str.append(' ');
+        }
+    }
+
+    /** Appends a string padded on the left. */
+    private static void padLeft(StringBuffer str, String s, int width) {
+        for (int i = s.length(); i < width; i++) {
+            str.append(' ');
+        }
+        str.append(s);
+    }
+
+    //
+    // Classes
+    //
+
+    /** Reports the first error of each benchmark. */
+    static class ErrorHandler
+        extends HandlerBase {
+
+        /** True if an error was reported. */
+        private boolean fReported;
+
+        /** Error. */
+        public void error(SAXParseException ex) {
+            report("Error", ex);
+        }
+
+        /** Fatal error. */
+        public void fatalError(SAXParseException ex) throws SAXParseException {
+            report("Fatal Error", ex);
+            throw ex;
+        }
+
+        /** Prints the error once. */
+        private void report(String type, SAXParseException ex) {
+            if (!fReported) {
+                fReported = true;
+                System.err.println("[" + type + "] " + ex.getSystemId() + ":" +
+                                   ex.getLineNumber() + ":" + ex.getColumnNumber() +
+                                   ": " + ex.getMessage());
+            }
+        }
+
+    } // class ErrorHandler
+
+    //
+    // Main
+    //
+
+    /** Main program entry point. */
+    public static void main(String argv[]) {
+
+        // vars
+        File corpus = new File(System.getProperty("java.io.tmpdir"), "xerces-bench");
+        long time = DEFAULT_TIME;
+        long warmup = DEFAULT_WARMUP;
+        int[] choices = DEFAULT_CHOICES;
+        int children = DEFAULT_CHILDREN;
+
+        // check parameters
+        for (int i = 0; i < argv.length; i++) {
+            String arg = argv[i];
+            if (arg.equals("-h")) {
+                printUsage();
+                System.exit(1);
+            }
+            if (i == argv.length - 1) {
+                System.err.println("error: missing value for " + arg);
+                System.exit(1);
+            }
+            String value = argv[++i];
+            if (arg.equals("-d")) {
+                corpus = new File(value);
+            }
+            else if (arg.equals("-t")) {
+                time = Long.parseLong(value);
+            }
+            else if (arg.equals("-w")) {
+                warmup = Long.parseLong(value);
+            }
+            else if (arg.equals("-c")) {
+                StringTokenizer tokenizer = new StringTokenizer(value, ",");
+                choices = new int[tokenizer.countTokens()];
+                for (int j = 0; j < choices.length; j++) {
+                    choices[j] = Integer.parseInt(tokenizer.nextToken());
+                }
+            }
+            else if (arg.equals("-n")) {
+                children = Integer.parseInt(value);
+            }
+            else {
+                System.err.println("error: unknown option " + arg);
+                printUsage();
+                System.exit(1);
+            }
+        }
+
+        // run benchmarks
+        try {
+            ContentModelBenchmark benchmark = new ContentModelBenchmark(corpus, children);
+            benchmark.setTime(time, warmup);
+            benchmark.run(choices);
+        }
+        catch (Exception e) {
+            e.printStackTrace(System.err);
+            System.exit(1);
+        }
+
+    } // main(String[])
+
+    /** Prints the usage. */
+    private static void printUsage() {
+
+        System.err.println("usage: java perf.ContentModelBenchmark (options)");
+        System.err.println();
+        System.err.println("options:");
+        System.err.println("  -d dir    Corpus directory, generated if missing.");
+        System.err.println("            Default: <tmpdir>/xerces-bench");
+        System.err.println("  -t ms     Measurement time per benchmark. Default: " + DEFAULT_TIME);
+        System.err.println("  -w ms     Warmup time per benchmark. Default: " + DEFAULT_WARMUP);
+        System.err.println("  -c list   Numbers of choices. Default: 4,16,64,256");
+        System.err.println("  -n num    Children of the root element. Default: " + DEFAULT_CHILDREN);
+        System.err.println("  -h        This help screen.");
+
+    } // printUsage()
+
+} // class ContentModelBenchmark
@@ -0,0 +1,684 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package perf;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.Vector;
+
+import org.apache.xerces.framework.XMLParser;
+import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.parsers.SAXParser;
+
+import org.xml.sax.AttributeList;
+import org.xml.sax.HandlerBase;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+/**
+ * A parser benchmark. This program generates a corpus of small,
+ * medium and huge documents, plus a text document dominated by long
+ * runs of character data, and measures the throughput and
+ * allocation of the SAX and DOM parsers over every combination of
+ * input reader, validation mode and namespace processing.
+ * <p>
+ * Documents are read into memory before timing so that no file
+ * system access is measured. UTF-8 input is read by the UTF8Reader,
+ * UTF-16 input by the UCSReader and character stream input by the
+ * CharReader. The allocation figures are only available on virtual
+ * machines that report per-thread allocation.
+ *
+ * @version
+ */
+public class ParserBenchmark {
+
+    //
+    // Constants
+    //
+
+    /** Parsers. */
+    private static final String[] PARSERS = { "sax", "dom", "deferred" };
+
+    /** Input readers. */
+    private static final String[] READERS = { "utf8", "ucs", "char" };
+
+    /** Validation modes. */
+    private static final String[] VALIDATION = { "none", "dtd", "schema" };
+
+    /** Namespace processing. */
+    private static final String[] NAMESPACES = { "off", "on" };
+
+    /** Document sizes. */
+    private static final String[] SIZES = { "small", "medium", "huge", "text" };
+
+    /** Number of records in each document size. */
+    private static final int[] RECORDS = { 10, 1000, 50000, 2000 };
+
+    /** Length of the paragraph of character data in each record. */
+    private static final int[] TEXT_LENGTHS = { 0, 0, 0, 4096 };
+
+    /** Default measurement time per benchmark, in milliseconds. */
+    private static final long DEFAULT_TIME = 2000;
+
+    /** Default warmup time per benchmark, in milliseconds. */
+    private static final long DEFAULT_WARMUP = 1000;
+
+    //
+    // Data
+    //
+
+    /** Corpus directory. */
+    private File fCorpus;
+
+    /** Measurement time. */
+    private long fTime = DEFAULT_TIME;
+
+    /** Warmup time. */
+    private long fWarmup = DEFAULT_WARMUP;
+
+    /** Output. */
+    private PrintWriter fOut = new PrintWriter(System.out, true);
+
+    /** Per-thread allocation counter, if available. */
+    private Object fThreadBean;
+    private Method fAllocatedBytes;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a benchmark over the corpus in the given directory. */
+    public ParserBenchmark(File corpus) {
+        fCorpus = corpus;
+        try {
+            Class factory = Class.forName("java.lang.management.ManagementFactory");
+            fThreadBean = factory.getMethod("getThreadMXBean", new Class[0]).invoke(null, new Object[0]);
+            Class bean = Class.forName("com.sun.management.ThreadMXBean");
+            if (bean.isInstance(fThreadBean)) {
+                fAllocatedBytes = bean.getMethod("getThreadAllocatedBytes", new Class[] { long.class });
+            }
+        }
+        catch (Throwable t) {
+            fAllocatedBytes = null;
+        }
+    }
+
+    //
+    // Public methods
+    //
+
+    /** Sets the measurement and warmup time, in milliseconds. */
+    public void setTime(long time, long warmup) {
+        fTime = time;
+        fWarmup = warmup;
+    }
+
+    /** Writes the corpus documents, schema and DTD if missing. */
+    public void generateCorpus() throws IOException {
+
+        fCorpus.mkdirs();
+        writeGrammars();
+        for (int i = 0; i < SIZES.length; i++) {
+            for (int j = 0; j < 2; j++) {
+                boolean schema = j == 1;
+                File file = getDocument(SIZES[i], schema ? "schema" : "dtd");
+                if (!file.exists()) {
+                    writeDocument(file, RECORDS[i], TEXT_LENGTHS[i], schema);
+                }
+            }
+        }
+
+    } // generateCorpus()
+
+    /** Runs the selected benchmarks and prints one line for each. */
+    public void run(String[] parsers, String[] readers, String[] validation,
+                    String[] namespaces, String[] sizes) throws Exception {
+
+        fOut.println("parser   reader valid  ns  size        docs/s       MB/s   bytes/doc");
+        for (int s = 0; s < sizes.length; s++) {
+            for (int v = 0; v < validation.length; v++) {
+                File file = getDocument(sizes[s], validation[v].equals("schema") ? "schema" : "dtd");
+                byte[] utf8 = readFile(file);
+                String text = new String(utf8, "UTF8");
+                for (int r = 0; r < readers.length; r++) {
+                    Object input = createInput(readers[r], utf8, text);
+                    for (int p = 0; p < parsers.length; p++) {
+                        for (int n = 0; n < namespaces.length; n++) {
+                            // the validators compare element and attribute
+                            // names as symbols, not qnames, so they only work
+                            // with namespaces off
+                            if (!validation[v].equals("none") && namespaces[n].equals("on")) {
+                                continue;
+                            }
+                            XMLParser parser = createParser(parsers[p], validation[v],
+                                                            namespaces[n].equals("on"));
+                            measure(parser, input, file, utf8.length, fWarmup);
+                            long[] result = measure(parser, input, file, utf8.length, fTime);
+                            printResult(parsers[p], readers[r], validation[v], namespaces[n],
+                                        sizes[s], result, utf8.length);
+                        }
+                    }
+                }
+            }
+        }
+
+    } // run(String[],String[],String[],String[],String[])
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Parses the input repeatedly for the given time and returns the
+     * number of parses, the elapsed time and the allocated bytes.
+     */
+    private long[] measure(XMLParser parser, Object input, File file,
+                           int length, long time) throws Exception {
+
+        String systemId = file.toURL().toString();
+        long allocated = getAllocatedBytes();
+        long start = System.currentTimeMillis();
+        long end = start + time;
+        long count = 0;
+        long now;
+        do {
+            InputSource source;
+            if (input instanceof byte[]) {
+                source = new InputSource(new ByteArrayInputStream((byte[])input));
+            }
+            else {
+                source = new InputSource(new CharArrayReader((char[])input));
+            }
+            source.setSystemId(systemId);
+            parser.parse(source);
+            if (parser instanceof DOMParser) {
+                ((DOMParser)parser).getDocument();
+            }
+            count++;
+            now = System.currentTimeMillis();
+        } while (now < end);
+        long bytes = allocated == -1 ? -1 : getAllocatedBytes() - allocated;
+        return new long[] { count, now - start, bytes };
+
+    } // measure(XMLParser,Object,File,int,long):long[]
+
+    /** Prints a result line. */
+    private void printResult(String parser, String reader, String validation,
+                             String namespaces, String size, long[] result,
+                             int length) {
+
+        double seconds = result[1] / 1000.0;
+        double docs = result[0] / seconds;
+        double mb = docs * length / (1024.0 * 1024.0);
+        StringBuffer str = new StringBuffer();
+        pad(str, parser, 9);
+        pad(str, reader, 7);
+        pad(str, validation, 7);
+        pad(str, namespaces, 4);
+        pad(str, size, 8);
+        padLeft(str, format(docs), 10);
+        padLeft(str, format(mb), 11);
+        padLeft(str, result[2] == -1 ? "n/a" : String.valueOf(result[2] / result[0]), 12);
+        fOut.println(str.toString());
+
+    } // printResult(String,String,String,String,String,long[],int)
+
+    /** Creates a parser. */
+    private XMLParser createParser(String name, String validation,
+                                   boolean namespaces) throws Exception {
+
+        XMLParser parser;
+        if (name.equals("sax")) {
+            SAXParser saxParser = new SAXParser();
+            saxParser.setDocumentHandler(new HandlerBase());
+            parser = saxParser;
+        }
+        else {
+            parser = new DOMParser();
+            parser.setFeature("http://apache.org/xml/features/dom/defer-node-expansion",
+                              name.equals("deferred"));
+        }
+        parser.setErrorHandler(new ErrorHandler());
+        parser.setFeature("http://xml.org/sax/features/validation", !validation.equals("none"));
+        parser.setFeature("http://xml.org/sax/features/namespaces", namespaces);
+        return parser;
+
+    } // createParser(String,String,boolean):XMLParser
+
+    /** Creates the input for the given reader. */
+    private Object createInput(String reader, byte[] utf8, String text)
+        throws IOException {
+
+        if (reader.equals("ucs")) {
+            // the byte order mark selects the UCSReader
+            int index = text.indexOf("UTF-8");
+            if (index != -1 && index < text.indexOf('>')) {
+                text = text.substring(0, index) + "UTF-16" + text.substring(index + 5);
+            }
+            byte[] bytes = text.getBytes("UnicodeBig");
+            if (bytes.length < 2 || (bytes[0] & 0xFF) != 0xFE) {
+                byte[] marked = new byte[bytes.length + 2];
+                marked[0] = (byte)0xFE;
+                marked[1] = (byte)0xFF;
+                System.arraycopy(bytes, 0, marked, 2, bytes.length);
+                bytes = marked;
+            }
+            return bytes;
+        }
+        if (reader.equals("char")) {
+            return text.toCharArray();
+        }
+        return utf8;
+
+    } // createInput(String,byte[],String):Object
+
+    /** Returns the bytes allocated by the current thread, or -1. */
+    private long getAllocatedBytes() {
+        if (fAllocatedBytes == null) {
+            return -1;
+        }
+        try {
+            Object id = new Long(Thread.currentThread().getId());
+            return ((Long)fAllocatedBytes.invoke(fThreadBean, new Object[] { id })).longValue();
+        }
+        catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /** Returns the corpus document of the given size and grammar. */
+    private File getDocument(String size, String grammar) {
+        return new File(fCorpus, size + "-" + grammar + ".xml");
+    }
+
+    /** Writes the DTD and schema used by the corpus documents. */
+    private void writeGrammars() throws IOException {
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(new File(fCorpus, "bench.dtd")), "UTF8");
+        out.write("<!ELEMENT personnel (person)+>\n");
+        out.write("<!ELEMENT person (name,email*,url*,link?)>\n");
+        out.write("<!ATTLIST person id ID #REQUIRED note CDATA #IMPLIED>\n");
+        out.write("<!ELEMENT family (#PCDATA)>\n");
+        out.write("<!ELEMENT given (#PCDATA)>\n");
+        out.write("<!ELEMENT name (#PCDATA|family|given)*>\n");
+        out.write("<!ELEMENT email (#PCDATA)>\n");
+        out.write("<!ELEMENT url EMPTY>\n");
+        out.write("<!ATTLIST url href CDATA #REQUIRED>\n");
+        out.write("<!ELEMENT link EMPTY>\n");
+        out.write("<!ATTLIST link manager IDREF #IMPLIED subordinates IDREFS #IMPLIED>\n");
+        out.close();
+
+        out = new OutputStreamWriter(new FileOutputStream(new File(fCorpus, "bench.xsd")), "UTF8");
+        out.write("<?xml version=\"1.0\"?>\n");
+        out.write("<!DOCTYPE schema PUBLIC \"-//W3C/DTD XML Schema Version 1.0//EN\"\n");
+        out.write("  \"http://www.w3.org/XML/Group/1999/09/23-xmlschema/structures/structures.dtd\">\n");
+        out.write("<schema>\n");
+        out.write(" <element name=\"personnel\">\n");
+        out.write("  <archetype>\n");
+        out.write("   <element ref=\"person\" minOccurs='1' maxOccurs='*'/>\n");
+        out.write("   <attribute name=\"xmlns\"/>\n");
+        out.write("  </archetype>\n");
+        out.write(" </element>\n");
+        out.write(" <element name=\"family\"><archetype content=\"mixed\"/></element>\n");
+        out.write(" <element name=\"given\"><archetype content=\"mixed\"/></element>\n");
+        out.write(" <element name=\"name\">\n");
+        out.write("  <archetype>\n");
+        out.write("   <element ref=\"family\"/>\n");
+        out.write("   <element ref=\"given\" minOccurs='0' maxOccurs='1'/>\n");
+        out.write("  </archetype>\n");
+        out.write(" </element>\n");
+        out.write(" <element name=\"email\"><archetype content=\"mixed\"/></element>\n");
+        out.write(" <element name=\"url\">\n");
+        out.write("  <archetype content=\"empty\"><attribute name=\"href\" type=\"string\"/></archetype>\n");
+        out.write(" </element>\n");
+        out.write(" <element name=\"link\">\n");
+        out.write("  <archetype content=\"empty\">\n");
+        out.write("   <attribute name=\"manager\" type=\"IDREF\"/>\n");
+        out.write("   <attribute name=\"subordinates\" type=\"IDREFS\"/>\n");
+        out.write("  </archetype>\n");
+        out.write(" </element>\n");
+        out.write(" <element name=\"person\">\n");
+        out.write("  <archetype>\n");
+        out.write("   <element ref=\"name\"/>\n");
+        out.write("   <element ref=\"email\" minOccurs='0' maxOccurs='*'/>\n");
+        out.write("   <element ref=\"url\" minOccurs='0' maxOccurs='*'/>\n");
+        out.write("   <element ref=\"link\" minOccurs='0' maxOccurs='1'/>\n");
+        out.write("   <attribute name=\"id\" type=\"ID\"/>\n");
+        out.write("   <attribute name=\"note\" type=\"string\"/>\n");
+        out.write("  </archetype>\n");
+        out.write(" </element>\n");
+        out.write("</schema>\n");
+        out.close();
+
+    } // writeGrammars()
+
+    /**
+     * Writes a document with the given number of records. When the
+     * text length is non-zero, each family name is followed by a
+     * paragraph of mostly ASCII character data of about that length.
+     */
+    private void writeDocument(File file, int records, int textLength,
+                               boolean schema) throws IOException {
+
+        String text = textLength > 0 ? makeText(textLength) : null;
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF8"));
+        out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        if (schema) {
+            out.println("<personnel xmlns=\"bench.xsd\">");
+        }
+        else {
+            out.println("<!DOCTYPE personnel SYSTEM \"bench.dtd\">");
+            out.println("<personnel>");
+        }
+        for (int i = 0; i < records; i++) {
+            out.print("  <person id=\"p");
+            out.print(i);
+            out.print("\"");
+            if (i % 3 == 0) {
+                out.print(" note=\"record &amp; note ");
+                out.print(i);
+                out.print("\"");
+            }
+            out.println(">");
+            out.print("    <name><family>Family");
+            out.print(i);
+            if (text != null) {
+                out.print(text);
+            }
+            out.print("</family> <given>Given éè ");
+            out.print(i % 97);
+            out.println("</given></name>");
+            out.print("    <email>person");
+            out.print(i);
+            out.println("@example.org</email>");
+            if (i % 2 == 0) {
+                out.print("    <url href=\"http://www.example.org/people/");
+                out.print(i);
+                out.println("\"/>");
+            }
+            if (i > 0) {
+                out.print("    <link manager=\"p");
+                out.print(i / 2);
+                out.println("\"/>");
+            }
+            out.println("  </person>");
+        }
+        out.println("</personnel>");
+        out.close();
+
+    } // writeDocument(File,int,int,boolean)
+
+    /** Returns a paragraph of the given length broken into lines. */
+    private static String makeText(int length) {
+        String[] words = { "lorem", "ipsum", "dolor", "sit", "amet", "consectetur",
+                           "adipiscing", "elit", "sed", "do", "eiusmod", "tempor",
+                           "incididunt", "ut", "labore", "et", "dolore", "magna" };
+        StringBuffer str = new StringBuffer(length + 16);
+        int line = 0;
+        for (int i = 0; str.length() < length; i++) {
+            String word = words[i % words.length];
+            if (line + word.length() >= 72) {
+                str.append('\n');
+                line = 0;
+            }
+            else {
+                str.append(' ');
+                line++;
+            }
+            str.append(word);
+            line += word.length();
+        }
+        return str.toString();
+    }
+
+    /** Reads a file into memory. */
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int)file.length()];
+        java.io.FileInputStream in = new java.io.FileInputStream(file);
+        int offset = 0;
+        while (offset < bytes.length) {
+            int count = in.read(bytes, offset, bytes.length - offset);
+            if (count == -1) {
+                break;
+            }
+            offset += count;
+        }
+        in.close();
+        return bytes;
+    }
+
+    /** Formats a number with one decimal. */
+    private static String format(double value) {
+        long tenths = Math.round(value * 10);
+        return (tenths / 10) + "." + (tenths % 10);
+    }
+
+    /** Appends a string padded on the right. */
+    private static void pad(StringBuffer str, String s, int width) {
+        str.append(s);
+        for (int i = s.length(); i < width; i++) {
+            str.append(' ');
+        }
+    }
+
+    /** Appends a string padded on the left. */
+    private static void padLeft(StringBuffer str, String s, int width) {
+        for (int i = s.length(); i < width; i++) {
+            str.append(' ');
+        }
+        str.append(s);
+    }
+
+    /** Splits a comma separated list. */
+    private static String[] split(String list, String[] allowed) {
+        Vector values = new Vector();
+        java.util.StringTokenizer tokenizer = new java.util.StringTokenizer(list, ",");
+        while (tokenizer.hasMoreTokens()) {
+            String value = tokenizer.nextToken();
+            boolean found = false;
+            for (int i = 0; i < allowed.length; i++) {
+                if (allowed[i].equals(value)) {
+                    found = true;
+                }
+            }
+            if (!found) {
+                System.err.println("error: unknown value \"" + value + "\"");
+                System.exit(1);
+            }
+            values.addElement(value);
+        }
+        String[] array = new String[values.size()];
+        values.copyInto(array);
+        return array;
+    }
+
+    //
+    // Classes
+    //
+
+    /** Reports the first error of each benchmark. */
+    static class ErrorHandler
+        extends HandlerBase {
+
+        /** True if an error was reported. */
+        private boolean fReported;
+
+        /** Error. */
+        public void error(SAXParseException ex) {
+            report("Error", ex);
+        }
+
+        /** Fatal error. */
+        public void fatalError(SAXParseException ex) throws SAXParseException {
+            report("Fatal Error", ex);
+            throw ex;
+        }
+
+        /** Prints the error once. */
+        private void report(String type, SAXParseException ex) {
+            if (!fReported) {
+                fReported = true;
+                System.err.println("[" + type + "] " + ex.getSystemId() + ":" +
+                                   ex.getLineNumber() + ":" + ex.getColumnNumber() +
+                                   ": " + ex.getMessage());
+            }
+        }
+
+    } // class ErrorHandler
+
+    //
+    // Main
+    //
+
+    /** Main program entry point. */
+    public static void main(String argv[]) {
+
+        // vars
+        File corpus = new File(System.getProperty("java.io.tmpdir"), "xerces-bench");
+        long time = DEFAULT_TIME;
+        long warmup = DEFAULT_WARMUP;
+        String[] parsers = PARSERS;
+        String[] readers = READERS;
+        String[] validation = VALIDATION;
+        String[] namespaces = NAMESPACES;
+        String[] sizes = SIZES;
+
+        // check parameters
+        for (int i = 0; i < argv.length; i++) {
+            String arg = argv[i];
+            if (arg.equals("-h")) {
+                printUsage();
+                System.exit(1);
+            }
+            if (i == argv.length - 1) {
+                System.err.println("error: missing value for " + arg);
+                System.exit(1);
+            }
+            String value = argv[++i];
+            if (arg.equals("-d")) {
+                corpus = new File(value);
+            }
+            else if (arg.equals("-t")) {
+                time = Long.parseLong(value);
+            }
+            else if (arg.equals("-w")) {
+                warmup = Long.parseLong(value);
+            }
+            else if (arg.equals("-p")) {
+                parsers = split(value, PARSERS);
+            }
+            else if (arg.equals("-r")) {
+                readers = split(value, READERS);
+            }
+            else if (arg.equals("-v")) {
+                validation = split(value, VALIDATION);
+            }
+            else if (arg.equals("-n")) {
+                namespaces = split(value, NAMESPACES);
+            }
+            else if (arg.equals("-s")) {
+                sizes = split(value, SIZES);
+            }
+            else {
+                System.err.println("error: unknown option " + arg);
+                printUsage();
+                System.exit(1);
+            }
+        }
+
+        // run benchmarks
+        try {
+            ParserBenchmark benchmark = new ParserBenchmark(corpus);
+            benchmark.setTime(time, warmup);
+            benchmark.generateCorpus();
+            benchmark.run(parsers, readers, validation, namespaces, sizes);
+        }
+        catch (Exception e) {
+            e.printStackTrace(System.err);
+            System.exit(1);
+        }
+
+    } // main(String[])
+
+    /** Prints the usage. */
+    private static void printUsage() {
+
+        System.err.println("usage: java perf.ParserBenchmark (options)");
+        System.err.println();
+        System.err.println("options:");
+        System.err.println("  -d dir    Corpus directory, generated if missing.");
+        System.err.println("            Default: <tmpdir>/xerces-bench");
+        System.err.println("  -t ms     Measurement time per benchmark. Default: " + DEFAULT_TIME);
+        System.err.println("  -w ms     Warmup time per benchmark. Default: " + DEFAULT_WARMUP);
+        System.err.println("  -p list   Parsers: sax,dom,deferred");
+        System.err.println("  -r list   Input readers: utf8,ucs,char");
+        System.err.println("  -v list   Validation: none,dtd,schema");
+        System.err.println("  -n list   Namespaces: off,on (validation runs with off only)");
+        System.err.println("  -s list   Document sizes: small,medium,huge,text");
+        System.err.println("  -h        This help screen.");
+
+    } // printUsage()
+
+} // class ParserBenchmark
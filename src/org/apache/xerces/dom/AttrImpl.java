@@ -237,7 +237,7 @@ public class AttrImpl
             // Only DOMAttrModified need be produced directly.
             // It needs the previous value. Note that this may be
             // a treewalk, so I've put it under the conditional.
-            lc=LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
+            lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_ATTR_MODIFIED);
             if(lc.captures+lc.bubbles+lc.defaults>0 && parentNode!=null)
             {
                oldvalue=getValue();
@@ -401,6 +401,11 @@ public class AttrImpl
     public void setPrefix(String prefix)
         throws DOMException
     {
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
         if (syncData) {
             synchronizeData();
         }
@@ -0,0 +1,160 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.dom;
+
+import org.w3c.dom.*;
+
+/**
+ * Common base of the character data nodes in the compact, read-only
+ * view of a DeferredDocumentImpl.
+ *
+ * @see CompactNodeImpl
+ * @version
+ */
+public abstract class CompactCharacterDataImpl
+    extends CompactNodeImpl
+    implements CharacterData {
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a cursor over the given node. */
+    protected CompactCharacterDataImpl(DeferredDocumentImpl document,
+                                       int nodeIndex) {
+        super(document, nodeIndex);
+    }
+
+    //
+    // Node methods
+    //
+
+    /** Returns the character data. */
+    public String getNodeValue() {
+        return getData();
+    }
+
+    //
+    // CharacterData methods
+    //
+
+    /** Returns the character data. */
+    public String getData() throws DOMException {
+        return fDocument.getNodeValueString(fNodeIndex);
+    }
+
+    /** The compact document is read-only. */
+    public void setData(String data) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** Returns the number of characters in the data. */
+    public int getLength() {
+        return getData().length();
+    }
+
+    /**
+     * Returns a substring of the data.
+     *
+     * @throws DOMException(INDEX_SIZE_ERR) if offset is negative or
+     * greater than length, or if count is negative.
+     */
+    public String substringData(int offset, int count) throws DOMException {
+
+        String data = getData();
+        int length = data.length();
+        if (count < 0 || offset < 0 || offset > length) {
+            throw new DOMExceptionImpl(DOMException.INDEX_SIZE_ERR,
+                                       "INDEX_SIZE_ERR");
+        }
+        int end = Math.min(offset + count, length);
+        return data.substring(offset, end);
+
+    } // substringData(int,int):String
+
+    /** The compact document is read-only. */
+    public void appendData(String arg) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public void insertData(int offset, String arg) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public void deleteData(int offset, int count) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public void replaceData(int offset, int count, String arg)
+        throws DOMException {
+        throw readOnlyError();
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Character data has no children. */
+    protected int getFirstChildIndex() {
+        return -1;
+    }
+
+} // class CompactCharacterDataImpl
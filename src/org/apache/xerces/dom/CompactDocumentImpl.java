@@ -0,0 +1,191 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.dom;
+
+import org.w3c.dom.*;
+
+/**
+ * The document node of the compact, read-only view of a
+ * DeferredDocumentImpl. The factory methods all throw
+ * DOMException(NO_MODIFICATION_ALLOWED_ERR) since nodes cannot be
+ * added to the view.
+ *
+ * @see CompactNodeImpl
+ * @version
+ */
+public class CompactDocumentImpl
+    extends CompactNodeImpl
+    implements Document {
+
+    //
+    // Constructors
+    //
+
+    /** Constructs the document node of the given tables. */
+    public CompactDocumentImpl(DeferredDocumentImpl document) {
+        super(document, 0); // 0 == document node
+    }
+
+    //
+    // Node methods
+    //
+
+    /** Returns the node type. */
+    public short getNodeType() {
+        return Node.DOCUMENT_NODE;
+    }
+
+    /** Returns the node name. */
+    public String getNodeName() {
+        return "#document";
+    }
+
+    /** Documents have no parent. */
+    public Node getParentNode() {
+        return null;
+    }
+
+    /** Documents have no owner document. */
+    public Document getOwnerDocument() {
+        return null;
+    }
+
+    //
+    // Document methods
+    //
+
+    /** Returns the document type node, if any. */
+    public DocumentType getDoctype() {
+        return (DocumentType)findChild(Node.DOCUMENT_TYPE_NODE);
+    }
+
+    /** Returns the implementation. */
+    public DOMImplementation getImplementation() {
+        return DOMImplementationImpl.getDOMImplementation();
+    }
+
+    /** Returns the document element. */
+    public Element getDocumentElement() {
+        return (Element)findChild(Node.ELEMENT_NODE);
+    }
+
+    /** The compact document is read-only. */
+    public Element createElement(String tagName) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public DocumentFragment createDocumentFragment() {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public Text createTextNode(String data) {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public Comment createComment(String data) {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public CDATASection createCDATASection(String data) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public ProcessingInstruction createProcessingInstruction(String target,
+                                                             String data)
+        throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public Attr createAttribute(String name) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public EntityReference createEntityReference(String name)
+        throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** Returns all of the elements with the given tag name, or "*". */
+    public NodeList getElementsByTagName(String tagname) {
+        return new CompactNodeList(this, tagname);
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Returns the first child of the given type. */
+    private Node findChild(short type) {
+        for (int index = fDocument.getFirstChild(fNodeIndex);
+             index != -1;
+             index = fDocument.getRealNextSibling(index)) {
+            if (fDocument.getNodeType(index) == type) {
+                return create(fDocument, index);
+            }
+        }
+        return null;
+    }
+
+} // class CompactDocumentImpl
@@ -0,0 +1,108 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.dom;
+
+import org.w3c.dom.*;
+
+/**
+ * An entity declaration in the compact, read-only view of a
+ * DeferredDocumentImpl.
+ *
+ * @see CompactNodeImpl
+ * @version
+ */
+public class CompactEntityImpl
+    extends CompactNodeImpl
+    implements Entity {
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a cursor over the given entity. */
+    CompactEntityImpl(DeferredDocumentImpl document, int nodeIndex) {
+        super(document, nodeIndex);
+    }
+
+    //
+    // Entity methods
+    //
+
+    /** Returns the public identifier, or null. */
+    public String getPublicId() {
+        int extraDataIndex = fDocument.getNodeValue(fNodeIndex);
+        return fDocument.fStringPool.toString(fDocument.getFirstChild(extraDataIndex));
+    }
+
+    /** Returns the system identifier, or null. */
+    public String getSystemId() {
+        int extraDataIndex = fDocument.getNodeValue(fNodeIndex);
+        return fDocument.fStringPool.toString(
+            fDocument.fNodeLastChild[extraDataIndex >> DeferredDocumentImpl.CHUNK_SHIFT]
+                                    [extraDataIndex & DeferredDocumentImpl.CHUNK_MASK]);
+    }
+
+    /** Returns the notation name of an unparsed entity, or null. */
+    public String getNotationName() {
+        int extraDataIndex = fDocument.getNodeValue(fNodeIndex);
+        return fDocument.fStringPool.toString(
+            fDocument.fNodePrevSib[extraDataIndex >> DeferredDocumentImpl.CHUNK_SHIFT]
+                                  [extraDataIndex & DeferredDocumentImpl.CHUNK_MASK]);
+    }
+
+} // class CompactEntityImpl
@@ -0,0 +1,177 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.dom;
+
+import org.w3c.dom.*;
+
+/**
+ * A read-only named node map in the compact view of a
+ * DeferredDocumentImpl. It presents either the attribute chain of an
+ * element or the children of the document type of one node type
+ * (entities or notations), in document order.
+ *
+ * @see CompactNodeImpl
+ * @version
+ */
+class CompactNamedNodeMap
+    implements NamedNodeMap {
+
+    //
+    // Data
+    //
+
+    /** Owner document tables. */
+    private DeferredDocumentImpl fDocument;
+
+    /** Element or document type index. */
+    private int fOwnerIndex;
+
+    /** Type of the nodes in the map. */
+    private short fType;
+
+    /** Cached length, or -1 if not yet counted. */
+    private int fLength = -1;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a map over the given owner's nodes of the given type. */
+    CompactNamedNodeMap(DeferredDocumentImpl document, int ownerIndex, short type) {
+        fDocument = document;
+        fOwnerIndex = ownerIndex;
+        fType = type;
+    }
+
+    //
+    // NamedNodeMap methods
+    //
+
+    /** Returns the node with the given name, or null. */
+    public Node getNamedItem(String name) {
+        for (int index = first(); index != -1; index = next(index)) {
+            if (name.equals(fDocument.getNodeNameString(index))) {
+                return CompactNodeImpl.create(fDocument, index);
+            }
+        }
+        return null;
+    }
+
+    /** The compact document is read-only. */
+    public Node setNamedItem(Node arg) throws DOMException {
+        throw CompactNodeImpl.readOnlyError();
+    }
+
+    /** The compact document is read-only. */
+    public Node removeNamedItem(String name) throws DOMException {
+        throw CompactNodeImpl.readOnlyError();
+    }
+
+    /** Returns the node at the given index, or null. */
+    public Node item(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int node = first();
+        while (node != -1 && index-- > 0) {
+            node = next(node);
+        }
+        return CompactNodeImpl.create(fDocument, node);
+    }
+
+    /** Returns the number of nodes in the map. */
+    public int getLength() {
+        if (fLength == -1) {
+            int length = 0;
+            for (int index = first(); index != -1; index = next(index)) {
+                length++;
+            }
+            fLength = length;
+        }
+        return fLength;
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Returns the first node in the map, or -1. */
+    private int first() {
+        if (fType == Node.ATTRIBUTE_NODE) {
+            return fDocument.getAttributeList(fOwnerIndex);
+        }
+        return skip(fDocument.getFirstChild(fOwnerIndex));
+    }
+
+    /** Returns the node after the given node in the map, or -1. */
+    private int next(int index) {
+        if (fType == Node.ATTRIBUTE_NODE) {
+            return fDocument.getRealNextSibling(index);
+        }
+        return skip(fDocument.getRealNextSibling(index));
+    }
+
+    /** Skips document type children of other types. */
+    private int skip(int index) {
+        while (index != -1 && fDocument.getNodeType(index) != fType) {
+            index = fDocument.getRealNextSibling(index);
+        }
+        return index;
+    }
+
+} // class CompactNamedNodeMap
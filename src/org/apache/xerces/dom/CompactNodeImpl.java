@@ -0,0 +1,393 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.dom;
+
+import org.w3c.dom.*;
+
+import org.apache.xerces.utils.StringPool;
+
+/**
+ * CompactNodeImpl is the base class of a read-only, flyweight view of
+ * the internal tables of a DeferredDocumentImpl. Instead of expanding
+ * the document into a graph of NodeImpl objects, each compact node is a
+ * thin cursor holding only the owning document and the node's index in
+ * the tables. Compact nodes are created on demand by the navigation
+ * methods and are not retained, so two calls that reach the same node
+ * return different objects: compare them with equals(), not ==.
+ * <p>
+ * The view reflects the document as it was parsed. Adjacent text nodes
+ * are presented as a single node, the same as in the expanded tree.
+ * All mutators throw DOMException(NO_MODIFICATION_ALLOWED_ERR).
+ *
+ * @see DeferredDocumentImpl#getCompactDocument
+ * @version
+ */
+public abstract class CompactNodeImpl
+    implements Node {
+
+    //
+    // Data
+    //
+
+    /** Owner document tables. */
+    protected final DeferredDocumentImpl fDocument;
+
+    /** Node index. */
+    protected final int fNodeIndex;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a cursor over the given node of the document. */
+    protected CompactNodeImpl(DeferredDocumentImpl document, int nodeIndex) {
+        fDocument = document;
+        fNodeIndex = nodeIndex;
+    }
+
+    //
+    // Node methods
+    //
+
+    /** Returns the node name. */
+    public String getNodeName() {
+        return fDocument.getNodeNameString(fNodeIndex);
+    }
+
+    /** Returns the node value. */
+    public String getNodeValue() throws DOMException {
+        return null;
+    }
+
+    /** Compact nodes are read-only. */
+    public void setNodeValue(String nodeValue) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** Returns the node type. */
+    public short getNodeType() {
+        return fDocument.getNodeType(fNodeIndex);
+    }
+
+    /** Returns the parent node. */
+    public Node getParentNode() {
+        return create(fDocument, fDocument.getParentNode(fNodeIndex));
+    }
+
+    /** Returns a list of the children of this node. */
+    public NodeList getChildNodes() {
+        return new CompactNodeList(this, null);
+    }
+
+    /** Returns the first child. */
+    public Node getFirstChild() {
+        return create(fDocument, getFirstChildIndex());
+    }
+
+    /** Returns the last child. */
+    public Node getLastChild() {
+        return create(fDocument, getLastChildIndex());
+    }
+
+    /** Returns the previous sibling. */
+    public Node getPreviousSibling() {
+        return create(fDocument, getPreviousSiblingIndex());
+    }
+
+    /** Returns the next sibling. */
+    public Node getNextSibling() {
+        return create(fDocument, getNextSiblingIndex());
+    }
+
+    /** Returns the attributes. */
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+
+    /** Returns the owner document. */
+    public Document getOwnerDocument() {
+        return new CompactDocumentImpl(fDocument);
+    }
+
+    /** Compact nodes are read-only. */
+    public Node insertBefore(Node newChild, Node refChild)
+        throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** Compact nodes are read-only. */
+    public Node replaceChild(Node newChild, Node oldChild)
+        throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** Compact nodes are read-only. */
+    public Node removeChild(Node oldChild) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** Compact nodes are read-only. */
+    public Node appendChild(Node newChild) throws DOMException {
+        throw readOnlyError();
+    }
+
+    /** Returns true if this node has children. */
+    public boolean hasChildNodes() {
+        return getFirstChildIndex() != -1;
+    }
+
+    /**
+     * Compact nodes cannot be cloned since there is no room in the
+     * read-only document for the copy.
+     *
+     * @throws DOMException(NOT_SUPPORTED_ERR)
+     */
+    public Node cloneNode(boolean deep) {
+        throw new DOMExceptionImpl(DOMException.NOT_SUPPORTED_ERR,
+                                   "NOT_SUPPORTED_ERR");
+    }
+
+    //
+    // DOM2: methods
+    //
+
+    /** Returns the namespace URI of an element or attribute. */
+    public String getNamespaceURI() {
+        if (!fDocument.fNamespacesEnabled || !isNamed()) {
+            return null;
+        }
+        StringPool pool = fDocument.fStringPool;
+        return pool.toString(pool.getURIForQName(fDocument.getNodeName(fNodeIndex)));
+    }
+
+    /** Returns the prefix of an element or attribute. */
+    public String getPrefix() {
+        if (!fDocument.fNamespacesEnabled || !isNamed()) {
+            return null;
+        }
+        StringPool pool = fDocument.fStringPool;
+        return pool.toString(pool.getPrefixForQName(fDocument.getNodeName(fNodeIndex)));
+    }
+
+    /** Returns the local name of an element or attribute. */
+    public String getLocalName() {
+        if (!fDocument.fNamespacesEnabled || !isNamed()) {
+            return isNamed() ? getNodeName() : null;
+        }
+        StringPool pool = fDocument.fStringPool;
+        return pool.toString(pool.getLocalPartForQName(fDocument.getNodeName(fNodeIndex)));
+    }
+
+    //
+    // Public methods
+    //
+
+    /** NON-DOM: Returns the index of this node in the document tables. */
+    public int getNodeIndex() {
+        return fNodeIndex;
+    }
+
+    //
+    // Object methods
+    //
+
+    /** Two compact nodes are equal if they refer to the same node. */
+    public boolean equals(Object object) {
+        if (!(object instanceof CompactNodeImpl)) {
+            return false;
+        }
+        CompactNodeImpl node = (CompactNodeImpl)object;
+        return node.fDocument == fDocument && node.fNodeIndex == fNodeIndex;
+    }
+
+    /** Returns a hash code for this node. */
+    public int hashCode() {
+        return fNodeIndex;
+    }
+
+    /** NON-DOM method for debugging convenience. */
+    public String toString() {
+        return "["+getNodeName()+": "+getNodeValue()+"]";
+    }
+
+    //
+    // Protected methods
+    //
+
+    /** Returns true for nodes with qualified names. */
+    protected boolean isNamed() {
+        return false;
+    }
+
+    /** Returns the index of the first child, or -1. */
+    protected int getFirstChildIndex() {
+        return fDocument.getFirstChild(fNodeIndex);
+    }
+
+    /** Returns the index of the last child, or -1. */
+    protected int getLastChildIndex() {
+        if (getFirstChildIndex() == -1) {
+            return -1;
+        }
+        return startOfText(fDocument.fNodeLastChild[fNodeIndex >> DeferredDocumentImpl.CHUNK_SHIFT]
+                                                   [fNodeIndex & DeferredDocumentImpl.CHUNK_MASK]);
+    }
+
+    /** Returns the index of the previous sibling, or -1. */
+    protected int getPreviousSiblingIndex() {
+        int prev = fDocument.fNodePrevSib[fNodeIndex >> DeferredDocumentImpl.CHUNK_SHIFT]
+                                         [fNodeIndex & DeferredDocumentImpl.CHUNK_MASK];
+        return startOfText(prev);
+    }
+
+    /** Returns the index of the next sibling, or -1. */
+    protected int getNextSiblingIndex() {
+        return nextSibling(fDocument, fNodeIndex);
+    }
+
+    /**
+     * Returns the first of a run of adjacent text nodes ending with
+     * the given node. Other nodes are returned as is.
+     */
+    protected int startOfText(int nodeIndex) {
+        if (nodeIndex == -1 || fDocument.getNodeType(nodeIndex) != Node.TEXT_NODE) {
+            return nodeIndex;
+        }
+        while (true) {
+            int prev = fDocument.fNodePrevSib[nodeIndex >> DeferredDocumentImpl.CHUNK_SHIFT]
+                                             [nodeIndex & DeferredDocumentImpl.CHUNK_MASK];
+            if (prev == -1 || fDocument.getNodeType(prev) != Node.TEXT_NODE) {
+                return nodeIndex;
+            }
+            nodeIndex = prev;
+        }
+    }
+
+    /** Returns a new NO_MODIFICATION_ALLOWED_ERR exception. */
+    protected static DOMException readOnlyError() {
+        return new DOMExceptionImpl(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                                    "NO_MODIFICATION_ALLOWED_ERR");
+    }
+
+    //
+    // Package methods
+    //
+
+    /**
+     * Returns the next sibling of the given node, skipping the rest of
+     * a run of adjacent text nodes.
+     */
+    static int nextSibling(DeferredDocumentImpl document, int nodeIndex) {
+        int next = document.getRealNextSibling(nodeIndex);
+        if (document.getNodeType(nodeIndex) == Node.TEXT_NODE) {
+            while (next != -1 && document.getNodeType(next) == Node.TEXT_NODE) {
+                next = document.getRealNextSibling(next);
+            }
+        }
+        return next;
+    }
+
+    /** Creates a compact node for the given index, or null for -1. */
+    static CompactNodeImpl create(DeferredDocumentImpl document, int nodeIndex) {
+
+        if (nodeIndex == -1) {
+            return null;
+        }
+
+        switch (document.getNodeType(nodeIndex)) {
+            case Node.ATTRIBUTE_NODE: {
+                return new CompactAttrImpl(document, nodeIndex);
+            }
+            case Node.CDATA_SECTION_NODE: {
+                return new CompactCDATASectionImpl(document, nodeIndex);
+            }
+            case Node.COMMENT_NODE: {
+                return new CompactCommentImpl(document, nodeIndex);
+            }
+            case Node.DOCUMENT_NODE: {
+                return new CompactDocumentImpl(document);
+            }
+            case Node.DOCUMENT_TYPE_NODE: {
+                return new CompactDocumentTypeImpl(document, nodeIndex);
+            }
+            case Node.ELEMENT_NODE: {
+                return new CompactElementImpl(document, nodeIndex);
+            }
+            case Node.ENTITY_NODE: {
+                return new CompactEntityImpl(document, nodeIndex);
+            }
+            case Node.ENTITY_REFERENCE_NODE: {
+                return new CompactEntityReferenceImpl(document, nodeIndex);
+            }
+            case Node.NOTATION_NODE: {
+                return new CompactNotationImpl(document, nodeIndex);
+            }
+            case Node.PROCESSING_INSTRUCTION_NODE: {
+                return new CompactProcessingInstructionImpl(document, nodeIndex);
+            }
+            case Node.TEXT_NODE: {
+                return new CompactTextImpl(document, nodeIndex);
+            }
+        }
+
+        // element definitions are not part of the compact view
+        throw new IllegalArgumentException();
+
+    } // create(DeferredDocumentImpl,int):CompactNodeImpl
+
+} // class CompactNodeImpl
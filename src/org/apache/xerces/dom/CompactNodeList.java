@@ -0,0 +1,199 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.dom;
+
+import org.w3c.dom.*;
+
+/**
+ * A read-only node list in the compact view of a DeferredDocumentImpl.
+ * It presents either the children of a node or, given a tag name, the
+ * descendant elements of a node with that name in document order.
+ * The position of the last item returned is remembered so that
+ * iterating the list in order does not rescan it.
+ *
+ * @see CompactNodeImpl
+ * @version
+ */
+class CompactNodeList
+    implements NodeList {
+
+    //
+    // Data
+    //
+
+    /** Owner document tables. */
+    private DeferredDocumentImpl fDocument;
+
+    /** Root node. */
+    private CompactNodeImpl fRoot;
+
+    /** Tag name of the descendants, "*" for all, or null for children. */
+    private String fTagName;
+
+    /** Position of the last item returned, or -1. */
+    private int fLastItem = -1;
+
+    /** Node index of the last item returned. */
+    private int fLastNode = -1;
+
+    /** Cached length, or -1 if not yet counted. */
+    private int fLength = -1;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a list of the children or named descendants of root. */
+    CompactNodeList(CompactNodeImpl root, String tagName) {
+        fDocument = root.fDocument;
+        fRoot = root;
+        fTagName = tagName;
+    }
+
+    //
+    // NodeList methods
+    //
+
+    /** Returns the node at the given position, or null. */
+    public Node item(int index) {
+
+        if (index < 0) {
+            return null;
+        }
+        int position = fLastItem;
+        int node = fLastNode;
+        if (position == -1 || index < position) {
+            position = 0;
+            node = first();
+        }
+        while (node != -1 && position < index) {
+            node = next(node);
+            position++;
+        }
+        if (node == -1) {
+            return null;
+        }
+        fLastItem = position;
+        fLastNode = node;
+        return CompactNodeImpl.create(fDocument, node);
+
+    } // item(int):Node
+
+    /** Returns the number of nodes in the list. */
+    public int getLength() {
+        if (fLength == -1) {
+            int length = 0;
+            for (int node = first(); node != -1; node = next(node)) {
+                length++;
+            }
+            fLength = length;
+        }
+        return fLength;
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Returns the first node in the list, or -1. */
+    private int first() {
+        if (fTagName == null) {
+            return fRoot.getFirstChildIndex();
+        }
+        return next(fRoot.fNodeIndex);
+    }
+
+    /** Returns the node after the given node in the list, or -1. */
+    private int next(int node) {
+
+        if (fTagName == null) {
+            return CompactNodeImpl.nextSibling(fDocument, node);
+        }
+
+        // pre-order walk of the subtree, matching elements
+        int root = fRoot.fNodeIndex;
+        while (true) {
+            int child = -1;
+            int type = fDocument.getNodeType(node);
+            if (type == Node.ELEMENT_NODE ||
+                type == Node.ENTITY_REFERENCE_NODE ||
+                type == Node.DOCUMENT_NODE) {
+                child = fDocument.getFirstChild(node);
+            }
+            if (child != -1) {
+                node = child;
+            }
+            else {
+                while (node != root && fDocument.getRealNextSibling(node) == -1) {
+                    node = fDocument.getParentNode(node);
+                }
+                if (node == root) {
+                    return -1;
+                }
+                node = fDocument.getRealNextSibling(node);
+            }
+            if (fDocument.getNodeType(node) == Node.ELEMENT_NODE &&
+                (fTagName.equals("*") ||
+                 fTagName.equals(fDocument.getNodeNameString(node)))) {
+                return node;
+            }
+        }
+
+    } // next(int):int
+
+} // class CompactNodeList
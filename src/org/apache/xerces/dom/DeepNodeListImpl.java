@@ -101,6 +101,11 @@ import java.util.Vector;
  * access will also start by doing a getLength() to control their loop,
  * blowing this optimization out of the water.
  * <P>
+ * Lists handed out by DocumentImpl are cached per root and name, and
+ * the document reports each child inserted or removed beneath their
+ * root, so that they can be patched in place rather than refilled.
+ * A change the list was not told about still empties the cache.
+ * <P>
  * NOTE: Level 2 of the DOM will probably _not_ use NodeList for its
  * extended search mechanisms, partly for the reasons just discussed.
  *
@@ -122,6 +127,9 @@ public class DeepNodeListImpl
     protected String nsName;
     protected boolean enableNS = false;
 
+    /** True if the nodes vector holds every match under the root. */
+    protected boolean complete;
+
     //
     // Constructors
     //
@@ -161,11 +169,16 @@ public class DeepNodeListImpl
     	if(rootNode.changes != changes) {
     		nodes   = new Vector();     
     		changes = rootNode.changes;
+    		complete = false;
     	}
     
         // In the cache
     	if (index < nodes.size())      
     	    return (Node)nodes.elementAt(index);
+
+        // Already seen them all
+        if (complete)
+            return null;
     
         // Not yet seen
     	else {
@@ -182,6 +195,8 @@ public class DeepNodeListImpl
     			if (thisNode != null)
     			    nodes.addElement(thisNode);
     		    }
+    		if (thisNode == null)
+    		    complete = true;
 
             // Either what we want, or null (not avail.)
 		    return thisNode;           
@@ -189,10 +204,185 @@ public class DeepNodeListImpl
 
     } // item(int):Node
 
+    //
+    // Package methods
+    //
+
+    /**
+     * Updates the list after the given node has been inserted under
+     * parent, which has already been marked as changed. Matches in the
+     * new subtree are spliced in after the nearest match preceding it,
+     * unless they lie beyond the part of the list filled so far.
+     */
+    void insertedNode(NodeImpl parent, NodeImpl node) {
+
+        if (!isCurrent(parent)) {
+            return;
+        }
+
+        Vector found = null;
+        for (Node n = node; n != null; n = nextNodeAfter(n, node)) {
+            if (matches(n)) {
+                if (found == null) {
+                    found = new Vector();
+                }
+                found.addElement(n);
+            }
+        }
+
+        if (found != null) {
+            Node prev = previousMatchingElementBefore(node);
+            int index = prev == null ? 0 : nodes.lastIndexOf(prev) + 1;
+            if ((prev == null || index > 0)
+                && (complete || index < nodes.size())) {
+                for (int i = found.size() - 1; i >= 0; i--) {
+                    nodes.insertElementAt(found.elementAt(i), index);
+                }
+            }
+        }
+
+        // the list now reflects this change
+        changes++;
+
+    } // insertedNode(NodeImpl,NodeImpl)
+
+    /**
+     * Updates the list after the given node has been removed from
+     * parent, which has already been marked as changed.
+     */
+    void removedNode(NodeImpl parent, NodeImpl node) {
+
+        if (!isCurrent(parent)) {
+            return;
+        }
+
+        // the matches in the removed subtree are contiguous in the list
+        Node first = null;
+        int count = 0;
+        for (Node n = node; n != null; n = nextNodeAfter(n, node)) {
+            if (matches(n)) {
+                if (first == null) {
+                    first = n;
+                }
+                count++;
+            }
+        }
+
+        if (first != null) {
+            int index = nodes.indexOf(first);
+            if (index != -1) {
+                int end = Math.min(index + count, nodes.size());
+                for (int i = end - 1; i >= index; i--) {
+                    nodes.removeElementAt(i);
+                }
+            }
+        }
+
+        // the list now reflects this change
+        changes++;
+
+    } // removedNode(NodeImpl,NodeImpl)
+
     //
     // Private methods
     //
 
+    /**
+     * Returns true if parent is in the subtree searched by this list and
+     * the list was up to date before the change made beneath it. Changes
+     * made while an earlier one is being applied are not reported, and
+     * leave the list to be refilled on its next use.
+     */
+    private boolean isCurrent(NodeImpl parent) {
+
+        for (NodeImpl p = parent; p != rootNode; p = p.parentNode) {
+            // attributes are not searched, even though their parent
+            // is their owner element
+            if (p == null || p.getNodeType() == Node.ATTRIBUTE_NODE) {
+                return false;
+            }
+        }
+        return rootNode.changes == changes + 1;
+
+    } // isCurrent(NodeImpl):boolean
+
+    /** Returns true if the given node belongs in this list. */
+    private boolean matches(Node current) {
+
+		return current != rootNode 
+		    && current.getNodeType() ==  Node.ELEMENT_NODE 
+		    && (tagName.equals("*") 
+		        || ((ElementImpl) current).getTagName().equals(tagName))
+		    // DOM2: Namespace logic. 
+		    && (!enableNS
+		        || ( enableNS
+		            && ((ElementImpl) current).getNamespaceURI() != null
+		            && ((ElementImpl) current).getNamespaceURI().equals(nsName)
+		            )
+		        );
+
+    } // matches(Node):boolean
+
+    /** 
+     * Returns the node following current in document order, without
+     * leaving the subtree rooted at top.
+     */
+    private Node nextNodeAfter(Node current, Node top) {
+
+	    Node next;
+
+	    // Look down to first child.
+	    if (current.hasChildNodes()) {
+		    return current.getFirstChild();
+	    }
+
+	    // Look right to sibling (but not from top!)
+	    if (current != top && null != (next = current.getNextSibling())) {
+			return next;
+		}
+
+		// Look up and right (but not past top!)
+		next = null;
+		for (; current != top; current = current.getParentNode()) {
+			next = current.getNextSibling();
+			if (next != null)
+				break;
+		}
+		return next;
+
+    } // nextNodeAfter(Node,Node):Node
+
+    /** 
+     * Returns the last match preceding current in document order, or
+     * null if there is none under the root.
+     */
+    private Node previousMatchingElementBefore(Node current) {
+
+	    Node prev;
+	    while (true) {
+		    // Look left to sibling, then down to its last descendant
+		    if (null != (prev = current.getPreviousSibling())) {
+			    current = prev;
+			    while (current.hasChildNodes()) {
+				    current = current.getLastChild();
+			    }
+		    }
+
+		    // Look up (but not past root!)
+		    else {
+			    current = current.getParentNode();
+			    if (current == rootNode || current == null) {
+				    return null;
+			    }
+		    }
+
+		    if (matches(current)) {
+			    return current;
+		    }
+	    }
+
+    } // previousMatchingElementBefore(Node):Node
+
     /** 
      * Iterative tree-walker. When you have a Parent link, there's often no
      * need to resort to recursion. NOTE THAT only Element nodes are matched
@@ -200,47 +390,12 @@ public class DeepNodeListImpl
      */
     private Node nextMatchingElementAfter(Node current) {
 
-	    Node next;
 	    while (current != null) {
-		    // Look down to first child.
-		    if (current.hasChildNodes()) {
-			    current = (current.getFirstChild());
-		    }
-
-		    // Look right to sibling (but not from root!)
-		    else if (current != rootNode && null != (next = current.getNextSibling())) {
-				current = next;
-			}
-
-			// Look up and right (but not past root!)
-			else {
-				next = null;
-				for (; current != rootNode; // Stop when we return to starting point
-					current = current.getParentNode()) {
-
-					next = current.getNextSibling();
-					if (next != null)
-						break;
-				}
-				current = next;
-			}
+		    current = nextNodeAfter(current, rootNode);
 
 			// Have we found an Element with the right tagName?
 			// ("*" matches anything.)
-		    if (current != rootNode 
-		        && current != null
-		        && current.getNodeType() ==  Node.ELEMENT_NODE 
-		        && (tagName.equals("*") 
-		            || ((ElementImpl) current).getTagName().equals(tagName))
-		        // DOM2: Namespace logic. 
-		        && (!enableNS
-		            || ( enableNS
-		                && ((ElementImpl) current).getNamespaceURI() != null
-		                && ((ElementImpl) current).getNamespaceURI().equals(nsName)
-		                )
-		            )
-		         )
-		    {
+		    if (current != null && matches(current)) {
 			    return current;
 			}
 
@@ -998,6 +998,140 @@ public class DeferredDocumentImpl
 
     } // getNodeType(int):int
 
+    // compact view
+
+    /**
+     * NON-DOM: Returns a read-only, flyweight view of this document. The
+     * nodes of the view are thin cursors over the internal tables that
+     * are created on demand and not retained, so a large document can be
+     * navigated without expanding it into node objects. The view always
+     * reflects the document as parsed, regardless of any changes made
+     * through the expanded tree.
+     *
+     * @see CompactNodeImpl
+     */
+    public Document getCompactDocument() {
+        return new CompactDocumentImpl(this);
+    }
+
+    // subtree extraction
+
+    /**
+     * NON-DOM: Returns the subtree rooted at the specified node as node
+     * objects that are fully expanded and no longer read from the
+     * internal tables. The returned node has no parent and the subtree
+     * remains in the tables until it is discarded.
+     *
+     * @see #discardNodes
+     */
+    public Node expandSubtree(int nodeIndex) {
+
+        // expanding an element must not make it the document element
+        ElementImpl element = docElement;
+        NodeImpl node = (NodeImpl)getNodeObject(nodeIndex);
+        if (docElement == node) {
+            docElement = element;
+        }
+
+        // looking up default attributes fluffs up the children of the
+        // document; if they were not fluffed up yet, let them be read
+        // again once the tables are complete
+        boolean sync = syncChildren;
+        synchronizeSubtree(node);
+        if (sync && !syncChildren) {
+            syncChildren = true;
+            firstChild = null;
+            lastChild = null;
+            docElement = null;
+            docType = null;
+        }
+
+        return node;
+
+    } // expandSubtree(int):Node
+
+    /**
+     * NON-DOM: Removes the specified node, and every node created after
+     * it, from the internal tables. The node must be the last child of
+     * its parent and the nodes created after it must all belong to its
+     * subtree or to its following siblings. The strings held by the
+     * removed nodes are released from the string pool and the table
+     * slots are reused by the next nodes created.
+     * <p>
+     * Node objects already expanded from the removed nodes are not
+     * affected, but must not be synchronized afterwards.
+     *
+     * @see #expandSubtree
+     */
+    public void discardNodes(int nodeIndex) {
+
+        // unlink from parent
+        int chunk = nodeIndex >> CHUNK_SHIFT;
+        int index = nodeIndex & CHUNK_MASK;
+        int parent = fNodeParent[chunk][index];
+        if (parent != -1) {
+            int prev = fNodePrevSib[chunk][index];
+            fNodeLastChild[parent >> CHUNK_SHIFT][parent & CHUNK_MASK] = prev;
+            if (prev == -1) {
+                fNodeFirstChild[parent >> CHUNK_SHIFT][parent & CHUNK_MASK] = -1;
+            }
+            else {
+                fNodeNextSib[prev >> CHUNK_SHIFT][prev & CHUNK_MASK] = -1;
+            }
+        }
+
+        // release strings; names are symbols and stay in the pool
+        for (int i = nodeIndex; i < fNodeCount; i++) {
+            chunk = i >> CHUNK_SHIFT;
+            index = i & CHUNK_MASK;
+            switch (fNodeType[chunk][index]) {
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE: {
+                    // default attribute values belong to the declaration
+                    parent = fNodeParent[chunk][index];
+                    if (parent != -1 &&
+                        getNodeType(parent) == Node.ATTRIBUTE_NODE &&
+                        getNodeValue(parent) != 1) {
+                        break;
+                    }
+                    fStringPool.releaseString(fNodeValue[chunk][index]);
+                    break;
+                }
+                case Node.COMMENT_NODE:
+                case Node.PROCESSING_INSTRUCTION_NODE: {
+                    fStringPool.releaseString(fNodeValue[chunk][index]);
+                    break;
+                }
+            }
+        }
+
+        // forget identifiers of removed elements
+        while (fIdCount > 0 && fIdElement[fIdCount - 1] >= nodeIndex) {
+            fIdCount--;
+        }
+
+        fNodeCount = nodeIndex;
+
+    } // discardNodes(int)
+
+    // string pool maintenance
+
+    /**
+     * NON-DOM: Copies the character data that the string pool still reads
+     * from the parser's input buffers into one shared array, so that a
+     * document kept after the parse no longer keeps those buffers
+     * reachable. The string indexes held by the tables do not change.
+     * This can be called again after nodes have been discarded to free
+     * the characters of the strings they held.
+     *
+     * @return The number of strings copied.
+     *
+     * @see StringPool#compact
+     */
+    public int compactStringPool() {
+        return fStringPool.compact();
+    }
+
     // identifier maintenance
 
     /** Registers an identifier name with a specified element node. */
@@ -1153,6 +1287,41 @@ public class DeferredDocumentImpl
 
     } // synchronizeData()
 
+    /**
+     * Fluffs up the given node, its attributes and its descendants.
+     * Entity references take their children from the nodes recorded at
+     * the reference rather than from the entity, which is not filled in
+     * when the parser discards the nodes of the subtree.
+     */
+    protected void synchronizeSubtree(NodeImpl node) {
+
+        if (node.syncData) {
+            node.synchronizeData();
+        }
+        if (node.syncChildren) {
+            if (node instanceof DeferredEntityReferenceImpl) {
+                ((DeferredEntityReferenceImpl)node).synchronizeChildrenFromTables();
+            }
+            else {
+                node.synchronizeChildren();
+            }
+        }
+
+        NamedNodeMap attrs = node.getAttributes();
+        if (attrs != null) {
+            int length = attrs.getLength();
+            for (int i = 0; i < length; i++) {
+                synchronizeSubtree((NodeImpl)attrs.item(i));
+            }
+        }
+        for (NodeImpl child = node.firstChild;
+             child != null;
+             child = child.nextSibling) {
+            synchronizeSubtree(child);
+        }
+
+    } // synchronizeSubtree(NodeImpl)
+
     /**
      * Synchronizes the node's children with the internal structure.
      * Fluffing the children at once solves a lot of work to keep
@@ -205,17 +205,27 @@ public class DeferredEntityReferenceImpl
 
         // if not found, create entity at this reference
         if (!found) {
-            DeferredDocumentImpl ownerDocument = (DeferredDocumentImpl)this.ownerDocument;
-            int index = ownerDocument.getFirstChild(fNodeIndex);
-            readOnly = false;
-            while (index != -1) {
-                Node child = ownerDocument.getNodeObject(index);
-                appendChild(child);
-                index = ownerDocument.getNextSibling(index);
-            }
-            readOnly = true;
+            synchronizeChildrenFromTables();
         }
 
     } // synchronizeChildren()
 
+    /** Creates the children from the nodes recorded at this reference. */
+    void synchronizeChildrenFromTables() {
+
+        // no need to synchronize again
+        syncChildren = false;
+
+        DeferredDocumentImpl ownerDocument = (DeferredDocumentImpl)this.ownerDocument;
+        int index = ownerDocument.getFirstChild(fNodeIndex);
+        readOnly = false;
+        while (index != -1) {
+            Node child = ownerDocument.getNodeObject(index);
+            appendChild(child);
+            index = ownerDocument.getNextSibling(index);
+        }
+        readOnly = true;
+
+    } // synchronizeChildrenFromTables()
+
 } // class DeferredEntityReferenceImpl
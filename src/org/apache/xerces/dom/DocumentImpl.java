@@ -57,6 +57,7 @@
 
 package org.apache.xerces.dom;
 
+import java.lang.ref.WeakReference;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
@@ -105,6 +106,12 @@ public class DocumentImpl
     /** Serialization version. */
     static final long serialVersionUID = 515687835542616694L;
 
+    /** Children of a frozen leaf node. */
+    private static final NodeImpl[] NO_CHILDREN = new NodeImpl[0];
+
+    /** Number of element lists cached before the cache is emptied. */
+    private static final int ELEMENT_LIST_CACHE_SIZE = 64;
+
     //
     // Data
     //
@@ -127,6 +134,33 @@ public class DocumentImpl
     /** Tree walkers */
     // REVISIT: Should this be transient? -Ac
     protected Vector treeWalkers;
+
+    /** True once the document has been frozen. */
+    protected boolean frozen;
+
+    /**
+     * Weak references to the cached element lists, by root node and then
+     * by name.
+     */
+    protected transient Hashtable elementLists;
+
+    /** Number of cached element lists. */
+    protected transient int elementListCount;
+
+    /** True if the elements are indexed by tag name. */
+    protected boolean tagNameIndexing;
+
+    /** Element lists of the whole document, by tag name. */
+    protected transient Hashtable tagNameIndex;
+
+    /** Event listener counts by event type, or null if none. */
+    protected transient Hashtable eventListenerCounts;
+
+    /** Event propagation path kept for reuse. */
+    transient NodeImpl[] eventPath;
+
+    /** Node whose children are being inserted as one batch, if any. */
+    transient NodeImpl mutationBatchTarget;
 	
     // experimental
 
@@ -463,7 +497,7 @@ public class DocumentImpl
 	 * @see DeepNodeListImpl
 	 */
     public NodeList getElementsByTagName(String tagname) {
-	    return new DeepNodeListImpl(this,tagname);
+	    return getElementList(this, null, tagname);
     }
 
     /**
@@ -762,6 +796,12 @@ public class DocumentImpl
      */
     public void putIdentifier(String idName, Element element) {
 
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
+
         if (element == null) {
             removeIdentifier(idName);
         }
@@ -808,6 +848,12 @@ public class DocumentImpl
      */
     public void removeIdentifier(String idName) {
 
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
+
         if (syncData) {
             synchronizeData();
         }
@@ -835,6 +881,369 @@ public class DocumentImpl
 
     } // getIdentifiers():Enumeration
 
+    // element lists
+
+    /**
+     * NON-DOM: Enables or disables the tag name index. When enabled, the
+     * elements of the document are gathered for every tag name in a single
+     * pass over the tree the first time getElementsByTagName is called on
+     * the document, and the lists are then kept current as nodes are
+     * inserted and removed.
+     */
+    public void setTagNameIndexing(boolean indexing) {
+        tagNameIndexing = indexing;
+        if (!indexing) {
+            tagNameIndex = null;
+        }
+    }
+
+    /** NON-DOM: Returns true if the elements are indexed by tag name. */
+    public boolean getTagNameIndexing() {
+        return tagNameIndexing;
+    }
+
+    /**
+     * Returns the live list of elements under root with the given name
+     * and, if it is not null, namespace URI. The lists are cached so that
+     * they can be patched as the tree changes instead of being refilled.
+     * The cache only holds weak references, so a list is patched only
+     * while it is still in use, and the lists of a root are dropped when
+     * the root is removed from its tree. The cache is left alone once the
+     * document is frozen.
+     */
+    DeepNodeListImpl getElementList(NodeImpl root, String namespaceURI,
+                                    String name) {
+
+        DeepNodeListImpl list;
+        if (tagNameIndexing && root == this && namespaceURI == null) {
+            if (tagNameIndex == null && !frozen) {
+                tagNameIndex = buildTagNameIndex();
+            }
+            if (tagNameIndex != null) {
+                list = (DeepNodeListImpl)tagNameIndex.get(name);
+                if (list == null) {
+                    list = new DeepNodeListImpl(this, name);
+                    if (!frozen) {
+                        tagNameIndex.put(name, list);
+                    }
+                }
+                return list;
+            }
+        }
+
+        String key = namespaceURI == null
+                   ? name : '{' + namespaceURI + '}' + name;
+        Hashtable lists = elementLists != null
+                        ? (Hashtable)elementLists.get(root) : null;
+        WeakReference ref = lists != null ? (WeakReference)lists.get(key) : null;
+        list = ref != null ? (DeepNodeListImpl)ref.get() : null;
+        if (list != null) {
+            return list;
+        }
+
+        list = namespaceURI == null
+             ? new DeepNodeListImpl(root, name)
+             : new DeepNodeListImpl(root, namespaceURI, name);
+        if (frozen) {
+            return list;
+        }
+        if (elementLists != null && elementListCount >= ELEMENT_LIST_CACHE_SIZE) {
+            updateElementLists(null, null, false);
+            lists = (Hashtable)elementLists.get(root);
+        }
+        if (elementLists == null || elementListCount >= ELEMENT_LIST_CACHE_SIZE) {
+            elementLists = new Hashtable();
+            elementListCount = 0;
+            lists = null;
+        }
+        if (lists == null) {
+            lists = new Hashtable();
+            elementLists.put(root, lists);
+        }
+        if (lists.put(key, new WeakReference(list)) == null) {
+            elementListCount++;
+        }
+        return list;
+
+    } // getElementList(NodeImpl,String,String):DeepNodeListImpl
+
+    /** Tells the cached element lists that node was inserted under parent. */
+    void insertedNode(NodeImpl parent, NodeImpl node) {
+
+        if (elementLists != null) {
+            updateElementLists(parent, node, false);
+        }
+        if (tagNameIndex != null) {
+            Enumeration lists = tagNameIndex.elements();
+            while (lists.hasMoreElements()) {
+                ((DeepNodeListImpl)lists.nextElement()).insertedNode(parent, node);
+            }
+        }
+
+    } // insertedNode(NodeImpl,NodeImpl)
+
+    /** Tells the cached element lists that node was removed from parent. */
+    void removedNode(NodeImpl parent, NodeImpl node) {
+
+        if (elementLists != null) {
+            updateElementLists(parent, node, true);
+        }
+        if (tagNameIndex != null) {
+            Enumeration lists = tagNameIndex.elements();
+            while (lists.hasMoreElements()) {
+                ((DeepNodeListImpl)lists.nextElement()).removedNode(parent, node);
+            }
+        }
+
+    } // removedNode(NodeImpl,NodeImpl)
+
+    /**
+     * Tells the cached element lists still in use that node was inserted
+     * under or removed from parent, and forgets the lists that are no
+     * longer in use. When node was removed, the lists of roots in the
+     * removed subtree are forgotten too; they are refilled on their next
+     * use instead. With a null node, the cache is only cleaned up.
+     */
+    private void updateElementLists(NodeImpl parent, NodeImpl node,
+                                    boolean removed) {
+
+        Vector stale = null;
+        Enumeration roots = elementLists.keys();
+        while (roots.hasMoreElements()) {
+            NodeImpl root = (NodeImpl)roots.nextElement();
+            Hashtable lists = (Hashtable)elementLists.get(root);
+            if (removed && isInSubtree(root, node)) {
+                if (stale == null) {
+                    stale = new Vector();
+                }
+                stale.addElement(root);
+                stale.addElement(null);
+                continue;
+            }
+            Enumeration keys = lists.keys();
+            while (keys.hasMoreElements()) {
+                Object key = keys.nextElement();
+                DeepNodeListImpl list =
+                    (DeepNodeListImpl)((WeakReference)lists.get(key)).get();
+                if (list == null) {
+                    if (stale == null) {
+                        stale = new Vector();
+                    }
+                    stale.addElement(root);
+                    stale.addElement(key);
+                }
+                else if (node == null) {
+                    continue;
+                }
+                else if (removed) {
+                    list.removedNode(parent, node);
+                }
+                else {
+                    list.insertedNode(parent, node);
+                }
+            }
+        }
+
+        // forget what is no longer needed once the walk is over
+        if (stale != null) {
+            for (int i = 0; i < stale.size(); i += 2) {
+                Object root = stale.elementAt(i);
+                Object key = stale.elementAt(i + 1);
+                Hashtable lists = (Hashtable)elementLists.get(root);
+                if (key == null) {
+                    elementListCount -= lists.size();
+                    elementLists.remove(root);
+                }
+                else {
+                    lists.remove(key);
+                    elementListCount--;
+                    if (lists.isEmpty()) {
+                        elementLists.remove(root);
+                    }
+                }
+            }
+        }
+
+    } // updateElementLists(NodeImpl,NodeImpl,boolean)
+
+    /** Returns true if node is root or one of its descendants. */
+    private static boolean isInSubtree(NodeImpl node, NodeImpl root) {
+
+        for (NodeImpl n = node; n != null; n = n.parentNode) {
+            if (n == root) {
+                return true;
+            }
+        }
+        return false;
+
+    } // isInSubtree(NodeImpl,NodeImpl):boolean
+
+    /** Gathers the elements of the document by tag name in one pass. */
+    private Hashtable buildTagNameIndex() {
+
+        Hashtable index = new Hashtable();
+        DeepNodeListImpl all = new DeepNodeListImpl(this, "*");
+        index.put("*", all);
+
+        Node node = this;
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                String name = node.getNodeName();
+                DeepNodeListImpl list = (DeepNodeListImpl)index.get(name);
+                if (list == null) {
+                    list = new DeepNodeListImpl(this, name);
+                    index.put(name, list);
+                }
+                list.nodes.addElement(node);
+                all.nodes.addElement(node);
+            }
+
+            // next node in document order
+            Node next = node.getFirstChild();
+            while (next == null && node != this) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+
+        Enumeration lists = index.elements();
+        while (lists.hasMoreElements()) {
+            DeepNodeListImpl list = (DeepNodeListImpl)lists.nextElement();
+            list.changes = changes;
+            list.complete = true;
+        }
+        return index;
+
+    } // buildTagNameIndex():Hashtable
+
+    // freezing
+
+    /**
+     * NON-DOM: Fully materializes this document and marks every node in
+     * it, including attributes and the contents of the document type,
+     * read-only. Deferred nodes are synchronized and attribute defaults
+     * are reconciled up front, so that afterwards no read method modifies
+     * the tree and the document may be read from any number of threads
+     * without locking. Any attempt to modify a frozen document throws
+     * DOMException(NO_MODIFICATION_ALLOWED_ERR).
+     * <p>
+     * The document must be handed to other threads only after this method
+     * returns. NodeList, NodeIterator and TreeWalker objects obtained from
+     * a frozen document are not themselves thread safe and should not be
+     * shared between threads.
+     *
+     * @see #isFrozen
+     */
+    public synchronized void freeze() {
+
+        if (frozen) {
+            return;
+        }
+
+        freezeNode(this);
+        if (identifiers == null) {
+            identifiers = new Hashtable();
+        }
+
+        // fill the element lists so that reading them changes nothing
+        if (tagNameIndexing && tagNameIndex == null) {
+            tagNameIndex = buildTagNameIndex();
+        }
+        if (elementLists != null) {
+            Enumeration roots = elementLists.elements();
+            while (roots.hasMoreElements()) {
+                Enumeration lists = ((Hashtable)roots.nextElement()).elements();
+                while (lists.hasMoreElements()) {
+                    DeepNodeListImpl list = (DeepNodeListImpl)
+                        ((WeakReference)lists.nextElement()).get();
+                    if (list != null) {
+                        list.getLength();
+                    }
+                }
+            }
+        }
+        if (tagNameIndex != null) {
+            Enumeration lists = tagNameIndex.elements();
+            while (lists.hasMoreElements()) {
+                ((DeepNodeListImpl)lists.nextElement()).getLength();
+            }
+        }
+        frozen = true;
+
+    } // freeze()
+
+    /** NON-DOM: Returns true if this document has been frozen. */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /** Synchronizes the given subtree and marks all of it read-only. */
+    private void freezeNode(NodeImpl node) {
+
+        if (node.syncData) {
+            node.synchronizeData();
+        }
+        if (node.syncChildren) {
+            node.synchronizeChildren();
+        }
+        node.readOnly = true;
+
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE: {
+                freezeMap(((ElementImpl)node).attributes);
+                break;
+            }
+            case Node.DOCUMENT_TYPE_NODE: {
+                DocumentTypeImpl doctype = (DocumentTypeImpl)node;
+                freezeMap(doctype.entities);
+                freezeMap(doctype.notations);
+                freezeMap(doctype.elements);
+                break;
+            }
+            case NodeImpl.ELEMENT_DEFINITION_NODE: {
+                freezeMap(((ElementDefinitionImpl)node).attributes);
+                break;
+            }
+        }
+
+        int count = 0;
+        for (NodeImpl kid = node.firstChild;
+             kid != null;
+             kid = kid.nextSibling) {
+            freezeNode(kid);
+            count++;
+        }
+
+        // index the children so that item() need not update the
+        // NodeList cache of a frozen node
+        NodeImpl[] kids = count == 0 ? NO_CHILDREN : new NodeImpl[count];
+        count = 0;
+        for (NodeImpl kid = node.firstChild;
+             kid != null;
+             kid = kid.nextSibling) {
+            kids[count++] = kid;
+        }
+        node.frozenChildren = kids;
+
+    } // freezeNode(NodeImpl)
+
+    /** Reconciles defaults and freezes every node in the given map. */
+    private void freezeMap(NamedNodeMapImpl map) {
+
+        if (map == null) {
+            return;
+        }
+        int length = map.getLength();
+        for (int i = 0; i < length; i++) {
+            freezeNode((NodeImpl)map.item(i));
+        }
+        map.readOnly = true;
+
+    } // freezeMap(NamedNodeMapImpl)
+
     //
     // DOM2: Namespace methods
     //
@@ -902,7 +1311,7 @@ public class DocumentImpl
      */
     public NodeList getElementsByTagNameNS(String namespaceURI, String localName)
     {
-	    return new DeepNodeListImpl(this, namespaceURI, localName);
+	    return getElementList(this, namespaceURI, localName);
     }
 
     //
@@ -1196,6 +1605,38 @@ public class DocumentImpl
     	
     } // isXMLName(String):boolean
 
+    //
+    // Package methods
+    //
+
+    /**
+     * Returns an array to hold the propagation path of an event, reusing
+     * the last one handed back if it is free. Nested dispatches, and all
+     * dispatches in a frozen document, get a new array.
+     */
+    NodeImpl[] takeEventPath() {
+
+        NodeImpl[] path = eventPath;
+        if (path == null || frozen) {
+            return new NodeImpl[10];
+        }
+        eventPath = null;
+        return path;
+
+    } // takeEventPath():NodeImpl[]
+
+    /** Takes back an event propagation path for reuse. */
+    void releaseEventPath(NodeImpl[] path, int length) {
+
+        for (int i = 0; i < length; i++) {
+            path[i] = null;
+        }
+        if (!frozen) {
+            eventPath = path;
+        }
+
+    } // releaseEventPath(NodeImpl[],int)
+
     //
     // Protected methods
     //
@@ -275,7 +275,7 @@ public class DocumentTypeImpl
         if (syncChildren) {
             synchronizeChildren();
             }
-        setReadOnly(readOnly, deep);
+        super.setReadOnly(readOnly, deep);
 
         // set read-only property
         elements.setReadOnly(readOnly, true);
@@ -274,7 +274,7 @@ public class ElementImpl
      * @see DeepNodeListImpl
      */
     public NodeList getElementsByTagName(String tagname) {
-    	return new DeepNodeListImpl(this,tagname);
+    	return ownerDocument.getElementList(this, null, tagname);
     }
     
     //
@@ -335,6 +335,11 @@ public class ElementImpl
     public void setPrefix(String prefix)
         throws DOMException
     {
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
         if (syncData) {
             synchronizeData();
         }
@@ -780,7 +785,7 @@ public class ElementImpl
      * @since WD-DOM-Level-2-19990923
      */
     public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
-    	return new DeepNodeListImpl(this, namespaceURI, localName);
+    	return ownerDocument.getElementList(this, namespaceURI, localName);
     }
 
     //
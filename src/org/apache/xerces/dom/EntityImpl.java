@@ -205,7 +205,12 @@ public class EntityImpl
      * NON-DOM The public identifier associated with the entity. If not specified,
      * this will be null. */
     public void setPublicId(String id) {
-        
+
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
         if (syncData) {
             synchronizeData();
         }
@@ -219,6 +224,11 @@ public class EntityImpl
      */
     public void setSystemId(String id) {
 
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
         if (syncData) {
             synchronizeData();
         }
@@ -233,7 +243,12 @@ public class EntityImpl
      * set it to null.  
      */
     public void setNotationName(String name) {
-        
+
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
         if (syncData) {
             synchronizeData();
         }
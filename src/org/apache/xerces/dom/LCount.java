@@ -67,7 +67,7 @@ import org.apache.xerces.domx.events.*;
 
 /** Internal class LCount is used to track the number of
     listeners registered for a given event name, as an entry
-    in a global hashtable. This should allow us to avoid generating,
+    in a per-document hashtable. This should allow us to avoid generating,
     or discard, events for which no listeners are registered. 
     
     ***** There should undoubtedly be methods here to manipulate
@@ -83,20 +83,50 @@ import org.apache.xerces.domx.events.*;
     ???? CONCERN: Hashtables are known to be "overserialized" in
     current versions of Java. That may impact performance.
     
-    ???? CONCERN: The hashtable should probably be a per-document object.
-    Finer granularity would be even better, but would cost more cycles to
-    resolve and might not save enough event traffic to be worth the investment.
+    Counts are kept per document, so that listeners on one document
+    do not slow mutation of every other. A document on which no listener
+    was ever registered has no table at all. Nodes without an owner
+    document, such as DocumentTypes created through DOMImplementation,
+    share a global table. Finer granularity would cost more cycles to
+    resolve and might not save enough event traffic to be worth the
+    investment.
 */
 class LCount 
 { 
+    /** Counts of the event types nobody listens for. Never modified. */
+    static final LCount NONE=new LCount();
+
+    /** Counts for nodes without an owner document. */
     static java.util.Hashtable lCounts=new java.util.Hashtable();
+
     public int captures=0,bubbles=0,defaults=0;
 
-    static LCount lookup(String evtName)
+    /** Returns the counts for the given event name in the given
+        document, for reading only. */
+    static LCount lookup(DocumentImpl doc,String evtName)
+    {
+        java.util.Hashtable counts=(doc!=null) ? doc.eventListenerCounts : lCounts;
+        if(counts==null)
+            return NONE;
+        LCount lc=(LCount)counts.get(evtName);
+        return (lc!=null) ? lc : NONE;
+    }
+
+    /** Returns the counts for the given event name in the given
+        document, creating them if need be, so that a listener may
+        be recorded. */
+    static LCount register(DocumentImpl doc,String evtName)
     {
-        LCount lc=(LCount)lCounts.get(evtName);
+        java.util.Hashtable counts=lCounts;
+        if(doc!=null)
+        {
+            if(doc.eventListenerCounts==null)
+                doc.eventListenerCounts=new java.util.Hashtable();
+            counts=doc.eventListenerCounts;
+        }
+        LCount lc=(LCount)counts.get(evtName);
         if(lc==null)
-            lCounts.put(evtName,(lc=new LCount()));
+            counts.put(evtName,(lc=new LCount()));
         return lc;	        
     }
 } // class LCount
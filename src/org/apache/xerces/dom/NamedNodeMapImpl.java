@@ -58,8 +58,6 @@
 package org.apache.xerces.dom;
 
 import java.io.*;
-import java.util.Vector;
-import java.util.Enumeration;
 
 import org.w3c.dom.*;
 
@@ -98,8 +96,11 @@ import org.apache.xerces.dom.events.MutationEventImpl;
  * <p>
  * Looked at basing this on Hashtable. Doing so would save about 250 bytes
  * of classfile, at the expense of wasting memory at runtime... and the
- * performance gains for such short sets are questionable. For
- * now I'm going to stick with sorted vectors and binary search.
+ * performance gains for such short sets are questionable. So the nodes
+ * are kept in a sorted array and found by binary search; only once a map
+ * grows past INDEX_THRESHOLD entries, as the attributes of very wide
+ * elements do, is it also given an open-addressed hash index by
+ * namespace URI and local name, making lookups constant time.
  *
  * @version
  * @since  PR-DOM-Level-1-19980818.
@@ -114,12 +115,24 @@ public class NamedNodeMapImpl
     /** Serialization version. */
     static final long serialVersionUID = -7039242451046758020L;
 
+    /** Number of nodes a map may hold before it is hash indexed. */
+    private static final int INDEX_THRESHOLD = 16;
+
+    /** Initial size of the hash index. */
+    private static final int INITIAL_INDEX_SIZE = 64;  // power of two
+
     //
     // Data
     //
 
-    /** Nodes. */
-	protected Vector nodes = new Vector();
+    /** Nodes, sorted by namespace URI and local name. */
+	protected NodeImpl[] nodes;
+
+    /** Number of nodes. */
+	protected int nodeCount;
+
+    /** Open-addressed hash index of the nodes, or null. */
+	protected transient NodeImpl[] index;
 
     /** Owner document. */
 	protected Document ownerDocument; // support for WRONG_DOCUMENT_ERR
@@ -188,7 +201,7 @@ public class NamedNodeMapImpl
      */
     public int getLength() {
     	reconcileDefaults();
-    	return (nodes != null) ? nodes.size() : 0;
+    	return nodeCount;
     }
 
     /**
@@ -207,8 +220,7 @@ public class NamedNodeMapImpl
      */
     public Node item(int index) {
     	reconcileDefaults();
-    	return (nodes != null && index < nodes.size()) ?
-                    (Node)(nodes.elementAt(index)) : null;
+    	return (index >= 0 && index < nodeCount) ? nodes[index] : null;
     }
 
     /**
@@ -221,9 +233,7 @@ public class NamedNodeMapImpl
      */
     public Node getNamedItem(String name) {
 
-    	int i = findNamePoint(name);
-    	//int i = findNamePoint(null, name);
-        return (i < 0) ? null : (Node)(nodes.elementAt(i));
+    	return findNode(null, name);
 
     } // getNamedItem(String):Node
     
@@ -240,8 +250,7 @@ public class NamedNodeMapImpl
      */
     public Node getNamedItemNS(String namespaceURI, String localName) {
 
-    	int i = findNamePoint(namespaceURI, localName);
-        return (i < 0) ? null : (Node)(nodes.elementAt(i));
+    	return findNode(namespaceURI, localName);
 
     } // getNamedItemNS(String,String):Node
   
@@ -255,6 +264,12 @@ public class NamedNodeMapImpl
     public Node setNamedItem(Node arg)
         throws DOMException {
 
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
+
     	if(arg.getOwnerDocument() != ownerDocument) {
             throw new DOMExceptionImpl(DOMException.WRONG_DOCUMENT_ERR,
                                        "WRONG_DOCUMENT_ERR");
@@ -266,26 +281,24 @@ public class NamedNodeMapImpl
         }
 
         //DOM2: REVISTNS: Should we create a setNamedItemNS instead?
+        // The map is ordered and indexed by namespace URI and local
+        // name, so the node must be placed by the same key.
         NodeImpl argn = (NodeImpl)arg;
-    	//int i = findNamePoint(argn.getNamespaceURI(), argn.getLocalName());
-    	int i = findNamePoint(arg.getNodeName());
+    	int i = findNamePoint(argn.getNamespaceURI(), argn.getLocalName());
     	Node previous = null;
     	if (i >= 0) {
-    		previous = (Node)nodes.elementAt(i);
+    		previous = nodes[i];
             if (element != null) {
                 ((NodeImpl)arg).parentNode = element;
             }
-    		nodes.setElementAt(arg,i);
+    		setNode(i, argn);
     	}
     	else {
     		i = -1 - i; // Insert point (may be end of list)
-    		if (null == nodes) {
-    			nodes = new Vector();
-            }
             if (element != null) {
                 ((NodeImpl)arg).parentNode = element;
             }
-    		nodes.insertElementAt(arg, i);
+    		insertNode(i, argn);
         }			
 
         // change owning element
@@ -377,6 +390,12 @@ public class NamedNodeMapImpl
      public Node removeNamedItemNS(String namespaceURI, String name)
         throws DOMException {
 
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
+
     	int i = findNamePoint(namespaceURI, name);
     	if (i < 0) {
     		throw new DOMExceptionImpl(DOMException.NOT_FOUND_ERR, 
@@ -389,15 +408,15 @@ public class NamedNodeMapImpl
         if(NodeImpl.MUTATIONEVENTS && element!=null)
         {
             // MUTATION PREPROCESSING AND PRE-EVENTS:
-            lc=LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
+            lc=LCount.lookup(element.ownerDocument,MutationEventImpl.DOM_ATTR_MODIFIED);
             if(lc.captures+lc.bubbles+lc.defaults>0)
             {
-               enclosingAttribute=(AttrImpl)(nodes.elementAt(i));
+               enclosingAttribute=(AttrImpl)nodes[i];
                oldvalue=enclosingAttribute.getNodeValue();
             }
         } // End mutation preprocessing
 
-        Node n = (Node)(nodes.elementAt(i));
+        Node n = nodes[i];
         // If there's a default, add it instead
         Node d;
         // REVISTNS: What to do about defaults and namespaces.
@@ -405,10 +424,10 @@ public class NamedNodeMapImpl
         if (defaults != null && (d = defaults.getNamedItemNS(namespaceURI, name)) != null) {
             NodeImpl clone = (NodeImpl)d.cloneNode(true);
             clone.parentNode = element;
-            nodes.setElementAt(clone, i);
+            setNode(i, clone);
         }
         else {
-            nodes.removeElementAt(i);
+            removeNode(i);
         }
 
         // Need to remove references to an Attr's owner before the
@@ -471,11 +490,15 @@ public class NamedNodeMapImpl
     	boolean deep = true;
     	NamedNodeMapImpl newmap = new NamedNodeMapImpl(ownerDocument, defaults);
     	if (nodes != null) {
-    		newmap.nodes = new Vector(nodes.size());
-    		for (int i = 0; i < nodes.size(); ++i) {
-                NodeImpl clone = (NodeImpl)((Node)nodes.elementAt(i)).cloneNode(deep);
+    		newmap.nodes = new NodeImpl[nodeCount];
+    		for (int i = 0; i < nodeCount; ++i) {
+                NodeImpl clone = (NodeImpl)nodes[i].cloneNode(deep);
                 clone.parentNode = element;
-    			newmap.nodes.addElement(clone);
+    			newmap.nodes[i] = clone;
+            }
+            newmap.nodeCount = nodeCount;
+            if (nodeCount > INDEX_THRESHOLD) {
+                newmap.rebuildIndex();
             }
         }
     	newmap.defaults = defaults;
@@ -502,10 +525,9 @@ public class NamedNodeMapImpl
     void setReadOnly(boolean readOnly, boolean deep) {
 
     	this.readOnly = readOnly;
-    	if(deep && nodes != null) {
-    		Enumeration e=nodes.elements();
-    		while(e.hasMoreElements()) {
-    			((NodeImpl)e.nextElement()).setReadOnly(readOnly,deep);
+    	if(deep) {
+    		for (int i = 0; i < nodeCount; i++) {
+    			nodes[i].setReadOnly(readOnly,deep);
             }
     	}
 
@@ -546,15 +568,15 @@ public class NamedNodeMapImpl
 
     		int n = 0;
             int d = 0;
-            int nsize = nodes.size();
-            int dsize = defaults.nodes.size();
+            int nsize = nodeCount;
+            int dsize = defaults.nodeCount;
 
-    		AttrImpl nnode = (nsize == 0) ? null : (AttrImpl) nodes.elementAt(0);
-    		AttrImpl dnode = (dsize == 0) ? null : (AttrImpl) defaults.nodes.elementAt(0);
+    		AttrImpl nnode = (nsize == 0) ? null : (AttrImpl) nodes[0];
+    		AttrImpl dnode = (dsize == 0) ? null : (AttrImpl) defaults.nodes[0];
 
     		while (n < nsize && d < dsize) {
-    			nnode = (AttrImpl) nodes.elementAt(n);
-    			dnode = (AttrImpl) defaults.nodes.elementAt(d);
+    			nnode = (AttrImpl) nodes[n];
+    			dnode = (AttrImpl) defaults.nodes[d];
     			//int test = nnode.getNodeName().compareTo(dnode.getNodeName());
     			int testNS;
     			String nNSString = nnode.getNamespaceURI();
@@ -590,7 +612,7 @@ public class NamedNodeMapImpl
     			if (test == 0 && !nnode.getSpecified()) {
                     NodeImpl clone = (NodeImpl)dnode.cloneNode(true);
                     clone.parentNode = element;
-    				nodes.setElementAt(clone, n);
+    				setNode(n, clone);
     				// Advance over both, since names in sync
     				++n;
     				++d;
@@ -600,7 +622,7 @@ public class NamedNodeMapImpl
     			else if (test > 0) {
                     NodeImpl clone = (NodeImpl)dnode.cloneNode(true);
                     clone.parentNode = element;
-    				nodes.insertElementAt(clone, n);
+    				insertNode(n, clone);
     				// Now in sync, so advance over both
     				++n;
     				++d;
@@ -612,7 +634,7 @@ public class NamedNodeMapImpl
                     //       because this is a node that we're
                     //       throwing away (not returning). -Ac
                     // REVISIT: [Q] Should we null it out anyway? -Ac
-    				nodes.removeElementAt(n);
+    				removeNode(n);
     				// n didn't advance but represents a different element
     			}
 
@@ -624,10 +646,10 @@ public class NamedNodeMapImpl
 
     		// If we ran out of local before default, pick up defaults
     		while (d < dsize) {
-                dnode = (AttrImpl)defaults.nodes.elementAt(d++);
+                dnode = (AttrImpl)defaults.nodes[d++];
                 NodeImpl clone = (NodeImpl)dnode.cloneNode(true);
                 clone.parentNode = element;
-    			nodes.addElement(clone);
+    			insertNode(nodeCount, clone);
     		}
     		lastDefaultsChanges = defaults.changes;
     	}
@@ -704,14 +726,14 @@ public class NamedNodeMapImpl
     	int i = 0;
     	if(nodes != null) {
     		int first = 0;
-            int last  = nodes.size() - 1;
+            int last  = nodeCount - 1;
     		int testNS;
     		int testLocal;
     		
     		while (first <= last) {
     			i = (first + last) / 2;
     			
-    			String nodeNS = ((NodeImpl)(nodes.elementAt(i))).getNamespaceURI();
+    			String nodeNS = nodes[i].getNamespaceURI();
     			
     			if (namespaceURI == null) 
     			    if (nodeNS == null)
@@ -730,7 +752,7 @@ public class NamedNodeMapImpl
     			    else 
     			        testNS = namespaceURI.compareTo(nodeNS);
     			        
-                String local = ((NodeImpl)(nodes.elementAt(i))).getLocalName();
+                String local = nodes[i].getLocalName();
     			
                 //REVISTNS: How can the local name be null? !!!
     			if(local==null) testLocal = -1;
@@ -738,7 +760,7 @@ public class NamedNodeMapImpl
     		    testLocal = (
     			        name
     			    ).compareTo(
-                        ((NodeImpl)(nodes.elementAt(i))).getLocalName()
+                        local
                     );
     			
     			//int test = nnode.getNodeName().compareTo(dnode.getNodeName());
@@ -766,5 +788,161 @@ public class NamedNodeMapImpl
 
     } // findNamePoint(String):int
 
+    /**
+     * Returns the node with the given namespace URI and local name, or
+     * null. Large maps are searched through the hash index.
+     */
+    private NodeImpl findNode(String namespaceURI, String name) {
+
+        reconcileDefaults();
+
+        // the index is rebuilt here only after deserialization, and
+        // never once the map is read-only
+        if (index == null && nodeCount > INDEX_THRESHOLD && !readOnly) {
+            rebuildIndex();
+        }
+        if (index == null) {
+            int i = findNamePoint(namespaceURI, name);
+            return (i < 0) ? null : nodes[i];
+        }
+
+        int mask = index.length - 1;
+        for (int h = hash(namespaceURI, name) & mask; ; h = (h + 1) & mask) {
+            NodeImpl node = index[h];
+            if (node == null) {
+                return null;
+            }
+            String nodeNS = node.getNamespaceURI();
+            if ((namespaceURI == null ? nodeNS == null
+                                      : namespaceURI.equals(nodeNS))
+                && name.equals(node.getLocalName())) {
+                return node;
+            }
+        }
+
+    } // findNode(String,String):NodeImpl
+
+    /** Inserts a node at the given position. */
+    private void insertNode(int i, NodeImpl node) {
+
+        if (nodes == null) {
+            nodes = new NodeImpl[4];
+        }
+        else if (nodeCount == nodes.length) {
+            NodeImpl[] newnodes = new NodeImpl[nodeCount * 2];
+            System.arraycopy(nodes, 0, newnodes, 0, nodeCount);
+            nodes = newnodes;
+        }
+        System.arraycopy(nodes, i, nodes, i + 1, nodeCount - i);
+        nodes[i] = node;
+        nodeCount++;
+
+        if (index != null && nodeCount * 2 <= index.length) {
+            putIndex(node);
+        }
+        else if (nodeCount > INDEX_THRESHOLD) {
+            rebuildIndex();
+        }
+
+    } // insertNode(int,NodeImpl)
+
+    /** Replaces the node at the given position with one of the same name. */
+    private void setNode(int i, NodeImpl node) {
+
+        if (index != null) {
+            removeIndex(nodes[i]);
+            putIndex(node);
+        }
+        nodes[i] = node;
+
+    } // setNode(int,NodeImpl)
+
+    /** Removes the node at the given position. */
+    private void removeNode(int i) {
+
+        if (index != null) {
+            removeIndex(nodes[i]);
+        }
+        nodeCount--;
+        System.arraycopy(nodes, i + 1, nodes, i, nodeCount - i);
+        nodes[nodeCount] = null;
+
+    } // removeNode(int)
+
+    /** Hashes a namespace URI and local name. */
+    private static int hash(String namespaceURI, String name) {
+
+        int h = name.hashCode();
+        if (namespaceURI != null) {
+            h = h * 31 + namespaceURI.hashCode();
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+
+    } // hash(String,String):int
+
+    /** Rebuilds the hash index at no more than half full. */
+    private void rebuildIndex() {
+
+        int size = INITIAL_INDEX_SIZE;
+        while (size < nodeCount * 2) {
+            size <<= 1;
+        }
+        index = new NodeImpl[size];
+        for (int i = 0; i < nodeCount; i++) {
+            putIndex(nodes[i]);
+        }
+
+    } // rebuildIndex()
+
+    /** Adds a node to the hash index. */
+    private void putIndex(NodeImpl node) {
+
+        String name = node.getLocalName();
+        if (name == null) {
+            return;
+        }
+        int mask = index.length - 1;
+        int h = hash(node.getNamespaceURI(), name) & mask;
+        while (index[h] != null) {
+            h = (h + 1) & mask;
+        }
+        index[h] = node;
+
+    } // putIndex(NodeImpl)
+
+    /**
+     * Removes a node from the hash index, shifting back any entries
+     * that were displaced past it.
+     */
+    private void removeIndex(NodeImpl node) {
+
+        String name = node.getLocalName();
+        if (name == null) {
+            return;
+        }
+        int mask = index.length - 1;
+        int h = hash(node.getNamespaceURI(), name) & mask;
+        while (index[h] != node) {
+            if (index[h] == null) {
+                return;
+            }
+            h = (h + 1) & mask;
+        }
+        index[h] = null;
+
+        for (int j = (h + 1) & mask; index[j] != null; j = (j + 1) & mask) {
+            NodeImpl moved = index[j];
+            int home = hash(moved.getNamespaceURI(), moved.getLocalName()) & mask;
+            // move the entry back unless its home lies cyclically in (h,j]
+            if (h <= j ? (home <= h || home > j) : (home <= h && home > j)) {
+                index[h] = moved;
+                index[j] = null;
+                h = j;
+            }
+        }
+
+    } // removeIndex(NodeImpl)
+
 } // class NamedNodeMapImpl
 
@@ -190,6 +190,26 @@ public abstract class NodeImpl
      */
 	int changes = 0;
 
+    // NodeList cache
+
+    /** Value of changes when the NodeList cache was filled, or -1. */
+    transient int nodeListChanges = -1;
+
+    /** Cached number of children, or -1. */
+    transient int nodeListLength = -1;
+
+    /** Index of the child last returned by item(), or -1. */
+    transient int nodeListIndex = -1;
+
+    /** Child last returned by item(). */
+    transient NodeImpl nodeListNode;
+
+    /**
+     * Children of a frozen node, which item() indexes directly without
+     * touching the cache above; null until the document is frozen.
+     */
+    transient NodeImpl[] frozenChildren;
+
     /** Table for quick check of child insertion. */
 	protected static int[] kidOK;
 
@@ -307,7 +327,7 @@ public abstract class NodeImpl
             // If we're within the scope of an Attr and DOMAttrModified 
             // was requested, we need to preserve its previous value for
             // that event.
-            LCount lc=LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
+            LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_ATTR_MODIFIED);
             if(lc.captures+lc.bubbles+lc.defaults>0)
             {
                 enclosingAttr=getEnclosingAttr();
@@ -319,7 +339,7 @@ public abstract class NodeImpl
         if(MUTATIONEVENTS)
         {
             // MUTATION POST-EVENTS:
-            LCount lc=LCount.lookup(MutationEventImpl.DOM_CHARACTER_DATA_MODIFIED);
+            LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_CHARACTER_DATA_MODIFIED);
             if(lc.captures+lc.bubbles+lc.defaults>0)
             {
                 MutationEvent me=
@@ -433,6 +453,12 @@ public abstract class NodeImpl
         newnode.nextSibling     = null;
     	newnode.firstChild      = null;
         newnode.lastChild       = null;
+        newnode.nodeListChanges = -1;
+        newnode.nodeListNode    = null;
+        newnode.frozenChildren  = null;
+
+        // Listeners are not cloned
+        newnode.nodeListeners   = null;
 
     	// Then, if deep, clone the kids too.
     	if (deep) {
@@ -654,9 +680,34 @@ public abstract class NodeImpl
                 }
     		}		  	
 
-    		while (newInternal.hasChildNodes())	{
-    		    insertBefore(newInternal.getFirstChild(), refChild);
+    		// The children are inserted as one batch: each gets its own
+    		// DOMNodeInserted, but this node gets a single
+    		// DOMSubtreeModified once they are all in place.
+		    EnclosingAttr enclosingAttr=null;
+		    if(MUTATIONEVENTS && (mutationMask&MUTATION_AGGREGATE)!=0)
+			{
+		        LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_ATTR_MODIFIED);
+                if(lc.captures+lc.bubbles+lc.defaults>0)
+                {
+                    enclosingAttr=getEnclosingAttr();
+                }
+			}
+
+            NodeImpl batchTarget=ownerDocument.mutationBatchTarget;
+            ownerDocument.mutationBatchTarget=this;
+            try {
+    		    while (newInternal.hasChildNodes())	{
+    		        insertBefore(newInternal.getFirstChild(), refChild);
+                }
             }
+            finally {
+                ownerDocument.mutationBatchTarget=batchTarget;
+            }
+
+			if(MUTATIONEVENTS && (mutationMask&MUTATION_AGGREGATE)!=0)
+			{
+			    dispatchAggregateEvents(enclosingAttr);
+			}
     	}
     	
     	else if (!ownerDocument.isKidOK(this, newInternal)) {
@@ -671,7 +722,7 @@ public abstract class NodeImpl
 			    // No direct pre-events, but if we're within the scope 
 			    // of an Attr and DOMAttrModified was requested,
         	    // we need to preserve its previous value.
-		        LCount lc=LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
+		        LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_ATTR_MODIFIED);
                 if(lc.captures+lc.bubbles+lc.defaults>0)
                 {
                     enclosingAttr=getEnclosingAttr();
@@ -711,6 +762,7 @@ public abstract class NodeImpl
             }
 
     	    changed();
+    	    ownerDocument.insertedNode(this, newInternal);
     	
 			if(MUTATIONEVENTS)
 			{
@@ -719,7 +771,7 @@ public abstract class NodeImpl
 			    if( (mutationMask&MUTATION_LOCAL) != 0)
 			    {
     			    // New child is told it was inserted, and where
-                    LCount lc=LCount.lookup(MutationEventImpl.DOM_NODE_INSERTED);
+                    LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_NODE_INSERTED);
                     if(lc.captures+lc.bubbles+lc.defaults>0)
                     {
                         MutationEvent me=
@@ -732,7 +784,7 @@ public abstract class NodeImpl
 		    	    
 			        // If within the Document, tell the subtree it's been added
 			        // to the Doc.
-                    lc=LCount.lookup(MutationEventImpl.DOM_NODE_INSERTED_INTO_DOCUMENT);
+                    lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_NODE_INSERTED_INTO_DOCUMENT);
                     if(lc.captures+lc.bubbles+lc.defaults>0)
                     {
                         NodeImpl eventAncestor=this;
@@ -831,7 +883,7 @@ public abstract class NodeImpl
 	    	// If we're within the scope of an Attr and DOMAttrModified 
 		    // was requested, we need to preserve its previous value for
 		    // that event.
-		    LCount lc=LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
+		    LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_ATTR_MODIFIED);
             if(lc.captures+lc.bubbles+lc.defaults>0)
             {
                 enclosingAttr=getEnclosingAttr();
@@ -840,7 +892,7 @@ public abstract class NodeImpl
             if( (mutationMask&MUTATION_LOCAL) != 0)
             {
                 // Child is told that it is about to be removed
-                lc=LCount.lookup(MutationEventImpl.DOM_NODE_REMOVED);
+                lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_NODE_REMOVED);
                 if(lc.captures+lc.bubbles+lc.defaults>0)
                 {
                     MutationEvent me=
@@ -853,7 +905,7 @@ public abstract class NodeImpl
             
                 // If within Document, child's subtree is informed that it's
                 // losing that status
-                lc=LCount.lookup(MutationEventImpl.DOM_NODE_REMOVED_FROM_DOCUMENT);
+                lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_NODE_REMOVED_FROM_DOCUMENT);
                 if(lc.captures+lc.bubbles+lc.defaults>0)
                 {
                     NodeImpl eventAncestor=this;
@@ -906,6 +958,7 @@ public abstract class NodeImpl
         oldInternal.previousSibling = null;
 
     	changed();
+    	ownerDocument.removedNode(this, oldInternal);
 
 	    if(MUTATIONEVENTS)
 	    {
@@ -956,7 +1009,7 @@ public abstract class NodeImpl
             // If we're within the scope of an Attr and DOMAttrModified 
             // was requested, we need to preserve its previous value for
             // that event.
-            LCount lc=LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
+            LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_ATTR_MODIFIED);
             if(lc.captures+lc.bubbles+lc.defaults>0)
             {
                 enclosingAttr=getEnclosingAttr();
@@ -984,14 +1037,24 @@ public abstract class NodeImpl
      */
     public int getLength() {
 
+        if (frozenChildren != null) {
+            return frozenChildren.length;
+        }
+
         // It is assumed that the getChildNodes call synchronized
         // the children. Therefore, we can access the first child
         // reference directly.
-    	int count = 0;
-    	for (NodeImpl node = firstChild; node != null; node = node.nextSibling) {
-    		count++;
-    	}
-    	return count;
+        if (nodeListChanges != changes) {
+            resetNodeListCache();
+        }
+        if (nodeListLength == -1) {
+            int count = 0;
+            for (NodeImpl node = firstChild; node != null; node = node.nextSibling) {
+                count++;
+            }
+            nodeListLength = count;
+        }
+    	return nodeListLength;
 
     } // getLength():int
 
@@ -1003,13 +1066,50 @@ public abstract class NodeImpl
      */
     public Node item(int index) {
 
+        if (frozenChildren != null) {
+            return index >= 0 && index < frozenChildren.length
+                 ? frozenChildren[index] : null;
+        }
+        if (index < 0) {
+            return null;
+        }
+
         // It is assumed that the getChildNodes call synchronized
         // the children. Therefore, we can access the first child
         // reference directly.
+        if (nodeListChanges != changes) {
+            resetNodeListCache();
+        }
+
+        // start from whichever of the first child, the last child
+        // returned and the last child is nearest
         NodeImpl node = firstChild;
-        for (int i = 0; i < index && node != null; i++) {
+        int i = 0;
+        if (nodeListIndex != -1 && index >= nodeListIndex / 2) {
+            node = nodeListNode;
+            i = nodeListIndex;
+        }
+        if (nodeListLength != -1 && index >= nodeListLength) {
+            return null;
+        }
+        if (nodeListLength != -1 && nodeListLength - index < Math.abs(index - i)) {
+            node = lastChild;
+            i = nodeListLength - 1;
+        }
+        while (i < index && node != null) {
             node = node.nextSibling;
+            i++;
+        }
+        while (i > index) {
+            node = node.previousSibling;
+            i--;
         }
+        if (node == null) {
+            nodeListLength = i;
+            return null;
+        }
+        nodeListIndex = i;
+        nodeListNode = node;
         return node;
 
     } // item(int):Node
@@ -1147,7 +1247,9 @@ public abstract class NodeImpl
 	protected final static int MUTATION_AGGREGATE=0x02;
 	protected final static int MUTATION_ALL=0xffff;
 	/** NON-DOM INTERNAL: EventListeners currently registered at
-	 * THIS NODE; preferably null if none.
+	 * THIS NODE; preferably null if none. The Vector is copied on
+	 * every change rather than modified, so that dispatch can walk
+	 * it without taking a copy of its own.
 	 */
     Vector nodeListeners=null;
 	
@@ -1165,6 +1267,7 @@ public abstract class NodeImpl
 	    String type;
 	    EventListener listener;
 	    boolean useCapture;
+	    LCount count; // Where this registration was counted
 	    
 	    /** NON-DOM INTERNAL: Constructor for Listener list Entry 
 	     * @param type Event name (NOT event group!) to listen for.
@@ -1198,11 +1301,14 @@ public abstract class NodeImpl
 	    // Simplest way to code that is to zap the previous entry, if any.
 	    removeEventListener(type,listener,useCapture);
 	    
-	    if(nodeListeners==null) nodeListeners=new Vector();
-	    nodeListeners.addElement(new LEntry(type,listener,useCapture));
+	    LEntry le=new LEntry(type,listener,useCapture);
+	    Vector nl=(nodeListeners==null) ? new Vector(1) : (Vector)nodeListeners.clone();
+	    nl.addElement(le);
+	    nodeListeners=nl;
 	    
 	    // Record active listener
-	    LCount lc=LCount.lookup(type);
+	    LCount lc=LCount.register(ownerDocument,type);
+	    le.count=lc;
 	    if(useCapture)
 	        ++lc.captures;
 	    else
@@ -1233,12 +1339,13 @@ public abstract class NodeImpl
             if(le.useCapture==useCapture && le.listener==listener && 
                 le.type.equals(type))
             {
-                nodeListeners.removeElementAt(i);
+                Vector nl=(Vector)nodeListeners.clone();
+                nl.removeElementAt(i);
                 // Storage management: Discard empty listener lists
-                if(nodeListeners.size()==0) nodeListeners=null;
+                nodeListeners=(nl.size()==0) ? null : nl;
 
 	            // Remove active listener
-	            LCount lc=LCount.lookup(type);
+	            LCount lc=le.count;
         	    if(useCapture)
 	                --lc.captures;
         	    else
@@ -1265,7 +1372,7 @@ public abstract class NodeImpl
             for(int i=nodeListeners.size()-1;i>=0;--i) // count-down is OK for deletions!
             {
                 LEntry le=(LEntry)(nodeListeners.elementAt(i));
-                LCount lc=LCount.lookup(le.type);
+                LCount lc=le.count;
            	    if(le.useCapture)
 	                --lc.captures;
                 else
@@ -1336,7 +1443,7 @@ public abstract class NodeImpl
             throw new DOMExceptionImpl(DOMExceptionImpl.UNSPECIFIED_EVENT_TYPE,"");
         
         // If nobody is listening for this event, discard immediately
-        LCount lc=LCount.lookup(evt.getType());
+        LCount lc=LCount.lookup(ownerDocument,evt.getType());
         if(lc.captures+lc.bubbles+lc.defaults==0)
             return evt.preventDefault;
 
@@ -1357,13 +1464,25 @@ public abstract class NodeImpl
         // is issued to the Element rather than the Attr
         // and causes a _second_ DOMSubtreeModified in the Element's
         // tree.
-        Vector pv=new Vector(10,10);
-        Node p=this,n=p.getParentNode();
-        while(n!=null)
+        // The chain is only needed if someone listens on ancestors, and
+        // is gathered into an array lent by the document.
+        NodeImpl[] pv=null;
+        int pvLength=0;
+        if(lc.captures>0 || (lc.bubbles>0 && evt.bubbles))
         {
-            pv.addElement(n);
-            p=n;
-            n=n.getParentNode();
+            pv=(ownerDocument!=null) ? ownerDocument.takeEventPath() : new NodeImpl[10];
+            Node n=getParentNode();
+            while(n!=null)
+            {
+                if(pvLength==pv.length)
+                {
+                    NodeImpl[] newpv=new NodeImpl[pvLength*2];
+                    System.arraycopy(pv,0,newpv,0,pvLength);
+                    pv=newpv;
+                }
+                pv[pvLength++]=(NodeImpl)n;
+                n=n.getParentNode();
+            }
         }
         
         //CAPTURING_PHASE:
@@ -1372,17 +1491,18 @@ public abstract class NodeImpl
             evt.eventPhase=Event.CAPTURING_PHASE;
             //Ancestors are scanned, root to target, for 
             //Capturing listeners.
-            for(int j=pv.size()-1;j>=0;--j)
+            for(int j=pvLength-1;j>=0;--j)
             {
                 if(evt.stopPropagation)
                     break;  // Someone set the flag. Phase ends.
                     
                 // Handle all capturing listeners on this node
-                NodeImpl nn=(NodeImpl)pv.elementAt(j);
+                NodeImpl nn=pv[j];
                 evt.currentNode=nn;
                 if(nn.nodeListeners!=null)
                 {
-                    Vector nl=(Vector)(nn.nodeListeners.clone());
+                    // Copied on write; handlers cannot change it under us
+                    Vector nl=nn.nodeListeners;
                     for(int i=nl.size()-1;i>=0;--i) // count-down more efficient
                     {
 	                    LEntry le=(LEntry)(nl.elementAt(i));
@@ -1410,7 +1530,7 @@ public abstract class NodeImpl
             evt.currentNode=this;
             if(!evt.stopPropagation && nodeListeners!=null)
             {
-                Vector nl=(Vector)nodeListeners.clone();
+                Vector nl=nodeListeners;
                 for(int i=nl.size()-1;i>=0;--i) // count-down is more efficient
                 {
                     LEntry le=(LEntry)nl.elementAt(i);
@@ -1433,17 +1553,17 @@ public abstract class NodeImpl
             if(evt.bubbles) 
             {
                 evt.eventPhase=Event.BUBBLING_PHASE;
-                for(int j=0;j<pv.size();++j)
+                for(int j=0;j<pvLength;++j)
                 {
                     if(evt.stopPropagation)
                         break;  // Someone set the flag. Phase ends.
                     
                     // Handle all bubbling listeners on this node
-                    NodeImpl nn=(NodeImpl)pv.elementAt(j);
+                    NodeImpl nn=pv[j];
                     evt.currentNode=nn;
                     if(nn.nodeListeners!=null)
                     {
-                        Vector nl=(Vector)(nn.nodeListeners.clone());
+                        Vector nl=nn.nodeListeners;
                         for(int i=nl.size()-1;i>=0;--i) // count-down more efficient
     	                {
 	                        LEntry le=(LEntry)(nl.elementAt(i));
@@ -1474,6 +1594,10 @@ public abstract class NodeImpl
             // DO_DEFAULT_OPERATION
         }
 
+        // Hand the chain back for the next event
+        if(pv!=null && ownerDocument!=null)
+            ownerDocument.releaseEventPath(pv,pvLength);
+
         return evt.preventDefault;        
     } // dispatchEvent(Event) :boolean
 
@@ -1596,12 +1720,16 @@ public abstract class NodeImpl
 	    if(nodeListeners==null)
             return;
 
+        // Held back until the batch being inserted here is complete
+        if(ownerDocument!=null && ownerDocument.mutationBatchTarget==this)
+            return;
+
 	    // If we have to send DOMAttrModified (determined earlier),
 	    // do so.
 	    NodeImpl owner=null;
 	    if(enclosingAttr!=null)
 	    {
-            LCount lc=LCount.lookup(MutationEventImpl.DOM_ATTR_MODIFIED);
+            LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_ATTR_MODIFIED);
 	        if(lc.captures+lc.bubbles+lc.defaults>0)
 	        {
                 owner=((NodeImpl)(enclosingAttr.getOwnerElement()));
@@ -1621,7 +1749,7 @@ public abstract class NodeImpl
         // set of changes. 
         // "This event is dispatched after all other events caused by the
         // mutation have been fired."
-        LCount lc=LCount.lookup(MutationEventImpl.DOM_SUBTREE_MODIFIED);
+        LCount lc=LCount.lookup(ownerDocument,MutationEventImpl.DOM_SUBTREE_MODIFIED);
         if(lc.captures+lc.bubbles+lc.defaults>0)
         {
             MutationEvent me=
@@ -1738,6 +1866,14 @@ public abstract class NodeImpl
      */
     protected void synchronizeData() {}
 
+    /** Discards the NodeList cache after a change to the children. */
+    private void resetNodeListCache() {
+        nodeListChanges = changes;
+        nodeListLength = -1;
+        nodeListIndex = -1;
+        nodeListNode = null;
+    }
+
     /** Denotes that this node has changed. */
     protected void changed() {
     	++changes;
@@ -129,6 +129,11 @@ public class TextImpl
      */
     public void setIgnorableWhitespace(boolean ignore) {
 
+    	if (readOnly) {
+    		throw new DOMExceptionImpl(
+    			DOMException.NO_MODIFICATION_ALLOWED_ERR, 
+    			"NO_MODIFICATION_ALLOWED_ERR");
+        }
         if (syncData) {
             synchronizeData();
         }
@@ -112,6 +112,11 @@ public final class XMLAttrList implements AttributeList {
     private static final int ATTFLAG_SPECIFIED = 1;
     private static final int ATTFLAG_LASTATTR  = 2;
     //
+    // Duplicate attribute index constants
+    //
+    private static final int INDEX_THRESHOLD = 16;
+    private static final int INITIAL_INDEX_SIZE = 64;  // power of two
+    //
     // Instance variables
     //
     private StringPool fStringPool = null;
@@ -123,6 +128,15 @@ public final class XMLAttrList implements AttributeList {
     private int[][] fAttValue = new int[INITIAL_CHUNK_COUNT][];
     private int[][] fAttType = new int[INITIAL_CHUNK_COUNT][];
     private byte[][] fAttFlags = new byte[INITIAL_CHUNK_COUNT][];
+    //
+    // Open addressed index of full attribute names (stored as name + 1,
+    // zero is empty) for the attribute list in progress.  It is only
+    // built once a list grows past INDEX_THRESHOLD attributes.
+    //
+    private int[] fIndexName = null;
+    private int fIndexCount = 0;
+    private int fIndexHandle = -1;
+    private int fIndexedAttrCount = 0;
 
     /**
      * Constructor
@@ -144,6 +158,7 @@ public final class XMLAttrList implements AttributeList {
         fAttributeListHandle = -1;
         fAttributeListLength = 0;
         fAttrCount = 0;
+        fIndexHandle = -1;
     }
 
     /**
@@ -162,7 +177,13 @@ public final class XMLAttrList implements AttributeList {
     {
         int chunk;
         int index;
-        if (search) {
+        if (search && fAttrCount - fCurrentHandle >= INDEX_THRESHOLD) {
+            if (!indexAttrName(attrName)) {
+                return -1;
+            }
+            chunk = fAttrCount >> CHUNK_SHIFT;
+            index = fAttrCount & CHUNK_MASK;
+        } else if (search) {
             chunk = fCurrentHandle >> CHUNK_SHIFT;
             index = fCurrentHandle & CHUNK_MASK;
             for (int attrIndex = fCurrentHandle; attrIndex < fAttrCount; attrIndex++) {
@@ -202,6 +223,7 @@ public final class XMLAttrList implements AttributeList {
      */
     public int startAttrList() {
         fCurrentHandle = fAttrCount;
+        fIndexHandle = -1;
         return fCurrentHandle;
     }
 
@@ -279,6 +301,19 @@ public final class XMLAttrList implements AttributeList {
      * @param The attribute list handle.
      */
     public void releaseAttrList(int attrListHandle) {
+        releaseAttrList(attrListHandle, true);
+    }
+
+    /**
+     * Make the resources of the current attribute list available for reuse,
+     * optionally leaving the specified attribute values in the string pool
+     * for a caller that has taken ownership of them.
+     *
+     * @param The attribute list handle.
+     * @param releaseValues <code>true</code> to release the values of the
+     *                      specified attributes from the string pool.
+     */
+    public void releaseAttrList(int attrListHandle, boolean releaseValues) {
         if (attrListHandle == -1)
             return;
         int chunk = attrListHandle >> CHUNK_SHIFT;
@@ -286,7 +321,7 @@ public final class XMLAttrList implements AttributeList {
         while (true) {
             boolean last = (fAttFlags[chunk][index] & ATTFLAG_LASTATTR) != 0;
             fAttName[chunk][index] = -1;
-            if ((fAttFlags[chunk][index] & ATTFLAG_SPECIFIED) != 0)
+            if (releaseValues && (fAttFlags[chunk][index] & ATTFLAG_SPECIFIED) != 0)
                 fStringPool.releaseString(fAttValue[chunk][index]);
             fAttValue[chunk][index] = -1;
             if (++index == CHUNK_SIZE) {
@@ -522,6 +557,71 @@ public final class XMLAttrList implements AttributeList {
         return null;
     }
 
+    /*
+     * Add the full name of attrName to the index of the current attribute
+     * list, first catching the index up with any attributes added since
+     * the last call.  Returns false if the name is already present.
+     */
+    private boolean indexAttrName(int attrName) {
+        if (fIndexHandle != fCurrentHandle || fIndexedAttrCount > fAttrCount) {
+            int size = INITIAL_INDEX_SIZE;
+            while (size < (fAttrCount - fCurrentHandle) * 4)
+                size <<= 1;
+            if (fIndexName == null || fIndexName.length != size)
+                fIndexName = new int[size];
+            else {
+                for (int i = 0; i < size; i++)
+                    fIndexName[i] = 0;
+            }
+            fIndexCount = 0;
+            fIndexHandle = fCurrentHandle;
+            fIndexedAttrCount = fCurrentHandle;
+        }
+        while (fIndexedAttrCount < fAttrCount) {
+            int attrIndex = fIndexedAttrCount++;
+            putIndexName(fAttName[attrIndex >> CHUNK_SHIFT][attrIndex & CHUNK_MASK]);
+        }
+        if (!putIndexName(attrName))
+            return false;
+        fIndexedAttrCount++;
+        return true;
+    }
+
+    /* Insert the full name of attrName, returning false if it was present. */
+    private boolean putIndexName(int attrName) {
+        if ((fIndexCount + 1) * 4 > fIndexName.length * 3)
+            rehashIndex();
+        int key = fStringPool.getFullNameForQName(attrName) + 1;
+        int mask = fIndexName.length - 1;
+        int h = key * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (fIndexName[slot] != 0) {
+            if (fIndexName[slot] == key)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        fIndexName[slot] = key;
+        fIndexCount++;
+        return true;
+    }
+
+    /* Double the size of the attribute name index. */
+    private void rehashIndex() {
+        int[] oldName = fIndexName;
+        fIndexName = new int[oldName.length << 1];
+        int mask = fIndexName.length - 1;
+        for (int i = 0; i < oldName.length; i++) {
+            int key = oldName[i];
+            if (key == 0)
+                continue;
+            int h = key * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & mask;
+            while (fIndexName[slot] != 0)
+                slot = (slot + 1) & mask;
+            fIndexName[slot] = key;
+        }
+    }
+
     /* Expand our internal data structures as needed. */
     private boolean ensureCapacity(int chunk, int index) {
         try {
@@ -0,0 +1,205 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.framework;
+
+/**
+ * The counters collected by a parser while it parses a document.
+ * <p>
+ * The parser updates the fields of a single instance directly as it
+ * scans, so collecting them costs neither allocation nor locking. At
+ * the end of each parse the registered listener receives a snapshot
+ * that is not modified by later parses.
+ *
+ * @see XMLParser#setParseMetricsListener
+ * @version
+ */
+public final class XMLParseMetrics {
+
+    //
+    // Interfaces
+    //
+
+    /** Receives the metrics of each parse. */
+    public interface Listener {
+
+        /**
+         * Called when a parse ends, whether it completed or stopped
+         * with an exception.
+         *
+         * @param metrics A snapshot of the counters of the parse.
+         */
+        public void parseEnded(XMLParseMetrics metrics);
+
+    } // interface Listener
+
+    //
+    // Data
+    //
+
+    /** System identifier of the document entity. */
+    public String systemId;
+
+    /** Bytes read from byte streams, including external entities. */
+    public long bytesRead;
+
+    /** Characters of character data and whitespace reported. */
+    public long characters;
+
+    /** Elements started. */
+    public long elements;
+
+    /** Attributes specified in start tags. */
+    public long attributes;
+
+    /** Internal and external entities, and external subsets, read. */
+    public long entityExpansions;
+
+    /** Strings added to the string pool. */
+    public long stringsAdded;
+
+    /** Symbols added to the string pool. */
+    public long symbolsAdded;
+
+    /** Names found in the symbol cache. */
+    public long symbolCacheHits;
+
+    /** Names not found in the symbol cache. */
+    public long symbolCacheMisses;
+
+    /** Nodes appended to the document tree, not counting attributes. */
+    public long domNodes;
+
+    /**
+     * Time spent in the validator, in nanoseconds.  This is an estimate,
+     * scaled up from timing about one validator call in 32.
+     */
+    public long validatorTime;
+
+    /** Elapsed time of the parse, in nanoseconds. */
+    public long parseTime;
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public XMLParseMetrics() {
+    }
+
+    /** Constructs a copy of the given metrics. */
+    public XMLParseMetrics(XMLParseMetrics metrics) {
+        systemId = metrics.systemId;
+        bytesRead = metrics.bytesRead;
+        characters = metrics.characters;
+        elements = metrics.elements;
+        attributes = metrics.attributes;
+        entityExpansions = metrics.entityExpansions;
+        stringsAdded = metrics.stringsAdded;
+        symbolsAdded = metrics.symbolsAdded;
+        symbolCacheHits = metrics.symbolCacheHits;
+        symbolCacheMisses = metrics.symbolCacheMisses;
+        domNodes = metrics.domNodes;
+        validatorTime = metrics.validatorTime;
+        parseTime = metrics.parseTime;
+    }
+
+    //
+    // Public methods
+    //
+
+    /** Clears all counters. */
+    public void reset() {
+        systemId = null;
+        bytesRead = 0;
+        characters = 0;
+        elements = 0;
+        attributes = 0;
+        entityExpansions = 0;
+        stringsAdded = 0;
+        symbolsAdded = 0;
+        symbolCacheHits = 0;
+        symbolCacheMisses = 0;
+        domNodes = 0;
+        validatorTime = 0;
+        parseTime = 0;
+    }
+
+    //
+    // Object methods
+    //
+
+    /** Returns a string representation of the counters. */
+    public String toString() {
+        StringBuffer str = new StringBuffer();
+        str.append(systemId);
+        str.append(": bytes=").append(bytesRead);
+        str.append(" chars=").append(characters);
+        str.append(" elems=").append(elements);
+        str.append(" attrs=").append(attributes);
+        str.append(" entities=").append(entityExpansions);
+        str.append(" strings=").append(stringsAdded);
+        str.append(" symbols=").append(symbolsAdded);
+        str.append(" cacheHits=").append(symbolCacheHits);
+        str.append(" cacheMisses=").append(symbolCacheMisses);
+        str.append(" nodes=").append(domNodes);
+        str.append(" validatorTime=").append(validatorTime / 1000).append("us");
+        str.append(" parseTime=").append(parseTime / 1000).append("us");
+        return str.toString();
+    }
+
+} // class XMLParseMetrics
@@ -57,6 +57,9 @@
 
 package org.apache.xerces.framework;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
@@ -69,12 +72,14 @@ import java.util.Hashtable;
 import java.util.ResourceBundle;
 import java.util.Stack;
 import java.util.ListResourceBundle;
+import java.util.concurrent.Executor;
 
 import org.apache.xerces.readers.XMLDeclRecognizer;
 import org.apache.xerces.readers.XMLEntityHandler;
 import org.apache.xerces.readers.XMLEntityReaderFactory;
 import org.apache.xerces.utils.ChunkyByteArray;
 import org.apache.xerces.utils.ChunkyCharArray;
+import org.apache.xerces.utils.MappedFileInputStream;
 import org.apache.xerces.utils.NamespacesScope;
 import org.apache.xerces.utils.StringPool;
 import org.apache.xerces.utils.XMLCharacterProperties;
@@ -83,6 +88,7 @@ import org.apache.xerces.utils.XMLMessages;
 import org.apache.xerces.utils.ImplementationMessages;
 
 // REVISIT - use component factory
+import org.apache.xerces.validators.dtd.DTDGrammarCache;
 import org.apache.xerces.validators.dtd.DTDValidator;
 import org.apache.xerces.validators.schema.XSchemaValidator;
 import org.apache.xerces.validators.datatype.DatatypeMessageProvider;
@@ -160,6 +166,10 @@ public abstract class XMLParser
         "http://xml.org/sax/properties/namespace-sep",
         "http://xml.org/sax/properties/xml-string",
         // Xerces
+        "http://apache.org/xml/properties/dtd-grammar-cache",
+        "http://apache.org/xml/properties/id-limit",
+        "http://apache.org/xml/properties/mapped-file-threshold",
+        "http://apache.org/xml/properties/validation-executor",
     };
 
     // debugging
@@ -187,6 +197,24 @@ public abstract class XMLParser
     /** Error handler. */
     private ErrorHandler fErrorHandler;
 
+    // metrics
+
+    /** Metrics listener. */
+    private XMLParseMetrics.Listener fMetricsListener;
+
+    /** Counters of the current parse, or null if not collected. */
+    protected XMLParseMetrics fMetrics;
+
+    private boolean fMetricsStarted;
+    private long fMetricsStartTime;
+    private int fMetricsStartStrings;
+    private int fMetricsStartSymbols;
+    private int fValidatorSampleSeed;
+
+    /** One validator call in 2^VALIDATOR_SAMPLE_SHIFT is timed. */
+    private static final int VALIDATOR_SAMPLE_SHIFT = 5;
+    private static final int VALIDATOR_SAMPLE_RATE = 1 << VALIDATOR_SAMPLE_SHIFT;
+
     // literal strings
 
     private char[] fCharRefData = null;
@@ -202,6 +230,7 @@ public abstract class XMLParser
     protected DTDValidator fDTDValidator = null;
     protected XSchemaValidator fSchemaValidator = null;
     private boolean fCheckedForSchema = false;
+    private XMLValidationQueue fValidationQueue = null;
 
     // other
 
@@ -216,6 +245,7 @@ public abstract class XMLParser
     private boolean fValidating = false;
     private boolean fScanningDTD = false;
     private StringPool.CharArrayRange fCurrentElementCharArrayRange = null;
+    private int fMappedFileThreshold = 0;
 
     // error information
 
@@ -348,6 +378,8 @@ public abstract class XMLParser
             resetOrCopy();
         fParseInProgress = true;
         fNeedReset = true;
+        if (fMetrics != null)
+            startParseMetrics(source);
         return fEntityHandler.startReadingFromDocument(source);
     }
 
@@ -359,6 +391,8 @@ public abstract class XMLParser
     public boolean parseSome() throws Exception {
         if (!fScanner.parseSome(false)) {
             fParseInProgress = false;
+            if (fMetrics != null)
+                endParseMetrics();
             return false;
         }
         return true;
@@ -374,6 +408,28 @@ public abstract class XMLParser
 
     } // reset()
 
+    /**
+     * Reset parser instance so that it can be reused, replacing the
+     * string pool instead of clearing it when it holds more than the
+     * given number of strings or is still referenced by the results
+     * of the previous parse.
+     *
+     * @param stringPoolHighWaterMark The maximum number of strings a
+     *                                string pool may hold and still
+     *                                be kept for the next parse.
+     */
+    public void reset(int stringPoolHighWaterMark) throws Exception {
+        if (isStringPoolInUse() ||
+            fStringPool.getStringCount() > stringPoolHighWaterMark) {
+            resetOrCopy();
+        }
+        else {
+            reset();
+        }
+        fParseInProgress = false;
+
+    } // reset(int)
+
     // properties (the normal kind)
 
     /**
@@ -926,6 +982,182 @@ public abstract class XMLParser
         return fDTDValidator.getWarningOnUndeclaredElements();
     }
 
+    /**
+     * Sets the cache of compiled external DTD subsets used by this parser.
+     * The same cache may be shared by any number of parsers. When a
+     * document's external subset is found in the cache, its declarations
+     * are attached to the parse instead of scanning the DTD again.
+     * <p>
+     * This method is the equivalent to the property:
+     * <pre>
+     * http://apache.org/xml/properties/dtd-grammar-cache
+     * </pre>
+     *
+     * @param grammarCache The grammar cache, or null to disable caching.
+     *
+     * @see #getDTDGrammarCache
+     * @see #setProperty
+     */
+    public void setDTDGrammarCache(DTDGrammarCache grammarCache) {
+        fDTDValidator.setGrammarCache(grammarCache);
+    }
+
+    /**
+     * Returns the cache of compiled external DTD subsets, or null.
+     *
+     * @see #setDTDGrammarCache
+     */
+    public DTDGrammarCache getDTDGrammarCache() {
+        return fDTDValidator.getGrammarCache();
+    }
+
+    /**
+     * Sets the maximum number of ID values and unresolved IDREF values
+     * that are remembered while validating a document. When a document
+     * has more, a validity error is reported once and the values beyond
+     * the limit are not stored, so duplicate IDs and dangling IDREFs
+     * among them are not detected.
+     * <p>
+     * This method is the equivalent to the property:
+     * <pre>
+     * http://apache.org/xml/properties/id-limit
+     * </pre>
+     *
+     * @param limit The maximum number of values, or zero for no limit.
+     *
+     * @see #getIdLimit
+     * @see #setProperty
+     */
+    public void setIdLimit(int limit) {
+        fDTDValidator.setIdLimit(limit);
+    }
+
+    /**
+     * Returns the maximum number of remembered ID and IDREF values,
+     * or zero if there is no limit.
+     *
+     * @see #setIdLimit
+     */
+    public int getIdLimit() {
+        return fDTDValidator.getIdLimit();
+    }
+
+    /**
+     * Sets the size from which local files are read through a memory
+     * mapping of the file instead of a FileInputStream. UTF-8 input is
+     * then scanned in place, without reading it into chunks, but mapping
+     * costs more than it saves on small files, and on some platforms a
+     * mapped file cannot be deleted until the mapping is garbage collected.
+     * <p>
+     * This method is the equivalent to the property:
+     * <pre>
+     * http://apache.org/xml/properties/mapped-file-threshold
+     * </pre>
+     *
+     * @param threshold The smallest file size in bytes that is mapped,
+     *                  or zero to never map files.
+     *
+     * @see #getMappedFileThreshold
+     * @see #setProperty
+     * @see org.apache.xerces.utils.MappedFileInputStream
+     */
+    public void setMappedFileThreshold(int threshold) {
+        fMappedFileThreshold = threshold;
+    }
+
+    /**
+     * Returns the smallest file size that is read through a memory
+     * mapping, or zero if files are never mapped.
+     *
+     * @see #setMappedFileThreshold
+     */
+    public int getMappedFileThreshold() {
+        return fMappedFileThreshold;
+    }
+
+    /**
+     * Sets the executor that checks the content of the top-level elements
+     * of a validated document while the rest of the document is scanned.
+     * Each child of the root element is recorded as it is scanned and,
+     * once it ends, its content models and datatypes are checked on the
+     * executor. Attribute defaulting, ID tracking and every other check
+     * are still done as the document is scanned. Validity errors are
+     * reported in document order, but may be reported later than the
+     * events they refer to, and at the latest before endDocument.
+     * <p>
+     * The executor may be shared by any number of parsers. A
+     * java.util.concurrent.ThreadPoolExecutor with a few threads is
+     * suitable; documents with a single top-level element, or with few
+     * and small ones, gain nothing.
+     * <p>
+     * This method is the equivalent to the property:
+     * <pre>
+     * http://apache.org/xml/properties/validation-executor
+     * </pre>
+     *
+     * @param executor The executor, or null to check content as the
+     *                 document is scanned.
+     *
+     * @see #getValidationExecutor
+     * @see #setProperty
+     * @see XMLValidationQueue
+     */
+    public void setValidationExecutor(Executor executor) throws SAXException {
+        if (fParseInProgress) {
+            // REVISIT: Localize this message.
+            throw new SAXNotSupportedException("http://apache.org/xml/properties/validation-executor: parse is in progress");
+        }
+        fValidationQueue = executor == null ? null : new XMLValidationQueue(executor, fErrorReporter);
+        fDTDValidator.setValidationQueue(fValidationQueue);
+        if (fSchemaValidator != null)
+            fSchemaValidator.setValidationQueue(fValidationQueue);
+    }
+
+    /**
+     * Returns the executor that checks the content of top-level
+     * elements, or null.
+     *
+     * @see #setValidationExecutor
+     */
+    public Executor getValidationExecutor() {
+        return fValidationQueue == null ? null : fValidationQueue.getExecutor();
+    }
+
+    /**
+     * Sets the listener that receives the metrics of each parse.
+     * Metrics are only collected while a listener is set.
+     *
+     * @param listener The metrics listener, or null to stop collecting.
+     *
+     * @see #getParseMetrics
+     */
+    public void setParseMetricsListener(XMLParseMetrics.Listener listener) {
+        fMetricsListener = listener;
+        if (listener == null)
+            fMetrics = null;
+        else if (fMetrics == null)
+            fMetrics = new XMLParseMetrics();
+        fReaderFactory.setParseMetrics(fMetrics);
+    }
+
+    /** Returns the metrics listener, or null. */
+    public XMLParseMetrics.Listener getParseMetricsListener() {
+        return fMetricsListener;
+    }
+
+    /**
+     * Returns a snapshot of the metrics of the current or last parse,
+     * or null if metrics are not being collected.
+     *
+     * @see #setParseMetricsListener
+     */
+    public XMLParseMetrics getParseMetrics() {
+        if (fMetrics == null)
+            return null;
+        updateParseMetrics();
+        return new XMLParseMetrics(fMetrics);
+    }
+
     /**
      * Allows the use of Java encoding names in the XMLDecl and TextDecl
      * lines in an XML document.
@@ -1050,6 +1282,58 @@ public abstract class XMLParser
         resetCommon();
     } // resetOrCopy()
 
+    /** Starts collecting the metrics of a parse. */
+    private void startParseMetrics(InputSource source) {
+        fMetrics.reset();
+        fMetrics.systemId = source.getSystemId();
+        fMetricsStartStrings = fStringPool.getStringCount();
+        fMetricsStartSymbols = fStringPool.getSymbolCount();
+        fMetricsStartTime = System.nanoTime();
+        fValidatorSampleSeed = 0;
+        fMetricsStarted = true;
+    }
+
+    /**
+     * Decides whether to time a validator call.  Reading the clock around
+     * every call would distort the time being measured, so only about one
+     * call in VALIDATOR_SAMPLE_RATE is timed and validatorTime is scaled
+     * up from those.  The calls are picked pseudo-randomly, so that a
+     * document whose structure repeats is not always sampled at the same
+     * kind of call.
+     */
+    private boolean sampleValidatorCall() {
+        int seed = fValidatorSampleSeed * 1103515245 + 12345;
+        fValidatorSampleSeed = seed;
+        return (seed >>> (32 - VALIDATOR_SAMPLE_SHIFT)) == 0;
+    }
+
+    /** Updates the metrics that are not counted as the parse runs. */
+    private void updateParseMetrics() {
+        if (!fMetricsStarted)
+            return;
+        fMetrics.stringsAdded = fStringPool.getStringCount() - fMetricsStartStrings;
+        fMetrics.symbolsAdded = fStringPool.getSymbolCount() - fMetricsStartSymbols;
+        fMetrics.parseTime = System.nanoTime() - fMetricsStartTime;
+    }
+
+    /** Finishes the metrics of a parse and reports them. */
+    private void endParseMetrics() {
+        if (!fMetricsStarted)
+            return;
+        updateParseMetrics();
+        fMetricsStarted = false;
+        if (fMetricsListener != null)
+            fMetricsListener.parseEnded(new XMLParseMetrics(fMetrics));
+    }
+
+    /**
+     * Returns true if the string pool is still referenced by the
+     * results of the previous parse and must not be cleared.
+     */
+    protected boolean isStringPoolInUse() {
+        return false;
+    }
+
     private void resetCommon() throws Exception {
         fScanner.reset(fStringPool, new ChunkyCharArray(fStringPool));
         fValidating = false;
@@ -1060,6 +1344,8 @@ public abstract class XMLParser
         if (fSchemaValidator != null)
             fSchemaValidator.reset(fStringPool, fErrorReporter, fEntityHandler);
         fCheckedForSchema = false;
+        if (fValidationQueue != null)
+            fValidationQueue.reset();
         fNeedReset = false;
         fCalledStartDocument = false;
         fSeenRootElement = false;
@@ -1077,8 +1363,10 @@ public abstract class XMLParser
 
     /** Returns the XML Schema validator. */
     protected XSchemaValidator getSchemaValidator() {
-        if (fSchemaValidator == null)
+        if (fSchemaValidator == null) {
             fSchemaValidator = new XSchemaValidator(fStringPool, fErrorReporter, fEntityHandler);
+            fSchemaValidator.setValidationQueue(fValidationQueue);
+        }
         return fSchemaValidator;
     }
 
@@ -1144,6 +1432,9 @@ public abstract class XMLParser
             if (PRINT_EXCEPTION_STACK_TRACE)
                 ex.printStackTrace();
             throw new org.xml.sax.SAXException(ex);
+        } finally {
+            if (fMetrics != null)
+                endParseMetrics();
         }
 
     } // parse(InputSource)
@@ -1234,6 +1525,16 @@ public abstract class XMLParser
                             int majorCode, int minorCode, Object args[],
                             int errorType) throws Exception {
 
+        // keep errors in document order while content is checked elsewhere
+        if (fValidationQueue != null) {
+            if (errorType == XMLErrorReporter.ERRORTYPE_FATAL_ERROR) {
+                fValidationQueue.flush();
+            }
+            else if (fValidationQueue.holdError(locator, errorDomain, majorCode, minorCode, args, errorType)) {
+                return;
+            }
+        }
+
         // create the appropriate message
         SAXParseException spe;
         if (errorDomain.equals(XMLMessages.XML_DOMAIN)) {
@@ -1653,13 +1954,83 @@ public abstract class XMLParser
         // Xerces Properties
         //
 
-        /*
         else if (propertyId.startsWith(XERCES_PROPERTIES_PREFIX)) {
+            String property = propertyId.substring(XERCES_PROPERTIES_PREFIX.length());
+            //
+            // http://apache.org/xml/properties/dtd-grammar-cache
+            // Value type: org.apache.xerces.validators.dtd.DTDGrammarCache
+            // Access: read/write, pre-parse only
+            //   Set the cache of compiled external DTD subsets that is shared
+            //   with other parsers.  A null value disables the cache.
+            //
+            if (property.equals("dtd-grammar-cache")) {
+                try {
+                    setDTDGrammarCache((DTDGrammarCache)value);
+                }
+                catch (ClassCastException e) {
+                    throw new SAXNotSupportedException(propertyId);
+                }
+                return;
+            }
+            //
+            // http://apache.org/xml/properties/id-limit
+            // Value type: java.lang.Integer
+            // Access: read/write, pre-parse only
+            //   Set the maximum number of ID and unresolved IDREF values
+            //   remembered while validating.  Zero means no limit.
+            //
+            if (property.equals("id-limit")) {
+                try {
+                    setIdLimit(((Integer)value).intValue());
+                }
+                catch (ClassCastException e) {
+                    throw new SAXNotSupportedException(propertyId);
+                }
+                catch (NullPointerException e) {
+                    throw new SAXNotSupportedException(propertyId);
+                }
+                return;
+            }
+            //
+            // http://apache.org/xml/properties/mapped-file-threshold
+            // Value type: java.lang.Integer
+            // Access: read/write
+            //   Set the smallest local file size that is read through a
+            //   memory mapping.  Zero means files are never mapped.
+            //
+            if (property.equals("mapped-file-threshold")) {
+                try {
+                    setMappedFileThreshold(((Integer)value).intValue());
+                }
+                catch (ClassCastException e) {
+                    throw new SAXNotSupportedException(propertyId);
+                }
+                catch (NullPointerException e) {
+                    throw new SAXNotSupportedException(propertyId);
+                }
+                return;
+            }
+            //
+            // http://apache.org/xml/properties/validation-executor
+            // Value type: java.util.concurrent.Executor
+            // Access: read/write, pre-parse only
+            //   Set the executor that checks the content of top-level
+            //   elements while the document is scanned.  A null value
+            //   checks content as it is scanned.
+            //
+            if (property.equals("validation-executor")) {
+                try {
+                    setValidationExecutor((Executor)value);
+                }
+                catch (ClassCastException e) {
+                    throw new SAXNotSupportedException(propertyId);
+                }
+                return;
+            }
             //
-            // No properties defined yet that are common to all parsers.
+            // Not recognized
             //
         }
-        */
 
         //
         // Not recognized
@@ -1738,13 +2109,44 @@ public abstract class XMLParser
         // Xerces Properties
         //
 
-        /*
         else if (propertyId.startsWith(XERCES_PROPERTIES_PREFIX)) {
+            String property = propertyId.substring(XERCES_PROPERTIES_PREFIX.length());
+            //
+            // http://apache.org/xml/properties/dtd-grammar-cache
+            // Value type: org.apache.xerces.validators.dtd.DTDGrammarCache
+            // Access: read/write, pre-parse only
+            //
+            if (property.equals("dtd-grammar-cache")) {
+                return getDTDGrammarCache();
+            }
+            //
+            // http://apache.org/xml/properties/id-limit
+            // Value type: java.lang.Integer
+            // Access: read/write, pre-parse only
+            //
+            if (property.equals("id-limit")) {
+                return new Integer(getIdLimit());
+            }
             //
-            // No properties defined yet that are common to all parsers.
+            // http://apache.org/xml/properties/mapped-file-threshold
+            // Value type: java.lang.Integer
+            // Access: read/write
+            //
+            if (property.equals("mapped-file-threshold")) {
+                return new Integer(getMappedFileThreshold());
+            }
+            //
+            // http://apache.org/xml/properties/validation-executor
+            // Value type: java.util.concurrent.Executor
+            // Access: read/write, pre-parse only
+            //
+            if (property.equals("validation-executor")) {
+                return getValidationExecutor();
+            }
+            //
+            // Not recognized
             //
         }
-        */
 
         //
         // Not recognized
@@ -1790,6 +2192,8 @@ public abstract class XMLParser
      * Call the end document callback.
      */
     public void callEndDocument() throws Exception {
+        if (fValidationQueue != null)
+            fValidationQueue.flush();
         if (fCalledStartDocument)
             endDocument();
     }
@@ -1810,7 +2214,15 @@ public abstract class XMLParser
             fValidator.rootElementSpecified(elementType);
             fStringPool.resetShuffleCount();
         }
-        fInElementContent = fValidator.startElement(elementType, fAttrList);
+        if (fMetrics != null)
+            fMetrics.elements++;
+        if (fMetrics != null && sampleValidatorCall()) {
+            long start = System.nanoTime();
+            fInElementContent = fValidator.startElement(elementType, fAttrList);
+            fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+        }
+        else
+            fInElementContent = fValidator.startElement(elementType, fAttrList);
         int attrListHandle = fAttrList.attrListHandle();
         if (attrListHandle != -1) {
             fAttrList.endAttrList();
@@ -1855,7 +2267,13 @@ public abstract class XMLParser
                                        XMLErrorReporter.ERRORTYPE_FATAL_ERROR);
         }
         endElement(elementType);
-        fInElementContent = fValidator.endElement(elementType);
+        if (fMetrics != null && sampleValidatorCall()) {
+            long start = System.nanoTime();
+            fInElementContent = fValidator.endElement(elementType);
+            fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+        }
+        else
+            fInElementContent = fValidator.endElement(elementType);
         if (fElementDepth-- == 0) {
             // REVISIT: Localize this message. -Ac
             throw new RuntimeException("Element stack underflow");
@@ -1923,7 +2341,16 @@ public abstract class XMLParser
                 fSchemaValidator.loadSchema(fStringPool.toString(attValue));
             }
         }
-        if (!fValidator.attributeSpecified(elementType, fAttrList, attrName, fAttrNameLocator, attValue)) {
+        if (fMetrics != null)
+            fMetrics.attributes++;
+        if (fMetrics != null && sampleValidatorCall()) {
+            long start = System.nanoTime();
+            boolean specified = fValidator.attributeSpecified(elementType, fAttrList, attrName, fAttrNameLocator, attValue);
+            fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+            if (!specified)
+                return XMLDocumentScanner.RESULT_DUPLICATE_ATTR;
+        }
+        else if (!fValidator.attributeSpecified(elementType, fAttrList, attrName, fAttrNameLocator, attValue)) {
             return XMLDocumentScanner.RESULT_DUPLICATE_ATTR;
         }
         return XMLDocumentScanner.RESULT_SUCCESS;
@@ -2024,8 +2451,17 @@ public abstract class XMLParser
     public void processCharacters(char[] chars, int offset, int length)
         throws Exception {
 
-        if (fValidating && !fInElementContent)
-            fValidator.characters(chars, offset, length);
+        if (fMetrics != null)
+            fMetrics.characters += length;
+        if (fValidating && !fInElementContent) {
+            if (fMetrics != null && sampleValidatorCall()) {
+                long start = System.nanoTime();
+                fValidator.characters(chars, offset, length);
+                fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+            }
+            else
+                fValidator.characters(chars, offset, length);
+        }
         characters(chars, offset, length);
 
     }
@@ -2036,8 +2472,17 @@ public abstract class XMLParser
     public void processCharacters(int data)
         throws Exception {
 
-        if (fValidating && !fInElementContent)
-            fValidator.characters(data);
+        if (fMetrics != null)
+            fMetrics.characters += fStringPool.getStringLength(data);
+        if (fValidating && !fInElementContent) {
+            if (fMetrics != null && sampleValidatorCall()) {
+                long start = System.nanoTime();
+                fValidator.characters(data);
+                fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+            }
+            else
+                fValidator.characters(data);
+        }
         characters(data);
 
     }
@@ -2048,13 +2493,29 @@ public abstract class XMLParser
     public void processWhitespace(char[] chars, int offset, int length)
         throws Exception {
 
+        if (fMetrics != null)
+            fMetrics.characters += length;
         if (fInElementContent) {
-            if (fStandaloneDocument && fValidating)
-                fValidator.ignorableWhitespace(chars, offset, length);
+            if (fStandaloneDocument && fValidating) {
+                if (fMetrics != null && sampleValidatorCall()) {
+                    long start = System.nanoTime();
+                    fValidator.ignorableWhitespace(chars, offset, length);
+                    fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+                }
+                else
+                    fValidator.ignorableWhitespace(chars, offset, length);
+            }
             ignorableWhitespace(chars, offset, length);
         } else {
-            if (fValidating && !fInElementContent)
-                fValidator.characters(chars, offset, length);
+            if (fValidating && !fInElementContent) {
+                if (fMetrics != null && sampleValidatorCall()) {
+                    long start = System.nanoTime();
+                    fValidator.characters(chars, offset, length);
+                    fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+                }
+                else
+                    fValidator.characters(chars, offset, length);
+            }
             characters(chars, offset, length);
         }
 
@@ -2065,13 +2526,29 @@ public abstract class XMLParser
      */
     public void processWhitespace(int data) throws Exception {
 
+        if (fMetrics != null)
+            fMetrics.characters += fStringPool.getStringLength(data);
         if (fInElementContent) {
-            if (fStandaloneDocument && fValidating)
-                fValidator.ignorableWhitespace(data);
+            if (fStandaloneDocument && fValidating) {
+                if (fMetrics != null && sampleValidatorCall()) {
+                    long start = System.nanoTime();
+                    fValidator.ignorableWhitespace(data);
+                    fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+                }
+                else
+                    fValidator.ignorableWhitespace(data);
+            }
             ignorableWhitespace(data);
         } else {
-            if (fValidating && !fInElementContent)
-                fValidator.characters(data);
+            if (fValidating && !fInElementContent) {
+                if (fMetrics != null && sampleValidatorCall()) {
+                    long start = System.nanoTime();
+                    fValidator.characters(data);
+                    fMetrics.validatorTime += (System.nanoTime() - start) * VALIDATOR_SAMPLE_RATE;
+                }
+                else
+                    fValidator.characters(data);
+            }
             characters(data);
         }
 
@@ -2080,6 +2557,27 @@ public abstract class XMLParser
     //
     // Data
     //
+    /** Counts the bytes read from an entity's byte stream. */
+    private static final class MetricsInputStream
+        extends FilterInputStream {
+        private XMLParseMetrics fMetrics;
+        MetricsInputStream(InputStream is, XMLParseMetrics metrics) {
+            super(is);
+            fMetrics = metrics;
+        }
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1)
+                fMetrics.bytesRead++;
+            return b;
+        }
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = in.read(buffer, offset, length);
+            if (count > 0)
+                fMetrics.bytesRead += count;
+            return count;
+        }
+    }
     private class ReaderState {
         XMLEntityHandler.EntityReader reader;
         InputSource source;
@@ -2317,6 +2815,8 @@ public abstract class XMLParser
             fDTDValidator.readerChange(fReader, fReaderId);
     }
     private void sendStartEntityNotifications() throws Exception {
+        if (fMetrics != null && fEntityType != ENTITYTYPE_DOCUMENT)
+            fMetrics.entityExpansions++;
         startEntityReference(fEntityName, fEntityType, fEntityContext);
     }
     private void sendEndEntityNotifications() throws Exception {
@@ -2613,7 +3113,10 @@ public abstract class XMLParser
 
         // create reader from source's byte stream
         if (fSource.getEncoding() != null && fSource.getByteStream() != null) {
-            java.io.Reader reader = new InputStreamReader(fSource.getByteStream(), fSource.getEncoding());
+            InputStream is = fSource.getByteStream();
+            if (fMetrics != null)
+                is = new MetricsInputStream(is, fMetrics);
+            java.io.Reader reader = new InputStreamReader(is, fSource.getEncoding());
             fReader = fReaderFactory.createCharReader(this, fErrorReporter, fSendCharDataAsCharArray, reader, fStringPool);
             return;
         }
@@ -2625,7 +3128,9 @@ public abstract class XMLParser
             // create url and open the stream
             try {
                 URL url = new URL(fSystemId);
-                is = url.openStream();
+                is = openFileStream(url);
+                if (is == null)
+                    is = url.openStream();
             } catch (MalformedURLException mu) {
                 String errorSystemId = fSystemId;
                 sendEndEntityNotifications();
@@ -2656,7 +3161,12 @@ public abstract class XMLParser
         }
 
         // create array and find recognizer
-        ChunkyByteArray data = new ChunkyByteArray(is);
+        MappedFileInputStream mappedInput = null;
+        if (is instanceof MappedFileInputStream)
+            mappedInput = (MappedFileInputStream)is;
+        if (fMetrics != null)
+            is = new MetricsInputStream(is, fMetrics);
+        ChunkyByteArray data = new ChunkyByteArray(is, mappedInput);
         XMLEntityHandler.EntityReader reader = callRecognizers(fSource, data, xmlDecl);
         if (reader == null) {
             reader = fReaderFactory.createUTF8Reader(this, fErrorReporter, fSendCharDataAsCharArray, data, fStringPool);
@@ -2664,6 +3174,29 @@ public abstract class XMLParser
         fReader = reader;
     }
 
+    /**
+     * Opens a local file directly, so that the reader fills its chunks
+     * straight from the file instead of through the URL stream handler.
+     * Files of at least the mapped file threshold are memory mapped.
+     * Returns null if the URL is not a plain local file.
+     */
+    private InputStream openFileStream(URL url) throws IOException {
+        if (!url.getProtocol().equals("file"))
+            return null;
+        String host = url.getHost();
+        if (host != null && host.length() != 0 && !host.equals("localhost"))
+            return null;
+        String path = url.getFile();
+        if (path.indexOf('%') != -1)
+            return null;
+        File file = new File(path);
+        if (!file.isFile())
+            return null;
+        if (fMappedFileThreshold > 0 && file.length() >= fMappedFileThreshold)
+            return new MappedFileInputStream(file);
+        return new FileInputStream(file);
+    }
+
     //
     // reader stack
     //
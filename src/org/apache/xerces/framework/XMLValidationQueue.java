@@ -0,0 +1,472 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.framework;
+
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * Checks the content of the top-level elements of a document on the
+ * threads of an executor while the scanner goes on with the rest of
+ * the document.
+ * <p>
+ * A validator records the events of the children of the root element in
+ * batches, together with their position. Once a child ends and its batch
+ * holds enough events to be worth the hand-off, the batch is given to
+ * the executor, which checks the content models and datatypes of the
+ * elements in it. Everything that changes the events
+ * delivered to the application, such as attribute defaulting and
+ * normalization, or that is shared by the whole document, such as ID
+ * tracking, stays with the scanner.
+ * <p>
+ * Errors are reported on the scanning thread in document order. While
+ * batches are outstanding, the errors the parser reports are held back
+ * with their position as well, so that the error handler sees the
+ * errors in the same order as it would without the queue. Held errors
+ * are reported once the batches before them are done, before a fatal
+ * error, and at the latest at the end of the document.
+ *
+ * @see XMLParser#setValidationExecutor
+ * @version
+ */
+public final class XMLValidationQueue {
+
+    //
+    // Constants
+    //
+
+    /**
+     * Number of batches and held errors kept before the scanner waits
+     * for the oldest one, so that an executor that falls behind does
+     * not keep the whole document in memory.
+     */
+    private static final int MAX_PENDING = 256;
+
+    /**
+     * Number of events from which a batch is handed to the executor at
+     * the end of a top-level element. Smaller top-level elements share
+     * a batch, since each hand-off costs about as much as checking a few
+     * hundred events.
+     */
+    private static final int MIN_BATCH_EVENTS = 2048;
+
+    //
+    // Classes
+    //
+
+    /**
+     * The events of one or more top-level elements. A validator extends this
+     * class to keep its own data for each event. The check method is
+     * called on a thread of the executor and must not use anything that
+     * the scanner may change; reportError is called on the scanning
+     * thread.
+     */
+    public static abstract class Batch {
+
+        //
+        // Data
+        //
+
+        private int fEventCount = 0;
+        private int fCheckedCount = 0;
+        private int[] fLineNumbers = new int[16];
+        private int[] fColumnNumbers = new int[16];
+        private String[] fPublicIds = new String[16];
+        private String[] fSystemIds = new String[16];
+
+        /** Errors held back while the batch was recorded. */
+        private Vector fHeldErrors = new Vector();
+
+        /** Errors found by check. */
+        private Vector fFoundErrors = new Vector();
+
+        //
+        // Protected methods
+        //
+
+        /**
+         * Checks the events from first up to, but not including, last,
+         * and calls addError for each error found.
+         */
+        protected abstract void check(int first, int last) throws Exception;
+
+        /** Reports an error that was passed to addError. */
+        protected abstract void reportError(XMLErrorReporter errorReporter,
+                                            Locator locator, Object error)
+            throws Exception;
+
+        /** Adds an error found at the given event. */
+        protected final void addError(int event, Object error) {
+            LocatorImpl locator = new LocatorImpl();
+            locator.setPublicId(fPublicIds[event]);
+            locator.setSystemId(fSystemIds[event]);
+            locator.setLineNumber(fLineNumbers[event]);
+            locator.setColumnNumber(fColumnNumbers[event]);
+            fFoundErrors.addElement(new HeldError(event, locator, this, error));
+        }
+
+        //
+        // Private methods
+        //
+
+        private int addEvent(Locator locator) {
+            int event = fEventCount;
+            if (event == fLineNumbers.length) {
+                int[] newInts = new int[event * 2];
+                System.arraycopy(fLineNumbers, 0, newInts, 0, event);
+                fLineNumbers = newInts;
+                newInts = new int[event * 2];
+                System.arraycopy(fColumnNumbers, 0, newInts, 0, event);
+                fColumnNumbers = newInts;
+                String[] newStrings = new String[event * 2];
+                System.arraycopy(fPublicIds, 0, newStrings, 0, event);
+                fPublicIds = newStrings;
+                newStrings = new String[event * 2];
+                System.arraycopy(fSystemIds, 0, newStrings, 0, event);
+                fSystemIds = newStrings;
+            }
+            fLineNumbers[event] = locator.getLineNumber();
+            fColumnNumbers[event] = locator.getColumnNumber();
+            fPublicIds[event] = locator.getPublicId();
+            fSystemIds[event] = locator.getSystemId();
+            fEventCount = event + 1;
+            return event;
+        }
+
+        private void checkEvents() throws Exception {
+            int last = fEventCount;
+            check(fCheckedCount, last);
+            fCheckedCount = last;
+        }
+
+        /**
+         * Reports the held and the found errors in document order. An
+         * error held back before an event precedes the errors found at
+         * that event.
+         */
+        private void reportErrors(XMLErrorReporter errorReporter) throws Exception {
+            int heldCount = fHeldErrors.size();
+            int foundCount = fFoundErrors.size();
+            int held = 0;
+            int found = 0;
+            while (held < heldCount || found < foundCount) {
+                HeldError error;
+                if (found == foundCount ||
+                    (held < heldCount &&
+                     ((HeldError)fHeldErrors.elementAt(held)).fEvent <=
+                     ((HeldError)fFoundErrors.elementAt(found)).fEvent)) {
+                    error = (HeldError)fHeldErrors.elementAt(held++);
+                }
+                else {
+                    error = (HeldError)fFoundErrors.elementAt(found++);
+                }
+                error.report(errorReporter);
+            }
+            fHeldErrors.removeAllElements();
+            fFoundErrors.removeAllElements();
+        }
+
+    } // class Batch
+
+    /** An error waiting to be reported. */
+    private static final class HeldError {
+
+        /** The event before which it was reported, or at which it was found. */
+        int fEvent;
+        Locator fLocator;
+        String fErrorDomain;
+        int fMajorCode;
+        int fMinorCode;
+        Object[] fArgs;
+        int fErrorType;
+
+        /** The batch that found the error, or null. */
+        Batch fBatch;
+        Object fError;
+
+        HeldError(int event, Locator locator, String errorDomain,
+                  int majorCode, int minorCode, Object[] args, int errorType) {
+            fEvent = event;
+            fLocator = locator;
+            fErrorDomain = errorDomain;
+            fMajorCode = majorCode;
+            fMinorCode = minorCode;
+            fArgs = args;
+            fErrorType = errorType;
+        }
+
+        HeldError(int event, Locator locator, Batch batch, Object error) {
+            fEvent = event;
+            fLocator = locator;
+            fBatch = batch;
+            fError = error;
+        }
+
+        void report(XMLErrorReporter errorReporter) throws Exception {
+            if (fBatch != null) {
+                fBatch.reportError(errorReporter, fLocator, fError);
+            }
+            else {
+                errorReporter.reportError(fLocator, fErrorDomain, fMajorCode,
+                                          fMinorCode, fArgs, fErrorType);
+            }
+        }
+
+    } // class HeldError
+
+    //
+    // Data
+    //
+
+    private Executor fExecutor;
+    private XMLErrorReporter fErrorReporter;
+
+    /** Submitted batches and held errors, in document order. */
+    private Vector fPending = new Vector();
+
+    /** The batch being recorded, or null. */
+    private Batch fBatch = null;
+
+    /** True while held errors are being reported. */
+    private boolean fReporting = false;
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a queue that checks batches on the given executor and
+     * reports errors to the given error reporter, whose locator gives
+     * the position of the events.
+     */
+    public XMLValidationQueue(Executor executor, XMLErrorReporter errorReporter) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        fExecutor = executor;
+        fErrorReporter = errorReporter;
+    }
+
+    //
+    // Public methods
+    //
+
+    /** Returns the executor that checks the batches. */
+    public Executor getExecutor() {
+        return fExecutor;
+    }
+
+    /**
+     * Returns the batch that records the events of the next top-level
+     * element, or null if a new batch should be started.
+     */
+    public Batch getBatch() {
+        return fBatch;
+    }
+
+    /** Starts recording the events of top-level elements in a new batch. */
+    public void startBatch(Batch batch) {
+        fBatch = batch;
+    }
+
+    /**
+     * Records the position of an event of the current batch and
+     * returns the index of the event.
+     */
+    public int addEvent() {
+        return fBatch.addEvent(fErrorReporter.getLocator());
+    }
+
+    /**
+     * Called at the end of each top-level element. The current batch is
+     * handed to the executor if it holds enough events, and the errors
+     * of the batches that are done are reported.
+     */
+    public void endTopLevelElement() throws Exception {
+        if (fBatch.fEventCount < MIN_BATCH_EVENTS) {
+            return;
+        }
+        final Batch batch = fBatch;
+        fBatch = null;
+        FutureTask task = new FutureTask(new Callable() {
+            public Object call() throws Exception {
+                batch.checkEvents();
+                return batch;
+            }
+        });
+        fPending.addElement(task);
+        try {
+            fExecutor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            task.run();
+        }
+        reportPending(MAX_PENDING);
+    }
+
+    /**
+     * Holds back an error until the batches before it are done. Returns
+     * false if there is nothing to wait for, in which case the caller
+     * should report the error at once.
+     */
+    public boolean holdError(Locator locator, String errorDomain,
+                             int majorCode, int minorCode, Object[] args,
+                             int errorType) {
+        if (fReporting || (fBatch == null && fPending.isEmpty())) {
+            return false;
+        }
+        LocatorImpl locatorImpl = locator == null ? null : new LocatorImpl(locator);
+        if (fBatch != null) {
+            fBatch.fHeldErrors.addElement(new HeldError(fBatch.fEventCount, locatorImpl,
+                                                        errorDomain, majorCode, minorCode,
+                                                        args, errorType));
+        }
+        else {
+            fPending.addElement(new HeldError(0, locatorImpl, errorDomain, majorCode,
+                                              minorCode, args, errorType));
+        }
+        return true;
+    }
+
+    /**
+     * Waits for all submitted batches and reports every error held so
+     * far, including those found in the events of the current batch.
+     */
+    public void flush() throws Exception {
+        if (fReporting) {
+            return;
+        }
+        reportPending(0);
+        if (fBatch != null) {
+            fBatch.checkEvents();
+            fReporting = true;
+            try {
+                fBatch.reportErrors(fErrorReporter);
+            }
+            finally {
+                fReporting = false;
+            }
+        }
+    }
+
+    /** Drops the batches and errors of the previous document. */
+    public void reset() {
+        for (int i = 0; i < fPending.size(); i++) {
+            Object entry = fPending.elementAt(i);
+            if (entry instanceof FutureTask) {
+                ((FutureTask)entry).cancel(false);
+            }
+        }
+        fPending.removeAllElements();
+        fBatch = null;
+        fReporting = false;
+    }
+
+    //
+    // Private methods
+    //
+
+    /**
+     * Reports the errors of the pending batches that are done, in order,
+     * waiting for the oldest ones while more than the given number are
+     * pending.
+     */
+    private void reportPending(int maxPending) throws Exception {
+        fReporting = true;
+        try {
+            while (!fPending.isEmpty()) {
+                Object entry = fPending.elementAt(0);
+                if (entry instanceof FutureTask) {
+                    FutureTask task = (FutureTask)entry;
+                    if (fPending.size() <= maxPending && !task.isDone()) {
+                        break;
+                    }
+                    Batch batch;
+                    try {
+                        batch = (Batch)task.get();
+                    }
+                    catch (ExecutionException e) {
+                        fPending.removeElementAt(0);
+                        Throwable cause = e.getCause();
+                        if (cause instanceof Exception) {
+                            throw (Exception)cause;
+                        }
+                        throw (Error)cause;
+                    }
+                    fPending.removeElementAt(0);
+                    batch.reportErrors(fErrorReporter);
+                }
+                else {
+                    fPending.removeElementAt(0);
+                    ((HeldError)entry).report(fErrorReporter);
+                }
+            }
+        }
+        finally {
+            fReporting = false;
+        }
+    }
+
+} // class XMLValidationQueue
@@ -133,6 +133,7 @@ public class DOMParser
         // Xerces features
         "http://apache.org/xml/features/dom/defer-node-expansion",
         "http://apache.org/xml/features/dom/create-entity-ref-nodes",
+        "http://apache.org/xml/features/dom/compact-read-only",
         // Experimental features
         "http://apache.org/xml/features/domx/grammar-access",
     };
@@ -148,6 +149,29 @@ public class DOMParser
     /** For experimental grammar access. */
     private static final Hashtable TYPES = new Hashtable();
 
+    //
+    // Interfaces
+    //
+
+    /**
+     * Receives the subtrees that match the fragment path as they are
+     * parsed.
+     *
+     * @see #setFragmentHandler
+     */
+    public interface FragmentHandler {
+
+        /**
+         * Called when the end tag of an element matching the fragment
+         * path has been parsed. The element has already been removed
+         * from the document and may be kept or modified freely.
+         *
+         * @param element The fully expanded matching element.
+         */
+        public void fragment(Element element) throws Exception;
+
+    } // interface FragmentHandler
+
     //
     // Data
     //
@@ -184,6 +208,7 @@ public class DOMParser
     private String  fDocumentClassName;
     private boolean fDeferNodeExpansion;
     private boolean fCreateEntityReferenceNodes;
+    private boolean fCompactReadOnly;
 
     // built-in entities
 
@@ -197,6 +222,19 @@ public class DOMParser
 
     private XMLAttrList fAttrList;
 
+    // fragment mode
+
+    private FragmentHandler fFragmentHandler;
+    private String fFragmentPath;
+    private boolean fFragmentPathAbsolute;
+    private String fFragmentPathNames[];
+    private int fFragmentPathSymbols[];
+
+    private int fElementNames[] = new int[16];
+    private int fElementDepth;
+    private int fFragmentDepth;
+    private int fFragmentMark;
+
     //
     // Static initializer
     //
@@ -244,6 +282,9 @@ public class DOMParser
 
     /** Returns the document. */
     public Document getDocument() {
+        if (fCompactReadOnly && fDeferredDocumentImpl != null) {
+            return fDeferredDocumentImpl.getCompactDocument();
+        }
         return fDocument;
     }
 
@@ -329,6 +370,11 @@ public class DOMParser
         init();
     }
 
+    /** Returns true if the deferred document still uses the string pool. */
+    protected boolean isStringPoolInUse() {
+        return fDeferredDocumentImpl != null;
+    }
+
     //
     // Protected methods
     //
@@ -372,6 +418,12 @@ public class DOMParser
 
         fAttrList = new XMLAttrList(fStringPool);
 
+        // fragment mode
+        fElementDepth = 0;
+        fFragmentDepth = 0;
+        fFragmentMark = -1;
+        addFragmentPathSymbols();
+
     } // init()
 
     // features
@@ -426,6 +478,105 @@ public class DOMParser
         return fCreateEntityReferenceNodes;
     }
 
+    /**
+     * This feature determines whether getDocument() returns the compact,
+     * read-only view of a deferred document instead of the document
+     * itself. The nodes of the view are flyweight cursors over the
+     * deferred node tables, so very large documents can be navigated
+     * without expanding them. The feature has no effect when node
+     * expansion is not deferred.
+     *
+     * @param compact True to return the compact read-only view.
+     *
+     * @see #getCompactReadOnly
+     * @see #setDeferNodeExpansion
+     */
+    protected void setCompactReadOnly(boolean compact) throws SAXException {
+        fCompactReadOnly = compact;
+    }
+
+    /**
+     * Returns true if getDocument() returns the compact, read-only view
+     * of a deferred document.
+     *
+     * @see #setCompactReadOnly
+     */
+    protected boolean getCompactReadOnly() throws SAXException {
+        return fCompactReadOnly;
+    }
+
+    // fragment mode
+
+    /**
+     * Sets a handler that receives each element matching the given path
+     * as soon as its end tag is parsed. The matching element is removed
+     * from the document before it is handed to the handler, so the
+     * document only retains the elements outside of the matching
+     * subtrees. When node expansion is deferred, the table entries and
+     * string pool entries of each subtree are released and reused by the
+     * next one, keeping memory bounded by the largest matching subtree
+     * rather than by the whole document.
+     * <p>
+     * The path is a list of element names separated by '/'. A path that
+     * starts with '/' is matched from the document element, e.g.
+     * "/feed/record"; otherwise it matches at any depth, e.g. "record".
+     * Elements nested within a matching element are never reported on
+     * their own. A matching document element is reported but left in the
+     * document.
+     * <p>
+     * Identifiers of elements within the matching subtrees are not
+     * registered with the document. When node expansion is deferred,
+     * entity nodes are not filled in from the entity references in the
+     * document.
+     *
+     * @param path    The element path, or null to stop fragment mode.
+     * @param handler The fragment handler, or null to stop fragment mode.
+     *
+     * @see #getFragmentPath
+     */
+    public void setFragmentHandler(String path, FragmentHandler handler)
+        throws SAXException {
+
+        if (fParseInProgress) {
+            // REVISIT: Localize this message.
+            throw new SAXNotSupportedException("fragment handler: parse is in progress");
+        }
+        if (path == null || handler == null) {
+            fFragmentHandler = null;
+            fFragmentPath = null;
+            fFragmentPathNames = null;
+            fFragmentPathSymbols = null;
+            return;
+        }
+
+        StringTokenizer tokenizer = new StringTokenizer(path, "/");
+        String names[] = new String[tokenizer.countTokens()];
+        if (names.length == 0) {
+            // REVISIT: Localize this message. -Ac
+            throw new IllegalArgumentException("Fragment path, \""+path+"\", has no element names.");
+        }
+        for (int i = 0; i < names.length; i++) {
+            names[i] = tokenizer.nextToken();
+        }
+
+        fFragmentHandler = handler;
+        fFragmentPath = path;
+        fFragmentPathAbsolute = path.startsWith("/");
+        fFragmentPathNames = names;
+        addFragmentPathSymbols();
+
+    } // setFragmentHandler(String,FragmentHandler)
+
+    /**
+     * Returns the path of the elements reported to the fragment handler,
+     * or null if there is no fragment handler.
+     *
+     * @see #setFragmentHandler
+     */
+    public String getFragmentPath() {
+        return fFragmentPath;
+    }
+
     // properties
 
     /**
@@ -571,6 +722,17 @@ public class DOMParser
                 setCreateEntityReferenceNodes(state);
                 return;
             }
+            //
+            // http://apache.org/xml/features/dom/compact-read-only
+            //   When node expansion is deferred, getDocument() returns
+            //   a read-only view of the document whose nodes are thin
+            //   cursors over the deferred node tables. The nodes are
+            //   created on demand and not retained.
+            //
+            if (feature.equals("dom/compact-read-only")) {
+                setCompactReadOnly(state);
+                return;
+            }
 
             //
             // Experimental features
@@ -658,6 +820,16 @@ public class DOMParser
             else if (feature.equals("dom/create-entity-ref-nodes")) {
                 return getCreateEntityReferenceNodes();
             }
+            //
+            // http://apache.org/xml/features/dom/compact-read-only
+            //   When node expansion is deferred, getDocument() returns
+            //   a read-only view of the document whose nodes are thin
+            //   cursors over the deferred node tables. The nodes are
+            //   created on demand and not retained.
+            //
+            else if (feature.equals("dom/compact-read-only")) {
+                return getCompactReadOnly();
+            }
 
             //
             // Experimental features
@@ -893,22 +1065,42 @@ public class DOMParser
                              XMLAttrList xmlAttrList, int attrListIndex)
         throws Exception {
 
+        // fragment mode
+        boolean fragmentStart = fFragmentHandler != null &&
+                                startFragmentElement(elementTypeIndex);
+
         // deferred expansion
         if (fDeferredDocumentImpl != null) {
 
+            if (fragmentStart) {
+                fFragmentMark = getTrailingWhitespace(fCurrentNodeIndex);
+            }
+
             int element = fDeferredDocumentImpl.createElement(elementTypeIndex, xmlAttrList, attrListIndex);
             fDeferredDocumentImpl.appendChild(fCurrentNodeIndex, element);
             fCurrentNodeIndex = element;
             fWithinElement = true;
 
+            if (fragmentStart && fFragmentMark == -1) {
+                fFragmentMark = element;
+            }
+
             // identifier registration
-            int index = xmlAttrList.getFirstAttr(attrListIndex);
-            while (index != -1) {
-                if (xmlAttrList.getAttType(index) == fStringPool.addSymbol("ID")) {
-                    int nameIndex = xmlAttrList.getAttValue(index);
-                    fDeferredDocumentImpl.putIdentifier(nameIndex, element);
+            if (fFragmentDepth == 0) {
+                int index = xmlAttrList.getFirstAttr(attrListIndex);
+                while (index != -1) {
+                    if (xmlAttrList.getAttType(index) == fStringPool.addSymbol("ID")) {
+                        int nameIndex = xmlAttrList.getAttValue(index);
+                        fDeferredDocumentImpl.putIdentifier(nameIndex, element);
+                    }
+                    index = xmlAttrList.getNextAttr(index);
                 }
-                index = xmlAttrList.getNextAttr(index);
+            }
+
+            // the tables own the attribute values now; reuse the list
+            // entries so that they do not grow with the document
+            if (fFragmentHandler != null) {
+                xmlAttrList.releaseAttrList(attrListIndex, false);
             }
 
             // copy schema grammar, if needed
@@ -936,6 +1128,16 @@ public class DOMParser
             try { nsEnabled = getNamespaces(); }
             catch (SAXException s) {}
 
+            // drop the whitespace between fragments
+            if (fragmentStart) {
+                Node lastChild = fCurrentElementNode.getLastChild();
+                if (lastChild != null &&
+                    lastChild.getNodeType() == Node.TEXT_NODE &&
+                    isWhitespace(lastChild.getNodeValue())) {
+                    fCurrentElementNode.removeChild(lastChild);
+                }
+            }
+
             String elementName = fStringPool.toString(elementTypeIndex);
             AttributeList attrList = xmlAttrList.getAttributeList(attrListIndex);
             // Until DOM2 is REC, the DOM2 methods are in XXXImpl
@@ -996,7 +1198,7 @@ public class DOMParser
             fWithinElement = true;
 
             // identifier registration
-            if (fDocumentImpl != null) {
+            if (fDocumentImpl != null && fFragmentDepth == 0) {
                 int index = xmlAttrList.getFirstAttr(attrListIndex);
                 while (index != -1) {
                     if (xmlAttrList.getAttType(index) == fStringPool.addSymbol("ID")) {
@@ -1030,22 +1232,59 @@ public class DOMParser
             }
         }
 
+        // metrics
+        if (fMetrics != null)
+            fMetrics.domNodes++;
+
     } // startElement(int,XMLAttrList,int)
 
     /** End element. */
     public void endElement(int elementTypeIndex)
         throws Exception {
 
+        // fragment mode
+        boolean fragmentEnd = fFragmentDepth != 0 &&
+                              fFragmentDepth == fElementDepth;
+        Element fragment = null;
+
         // deferred node expansion
         if (fDeferredDocumentImpl != null) {
-            fCurrentNodeIndex = fDeferredDocumentImpl.getParentNode(fCurrentNodeIndex);
+            int element = fCurrentNodeIndex;
+            fCurrentNodeIndex = fDeferredDocumentImpl.getParentNode(element);
             fWithinElement = false;
+
+            // the document element is kept since the grammar
+            // copied into the doctype follows it in the tables
+            if (fragmentEnd) {
+                fragment = (Element)fDeferredDocumentImpl.expandSubtree(element);
+                if (fFragmentDepth > 1) {
+                    fDeferredDocumentImpl.discardNodes(fFragmentMark);
+                }
+                fFragmentMark = -1;
+            }
         }
 
         // full node expansion
         else {
-            fCurrentElementNode = fCurrentElementNode.getParentNode();
+            Node element = fCurrentElementNode;
+            fCurrentElementNode = element.getParentNode();
             fWithinElement = false;
+
+            if (fragmentEnd) {
+                if (fFragmentDepth > 1) {
+                    fCurrentElementNode.removeChild(element);
+                }
+                fragment = (Element)element;
+            }
+        }
+
+        // fragment mode
+        if (fFragmentHandler != null) {
+            fElementDepth--;
+            if (fragmentEnd) {
+                fFragmentDepth = 0;
+                fFragmentHandler.fragment(fragment);
+            }
         }
 
     } // endElement(int)
@@ -1095,6 +1334,10 @@ public class DOMParser
 
         }
 
+        // metrics
+        if (fMetrics != null)
+            fMetrics.domNodes++;
+
     } // characters(int)
 
     /** Ignorable whitespace. */
@@ -1145,6 +1388,10 @@ public class DOMParser
 
         }
 
+        // metrics
+        if (fMetrics != null)
+            fMetrics.domNodes++;
+
     } // ignorableWhitespace(int)
 
     /** Processing instruction. */
@@ -1165,6 +1412,10 @@ public class DOMParser
             fCurrentElementNode.appendChild(pi);
         }
 
+        // metrics
+        if (fMetrics != null)
+            fMetrics.domNodes++;
+
     } // processingInstruction(int,int)
 
     /** Comment. */
@@ -1182,6 +1433,10 @@ public class DOMParser
             fCurrentElementNode.appendChild(comment);
         }
 
+        // metrics
+        if (fMetrics != null)
+            fMetrics.domNodes++;
+
     } // comment(int)
 
     /** Not called. */
@@ -1249,6 +1504,10 @@ public class DOMParser
             fCurrentElementNode = er;
         }
 
+        // metrics
+        if (fMetrics != null)
+            fMetrics.domNodes++;
+
     } // startEntityReference(int,int,int)
 
     /** End entity reference. */
@@ -1299,7 +1558,9 @@ public class DOMParser
                     entityDecl = fDeferredDocumentImpl.getNextSibling(entityDecl);
                 }
 
+                // entity contents within a fragment are discarded with it
                 if (entityDecl != -1
+                    && fFragmentDepth == 0
                     && fDeferredDocumentImpl.getFirstChild(entityDecl) == -1) {
                     // found entityDecl with same name as this reference
                     // AND it doesn't have any children.
@@ -2269,6 +2530,93 @@ public class DOMParser
     // Private methods
     //
 
+    // fragment mode
+
+    /** Adds the element names of the fragment path to the string pool. */
+    private void addFragmentPathSymbols() {
+
+        if (fFragmentPathNames == null) {
+            fFragmentPathSymbols = null;
+            return;
+        }
+        int symbols[] = new int[fFragmentPathNames.length];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = fStringPool.addSymbol(fFragmentPathNames[i]);
+        }
+        fFragmentPathSymbols = symbols;
+
+    } // addFragmentPathSymbols()
+
+    /**
+     * Records the element being started and returns true if it is the
+     * root of a fragment.
+     */
+    private boolean startFragmentElement(int elementTypeIndex) {
+
+        // push element name
+        if (fElementDepth == fElementNames.length) {
+            int names[] = new int[fElementDepth * 2];
+            System.arraycopy(fElementNames, 0, names, 0, fElementDepth);
+            fElementNames = names;
+        }
+        fElementNames[fElementDepth++] = elementTypeIndex;
+
+        // fragments do not nest
+        if (fFragmentDepth != 0) {
+            return false;
+        }
+
+        // match the path against the innermost element names
+        int steps = fFragmentPathSymbols.length;
+        if (fElementDepth < steps ||
+            (fFragmentPathAbsolute && fElementDepth != steps)) {
+            return false;
+        }
+        int offset = fElementDepth - steps;
+        for (int i = 0; i < steps; i++) {
+            if (!fStringPool.equalNames(fElementNames[offset + i], fFragmentPathSymbols[i])) {
+                return false;
+            }
+        }
+        fFragmentDepth = fElementDepth;
+        return true;
+
+    } // startFragmentElement(int):boolean
+
+    /**
+     * Returns the first of the text nodes that end the children of the
+     * given node if they only contain whitespace, or -1. Such text sits
+     * between fragments and is discarded with the next one.
+     */
+    private int getTrailingWhitespace(int nodeIndex) {
+
+        int whitespace = -1;
+        int child = fDeferredDocumentImpl.getLastChild(nodeIndex);
+        while (child != -1 &&
+               fDeferredDocumentImpl.getNodeType(child) == Node.TEXT_NODE) {
+            if (!isWhitespace(fDeferredDocumentImpl.getNodeValueString(child))) {
+                return -1;
+            }
+            whitespace = child;
+            child = fDeferredDocumentImpl.getPreviousSibling(child);
+        }
+        return whitespace;
+
+    } // getTrailingWhitespace(int):int
+
+    /** Returns true if the string only contains XML whitespace. */
+    private static boolean isWhitespace(String s) {
+
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+
+    } // isWhitespace(String):boolean
+
     /**
      * Creates a content model from the specified content spec node.
      * This method will always return a <em>group</em> element as the
@@ -0,0 +1,334 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.parsers;
+
+import java.lang.ref.WeakReference;
+import java.util.Vector;
+
+import org.apache.xerces.framework.XMLParser;
+
+/**
+ * A bounded pool of reusable parser instances. Parsers are borrowed
+ * for the duration of a parse and returned afterwards. Each returned
+ * parser is reset before it is handed out again so that no document
+ * state, string pool contents or in-progress parse carries over from
+ * the previous borrower; a string pool that grew past the configured
+ * high-water mark is discarded rather than cleared so that a single
+ * large document does not pin its memory for the lifetime of the pool.
+ * <p>
+ * Each thread keeps the last parser it returned and gets it back on
+ * its next borrow without touching the shared pool. That affinity
+ * costs one parser per thread: a thread's parser takes one of the
+ * places bounded by the maximum size, even while it is borrowed, until
+ * the thread ends or the pool is cleared, and the shared pool only
+ * gets the places that are left. Handlers, features and properties
+ * set by a borrower are not reset and should be set again by every
+ * borrower that depends on them.
+ *
+ * @version
+ */
+public class ParserPool {
+
+    //
+    // Constants
+    //
+
+    /** Default maximum number of parsers kept by the pool. */
+    public static final int DEFAULT_MAX_SIZE = 16;
+
+    /** Default string pool high-water mark. */
+    public static final int DEFAULT_STRING_POOL_HIGH_WATER_MARK = 8192;
+
+    //
+    // Interfaces
+    //
+
+    /** Creates the parser instances held by a pool. */
+    public interface ParserFactory {
+        /** Returns a new parser instance. */
+        public XMLParser createParser() throws Exception;
+    }
+
+    //
+    // Data
+    //
+
+    private ParserFactory fFactory;
+    private int fMaxSize = DEFAULT_MAX_SIZE;
+    private int fStringPoolHighWaterMark = DEFAULT_STRING_POOL_HIGH_WATER_MARK;
+    private Vector fIdleParsers = new Vector();
+    private ThreadLocal fThreadSlot = new ThreadLocal();
+    private Vector fThreadSlots = new Vector();
+    private volatile int fGeneration = 0;
+
+    //
+    // Classes
+    //
+
+    /**
+     * The place of one thread's parser. The pool holds each slot through
+     * a weak reference, so the place of a thread that has ended is freed
+     * once its slot is collected; a slot from before the last clear() is
+     * ignored.
+     */
+    private static final class ThreadSlot {
+        XMLParser fParser;
+        int fGeneration;
+    }
+
+    //
+    // Constructors
+    //
+
+    /**
+     * Constructs a pool of parsers of the given class. The class must
+     * extend XMLParser and have a public no-argument constructor.
+     */
+    public ParserPool(final Class parserClass) {
+        if (!XMLParser.class.isAssignableFrom(parserClass)) {
+            throw new IllegalArgumentException(parserClass.getName());
+        }
+        fFactory = new ParserFactory() {
+            public XMLParser createParser() throws Exception {
+                return (XMLParser)parserClass.newInstance();
+            }
+        };
+    }
+
+    /** Constructs a pool of parsers created by the given factory. */
+    public ParserPool(ParserFactory factory) {
+        if (factory == null) {
+            throw new NullPointerException();
+        }
+        fFactory = factory;
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Sets the maximum number of parsers kept by the pool, counting the
+     * parsers kept by threads as well as those in the shared pool.
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(String.valueOf(maxSize));
+        }
+        fMaxSize = maxSize;
+        if (getThreadSlotCount() > maxSize) {
+            clearThreadSlots();
+        }
+        int idleSize = maxSize - fThreadSlots.size();
+        if (fIdleParsers.size() > idleSize) {
+            fIdleParsers.setSize(idleSize);
+        }
+    }
+
+    /** Returns the maximum number of parsers kept by the pool. */
+    public synchronized int getMaxSize() {
+        return fMaxSize;
+    }
+
+    /**
+     * Sets the number of strings a parser's string pool may hold and
+     * still be reused for the next parse.
+     */
+    public synchronized void setStringPoolHighWaterMark(int highWaterMark) {
+        fStringPoolHighWaterMark = highWaterMark;
+    }
+
+    /** Returns the string pool high-water mark. */
+    public synchronized int getStringPoolHighWaterMark() {
+        return fStringPoolHighWaterMark;
+    }
+
+    /** Returns the number of idle parsers in the shared pool. */
+    public synchronized int getIdleCount() {
+        return fIdleParsers.size();
+    }
+
+    /** Returns the number of threads that keep a parser of the pool. */
+    public synchronized int getThreadParserCount() {
+        return getThreadSlotCount();
+    }
+
+    /**
+     * Fills the shared pool with up to the given number of idle
+     * parsers, bounded by the maximum size.
+     */
+    public void warmup(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            synchronized (this) {
+                if (fIdleParsers.size() + getThreadSlotCount() >= fMaxSize) {
+                    return;
+                }
+            }
+            XMLParser parser = fFactory.createParser();
+            synchronized (this) {
+                if (fIdleParsers.size() + getThreadSlotCount() >= fMaxSize) {
+                    return;
+                }
+                fIdleParsers.addElement(parser);
+            }
+        }
+    }
+
+    /**
+     * Returns a parser ready to parse a new document. The parser
+     * last returned by the calling thread is preferred, then an idle
+     * parser from the shared pool; a new parser is created if neither
+     * is available.
+     */
+    public XMLParser borrowParser() throws Exception {
+        ThreadSlot slot = (ThreadSlot)fThreadSlot.get();
+        if (slot != null && slot.fGeneration == fGeneration && slot.fParser != null) {
+            XMLParser parser = slot.fParser;
+            slot.fParser = null;
+            return parser;
+        }
+        synchronized (this) {
+            int size = fIdleParsers.size();
+            if (size > 0) {
+                XMLParser parser = (XMLParser)fIdleParsers.elementAt(size - 1);
+                fIdleParsers.removeElementAt(size - 1);
+                return parser;
+            }
+        }
+        return fFactory.createParser();
+    }
+
+    /**
+     * Returns a borrowed parser to the pool. The parser is reset
+     * immediately so that the documents it produced do not keep it
+     * from being reused; a parser that fails to reset, or for which
+     * the pool has no place left, is dropped.
+     */
+    public void returnParser(XMLParser parser) {
+        if (parser == null) {
+            return;
+        }
+        try {
+            parser.reset(getStringPoolHighWaterMark());
+        }
+        catch (Exception e) {
+            return;
+        }
+        ThreadSlot slot = (ThreadSlot)fThreadSlot.get();
+        if (slot != null && slot.fGeneration == fGeneration) {
+            if (slot.fParser == null) {
+                slot.fParser = parser;
+                return;
+            }
+        }
+        else {
+            slot = null;
+        }
+        synchronized (this) {
+            if (fIdleParsers.size() + getThreadSlotCount() >= fMaxSize) {
+                return;
+            }
+            if (slot == null) {
+                slot = new ThreadSlot();
+                slot.fParser = parser;
+                slot.fGeneration = fGeneration;
+                fThreadSlot.set(slot);
+                fThreadSlots.addElement(new WeakReference(slot));
+                return;
+            }
+            fIdleParsers.addElement(parser);
+        }
+    }
+
+    /**
+     * Removes all idle parsers from the shared pool and releases the
+     * parsers kept by threads. A parser that a thread has borrowed is
+     * dropped when it is returned, unless the pool has a place left.
+     */
+    public synchronized void clear() {
+        fIdleParsers.removeAllElements();
+        clearThreadSlots();
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Returns the number of live thread slots, forgetting dead ones. */
+    private int getThreadSlotCount() {
+        for (int i = fThreadSlots.size() - 1; i >= 0; i--) {
+            if (((WeakReference)fThreadSlots.elementAt(i)).get() == null) {
+                fThreadSlots.removeElementAt(i);
+            }
+        }
+        return fThreadSlots.size();
+    }
+
+    /** Releases the parsers kept by threads and frees their places. */
+    private void clearThreadSlots() {
+        for (int i = 0; i < fThreadSlots.size(); i++) {
+            ThreadSlot slot = (ThreadSlot)((WeakReference)fThreadSlots.elementAt(i)).get();
+            if (slot != null) {
+                slot.fParser = null;
+            }
+        }
+        fThreadSlots.removeAllElements();
+        fGeneration++;
+    }
+
+} // class ParserPool
@@ -0,0 +1,698 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.parsers;
+
+import java.io.IOException;
+
+import org.apache.xerces.framework.XMLAttrList;
+import org.apache.xerces.framework.XMLParser;
+import org.apache.xerces.framework.XMLValidator;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * PullParser provides a cursor over the document events produced by
+ * the scanner. Instead of pushing every event through a handler, the
+ * document is scanned one construct at a time as the application
+ * asks for the next event, so that an application can stop reading
+ * a document, or skip the rest of an element, at any point.
+ * <p>
+ * Character data is reported as a range of a character array that is
+ * only valid until the next call to <code>next()</code>. Adjacent
+ * character data is not guaranteed to be reported as a single event.
+ *
+ * @version
+ */
+public class PullParser
+    extends XMLParser {
+
+    //
+    // Constants
+    //
+
+    // event types
+
+    /** Start of the document. */
+    public static final int START_DOCUMENT = 0;
+
+    /** End of the document. */
+    public static final int END_DOCUMENT = 1;
+
+    /** Start tag of an element. */
+    public static final int START_ELEMENT = 2;
+
+    /** End tag of an element. */
+    public static final int END_ELEMENT = 3;
+
+    /** Character data. */
+    public static final int CHARACTERS = 4;
+
+    /** Whitespace in element content. */
+    public static final int IGNORABLE_WHITESPACE = 5;
+
+    /** Processing instruction. */
+    public static final int PROCESSING_INSTRUCTION = 6;
+
+    /** Comment. */
+    public static final int COMMENT = 7;
+
+    // debugging
+
+    /** Set to true to debug the events. */
+    private static final boolean DEBUG_EVENTS = false;
+
+    //
+    // Data
+    //
+
+    // queued events
+
+    private int fEventCount;
+    private int fEventIndex = -1;
+    private int[] fEventType = new int[16];
+    private int[] fEventDepth = new int[16];
+    private int[] fEventName = new int[16];
+    private int[] fEventTextOffset = new int[16];
+    private int[] fEventTextLength = new int[16];
+    private int[] fEventAttrOffset = new int[16];
+    private int[] fEventAttrCount = new int[16];
+
+    private char[] fText = new char[256];
+    private int fTextLength;
+
+    private int fAttrCount;
+    private String[] fAttrName = new String[8];
+    private String[] fAttrValue = new String[8];
+
+    // state
+
+    private boolean fStarted;
+    private boolean fFinished;
+    private int fDepth;
+    private int fSkipDepth = -1;
+
+    //
+    // Constructors
+    //
+
+    /** Default constructor. */
+    public PullParser() {
+        setSendCharDataAsCharArray(true);
+    }
+
+    //
+    // Public methods
+    //
+
+    // input
+
+    /**
+     * Sets the input source of the document to read. The first event
+     * returned by <code>next()</code> is <code>START_DOCUMENT</code>.
+     *
+     * @param source The input source of the document.
+     */
+    public void setInputSource(InputSource source)
+        throws SAXException, IOException {
+
+        if (fParseInProgress) {
+            // REVISIT: Localize this message.
+            throw new SAXException("setInputSource may not be called while parsing");
+        }
+        clearEvents();
+        fEventIndex = -1;
+        fDepth = 0;
+        fSkipDepth = -1;
+        fStarted = true;
+        fFinished = false;
+        try {
+            if (!parseSomeSetup(source)) {
+                fParseInProgress = false;
+                fFinished = true;
+            }
+        }
+        catch (Exception e) {
+            fail(e);
+        }
+
+    } // setInputSource(InputSource)
+
+    /**
+     * Sets the input source of the document to read.
+     *
+     * @param systemId The system identifier of the document.
+     */
+    public void setInputSource(String systemId)
+        throws SAXException, IOException {
+        setInputSource(new InputSource(systemId));
+    }
+
+    /**
+     * Stops reading the current document. The parser may be given a
+     * new input source afterwards.
+     */
+    public void close() throws SAXException {
+        clearEvents();
+        fEventIndex = -1;
+        fStarted = false;
+        fFinished = true;
+        try {
+            reset();
+        }
+        catch (Exception e) {
+            throw new SAXException(e);
+        }
+        fParseInProgress = false;
+    }
+
+    // cursor
+
+    /**
+     * Returns true if there are more events in the document, that
+     * is, if <code>END_DOCUMENT</code> has not been returned yet.
+     */
+    public boolean hasNext() {
+        if (!fStarted) {
+            return false;
+        }
+        if (fEventIndex != -1 && fEventIndex < fEventCount &&
+            fEventType[fEventIndex] == END_DOCUMENT) {
+            return false;
+        }
+        return fEventIndex + 1 < fEventCount || !fFinished;
+    }
+
+    /**
+     * Advances the cursor to the next event and returns its type.
+     *
+     * @exception IllegalStateException Thrown if there are no more events.
+     */
+    public int next() throws SAXException, IOException {
+
+        if (!hasNext()) {
+            throw new IllegalStateException("no more events");
+        }
+        if (++fEventIndex == fEventCount) {
+            clearEvents();
+            fEventIndex = 0;
+            fill();
+            if (fEventCount == 0) {
+                // input ended without an end of document
+                fEventType[0] = END_DOCUMENT;
+                fEventDepth[0] = 0;
+                fEventName[0] = -1;
+                fEventCount = 1;
+            }
+        }
+        if (DEBUG_EVENTS) {
+            System.err.println("next() " + fEventType[fEventIndex] + " depth " + fEventDepth[fEventIndex]);
+        }
+        return fEventType[fEventIndex];
+
+    } // next():int
+
+    /**
+     * Skips the rest of the current element. If the current event is
+     * <code>START_ELEMENT</code>, the cursor is moved to the matching
+     * <code>END_ELEMENT</code> event without reporting the content of
+     * the element.
+     */
+    public void skipElement() throws SAXException, IOException {
+
+        if (getEventType() != START_ELEMENT) {
+            throw new IllegalStateException("not at start of element");
+        }
+        int depth = fEventDepth[fEventIndex];
+        while (++fEventIndex < fEventCount) {
+            if (fEventType[fEventIndex] == END_ELEMENT &&
+                fEventDepth[fEventIndex] == depth) {
+                return;
+            }
+        }
+        fEventIndex--;
+        fSkipDepth = depth;
+        next();
+
+    } // skipElement()
+
+    // current event
+
+    /** Returns the type of the current event. */
+    public int getEventType() {
+        if (fEventIndex == -1 || fEventIndex >= fEventCount) {
+            throw new IllegalStateException("no current event");
+        }
+        return fEventType[fEventIndex];
+    }
+
+    /**
+     * Returns the element depth of the current event. The root
+     * element is at depth 1.
+     */
+    public int getDepth() {
+        getEventType();
+        return fEventDepth[fEventIndex];
+    }
+
+    /**
+     * Returns the name of the current element or the target of the
+     * current processing instruction; returns null for other events.
+     */
+    public String getName() {
+        getEventType();
+        int name = fEventName[fEventIndex];
+        return name == -1 ? null : fStringPool.toString(name);
+    }
+
+    /**
+     * Returns the characters array holding the text of the current
+     * character data, whitespace, comment or processing instruction
+     * event. The text is valid until the next call to <code>next()</code>.
+     */
+    public char[] getTextCharacters() {
+        getEventType();
+        return fText;
+    }
+
+    /** Returns the offset of the text in the characters array. */
+    public int getTextStart() {
+        getEventType();
+        return fEventTextOffset[fEventIndex];
+    }
+
+    /** Returns the length of the text in the characters array. */
+    public int getTextLength() {
+        getEventType();
+        return fEventTextLength[fEventIndex];
+    }
+
+    /** Returns the text of the current event as a string. */
+    public String getText() {
+        getEventType();
+        return new String(fText, fEventTextOffset[fEventIndex], fEventTextLength[fEventIndex]);
+    }
+
+    /** Returns the number of attributes of the current element. */
+    public int getAttributeCount() {
+        getEventType();
+        return fEventAttrCount[fEventIndex];
+    }
+
+    /** Returns the name of the attribute at the given index. */
+    public String getAttributeName(int index) {
+        return fAttrName[attributeIndex(index)];
+    }
+
+    /** Returns the value of the attribute at the given index. */
+    public String getAttributeValue(int index) {
+        return fAttrValue[attributeIndex(index)];
+    }
+
+    /**
+     * Returns the value of the named attribute of the current element,
+     * or null if the element has no such attribute.
+     */
+    public String getAttributeValue(String name) {
+        getEventType();
+        int offset = fEventAttrOffset[fEventIndex];
+        int end = offset + fEventAttrCount[fEventIndex];
+        for (int i = offset; i < end; i++) {
+            if (fAttrName[i].equals(name)) {
+                return fAttrValue[i];
+            }
+        }
+        return null;
+    }
+
+    //
+    // XMLParser methods
+    //
+
+    /** Resets the parser. */
+    public void reset() throws Exception {
+        super.reset();
+        clearEvents();
+        fEventIndex = -1;
+        fStarted = false;
+        fFinished = true;
+    }
+
+    /** Resets or copies the parser. */
+    public void resetOrCopy() throws Exception {
+        super.resetOrCopy();
+        clearEvents();
+        fEventIndex = -1;
+    }
+
+    // document callbacks
+
+    /** Start document. */
+    public void startDocument(int versionIndex, int encodingIndex, int standaloneIndex)
+        throws Exception {
+        addEvent(START_DOCUMENT, -1);
+        fStringPool.releaseString(versionIndex);
+        fStringPool.releaseString(encodingIndex);
+        fStringPool.releaseString(standaloneIndex);
+    }
+
+    /** End document. */
+    public void endDocument() throws Exception {
+        addEvent(END_DOCUMENT, -1);
+    }
+
+    /** Start namespace declaration scope. */
+    public void startNamespaceDeclScope(int prefix, int uri) throws Exception {
+    }
+
+    /** End namespace declaration scope. */
+    public void endNamespaceDeclScope(int prefix) throws Exception {
+    }
+
+    /** Start element. */
+    public void startElement(int elementType, XMLAttrList attrList, int attrListIndex)
+        throws Exception {
+
+        fDepth++;
+        if (fSkipDepth == -1) {
+            int event = addEvent(START_ELEMENT, elementType);
+            fEventAttrOffset[event] = fAttrCount;
+            int index = attrList.getFirstAttr(attrListIndex);
+            while (index != -1) {
+                if (fAttrCount == fAttrName.length) {
+                    String[] newNames = new String[fAttrCount * 2];
+                    System.arraycopy(fAttrName, 0, newNames, 0, fAttrCount);
+                    fAttrName = newNames;
+                    String[] newValues = new String[fAttrCount * 2];
+                    System.arraycopy(fAttrValue, 0, newValues, 0, fAttrCount);
+                    fAttrValue = newValues;
+                }
+                fAttrName[fAttrCount] = fStringPool.toString(attrList.getAttrName(index));
+                fAttrValue[fAttrCount] = fStringPool.toString(attrList.getAttValue(index));
+                fAttrCount++;
+                index = attrList.getNextAttr(index);
+            }
+            fEventAttrCount[event] = fAttrCount - fEventAttrOffset[event];
+        }
+
+        // free attribute list
+        attrList.releaseAttrList(attrListIndex);
+
+    } // startElement(int,XMLAttrList,int)
+
+    /** End element. */
+    public void endElement(int elementType) throws Exception {
+        if (fSkipDepth == fDepth) {
+            fSkipDepth = -1;
+        }
+        if (fSkipDepth == -1) {
+            addEvent(END_ELEMENT, elementType);
+        }
+        fDepth--;
+    }
+
+    /** Start entity reference. */
+    public void startEntityReference(int entityName, int entityType, int entityContext) throws Exception {
+    }
+
+    /** End entity reference. */
+    public void endEntityReference(int entityName, int entityType, int entityContext) throws Exception {
+    }
+
+    /** Start CDATA section. */
+    public void startCDATA() throws Exception {
+    }
+
+    /** End CDATA section. */
+    public void endCDATA() throws Exception {
+    }
+
+    /** Processing instruction. */
+    public void processingInstruction(int piTarget, int piData) throws Exception {
+        if (fSkipDepth == -1) {
+            int event = addEvent(PROCESSING_INSTRUCTION, piTarget);
+            if (piData != -1) {
+                appendText(event, fStringPool.toString(piData));
+            }
+        }
+        fStringPool.releaseString(piData);
+    }
+
+    /** Comment. */
+    public void comment(int dataIndex) throws Exception {
+        if (fSkipDepth == -1) {
+            appendText(addEvent(COMMENT, -1), fStringPool.toString(dataIndex));
+        }
+        fStringPool.releaseString(dataIndex);
+    }
+
+    /** Characters. */
+    public void characters(int dataIndex) throws Exception {
+        if (fSkipDepth == -1) {
+            appendText(addTextEvent(CHARACTERS), fStringPool.toString(dataIndex));
+        }
+        fStringPool.releaseString(dataIndex);
+    }
+
+    /** Characters. */
+    public void characters(char ch[], int start, int length) throws Exception {
+        if (fSkipDepth == -1) {
+            appendText(addTextEvent(CHARACTERS), ch, start, length);
+        }
+    }
+
+    /** Ignorable whitespace. */
+    public void ignorableWhitespace(int dataIndex) throws Exception {
+        if (fSkipDepth == -1) {
+            appendText(addTextEvent(IGNORABLE_WHITESPACE), fStringPool.toString(dataIndex));
+        }
+        fStringPool.releaseString(dataIndex);
+    }
+
+    /** Ignorable whitespace. */
+    public void ignorableWhitespace(char ch[], int start, int length) throws Exception {
+        if (fSkipDepth == -1) {
+            appendText(addTextEvent(IGNORABLE_WHITESPACE), ch, start, length);
+        }
+    }
+
+    // DTD callbacks
+
+    /** Start DTD. */
+    public void startDTD(int rootElementType, int publicId, int systemId) throws Exception {
+    }
+
+    /** End DTD. */
+    public void endDTD() throws Exception {
+    }
+
+    /** Element declaration. */
+    public void elementDecl(int elementType, XMLValidator.ContentSpec contentSpec) throws Exception {
+    }
+
+    /** Attribute list declaration. */
+    public void attlistDecl(int elementType, int attrName, int attType,
+                            String enumString, int attDefaultType,
+                            int attDefaultValue) throws Exception {
+    }
+
+    /** Internal parameter entity declaration. */
+    public void internalPEDecl(int entityName, int entityValue) throws Exception {
+    }
+
+    /** External parameter entity declaration. */
+    public void externalPEDecl(int entityName, int publicId, int systemId) throws Exception {
+    }
+
+    /** Internal entity declaration. */
+    public void internalEntityDecl(int entityName, int entityValue) throws Exception {
+    }
+
+    /** External entity declaration. */
+    public void externalEntityDecl(int entityName, int publicId, int systemId) throws Exception {
+    }
+
+    /** Unparsed entity declaration. */
+    public void unparsedEntityDecl(int entityName, int publicId, int systemId,
+                                   int notationName) throws Exception {
+    }
+
+    /** Notation declaration. */
+    public void notationDecl(int notationName, int publicId, int systemId) throws Exception {
+    }
+
+    //
+    // Private methods
+    //
+
+    /** Scans until at least one event is queued or the input ends. */
+    private void fill() throws SAXException, IOException {
+        try {
+            while (fEventCount == 0 && !fFinished) {
+                if (!parseSome()) {
+                    fFinished = true;
+                }
+            }
+        }
+        catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    /** Ends the parse and rethrows the given exception. */
+    private void fail(Exception e) throws SAXException, IOException {
+        fParseInProgress = false;
+        fFinished = true;
+        if (e instanceof SAXException) {
+            throw (SAXException)e;
+        }
+        if (e instanceof IOException) {
+            throw (IOException)e;
+        }
+        throw new SAXException(e);
+    }
+
+    /** Removes all queued events. */
+    private void clearEvents() {
+        fEventCount = 0;
+        fTextLength = 0;
+        fAttrCount = 0;
+    }
+
+    /** Queues an event and returns its index. */
+    private int addEvent(int type, int name) {
+        if (fEventCount == fEventType.length) {
+            int newSize = fEventCount * 2;
+            fEventType = resize(fEventType, newSize);
+            fEventDepth = resize(fEventDepth, newSize);
+            fEventName = resize(fEventName, newSize);
+            fEventTextOffset = resize(fEventTextOffset, newSize);
+            fEventTextLength = resize(fEventTextLength, newSize);
+            fEventAttrOffset = resize(fEventAttrOffset, newSize);
+            fEventAttrCount = resize(fEventAttrCount, newSize);
+        }
+        int event = fEventCount++;
+        fEventType[event] = type;
+        fEventDepth[event] = fDepth;
+        fEventName[event] = name;
+        fEventTextOffset[event] = fTextLength;
+        fEventTextLength[event] = 0;
+        fEventAttrOffset[event] = fAttrCount;
+        fEventAttrCount[event] = 0;
+        return event;
+    }
+
+    /**
+     * Queues a text event, or returns the last queued event if it is a
+     * text event of the same type so that the text can be appended.
+     */
+    private int addTextEvent(int type) {
+        int last = fEventCount - 1;
+        if (last >= 0 && fEventType[last] == type &&
+            fEventTextOffset[last] + fEventTextLength[last] == fTextLength) {
+            return last;
+        }
+        return addEvent(type, -1);
+    }
+
+    /** Appends text to the given event. */
+    private void appendText(int event, char ch[], int start, int length) {
+        ensureTextCapacity(length);
+        System.arraycopy(ch, start, fText, fTextLength, length);
+        fTextLength += length;
+        fEventTextLength[event] += length;
+    }
+
+    /** Appends text to the given event. */
+    private void appendText(int event, String str) {
+        int length = str.length();
+        ensureTextCapacity(length);
+        str.getChars(0, length, fText, fTextLength);
+        fTextLength += length;
+        fEventTextLength[event] += length;
+    }
+
+    /** Ensures that the text buffer can hold more characters. */
+    private void ensureTextCapacity(int length) {
+        if (fTextLength + length > fText.length) {
+            int newSize = fText.length * 2;
+            while (fTextLength + length > newSize) {
+                newSize *= 2;
+            }
+            char[] newText = new char[newSize];
+            System.arraycopy(fText, 0, newText, 0, fTextLength);
+            fText = newText;
+        }
+    }
+
+    /** Returns the index in the attribute arrays of the given attribute. */
+    private int attributeIndex(int index) {
+        if (index < 0 || index >= getAttributeCount()) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return fEventAttrOffset[fEventIndex] + index;
+    }
+
+    /** Returns a copy of the array with the given size. */
+    private static int[] resize(int[] array, int newSize) {
+        int[] newArray = new int[newSize];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+} // class PullParser
@@ -107,12 +107,15 @@ final class StringReader extends XMLEntityReader {
                                                   StringPool stringPool,
                                                   boolean addEnclosingSpaces)
     {
-        StringReader reader = fgFreeReaders;
+        FreeList freeList = getFreeList();
+        StringReader reader = freeList.fHead;
         if (reader == null) {
             return new StringReader(entityHandler, errorReporter, sendCharDataAsCharArray, lineNumber, columnNumber,
                                     stringHandle, stringPool, addEnclosingSpaces);
         }
-        fgFreeReaders = reader.fNextFreeReader;
+        freeList.fHead = reader.fNextFreeReader;
+        freeList.fCount--;
+        reader.fNextFreeReader = null;
         reader.init(entityHandler, errorReporter, sendCharDataAsCharArray, lineNumber, columnNumber,
                     stringHandle, stringPool, addEnclosingSpaces);
         return reader;
@@ -211,11 +214,31 @@ final class StringReader extends XMLEntityReader {
     //
     public XMLEntityHandler.EntityReader changeReaders() throws Exception {
         XMLEntityHandler.EntityReader nextReader = super.changeReaders();
-        fNextFreeReader = fgFreeReaders;
-        fgFreeReaders = this;
+        FreeList freeList = getFreeList();
+        if (freeList.fCount < MAX_FREE_READERS) {
+            fNextFreeReader = freeList.fHead;
+            freeList.fHead = this;
+            freeList.fCount++;
+        }
         return nextReader;
     }
     //
+    // The free list is kept per thread, so that parsers running on
+    // different threads never share a reader.
+    //
+    private static FreeList getFreeList() {
+        FreeList freeList = (FreeList)fgFreeList.get();
+        if (freeList == null) {
+            freeList = new FreeList();
+            fgFreeList.set(freeList);
+        }
+        return freeList;
+    }
+    private static final class FreeList {
+        StringReader fHead = null;
+        int fCount = 0;
+    }
+    //
     //
     //
     public boolean lookingAtChar(char chr, boolean skipPastChar) throws Exception {
@@ -928,5 +951,6 @@ final class StringReader extends XMLEntityReader {
     private boolean oweTrailingSpace = false;
     private int fMostRecentChar;
     private StringReader fNextFreeReader = null;
-    private static StringReader fgFreeReaders = null;
+    private static final int MAX_FREE_READERS = 32;
+    private static final ThreadLocal fgFreeList = new ThreadLocal();
 }
@@ -58,6 +58,8 @@
 package org.apache.xerces.readers;
 
 import org.apache.xerces.framework.XMLErrorReporter;
+import org.apache.xerces.framework.XMLParseMetrics;
+import org.apache.xerces.utils.ChunkyByteArray;
 import org.apache.xerces.utils.StringPool;
 import org.apache.xerces.utils.SymbolCache;
 import org.apache.xerces.utils.UTF8DataChunk;
@@ -65,6 +67,7 @@ import org.apache.xerces.utils.XMLCharacterProperties;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.LocatorImpl;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Vector;
 
 /**
@@ -95,6 +98,22 @@ final class UTF8Reader extends XMLEntityReader {
     //
     private final static boolean USE_OUT_OF_LINE_LOAD_NEXT_BYTE = false;
     private final static boolean USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE = true;
+    private final static boolean USE_WORD_AT_A_TIME_CHAR_DATA_SCAN = true;
+    //
+    // Masks for testing the four bytes of an int at once.
+    //
+    private final static int WORD_ONES = 0x01010101;
+    private final static int WORD_HIGH_BITS = 0x80808080;
+    private final static int WORD_CONTROL = 0x20202020;
+    private final static int WORD_LT = 0x3C3C3C3C;
+    private final static int WORD_AMP = 0x26262626;
+    private final static int WORD_RSB = 0x5D5D5D5D;
+    //
+    // When sending character data as a char array, the buffer grows so
+    // that a run of character data reaches the handler in one call.  Past
+    // this many characters the run is flushed in pieces instead.
+    //
+    private final static int MAX_CHAR_DATA_BUFFER = 1 << 20;
     //
     //
     //
@@ -144,8 +163,8 @@ final class UTF8Reader extends XMLEntityReader {
         if (fCurrentChunk.nextChunk() != null) {
             fCurrentChunk = fCurrentChunk.nextChunk();
             fCurrentIndex = 0;
-            fMostRecentData = fCurrentChunk.toByteArray();
-            return (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+            fMostRecentData = fCurrentChunk.toByteBuffer();
+            return (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
         } else {
             fCurrentChunk = UTF8DataChunk.createChunk(fStringPool, fCurrentChunk);
             return fillCurrentChunk();
@@ -156,16 +175,16 @@ final class UTF8Reader extends XMLEntityReader {
         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
             fCurrentIndex++;
             try {
-                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                 return fMostRecentByte;
-            } catch (ArrayIndexOutOfBoundsException ex) {
+            } catch (IndexOutOfBoundsException ex) {
                 return slowLoadNextByte();
             }
         } else {
             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                 return slowLoadNextByte();
             else
-                return (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                return (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
         }
     }
     //
@@ -207,16 +226,16 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                                 b0 = fMostRecentByte;
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                            } catch (IndexOutOfBoundsException ex) {
                                 b0 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b0 = slowLoadNextByte();
                             else
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     if (b0 == 0x0A) {
@@ -228,15 +247,15 @@ final class UTF8Reader extends XMLEntityReader {
                             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                                 fCurrentIndex++;
                                 try {
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                                } catch (ArrayIndexOutOfBoundsException ex) {
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                                } catch (IndexOutOfBoundsException ex) {
                                     slowLoadNextByte();
                                 }
                             } else {
                                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                     slowLoadNextByte();
                                 else
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                             }
                         }
                     }
@@ -256,15 +275,15 @@ final class UTF8Reader extends XMLEntityReader {
                 if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                     fCurrentIndex++;
                     try {
-                        fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                    } catch (ArrayIndexOutOfBoundsException ex) {
+                        fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                    } catch (IndexOutOfBoundsException ex) {
                         slowLoadNextByte();
                     }
                 } else {
                     if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                         slowLoadNextByte();
                     else
-                        fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                        fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                 }
             }
         }
@@ -286,15 +305,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                            } catch (IndexOutOfBoundsException ex) {
                                 slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 slowLoadNextByte();
                             else
-                                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                         }
                     }
                 }
@@ -311,15 +330,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                            } catch (IndexOutOfBoundsException ex) {
                                 slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 slowLoadNextByte();
                             else
-                                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                         }
                     }
                 }
@@ -336,16 +355,16 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                                 b0 = fMostRecentByte;
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                            } catch (IndexOutOfBoundsException ex) {
                                 b0 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b0 = slowLoadNextByte();
                             else
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     if (b0 == 0x0A) {
@@ -357,15 +376,15 @@ final class UTF8Reader extends XMLEntityReader {
                             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                                 fCurrentIndex++;
                                 try {
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                                } catch (ArrayIndexOutOfBoundsException ex) {
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                                } catch (IndexOutOfBoundsException ex) {
                                     slowLoadNextByte();
                                 }
                             } else {
                                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                     slowLoadNextByte();
                                 else
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                             }
                         }
                     }
@@ -394,7 +413,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
             }
             return true; // [#x20-#xD7FF]
@@ -416,7 +435,7 @@ final class UTF8Reader extends XMLEntityReader {
             fCurrentChunk = saveChunk;
             fCurrentIndex = saveIndex;
             fCurrentOffset = saveOffset;
-            fMostRecentData = saveChunk.toByteArray();
+            fMostRecentData = saveChunk.toByteBuffer();
             fMostRecentByte = b0;
             return result;
         }
@@ -435,7 +454,7 @@ final class UTF8Reader extends XMLEntityReader {
         fCurrentChunk = saveChunk;
         fCurrentIndex = saveIndex;
         fCurrentOffset = saveOffset;
-        fMostRecentData = saveChunk.toByteArray();
+        fMostRecentData = saveChunk.toByteBuffer();
         fMostRecentByte = b0;
         return result;
     }
@@ -467,16 +486,16 @@ final class UTF8Reader extends XMLEntityReader {
                 if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                     fCurrentIndex++;
                     try {
-                        fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                        fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                         ch = fMostRecentByte;
-                    } catch (ArrayIndexOutOfBoundsException ex) {
+                    } catch (IndexOutOfBoundsException ex) {
                         ch = slowLoadNextByte();
                     }
                 } else {
                     if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                         ch = slowLoadNextByte();
                     else
-                        ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                        ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                 }
             }
             if (ch != 0x0A)
@@ -497,15 +516,15 @@ final class UTF8Reader extends XMLEntityReader {
             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                 fCurrentIndex++;
                 try {
-                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                } catch (ArrayIndexOutOfBoundsException ex) {
+                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                } catch (IndexOutOfBoundsException ex) {
                     slowLoadNextByte();
                 }
             } else {
                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                     slowLoadNextByte();
                 else
-                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
             }
         }
         return true;
@@ -576,16 +595,16 @@ final class UTF8Reader extends XMLEntityReader {
                     if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                         fCurrentIndex++;
                         try {
-                            fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                            fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                             ch = fMostRecentByte;
-                        } catch (ArrayIndexOutOfBoundsException ex) {
+                        } catch (IndexOutOfBoundsException ex) {
                             ch = slowLoadNextByte();
                         }
                     } else {
                         if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                             ch = slowLoadNextByte();
                         else
-                            ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                            ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                     }
                 }
                 if (ch != 0x0A)
@@ -603,16 +622,16 @@ final class UTF8Reader extends XMLEntityReader {
                 if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                     fCurrentIndex++;
                     try {
-                        fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                        fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                         ch = fMostRecentByte;
-                    } catch (ArrayIndexOutOfBoundsException ex) {
+                    } catch (IndexOutOfBoundsException ex) {
                         ch = slowLoadNextByte();
                     }
                 } else {
                     if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                         ch = slowLoadNextByte();
                     else
-                        ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                        ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                 }
             }
         }
@@ -630,7 +649,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
                 return false;
             }
@@ -643,7 +662,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
                 return false;
             }
@@ -651,7 +670,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
                 return false;
             }
@@ -660,7 +679,7 @@ final class UTF8Reader extends XMLEntityReader {
             fCurrentChunk = saveChunk;
             fCurrentIndex = saveIndex;
             fCurrentOffset = saveOffset;
-            fMostRecentData = saveChunk.toByteArray();
+            fMostRecentData = saveChunk.toByteBuffer();
             fMostRecentByte = b0;
             return false;
         }
@@ -712,18 +731,18 @@ final class UTF8Reader extends XMLEntityReader {
     //
     public boolean skippedString(char[] s) throws Exception {
         int length = s.length;
-        byte[] data = fMostRecentData;
+        ByteBuffer data = fMostRecentData;
         int index = fCurrentIndex + length;
         int sindex = length;
         try {
             while (sindex-- > 0) {
-                if (data[--index] != s[sindex])
+                if (data.get(--index) != s[sindex])
                     return false;
             }
-        } catch (ArrayIndexOutOfBoundsException ex) {
+        } catch (IndexOutOfBoundsException ex) {
             int i = 0;
             while (index < UTF8DataChunk.CHUNK_SIZE) {
-                if (data[index++] != s[i++])
+                if (data.get(index++) != s[i++])
                     return false;
             }
             UTF8DataChunk dataChunk = fCurrentChunk;
@@ -733,12 +752,12 @@ final class UTF8Reader extends XMLEntityReader {
             data = fMostRecentData;
             index = 0;
             while (i < length) {
-                if (data[index++] != s[i++]) {
+                if (data.get(index++) != s[i++]) {
                     fCurrentChunk = dataChunk;
                     fCurrentIndex = savedIndex;
                     fCurrentOffset = savedOffset;
-                    fMostRecentData = fCurrentChunk.toByteArray();
-                    fMostRecentByte = fMostRecentData[savedIndex] & 0xFF;
+                    fMostRecentData = fCurrentChunk.toByteBuffer();
+                    fMostRecentByte = fMostRecentData.get(savedIndex) & 0xFF;
                     return false;
                 }
             }
@@ -747,8 +766,8 @@ final class UTF8Reader extends XMLEntityReader {
         fCurrentOffset += length;
         fCurrentIndex += length;
         try {
-            fMostRecentByte = data[fCurrentIndex] & 0xFF;
-        } catch (ArrayIndexOutOfBoundsException ex) {
+            fMostRecentByte = data.get(fCurrentIndex) & 0xFF;
+        } catch (IndexOutOfBoundsException ex) {
             slowLoadNextByte();
         }
         return true;
@@ -911,15 +930,15 @@ final class UTF8Reader extends XMLEntityReader {
                             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                                 fCurrentIndex++;
                                 try {
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                                } catch (ArrayIndexOutOfBoundsException ex) {
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                                } catch (IndexOutOfBoundsException ex) {
                                     slowLoadNextByte();
                                 }
                             } else {
                                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                     slowLoadNextByte();
                                 else
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                             }
                         }
                         return result;
@@ -935,15 +954,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                            } catch (IndexOutOfBoundsException ex) {
                                 b0 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b0 = slowLoadNextByte();
                             else
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     continue;
@@ -1007,15 +1026,15 @@ final class UTF8Reader extends XMLEntityReader {
                             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                                 fCurrentIndex++;
                                 try {
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                                } catch (ArrayIndexOutOfBoundsException ex) {
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                                } catch (IndexOutOfBoundsException ex) {
                                     slowLoadNextByte();
                                 }
                             } else {
                                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                     slowLoadNextByte();
                                 else
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                             }
                         }
                         return result;
@@ -1031,15 +1050,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                            } catch (IndexOutOfBoundsException ex) {
                                 b0 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b0 = slowLoadNextByte();
                             else
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     continue;
@@ -1053,15 +1072,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                            } catch (IndexOutOfBoundsException ex) {
                                 b0 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b0 = slowLoadNextByte();
                             else
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     continue;
@@ -1075,15 +1094,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                            } catch (IndexOutOfBoundsException ex) {
                                 b0 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b0 = slowLoadNextByte();
                             else
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     if (b0 != 0x0A) {
@@ -1097,15 +1116,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                            } catch (IndexOutOfBoundsException ex) {
                                 b0 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b0 = slowLoadNextByte();
                             else
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     continue;
@@ -1163,15 +1182,15 @@ final class UTF8Reader extends XMLEntityReader {
                     if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                         fCurrentIndex++;
                         try {
-                            b1 = fMostRecentData[fCurrentIndex] & 0xFF;
-                        } catch (ArrayIndexOutOfBoundsException ex) {
+                            b1 = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                        } catch (IndexOutOfBoundsException ex) {
                             b1 = slowLoadNextByte();
                         }
                     } else {
                         if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                             b1 = slowLoadNextByte();
                         else
-                            b1 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                            b1 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                     }
                 }
                 if ((0xe0 & b0) == 0xc0) { // 110yyyyy 10xxxxxx
@@ -1182,7 +1201,7 @@ final class UTF8Reader extends XMLEntityReader {
                         fCurrentChunk = saveChunk;
                         fCurrentIndex = saveIndex;
                         fCurrentOffset = saveOffset;
-                        fMostRecentData = saveChunk.toByteArray();
+                        fMostRecentData = saveChunk.toByteBuffer();
                         fMostRecentByte = b0;
                         skipPastNmtoken(fastcheck);
                         return false;
@@ -1196,15 +1215,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                b2 = fMostRecentData[fCurrentIndex] & 0xFF;
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                b2 = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                            } catch (IndexOutOfBoundsException ex) {
                                 b2 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b2 = slowLoadNextByte();
                             else
-                                b2 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b2 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     if ((0xf0 & b0) == 0xe0) { // 1110zzzz 10yyyyyy 10xxxxxx
@@ -1213,7 +1232,7 @@ final class UTF8Reader extends XMLEntityReader {
                             fCurrentChunk = saveChunk;
                             fCurrentIndex = saveIndex;
                             fCurrentOffset = saveOffset;
-                            fMostRecentData = saveChunk.toByteArray();
+                            fMostRecentData = saveChunk.toByteBuffer();
                             fMostRecentByte = b0;
                             return false;
                         }
@@ -1224,7 +1243,7 @@ final class UTF8Reader extends XMLEntityReader {
                             fCurrentChunk = saveChunk;
                             fCurrentIndex = saveIndex;
                             fCurrentOffset = saveOffset;
-                            fMostRecentData = saveChunk.toByteArray();
+                            fMostRecentData = saveChunk.toByteBuffer();
                             fMostRecentByte = b0;
                             skipPastNmtoken(fastcheck);
                             return false;
@@ -1233,7 +1252,7 @@ final class UTF8Reader extends XMLEntityReader {
                         fCurrentChunk = saveChunk;
                         fCurrentIndex = saveIndex;
                         fCurrentOffset = saveOffset;
-                        fMostRecentData = saveChunk.toByteArray();
+                        fMostRecentData = saveChunk.toByteBuffer();
                         fMostRecentByte = b0;
                         return false;
                     }
@@ -1246,15 +1265,15 @@ final class UTF8Reader extends XMLEntityReader {
             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                 fCurrentIndex++;
                 try {
-                    b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                } catch (ArrayIndexOutOfBoundsException ex) {
+                    b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                } catch (IndexOutOfBoundsException ex) {
                     b0 = slowLoadNextByte();
                 }
             } else {
                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                     b0 = slowLoadNextByte();
                 else
-                    b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                    b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
             }
         }
         if (ch == fastcheck)
@@ -1282,15 +1301,15 @@ final class UTF8Reader extends XMLEntityReader {
         }
         int offset = fCurrentOffset;
         int index = fCurrentIndex;
-        byte[] data = fMostRecentData;
+        ByteBuffer data = fMostRecentData;
         int prefixend = -1;
         while (true) {
             fCharacterCounter++;
             fCurrentOffset++;
             index++;
             try {
-                ch = data[index] & 0xFF;
-            } catch (ArrayIndexOutOfBoundsException ex) {
+                ch = data.get(index) & 0xFF;
+            } catch (IndexOutOfBoundsException ex) {
                 ch = slowLoadNextByte();
                 index = 0;
                 data = fMostRecentData;
@@ -1312,14 +1331,14 @@ final class UTF8Reader extends XMLEntityReader {
                     // at the first colon.
                     //
                     try {
-                        ch = data[index + 1] & 0xFF;
-                    } catch (ArrayIndexOutOfBoundsException ex) {
+                        ch = data.get(index + 1) & 0xFF;
+                    } catch (IndexOutOfBoundsException ex) {
                         UTF8DataChunk savedChunk = fCurrentChunk;
                         int savedOffset = fCurrentOffset;
                         ch = slowLoadNextByte();
                         fCurrentChunk = savedChunk;
                         fCurrentOffset = savedOffset;
-                        fMostRecentData = fCurrentChunk.toByteArray();
+                        fMostRecentData = fCurrentChunk.toByteBuffer();
                     }
                     boolean lpok = true;
                     if (ch < 0x80) {
@@ -1364,15 +1383,15 @@ final class UTF8Reader extends XMLEntityReader {
             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                 fCurrentIndex++;
                 try {
-                    b1 = fMostRecentData[fCurrentIndex] & 0xFF;
-                } catch (ArrayIndexOutOfBoundsException ex) {
+                    b1 = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                } catch (IndexOutOfBoundsException ex) {
                     b1 = slowLoadNextByte();
                 }
             } else {
                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                     b1 = slowLoadNextByte();
                 else
-                    b1 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                    b1 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
             }
         }
         if ((0xe0 & b0) == 0xc0) { // 110yyyyy 10xxxxxx
@@ -1381,7 +1400,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
                 return -1;
             }
@@ -1396,15 +1415,15 @@ final class UTF8Reader extends XMLEntityReader {
             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                 fCurrentIndex++;
                 try {
-                    b2 = fMostRecentData[fCurrentIndex] & 0xFF;
-                } catch (ArrayIndexOutOfBoundsException ex) {
+                    b2 = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                } catch (IndexOutOfBoundsException ex) {
                     b2 = slowLoadNextByte();
                 }
             } else {
                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                     b2 = slowLoadNextByte();
                 else
-                    b2 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                    b2 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
             }
         }
         if ((0xf0 & b0) == 0xe0) { // 1110zzzz 10yyyyyy 10xxxxxx
@@ -1413,7 +1432,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
                 return -1;
             }
@@ -1422,7 +1441,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
                 return -1;
             }
@@ -1433,7 +1452,7 @@ final class UTF8Reader extends XMLEntityReader {
         fCurrentChunk = saveChunk;
         fCurrentIndex = saveIndex;
         fCurrentOffset = saveOffset;
-        fMostRecentData = saveChunk.toByteArray();
+        fMostRecentData = saveChunk.toByteBuffer();
         fMostRecentByte = b0;
         return -1;
     }
@@ -1463,15 +1482,15 @@ final class UTF8Reader extends XMLEntityReader {
                 if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                     fCurrentIndex++;
                     try {
-                        b1 = fMostRecentData[fCurrentIndex] & 0xFF;
-                    } catch (ArrayIndexOutOfBoundsException ex) {
+                        b1 = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                    } catch (IndexOutOfBoundsException ex) {
                         b1 = slowLoadNextByte();
                     }
                 } else {
                     if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                         b1 = slowLoadNextByte();
                     else
-                        b1 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                        b1 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                 }
             }
             if ((0xe0 & b0) == 0xc0) { // 110yyyyy 10xxxxxx
@@ -1480,7 +1499,7 @@ final class UTF8Reader extends XMLEntityReader {
                     fCurrentChunk = saveChunk;
                     fCurrentIndex = saveIndex;
                     fCurrentOffset = saveOffset;
-                    fMostRecentData = saveChunk.toByteArray();
+                    fMostRecentData = saveChunk.toByteBuffer();
                     fMostRecentByte = b0;
                     return -1;
                 }
@@ -1493,15 +1512,15 @@ final class UTF8Reader extends XMLEntityReader {
                     if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                         fCurrentIndex++;
                         try {
-                            b2 = fMostRecentData[fCurrentIndex] & 0xFF;
-                        } catch (ArrayIndexOutOfBoundsException ex) {
+                            b2 = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                        } catch (IndexOutOfBoundsException ex) {
                             b2 = slowLoadNextByte();
                         }
                     } else {
                         if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                             b2 = slowLoadNextByte();
                         else
-                            b2 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                            b2 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                     }
                 }
                 if ((0xf0 & b0) == 0xe0) { // 1110zzzz 10yyyyyy 10xxxxxx
@@ -1510,7 +1529,7 @@ final class UTF8Reader extends XMLEntityReader {
                         fCurrentChunk = saveChunk;
                         fCurrentIndex = saveIndex;
                         fCurrentOffset = saveOffset;
-                        fMostRecentData = saveChunk.toByteArray();
+                        fMostRecentData = saveChunk.toByteBuffer();
                         fMostRecentByte = b0;
                         return -1;
                     }
@@ -1519,7 +1538,7 @@ final class UTF8Reader extends XMLEntityReader {
                         fCurrentChunk = saveChunk;
                         fCurrentIndex = saveIndex;
                         fCurrentOffset = saveOffset;
-                        fMostRecentData = saveChunk.toByteArray();
+                        fMostRecentData = saveChunk.toByteBuffer();
                         fMostRecentByte = b0;
                         return -1;
                     }
@@ -1527,7 +1546,7 @@ final class UTF8Reader extends XMLEntityReader {
                     fCurrentChunk = saveChunk;
                     fCurrentIndex = saveIndex;
                     fCurrentOffset = saveOffset;
-                    fMostRecentData = saveChunk.toByteArray();
+                    fMostRecentData = saveChunk.toByteBuffer();
                     fMostRecentByte = b0;
                     return -1;
                 }
@@ -1541,15 +1560,15 @@ final class UTF8Reader extends XMLEntityReader {
             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                 fCurrentIndex++;
                 try {
-                    b0 = fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                } catch (ArrayIndexOutOfBoundsException ex) {
+                    b0 = fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                } catch (IndexOutOfBoundsException ex) {
                     b0 = slowLoadNextByte();
                 }
             } else {
                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                     b0 = slowLoadNextByte();
                 else
-                    b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                    b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
             }
         }
         return scanMatchingName(ch, b0, fastcheck);
@@ -1569,6 +1588,8 @@ final class UTF8Reader extends XMLEntityReader {
                 if (entries[offset + SymbolCache.CHAR_OFFSET] == ch) {
                     if (entries[offset + SymbolCache.INDEX_OFFSET] != -1) {
                         int symbolIndex = entries[offset + SymbolCache.INDEX_OFFSET];
+                        if (fMetrics != null)
+                            fMetrics.symbolCacheHits++;
                         if (totalMisses > 3)
                             fStringPool.updateCacheLine(symbolIndex, totalMisses, 1);
                         return symbolIndex;
@@ -1601,6 +1622,8 @@ final class UTF8Reader extends XMLEntityReader {
                 }
                 entries[offset + SymbolCache.NEXT_OFFSET] = -1;
             }
+            if (fMetrics != null)
+                fMetrics.symbolCacheMisses++;
             int result = fStringPool.createNonMatchingSymbol(startOffset, entry, entries, offset);
             return result;
         }
@@ -1637,24 +1660,28 @@ final class UTF8Reader extends XMLEntityReader {
                     if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                         fCurrentIndex++;
                         try {
-                            b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                        } catch (ArrayIndexOutOfBoundsException ex) {
+                            b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                        } catch (IndexOutOfBoundsException ex) {
                             b0 = slowLoadNextByte();
                         }
                     } else {
                         if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                             b0 = slowLoadNextByte();
                         else
-                            b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                            b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                     }
                 }
             }
             if (ch == -1) {
                 if (entries[offset + SymbolCache.INDEX_OFFSET] == -1) {
+                    if (fMetrics != null)
+                        fMetrics.symbolCacheMisses++;
                     return fStringPool.createNonMatchingSymbol(startOffset, entry, entries, offset);
                 }
                 cache.fSymbolCharsOffset = startOffset;
                 int symbolIndex = entries[offset + SymbolCache.INDEX_OFFSET];
+                if (fMetrics != null)
+                    fMetrics.symbolCacheHits++;
                 if (totalMisses > (depth * 3))
                     fStringPool.updateCacheLine(symbolIndex, totalMisses, depth);
                 return symbolIndex;
@@ -1720,15 +1747,15 @@ final class UTF8Reader extends XMLEntityReader {
                     if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                         fCurrentIndex++;
                         try {
-                            b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                        } catch (ArrayIndexOutOfBoundsException ex) {
+                            b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                        } catch (IndexOutOfBoundsException ex) {
                             b0 = slowLoadNextByte();
                         }
                     } else {
                         if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                             b0 = slowLoadNextByte();
                         else
-                            b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                            b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                     }
                 }
             }
@@ -1760,6 +1787,8 @@ final class UTF8Reader extends XMLEntityReader {
             cache.fSymbolCharsOffset++;
         }
 
+        if (fMetrics != null)
+            fMetrics.symbolCacheMisses++;
         int result = fStringPool.createNonMatchingSymbol(startOffset, entry, entries, offset);
         return result;
     }
@@ -1824,15 +1853,15 @@ final class UTF8Reader extends XMLEntityReader {
                 if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                     fCurrentIndex++;
                     try {
-                        b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                    } catch (ArrayIndexOutOfBoundsException ex) {
+                        b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                    } catch (IndexOutOfBoundsException ex) {
                         b0 = slowLoadNextByte();
                     }
                 } else {
                     if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                         b0 = slowLoadNextByte();
                     else
-                        b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                        b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                 }
             }
             int expectedName = elementType;
@@ -1855,15 +1884,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                            } catch (IndexOutOfBoundsException ex) {
                                 b0 = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 b0 = slowLoadNextByte();
                             else
-                                b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                     //
@@ -1873,8 +1902,8 @@ final class UTF8Reader extends XMLEntityReader {
                         fCurrentChunk = savedChunk;
                         fCurrentIndex = savedIndex;
                         fCurrentOffset = savedOffset;
-                        fMostRecentData = fCurrentChunk.toByteArray();
-                        fMostRecentByte = fMostRecentData[savedIndex] & 0xFF;
+                        fMostRecentData = fCurrentChunk.toByteBuffer();
+                        fMostRecentByte = fMostRecentData.get(savedIndex) & 0xFF;
                         return XMLEntityHandler.CONTENT_RESULT_START_OF_ETAG;
                     }
                 }
@@ -1887,15 +1916,15 @@ final class UTF8Reader extends XMLEntityReader {
                     if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                         fCurrentIndex++;
                         try {
-                            b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                        } catch (ArrayIndexOutOfBoundsException ex) {
+                            b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                        } catch (IndexOutOfBoundsException ex) {
                             b0 = slowLoadNextByte();
                         }
                     } else {
                         if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                             b0 = slowLoadNextByte();
                         else
-                            b0 = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                            b0 = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                     }
                 }
                 if (b0 == '>') {
@@ -1907,15 +1936,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                            } catch (IndexOutOfBoundsException ex) {
                                 slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 slowLoadNextByte();
                             else
-                                fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                         }
                     }
                     return XMLEntityHandler.CONTENT_RESULT_MATCHING_ETAG;
@@ -1946,15 +1975,15 @@ final class UTF8Reader extends XMLEntityReader {
                             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                                 fCurrentIndex++;
                                 try {
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
-                                } catch (ArrayIndexOutOfBoundsException ex) {
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
+                                } catch (IndexOutOfBoundsException ex) {
                                     slowLoadNextByte();
                                 }
                             } else {
                                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                     slowLoadNextByte();
                                 else
-                                    fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF;
+                                    fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF;
                             }
                         }
                         return XMLEntityHandler.CONTENT_RESULT_MATCHING_ETAG;
@@ -1963,8 +1992,8 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = savedChunk;
                 fCurrentIndex = savedIndex;
                 fCurrentOffset = savedOffset;
-                fMostRecentData = fCurrentChunk.toByteArray();
-                fMostRecentByte = fMostRecentData[savedIndex] & 0xFF;
+                fMostRecentData = fCurrentChunk.toByteBuffer();
+                fMostRecentByte = fMostRecentData.get(savedIndex) & 0xFF;
             }
             return XMLEntityHandler.CONTENT_RESULT_START_OF_ETAG;
         default:
@@ -2014,15 +2043,15 @@ final class UTF8Reader extends XMLEntityReader {
                     if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                         fCurrentIndex++;
                         try {
-                            ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                        } catch (ArrayIndexOutOfBoundsException ex) {
+                            ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                        } catch (IndexOutOfBoundsException ex) {
                             ch = slowLoadNextByte();
                         }
                     } else {
                         if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                             ch = slowLoadNextByte();
                         else
-                            ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                            ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                     }
                 }
                 break;
@@ -2035,15 +2064,15 @@ final class UTF8Reader extends XMLEntityReader {
                     if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                         fCurrentIndex++;
                         try {
-                            ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                        } catch (ArrayIndexOutOfBoundsException ex) {
+                            ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                        } catch (IndexOutOfBoundsException ex) {
                             ch = slowLoadNextByte();
                         }
                     } else {
                         if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                             ch = slowLoadNextByte();
                         else
-                            ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                            ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                     }
                 }
                 if (!fInCDSect) {
@@ -2077,14 +2106,14 @@ final class UTF8Reader extends XMLEntityReader {
                         fCurrentChunk = saveChunk;
                         fCurrentIndex = saveIndex;
                         fCurrentOffset = saveOffset;
-                        fMostRecentData = fCurrentChunk.toByteArray();
+                        fMostRecentData = fCurrentChunk.toByteBuffer();
                         fMostRecentByte = ']';
                         if (fSendCharDataAsCharArray)
                             appendCharData(']');
                         break;
                     }
                 } else {
-                    if (fMostRecentData[fCurrentIndex + 1] != '>') {
+                    if (fMostRecentData.get(fCurrentIndex + 1) != '>') {
                         if (fSendCharDataAsCharArray)
                             appendCharData(']');
                         break;
@@ -2116,15 +2145,15 @@ final class UTF8Reader extends XMLEntityReader {
                             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                                 fCurrentIndex++;
                                 try {
-                                    ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                                } catch (ArrayIndexOutOfBoundsException ex) {
+                                    ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                                } catch (IndexOutOfBoundsException ex) {
                                     ch = slowLoadNextByte();
                                 }
                             } else {
                                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                     ch = slowLoadNextByte();
                                 else
-                                    ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                    ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                             }
                         }
                         if (ch != 0x0A) {
@@ -2153,15 +2182,15 @@ final class UTF8Reader extends XMLEntityReader {
                         if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                             fCurrentIndex++;
                             try {
-                                ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                            } catch (ArrayIndexOutOfBoundsException ex) {
+                                ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                            } catch (IndexOutOfBoundsException ex) {
                                 ch = slowLoadNextByte();
                             }
                         } else {
                             if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                 ch = slowLoadNextByte();
                             else
-                                ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                         }
                     }
                 } while (ch == 0x20 || ch == 0x09 || ch == 0x0A || ch == 0x0D);
@@ -2189,15 +2218,15 @@ final class UTF8Reader extends XMLEntityReader {
                                 if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                                     fCurrentIndex++;
                                     try {
-                                        ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                                    } catch (ArrayIndexOutOfBoundsException ex) {
+                                        ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                                    } catch (IndexOutOfBoundsException ex) {
                                         ch = slowLoadNextByte();
                                     }
                                 } else {
                                     if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                         ch = slowLoadNextByte();
                                     else
-                                        ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                        ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                                 }
                             }
                             return recognizeMarkup(ch, elementType);
@@ -2236,7 +2265,7 @@ final class UTF8Reader extends XMLEntityReader {
                                 fCurrentChunk = saveChunk;
                                 fCurrentIndex = saveIndex;
                                 fCurrentOffset = saveOffset;
-                                fMostRecentData = fCurrentChunk.toByteArray();
+                                fMostRecentData = fCurrentChunk.toByteBuffer();
                                 fMostRecentByte = ']';
                                 fCharacterCounter++;
                                 if (fSendCharDataAsCharArray)
@@ -2244,7 +2273,7 @@ final class UTF8Reader extends XMLEntityReader {
                                 break;
                             }
                         } else {
-                            if (fMostRecentData[fCurrentIndex + 1] != '>') {
+                            if (fMostRecentData.get(fCurrentIndex + 1) != '>') {
                                 fCharacterCounter++;
                                 if (fSendCharDataAsCharArray)
                                     appendCharData(']');
@@ -2318,15 +2347,15 @@ final class UTF8Reader extends XMLEntityReader {
                             if (USE_TRY_CATCH_FOR_LOAD_NEXT_BYTE) {
                                 fCurrentIndex++;
                                 try {
-                                    ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
-                                } catch (ArrayIndexOutOfBoundsException ex) {
+                                    ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
+                                } catch (IndexOutOfBoundsException ex) {
                                     ch = slowLoadNextByte();
                                 }
                             } else {
                                 if (++fCurrentIndex == UTF8DataChunk.CHUNK_SIZE)
                                     ch = slowLoadNextByte();
                                 else
-                                    ch = (fMostRecentByte = fMostRecentData[fCurrentIndex] & 0xFF);
+                                    ch = (fMostRecentByte = fMostRecentData.get(fCurrentIndex) & 0xFF);
                             }
                         }
                         return recognizeMarkup(ch, elementType);
@@ -2365,7 +2394,7 @@ final class UTF8Reader extends XMLEntityReader {
                             fCurrentChunk = saveChunk;
                             fCurrentIndex = saveIndex;
                             fCurrentOffset = saveOffset;
-                            fMostRecentData = fCurrentChunk.toByteArray();
+                            fMostRecentData = fCurrentChunk.toByteBuffer();
                             fMostRecentByte = ']';
                             fCharacterCounter++;
                             if (fSendCharDataAsCharArray)
@@ -2373,7 +2402,7 @@ final class UTF8Reader extends XMLEntityReader {
                             break;
                         }
                     } else {
-                        if (fMostRecentData[fCurrentIndex + 1] != '>') {
+                        if (fMostRecentData.get(fCurrentIndex + 1) != '>') {
                             fCharacterCounter++;
                             if (fSendCharDataAsCharArray)
                                 appendCharData(']');
@@ -2447,7 +2476,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
                 return false;
             }
@@ -2463,7 +2492,7 @@ final class UTF8Reader extends XMLEntityReader {
             fCurrentChunk = saveChunk;
             fCurrentIndex = saveIndex;
             fCurrentOffset = saveOffset;
-            fMostRecentData = saveChunk.toByteArray();
+            fMostRecentData = saveChunk.toByteBuffer();
             fMostRecentByte = b0;
             return false;
         }
@@ -2494,7 +2523,7 @@ final class UTF8Reader extends XMLEntityReader {
                 fCurrentChunk = saveChunk;
                 fCurrentIndex = saveIndex;
                 fCurrentOffset = saveOffset;
-                fMostRecentData = saveChunk.toByteArray();
+                fMostRecentData = saveChunk.toByteBuffer();
                 fMostRecentByte = b0;
                 return false;
             }
@@ -2508,7 +2537,7 @@ final class UTF8Reader extends XMLEntityReader {
             fCurrentChunk = saveChunk;
             fCurrentIndex = saveIndex;
             fCurrentOffset = saveOffset;
-            fMostRecentData = saveChunk.toByteArray();
+            fMostRecentData = saveChunk.toByteBuffer();
             fMostRecentByte = b0;
             return false;
         }
@@ -2518,19 +2547,31 @@ final class UTF8Reader extends XMLEntityReader {
     private int copyAsciiCharData() throws Exception {
         int srcIndex = fCurrentIndex;
         int offset = fCurrentOffset - srcIndex;
-        byte[] data = fMostRecentData;
+        ByteBuffer data = fMostRecentData;
         int dstIndex = fCharDataLength;
         boolean skiplf = false;
         while (true) {
+            if (USE_WORD_AT_A_TIME_CHAR_DATA_SCAN) {
+                int endIndex = skipPlainCharData(data, srcIndex);
+                int length = endIndex - srcIndex;
+                if (length > 0) {
+                    ensureCharDataCapacity(length);
+                    copyPlainCharData(data, srcIndex, fCharacters, fCharDataLength, length);
+                    srcIndex = endIndex;
+                    fCharDataLength += length;
+                    fCharacterCounter += length;
+                    skiplf = false;
+                }
+            }
             int ch;
             try {
-                ch = data[srcIndex] & 0xFF;
-            } catch (ArrayIndexOutOfBoundsException ex) {
+                ch = data.get(srcIndex) & 0xFF;
+            } catch (IndexOutOfBoundsException ex) {
                 offset += srcIndex;
                 slowLoadNextByte();
                 srcIndex = 0;
                 data = fMostRecentData;
-                ch = data[srcIndex] & 0xFF;
+                ch = data.get(srcIndex) & 0xFF;
             }
             if (ch >= 0x80) {
                 fCurrentOffset = offset + srcIndex;
@@ -2572,17 +2613,22 @@ final class UTF8Reader extends XMLEntityReader {
     private int skipAsciiCharData() throws Exception {
         int srcIndex = fCurrentIndex;
         int offset = fCurrentOffset - srcIndex;
-        byte[] data = fMostRecentData;
+        ByteBuffer data = fMostRecentData;
         while (true) {
+            if (USE_WORD_AT_A_TIME_CHAR_DATA_SCAN) {
+                int endIndex = skipPlainCharData(data, srcIndex);
+                fCharacterCounter += endIndex - srcIndex;
+                srcIndex = endIndex;
+            }
             int ch;
             try {
-                ch = data[srcIndex] & 0xFF;
-            } catch (ArrayIndexOutOfBoundsException ex) {
+                ch = data.get(srcIndex) & 0xFF;
+            } catch (IndexOutOfBoundsException ex) {
                 offset += srcIndex;
                 slowLoadNextByte();
                 srcIndex = 0;
                 data = fMostRecentData;
-                ch = data[srcIndex] & 0xFF;
+                ch = data.get(srcIndex) & 0xFF;
             }
             if (ch >= 0x80) {
                 fCurrentOffset = offset + srcIndex;
@@ -2607,6 +2653,63 @@ final class UTF8Reader extends XMLEntityReader {
             srcIndex++;
         }
     }
+    //
+    // Returns the index of the first group of four bytes, starting at the
+    // given index, that is not all plain character data.  A group is plain
+    // when no byte has the high bit set, is a control character, '<', '&'
+    // or ']'.  Such bytes, including tab, CR and LF, are left to the byte
+    // at a time loops.  The zero byte that marks the end of the input is a
+    // control character, so the scan never passes it.
+    //
+    private static int skipPlainCharData(ByteBuffer data, int index) {
+        if (data.hasArray())
+            return skipPlainCharData(data.array(), index);
+        int endIndex = data.limit() - 4;
+        while (index <= endIndex && isPlainCharData(data.getInt(index)))
+            index += 4;
+        return index;
+    }
+    private static int skipPlainCharData(byte[] data, int index) {
+        int endIndex = data.length - 4;
+        while (index <= endIndex) {
+            int word = (data[index] << 24) |
+                       ((data[index + 1] & 0xFF) << 16) |
+                       ((data[index + 2] & 0xFF) << 8) |
+                       (data[index + 3] & 0xFF);
+            if (!isPlainCharData(word))
+                break;
+            index += 4;
+        }
+        return index;
+    }
+    private static void copyPlainCharData(ByteBuffer data, int index, char[] chars, int charIndex, int length) {
+        int endIndex = index + length;
+        if (data.hasArray()) {
+            byte[] bytes = data.array();
+            while (index < endIndex)
+                chars[charIndex++] = (char)bytes[index++];
+        } else {
+            while (index < endIndex)
+                chars[charIndex++] = (char)data.get(index++);
+        }
+    }
+    private static boolean isPlainCharData(int word) {
+        if ((word & WORD_HIGH_BITS) != 0)
+            return false;
+        //
+        // With the high bits clear, (x - n) & ~x has the high bit of a
+        // byte set when that byte is less than n; a byte equal to c is
+        // a zero byte of word ^ c.
+        //
+        int special = (word - WORD_CONTROL) & ~word;
+        int x = word ^ WORD_LT;
+        special |= (x - WORD_ONES) & ~x;
+        x = word ^ WORD_AMP;
+        special |= (x - WORD_ONES) & ~x;
+        x = word ^ WORD_RSB;
+        special |= (x - WORD_ONES) & ~x;
+        return (special & WORD_HIGH_BITS) == 0;
+    }
     private char[] fCharacters = new char[UTF8DataChunk.CHUNK_SIZE];
     private int fCharDataLength = 0;
     private void appendCharData(int ch) throws Exception {
@@ -2618,11 +2721,33 @@ final class UTF8Reader extends XMLEntityReader {
         }
     }
     private void slowAppendCharData(int ch) throws Exception {
-        // flush the buffer...
-        characters(0, fCharDataLength); /* DEFECT !! whitespace this long is unlikely, but possible */
-        fCharDataLength = 0;
+        ensureCharDataCapacity(1);
         fCharacters[fCharDataLength++] = (char)ch;
     }
+    //
+    // Makes room for length more characters, growing the buffer up to
+    // MAX_CHAR_DATA_BUFFER and flushing it once that is reached.  The
+    // length is never more than one chunk of input.
+    //
+    private void ensureCharDataCapacity(int length) throws Exception {
+        int newLength = fCharDataLength + length;
+        if (newLength <= fCharacters.length)
+            return;
+        if (newLength > MAX_CHAR_DATA_BUFFER) {
+            // flush the buffer...
+            characters(0, fCharDataLength); /* DEFECT !! whitespace this long is unlikely, but possible */
+            fCharDataLength = 0;
+            return;
+        }
+        int size = fCharacters.length << 1;
+        while (size < newLength)
+            size <<= 1;
+        if (size > MAX_CHAR_DATA_BUFFER)
+            size = MAX_CHAR_DATA_BUFFER;
+        char[] newChars = new char[size];
+        System.arraycopy(fCharacters, 0, newChars, 0, fCharDataLength);
+        fCharacters = newChars;
+    }
     private void characters(int offset, int endOffset) throws Exception {
         //
         // REVISIT - need more up front bounds checking code of params...
@@ -2652,9 +2777,10 @@ final class UTF8Reader extends XMLEntityReader {
     private StringPool.CharArrayRange fCharArrayRange = null;
     private InputStream fInputStream = null;
     private StringPool fStringPool = null;
+    XMLParseMetrics fMetrics = null; // set by the reader factory
     private UTF8DataChunk fCurrentChunk = null;
     private int fCurrentIndex = 0;
-    private byte[] fMostRecentData = null;
+    private ByteBuffer fMostRecentData = null;
     private int fMostRecentByte = 0;
     private int fLength = 0;
     private boolean fCallClearPreviousChunk = true;
@@ -2662,22 +2788,55 @@ final class UTF8Reader extends XMLEntityReader {
     //
     //
     private int fillCurrentChunk() throws Exception {
-        byte[] buf = fCurrentChunk.toByteArray();
+        ByteBuffer data = fCurrentChunk.toByteBuffer();
+        byte[] buf = null;
+        if (data != null && data.hasArray())
+            buf = data.array();
         if (fInputStream == null) {
-            if (buf == null)
+            if (buf == null) {
                 buf = new byte[1];
+                data = ByteBuffer.wrap(buf);
+            }
             buf[0] = 0;
-            fMostRecentData = buf;
-            fCurrentIndex = 0;
-            fCurrentChunk.setByteArray(fMostRecentData);
-            return (fMostRecentByte = fMostRecentData[0] & 0xFF);
+            return setCurrentData(data);
         }
-        if (buf == null)
-            buf = new byte[UTF8DataChunk.CHUNK_SIZE];
         int offset = 0;
         int capacity = UTF8DataChunk.CHUNK_SIZE;
+        if (fInputStream instanceof ChunkyByteArray) {
+            ChunkyByteArray chunkyByteArray = (ChunkyByteArray)fInputStream;
+            if (fLength == 0) {
+                //
+                // Use the chunk that was filled while the encoding was being
+                // detected in place, rather than copying it.
+                //
+                byte[] firstChunk = chunkyByteArray.takeFirstChunk();
+                if (firstChunk != null && firstChunk.length == UTF8DataChunk.CHUNK_SIZE) {
+                    buf = firstChunk;
+                    data = null;
+                    offset = capacity;
+                    capacity = 0;
+                }
+            } else {
+                //
+                // Scan a memory mapped file in place.  The last chunk is
+                // always copied, so that the zero byte marking the end of
+                // the input can follow the data.
+                //
+                ByteBuffer slice = chunkyByteArray.readSlice(UTF8DataChunk.CHUNK_SIZE);
+                if (slice != null) {
+                    if (fMetrics != null)
+                        fMetrics.bytesRead += UTF8DataChunk.CHUNK_SIZE;
+                    fLength += UTF8DataChunk.CHUNK_SIZE;
+                    return setCurrentData(slice);
+                }
+            }
+        }
+        if (buf == null || buf.length != UTF8DataChunk.CHUNK_SIZE) {
+            buf = new byte[UTF8DataChunk.CHUNK_SIZE];
+            data = null;
+        }
         int result = 0;
-        do {
+        while (capacity > 0) {
             try {
                 result = fInputStream.read(buf, offset, capacity);
             } catch (java.io.IOException ex) {
@@ -2699,11 +2858,14 @@ final class UTF8Reader extends XMLEntityReader {
                 offset += result;
                 capacity -= result;
             }
-        } while (capacity > 0);
-        fMostRecentData = buf;
+        }
         fLength += offset;
+        return setCurrentData(data != null ? data : ByteBuffer.wrap(buf));
+    }
+    private int setCurrentData(ByteBuffer data) {
+        fMostRecentData = data;
         fCurrentIndex = 0;
-        fCurrentChunk.setByteArray(fMostRecentData);
-        return (fMostRecentByte = fMostRecentData[0] & 0xFF);
+        fCurrentChunk.setByteBuffer(data);
+        return (fMostRecentByte = data.get(0) & 0xFF);
     }
 }
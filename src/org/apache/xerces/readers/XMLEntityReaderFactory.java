@@ -58,6 +58,7 @@
 package org.apache.xerces.readers;
 
 import org.apache.xerces.framework.XMLErrorReporter;
+import org.apache.xerces.framework.XMLParseMetrics;
 import org.apache.xerces.utils.StringPool;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -81,6 +82,16 @@ public class XMLEntityReaderFactory {
     public XMLEntityReaderFactory() {
     }
 
+    /**
+     * Set the metrics that UTF-8 readers count symbol cache hits and
+     * misses into, or null to stop counting.
+     *
+     * @param metrics The metrics of the current parse, or null.
+     */
+    public void setParseMetrics(XMLParseMetrics metrics) {
+        fMetrics = metrics;
+    }
+
     /**
      * Create an entity reader for a character stream.
      *
@@ -124,7 +135,9 @@ public class XMLEntityReaderFactory {
         if (USE_CHAR_READER_FOR_UTF8) {
             reader = new CharReader(entityHandler, errorReporter, sendCharDataAsCharArray, new InputStreamReader(data, "UTF8"), stringPool);
         } else if (USE_BYTE_READER_FOR_UTF8) {
-            reader = new UTF8Reader(entityHandler, errorReporter, sendCharDataAsCharArray, data, stringPool);
+            UTF8Reader utf8Reader = new UTF8Reader(entityHandler, errorReporter, sendCharDataAsCharArray, data, stringPool);
+            utf8Reader.fMetrics = fMetrics;
+            reader = utf8Reader;
         } else {
             reader = new UTF8CharReader(entityHandler, errorReporter, sendCharDataAsCharArray, data, stringPool);
         }
@@ -160,4 +173,8 @@ public class XMLEntityReaderFactory {
         return StringReader.createStringReader(entityHandler, errorReporter, sendCharDataAsCharArray,
                                                lineNumber, columnNumber, stringHandle, stringPool, addEnclosingSpaces);
     }
+    //
+    // Instance variables
+    //
+    private XMLParseMetrics fMetrics = null;
 }
@@ -89,9 +89,11 @@ public final class CharDataChunk implements StringPool.StringProducer {
      * @return The instance reused or created.
      */
     public static CharDataChunk createChunk(StringPool stringPool, CharDataChunk prev) {
-        CharDataChunk newChunk = fgFreeChunks;
+        FreeList freeList = getFreeList();
+        CharDataChunk newChunk = freeList.fHead;
         if (newChunk != null) {
-            fgFreeChunks = newChunk.fNextChunk;
+            freeList.fHead = newChunk.fNextChunk;
+            freeList.fCount--;
         } else {
             newChunk = new CharDataChunk();
         }
@@ -407,9 +409,31 @@ public final class CharDataChunk implements StringPool.StringProducer {
             fStringPool = null;
             fChunk = -1;
             fPreviousChunk = null;
-            fNextChunk = fgFreeChunks;
-            fgFreeChunks = this;
+            FreeList freeList = getFreeList();
+            if (freeList.fCount < MAX_FREE_CHUNKS) {
+                fNextChunk = freeList.fHead;
+                freeList.fHead = this;
+                freeList.fCount++;
+            } else {
+                fNextChunk = null;
+            }
+        }
+    }
+    //
+    // The free list is kept per thread, so that parsers running on
+    // different threads never share a chunk.
+    //
+    private static FreeList getFreeList() {
+        FreeList freeList = (FreeList)fgFreeList.get();
+        if (freeList == null) {
+            freeList = new FreeList();
+            fgFreeList.set(freeList);
         }
+        return freeList;
+    }
+    private static final class FreeList {
+        CharDataChunk fHead = null;
+        int fCount = 0;
     }
     //
     //
@@ -438,5 +462,6 @@ public final class CharDataChunk implements StringPool.StringProducer {
     private char[] fData = null;
     private CharDataChunk fNextChunk;
     private CharDataChunk fPreviousChunk;
-    private static CharDataChunk fgFreeChunks = null;
+    private static final int MAX_FREE_CHUNKS = 16;
+    private static final ThreadLocal fgFreeList = new ThreadLocal();
 }
@@ -59,6 +59,7 @@ package org.apache.xerces.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * This class is used for accessing the data provided by an InputStream.
@@ -94,7 +95,23 @@ public final class ChunkyByteArray extends InputStream {
      * @param is The input stream containing the data of the entity.
      */
     public ChunkyByteArray(InputStream is) throws IOException {
+        this(is, is instanceof MappedFileInputStream ? (MappedFileInputStream)is : null);
+    }
+
+    /**
+     * Constructor
+     *
+     * Reads the first chunk.
+     *
+     * @param is The input stream containing the data of the entity.
+     * @param mappedInput The memory mapped file underneath <code>is</code>,
+     *                    from which readSlice may return data in place,
+     *                    or null.  When <code>is</code> wraps this stream,
+     *                    bytes returned by readSlice bypass the wrapper.
+     */
+    public ChunkyByteArray(InputStream is, MappedFileInputStream mappedInput) throws IOException {
         fInputStream = is;
+        fMappedInput = mappedInput;
         fill();
     }
 
@@ -141,13 +158,58 @@ public final class ChunkyByteArray extends InputStream {
             fOffset += length;
             return length;
         }
-        int stop = offset + length;
-        do {
-            buffer[offset++] = chunk[fOffset++];
-        } while (offset < stop);
+        System.arraycopy(chunk, fOffset, buffer, offset, length);
+        fOffset += length;
         return length;
     }
 
+    /**
+     * Give the first chunk of data to the caller.
+     *
+     * A reader whose buffers are the same size as our chunks can use
+     * this to take over the array that we have already filled instead of
+     * reading it again.  This is only possible if none of the data has
+     * been read yet and the chunk is full; afterwards the read methods
+     * return the remaining data directly from the original InputStream.
+     *
+     * @return The first chunk, or null if it cannot be handed over.
+     */
+    public byte[] takeFirstChunk() {
+        if (fData == null || fOffset != 0 || fLength != CHUNK_SIZE || fInputStream == null)
+            return null;
+        byte[] chunk = fData[0];
+        fData = null;
+        fOffset = fLength;
+        return chunk;
+    }
+
+    /**
+     * Return the next bytes of input data in place, without copying them.
+     *
+     * This is only possible once the chunks we have read are exhausted and
+     * the remaining data comes from a memory mapped file; the caller
+     * should otherwise use the read methods.
+     *
+     * @param length The number of bytes wanted.
+     * @return A buffer holding exactly <code>length</code> bytes, or null if
+     *         they cannot be returned in place.
+     */
+    public ByteBuffer readSlice(int length) throws IOException {
+        if (fMappedInput == null || fInputStream == null || fOffset != fLength)
+            return null;
+        return fMappedInput.readSlice(length);
+    }
+
+    /**
+     * Close the original InputStream, if it is still open.
+     */
+    public void close() throws IOException {
+        if (fInputStream != null) {
+            fInputStream.close();
+            fInputStream = null;
+        }
+    }
+
     /**
      * Reset position within the data stream back to
      * the very beginning.
@@ -170,6 +232,8 @@ public final class ChunkyByteArray extends InputStream {
         }
         catch (NullPointerException ex) {
         }
+        catch (ArrayIndexOutOfBoundsException ex) {
+        }
         if (index == 0) {
             fill();
             return fData[chunk][index];
@@ -193,6 +257,11 @@ public final class ChunkyByteArray extends InputStream {
     //
     private void fill() throws IOException {
         int bufnum = fLength >> CHUNK_SHIFT;
+        if (bufnum == fData.length) {
+            byte[][] newData = new byte[bufnum * 2][];
+            System.arraycopy(fData, 0, newData, 0, bufnum);
+            fData = newData;
+        }
         byte[] data = new byte[CHUNK_SIZE];
         fData[bufnum] = data;
         int offset = 0;
@@ -224,6 +293,7 @@ public final class ChunkyByteArray extends InputStream {
     // Instance variables
     //
     private InputStream fInputStream = null;
+    private MappedFileInputStream fMappedInput = null;
     private byte[][] fData = new byte[INITIAL_CHUNK_COUNT][];
     private int fLength = 0;
     private int fOffset = 0; // for read methods
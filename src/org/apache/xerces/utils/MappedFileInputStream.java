@@ -0,0 +1,236 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class reads a file through a memory mapping of its channel.
+ *
+ * The file is mapped one window at a time, so files of any size can be
+ * read without mapping all of them at once.  The readSlice method
+ * returns the bytes in place, as a view of the mapped pages, which lets
+ * the UTF8Reader scan the file without a read call into the operating
+ * system or any copy of the data at all.  A bulk read copies the bytes
+ * straight from the mapped pages into the caller's array.
+ *
+ * To parse from a FileChannel, wrap it with an instance of this class
+ * and set it as the byte stream of the InputSource.  Reading starts at
+ * the position of the channel and the channel is closed with the stream.
+ *
+ * @version
+ */
+public final class MappedFileInputStream extends InputStream {
+
+    /**
+     * Constructor
+     *
+     * @param file The file to read.
+     */
+    public MappedFileInputStream(File file) throws IOException {
+        this(new FileInputStream(file).getChannel());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param channel The channel to read, from its current position.
+     */
+    public MappedFileInputStream(FileChannel channel) throws IOException {
+        fChannel = channel;
+        fPosition = channel.position();
+        fSize = channel.size();
+    }
+
+    /**
+     * Read a byte.
+     *
+     * @return The next byte of the input data or -1 if there is no more data.
+     */
+    public int read() throws IOException {
+        if (!mapNextWindow())
+            return -1;
+        return fBuffer.get() & 0xFF;
+    }
+
+    /**
+     * Read bytes.
+     *
+     * @param buffer The destination for the bytes returned.  If null, then
+     *               the data will be discarded instead of returned.
+     * @param offset The offset within the buffer where the first returned
+     *               byte should be placed.
+     * @param length The maximum number of bytes to place in the buffer or discard.
+     * @return The number of bytes actually placed in the buffer or discarded.
+     */
+    public int read(byte buffer[], int offset, int length) throws IOException {
+        if (length <= 0)
+            return 0;
+        if (!mapNextWindow())
+            return -1;
+        int count = fBuffer.remaining();
+        if (count > length)
+            count = length;
+        if (buffer == null)
+            fBuffer.position(fBuffer.position() + count);
+        else
+            fBuffer.get(buffer, offset, count);
+        return count;
+    }
+
+    /**
+     * Return the next bytes of the file in place, as a view of the mapping.
+     *
+     * @param length The number of bytes wanted.
+     * @return A buffer holding exactly <code>length</code> bytes, or null if
+     *         fewer remain in the current window; the read methods still
+     *         return those bytes.
+     */
+    public ByteBuffer readSlice(int length) throws IOException {
+        if (!mapNextWindow() || fBuffer.remaining() < length)
+            return null;
+        ByteBuffer slice = fBuffer.slice();
+        slice.limit(length);
+        fBuffer.position(fBuffer.position() + length);
+        return slice;
+    }
+
+    /**
+     * Skip bytes.
+     *
+     * @param n The number of bytes to skip.
+     * @return The number of bytes actually skipped.
+     */
+    public long skip(long n) throws IOException {
+        if (n <= 0 || fChannel == null)
+            return 0;
+        long skipped = 0;
+        if (fBuffer != null) {
+            int count = fBuffer.remaining();
+            if (count > n)
+                count = (int)n;
+            fBuffer.position(fBuffer.position() + count);
+            skipped = count;
+        }
+        long count = fSize - fPosition;
+        if (count > n - skipped)
+            count = n - skipped;
+        fPosition += count;
+        return skipped + count;
+    }
+
+    /**
+     * Return the number of bytes that can be read without blocking.
+     */
+    public int available() throws IOException {
+        if (fChannel == null)
+            return 0;
+        long count = fSize - fPosition;
+        if (fBuffer != null)
+            count += fBuffer.remaining();
+        return count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)count;
+    }
+
+    /**
+     * Close the stream and its channel.
+     *
+     * The last window stays mapped until it is garbage collected.
+     */
+    public void close() throws IOException {
+        fBuffer = null;
+        if (fChannel != null) {
+            fChannel.close();
+            fChannel = null;
+        }
+    }
+
+    //
+    // Map the next window of the file once the current one is used up.
+    //
+    private boolean mapNextWindow() throws IOException {
+        if (fBuffer != null && fBuffer.hasRemaining())
+            return true;
+        fBuffer = null;
+        if (fChannel == null || fPosition >= fSize)
+            return false;
+        long length = fSize - fPosition;
+        if (length > WINDOW_SIZE)
+            length = WINDOW_SIZE;
+        fBuffer = fChannel.map(FileChannel.MapMode.READ_ONLY, fPosition, length);
+        fPosition += length;
+        return true;
+    }
+    //
+    // Window size constants
+    //
+    private static final int WINDOW_SHIFT = 26;         // 2^26 = 64m
+    private static final long WINDOW_SIZE = (1L << WINDOW_SHIFT);
+    //
+    // Instance variables
+    //
+    private FileChannel fChannel = null;
+    private MappedByteBuffer fBuffer = null;
+    private long fPosition = 0; // file position of the next window
+    private long fSize = 0;
+}
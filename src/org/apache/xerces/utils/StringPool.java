@@ -130,9 +130,19 @@ public final class StringPool {
     //
     // Symbol Hashtable
     //
-    private static final int INITIAL_BUCKET_SIZE = 4;
-    private static final int HASHTABLE_SIZE = 128;
-    private int[][] fSymbolTable = new int[HASHTABLE_SIZE][];
+    // This is an open addressed table that is doubled in size whenever it
+    // becomes more than SYMBOL_TABLE_LOAD_FACTOR full.  Each slot holds the
+    // hashcode of a symbol and its string index plus one, so that a zero
+    // index marks an empty slot.  Symbols are never removed from the table
+    // until the pool is reset.
+    //
+    private static final int INITIAL_SYMBOL_TABLE_SIZE = 512;   // must be a power of 2
+    private static final float SYMBOL_TABLE_LOAD_FACTOR = 0.75f;
+    private int fSymbolCount = 0;
+    private int fSymbolTableMask = 0;
+    private int fSymbolTableThreshold = 0;
+    private int[] fSymbolHashcode = null;
+    private int[] fSymbolIndex = null;
     //
     // Symbol Cache
     //
@@ -141,6 +151,17 @@ public final class StringPool {
     //
     //
     public StringPool() {
+        this(INITIAL_SYMBOL_TABLE_SIZE);
+    }
+    /**
+     * Constructs a string pool whose symbol table initially has room for
+     * the given number of symbols before it needs to grow.
+     */
+    public StringPool(int symbolTableSize) {
+        int size = INITIAL_SYMBOL_TABLE_SIZE;
+        while (size * SYMBOL_TABLE_LOAD_FACTOR < symbolTableSize)
+            size <<= 1;
+        allocateSymbolTable(size);
         fSymbolCache = new SymbolCache();
         if (addSymbol("") != EMPTY_STRING)
             throw new RuntimeException("cannot happen 20");
@@ -161,8 +182,9 @@ public final class StringPool {
                 index = 0;
             }
         }
-        for (int i = 0; i < HASHTABLE_SIZE; i++)
-            fSymbolTable[i] = null;
+        for (int i = 0; i <= fSymbolTableMask; i++)
+            fSymbolIndex[i] = 0;
+        fSymbolCount = 0;
         fStringCount = 0;
         fStringFreeList = -1;
         fQNameCount = 0;
@@ -332,67 +354,78 @@ public final class StringPool {
         fDeclaration[chunk][index] = -1;
 
         int hashcode = StringHasher.hashString(str, slen);
-        int hc = hashcode % HASHTABLE_SIZE;
-        int[] bucket = fSymbolTable[hc];
-        hashSymbol(bucket, hashcode, chunk, index);
+        hashSymbol(hashcode, stringIndex);
         if (DEBUG_ADDITIONS)
             System.err.println("addSymbolNew(" + str + ") " + stringIndex);
         return stringIndex;
     }
-    private void hashSymbol(int[] bucket, int hashcode, int chunk, int index) {
-        if (bucket == null) {
-            bucket = new int[1 + (INITIAL_BUCKET_SIZE * 3)];
-            bucket[0] = 1;
-            bucket[1] = hashcode;
-            bucket[2] = chunk;
-            bucket[3] = index;
-            int hc = hashcode % HASHTABLE_SIZE;
-            fSymbolTable[hc] = bucket;
-        } else {
-            int count = bucket[0];
-            int offset = 1 + (count * 3);
-            if (offset == bucket.length) {
-                int newSize = count + INITIAL_BUCKET_SIZE;
-                int[] newBucket = new int[1 + (newSize * 3)];
-                System.arraycopy(bucket, 0, newBucket, 0, offset);
-                bucket = newBucket;
-                int hc = hashcode % HASHTABLE_SIZE;
-                fSymbolTable[hc] = bucket;
+    private void allocateSymbolTable(int size) {
+        fSymbolHashcode = new int[size];
+        fSymbolIndex = new int[size];
+        fSymbolTableMask = size - 1;
+        fSymbolTableThreshold = (int)(size * SYMBOL_TABLE_LOAD_FACTOR);
+    }
+    private void hashSymbol(int hashcode, int stringIndex) {
+        int slot = hashcode & fSymbolTableMask;
+        while (fSymbolIndex[slot] != 0)
+            slot = (slot + 1) & fSymbolTableMask;
+        fSymbolHashcode[slot] = hashcode;
+        fSymbolIndex[slot] = stringIndex + 1;
+        if (++fSymbolCount > fSymbolTableThreshold)
+            rehashSymbolTable();
+    }
+    private void rehashSymbolTable() {
+        int[] oldHashcode = fSymbolHashcode;
+        int[] oldIndex = fSymbolIndex;
+        allocateSymbolTable(oldIndex.length << 1);
+        for (int i = 0; i < oldIndex.length; i++) {
+            int stringIndex = oldIndex[i];
+            if (stringIndex != 0) {
+                int hashcode = oldHashcode[i];
+                int slot = hashcode & fSymbolTableMask;
+                while (fSymbolIndex[slot] != 0)
+                    slot = (slot + 1) & fSymbolTableMask;
+                fSymbolHashcode[slot] = hashcode;
+                fSymbolIndex[slot] = stringIndex;
             }
-            bucket[offset++] = hashcode;
-            bucket[offset++] = chunk;
-            bucket[offset++] = index;
-            bucket[0] = ++count;
         }
     }
+    public int getSymbolCount() {
+        return fSymbolCount;
+    }
+    public int getStringCount() {
+        return fStringCount;
+    }
+    public int getStringLength(int stringIndex) {
+        if (stringIndex < 0 || stringIndex >= fStringCount)
+            return 0;
+        return fLength[stringIndex >> CHUNK_SHIFT][stringIndex & CHUNK_MASK];
+    }
     public int addSymbol(String str) {
         int slen = str.length();
         int hashcode = StringHasher.hashString(str, slen);
-        int hc = hashcode % HASHTABLE_SIZE;
-        int[] bucket = fSymbolTable[hc];
-        if (bucket != null) {
-            int j = 1;
-            for (int i = 0; i < bucket[0]; i++) {
-                if (bucket[j] == hashcode) {
-                    int chunk = bucket[j+1];
-                    int index = bucket[j+2];
-                    if (slen == fLength[chunk][index]) {
-                        int symoff = fCharsOffset[chunk][index];
-                        boolean match = true;
-                        char[] symbolChars = fSymbolCache.getSymbolChars();
-                        for (int k = 0; k < slen; k++) {
-                            if (symbolChars[symoff++] != str.charAt(k)) {
-                                match = false;
-                                break;
-                            }
-                        }
-                        if (match) {
-                            return (chunk << CHUNK_SHIFT) + index;
+        int slot = hashcode & fSymbolTableMask;
+        int symbolIndex;
+        while ((symbolIndex = fSymbolIndex[slot]) != 0) {
+            if (fSymbolHashcode[slot] == hashcode) {
+                int chunk = --symbolIndex >> CHUNK_SHIFT;
+                int index = symbolIndex & CHUNK_MASK;
+                if (slen == fLength[chunk][index]) {
+                    int symoff = fCharsOffset[chunk][index];
+                    boolean match = true;
+                    char[] symbolChars = fSymbolCache.getSymbolChars();
+                    for (int k = 0; k < slen; k++) {
+                        if (symbolChars[symoff++] != str.charAt(k)) {
+                            match = false;
+                            break;
                         }
                     }
+                    if (match) {
+                        return symbolIndex;
+                    }
                 }
-                j += 3;
             }
+            slot = (slot + 1) & fSymbolTableMask;
         }
         int chunk;
         int index;
@@ -415,28 +448,25 @@ public final class StringPool {
         fDeclaration[chunk][index] = -1;
         fCharsOffset[chunk][index] = fSymbolCache.addSymbolToCache(str, slen, stringIndex);
 
-        hashSymbol(bucket, hashcode, chunk, index);
+        hashSymbol(hashcode, stringIndex);
         if (DEBUG_ADDITIONS)
             System.err.println("addSymbolNew(" + str + ") " + stringIndex);
         return stringIndex;
     }
     public int addSymbol(StringPool.StringProducer stringProducer, int offset, int length, int hashcode) {
-        int hc = hashcode % HASHTABLE_SIZE;
-        int[] bucket = fSymbolTable[hc];
-        if (bucket != null) {
-            int j = 1;
-            for (int i = 0; i < bucket[0]; i++) {
-                if (bucket[j] == hashcode) {
-                    int chunk = bucket[j+1];
-                    int index = bucket[j+2];
-                    char[] symbolChars = fSymbolCache.getSymbolChars();
-                    if (stringProducer.equalsString(offset, length, symbolChars, fCharsOffset[chunk][index], fLength[chunk][index])) {
-                        stringProducer.releaseString(offset, length);
-                        return (chunk << CHUNK_SHIFT) + index;
-                    }
+        int slot = hashcode & fSymbolTableMask;
+        int symbolIndex;
+        while ((symbolIndex = fSymbolIndex[slot]) != 0) {
+            if (fSymbolHashcode[slot] == hashcode) {
+                int chunk = --symbolIndex >> CHUNK_SHIFT;
+                int index = symbolIndex & CHUNK_MASK;
+                char[] symbolChars = fSymbolCache.getSymbolChars();
+                if (stringProducer.equalsString(offset, length, symbolChars, fCharsOffset[chunk][index], fLength[chunk][index])) {
+                    stringProducer.releaseString(offset, length);
+                    return symbolIndex;
                 }
-                j += 3;
             }
+            slot = (slot + 1) & fSymbolTableMask;
         }
         int chunk;
         int index;
@@ -462,33 +492,28 @@ public final class StringPool {
         fDeclaration[chunk][index] = -1;
         fCharsOffset[chunk][index] = fSymbolCache.addSymbolToCache(str, slen, stringIndex);
 
-        hashSymbol(bucket, hashcode, chunk, index);
+        hashSymbol(hashcode, stringIndex);
         if (DEBUG_ADDITIONS)
             System.err.println("addSymbol(" + str + ") " + stringIndex);
         return stringIndex;
     }
     public int lookupSymbol(StringPool.StringProducer stringProducer, int offset, int length, int hashcode) {
-        int hc = hashcode % HASHTABLE_SIZE;
-        int[] bucket = fSymbolTable[hc];
-        if (bucket != null) {
-            int j = 1;
-            for (int i = 0; i < bucket[0]; i++) {
-                if (bucket[j] == hashcode) {
-                    int chunk = bucket[j+1];
-                    int index = bucket[j+2];
-                    char[] symbolChars = fSymbolCache.getSymbolChars();
-                    if (stringProducer.equalsString(offset, length, symbolChars, fCharsOffset[chunk][index], fLength[chunk][index])) {
-                        return (chunk << CHUNK_SHIFT) + index;
-                    }
+        int slot = hashcode & fSymbolTableMask;
+        int symbolIndex;
+        while ((symbolIndex = fSymbolIndex[slot]) != 0) {
+            if (fSymbolHashcode[slot] == hashcode) {
+                int chunk = --symbolIndex >> CHUNK_SHIFT;
+                int index = symbolIndex & CHUNK_MASK;
+                char[] symbolChars = fSymbolCache.getSymbolChars();
+                if (stringProducer.equalsString(offset, length, symbolChars, fCharsOffset[chunk][index], fLength[chunk][index])) {
+                    return symbolIndex;
                 }
-                j += 3;
             }
+            slot = (slot + 1) & fSymbolTableMask;
         }
         return -1;
     }
     public int addNewSymbol(String str, int hashcode) {
-        int hc = hashcode % HASHTABLE_SIZE;
-        int[] bucket = fSymbolTable[hc];
         int chunk;
         int index;
         int stringIndex;
@@ -511,7 +536,7 @@ public final class StringPool {
         fDeclaration[chunk][index] = -1;
         fCharsOffset[chunk][index] = fSymbolCache.addSymbolToCache(str, slen, stringIndex);
 
-        hashSymbol(bucket, hashcode, chunk, index);
+        hashSymbol(hashcode, stringIndex);
         if (DEBUG_ADDITIONS)
             System.err.println("addSymbolNew(" + str + ") " + stringIndex);
         return stringIndex;
@@ -867,6 +892,75 @@ public final class StringPool {
         }
     }
     //
+    // Compaction
+    //
+    // Strings added from a string producer keep that producer, and so the
+    // input buffer behind it, reachable until the string is converted,
+    // released or the pool is reset.  compact() copies the characters of
+    // every such string into one shared array and releases the producers.
+    // String handles are not changed.  Strings that were compacted earlier
+    // and are still in use are copied again, so that compacting after
+    // strings have been released also frees the characters they held.
+    //
+    public int compact() {
+        int total = 0;
+        int count = 0;
+        int chunk = 0;
+        int index = 0;
+        for (int i = 0; i < fStringCount; i++) {
+            if (fStringProducer[chunk][index] != null) {
+                total += fLength[chunk][index];
+                count++;
+            }
+            if (++index == CHUNK_SIZE) {
+                chunk++;
+                index = 0;
+            }
+        }
+        if (count == 0)
+            return 0;
+        //
+        // The length of a string is its length in the producer, which for
+        // UTF-8 data is the number of bytes, so it may shrink when copied.
+        //
+        char[] chars = new char[total];
+        int[] stringIndexes = new int[count];
+        int charsOffset = 0;
+        count = 0;
+        chunk = 0;
+        index = 0;
+        for (int i = 0; i < fStringCount; i++) {
+            StringPool.StringProducer producer = fStringProducer[chunk][index];
+            if (producer != null) {
+                int offset = fOffset[chunk][index];
+                int length = fLength[chunk][index];
+                String str = producer.toString(offset, length);
+                producer.releaseString(offset, length);
+                length = str.length();
+                str.getChars(0, length, chars, charsOffset);
+                fOffset[chunk][index] = charsOffset;
+                fLength[chunk][index] = length;
+                stringIndexes[count++] = i;
+                charsOffset += length;
+            }
+            if (++index == CHUNK_SIZE) {
+                chunk++;
+                index = 0;
+            }
+        }
+        if (charsOffset < total) {
+            char[] newChars = new char[charsOffset];
+            System.arraycopy(chars, 0, newChars, 0, charsOffset);
+            chars = newChars;
+        }
+        StringPool.StringProducer slab = new CharArrayProducer(chars);
+        for (int i = 0; i < count; i++) {
+            int stringIndex = stringIndexes[i];
+            fStringProducer[stringIndex >> CHUNK_SHIFT][stringIndex & CHUNK_MASK] = slab;
+        }
+        return count;
+    }
+    //
     // Get String value.  Cache the result.
     //
     public String toString(int stringIndex) {
@@ -926,4 +1020,27 @@ public final class StringPool {
         }
         return s;
     }
+    //
+    // String producer over the shared character array built by compact().
+    //
+    private static final class CharArrayProducer implements StringPool.StringProducer {
+        private final char[] fChars;
+        CharArrayProducer(char[] chars) {
+            fChars = chars;
+        }
+        public String toString(int offset, int length) {
+            return new String(fChars, offset, length);
+        }
+        public void releaseString(int offset, int length) {
+        }
+        public boolean equalsString(int offset, int length, char[] strChars, int strOffset, int strLength) {
+            if (length != strLength)
+                return false;
+            for (int i = 0; i < length; i++) {
+                if (fChars[offset++] != strChars[strOffset++])
+                    return false;
+            }
+            return true;
+        }
+    }
 }
@@ -58,6 +58,7 @@
 package org.apache.xerces.utils;
 
 import org.apache.xerces.readers.XMLEntityHandler;
+import java.nio.ByteBuffer;
 import java.util.Vector;
 
 //
@@ -74,9 +75,11 @@ public class UTF8DataChunk implements StringPool.StringProducer {
     // Public constructor (factory)
     //
     public static UTF8DataChunk createChunk(StringPool stringPool, UTF8DataChunk prev) {
-        if (fgFreeChunks != null) {
-            UTF8DataChunk newChunk = fgFreeChunks;
-            fgFreeChunks = newChunk.fNextChunk;
+        FreeList freeList = getFreeList();
+        if (freeList.fHead != null) {
+            UTF8DataChunk newChunk = freeList.fHead;
+            freeList.fHead = newChunk.fNextChunk;
+            freeList.fCount--;
             newChunk.fNextChunk = null;
             newChunk.init(stringPool, prev);
             return newChunk;
@@ -86,13 +89,14 @@ public class UTF8DataChunk implements StringPool.StringProducer {
     //
     //
     //
-    public final byte[] toByteArray() {
+    public final ByteBuffer toByteBuffer() {
         return fData;
     }
     //
+    // The data is either a heap buffer wrapping an array of ours, or a
+    // slice of a memory mapped file that the reader scans in place.
     //
-    //
-    public void setByteArray(byte[] data) {
+    public void setByteBuffer(ByteBuffer data) {
         fData = data;
     }
     //
@@ -132,14 +136,16 @@ public class UTF8DataChunk implements StringPool.StringProducer {
     //
     //
     public String toString(int offset, int length) {
+        FreeList freeList = getFreeList();
+        char[] tempBuffer = freeList.fTempBuffer;
         int outOffset = 0;
         UTF8DataChunk dataChunk = this;
         int endOffset = offset + length;
         int index = offset & CHUNK_MASK;
-        byte[] data = fData;
+        ByteBuffer data = fData;
         boolean skiplf = false;
         while (offset < endOffset) {
-            int b0 = data[index++] & 0xff;
+            int b0 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -157,20 +163,20 @@ public class UTF8DataChunk implements StringPool.StringProducer {
                     skiplf = true;
                 }
                 try {
-                    fTempBuffer[outOffset] = (char)b0;
+                    tempBuffer[outOffset] = (char)b0;
                     outOffset++;
                 } catch (NullPointerException ex) {
-                    fTempBuffer = new char[CHUNK_SIZE];
-                    fTempBuffer[outOffset++] = (char)b0;
+                    tempBuffer = new char[CHUNK_SIZE];
+                    tempBuffer[outOffset++] = (char)b0;
                 } catch (ArrayIndexOutOfBoundsException ex) {
                     char[] newBuffer = new char[outOffset * 2];
-                    System.arraycopy(fTempBuffer, 0, newBuffer, 0, outOffset);
-                    fTempBuffer = newBuffer;
-                    fTempBuffer[outOffset++] = (char)b0;
+                    System.arraycopy(tempBuffer, 0, newBuffer, 0, outOffset);
+                    tempBuffer = newBuffer;
+                    tempBuffer[outOffset++] = (char)b0;
                 }
                 continue;
             }
-            int b1 = data[index++] & 0xff;
+            int b1 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -180,20 +186,20 @@ public class UTF8DataChunk implements StringPool.StringProducer {
             if ((0xe0 & b0) == 0xc0) { // 110yyyyy 10xxxxxx
                 int ch = ((0x1f & b0)<<6) + (0x3f & b1); // yyy yyxx xxxx (0x80 to 0x7ff)
                 try {
-                    fTempBuffer[outOffset] = (char)ch;
+                    tempBuffer[outOffset] = (char)ch;
                     outOffset++;
                 } catch (NullPointerException ex) {
-                    fTempBuffer = new char[CHUNK_SIZE];
-                    fTempBuffer[outOffset++] = (char)ch;
+                    tempBuffer = new char[CHUNK_SIZE];
+                    tempBuffer[outOffset++] = (char)ch;
                 } catch (ArrayIndexOutOfBoundsException ex) {
                     char[] newBuffer = new char[outOffset * 2];
-                    System.arraycopy(fTempBuffer, 0, newBuffer, 0, outOffset);
-                    fTempBuffer = newBuffer;
-                    fTempBuffer[outOffset++] = (char)ch;
+                    System.arraycopy(tempBuffer, 0, newBuffer, 0, outOffset);
+                    tempBuffer = newBuffer;
+                    tempBuffer[outOffset++] = (char)ch;
                 }
                 continue;
             }
-            int b2 = data[index++] & 0xff;
+            int b2 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -203,20 +209,20 @@ public class UTF8DataChunk implements StringPool.StringProducer {
             if ((0xf0 & b0) == 0xe0) { // 1110zzzz 10yyyyyy 10xxxxxx
                 int ch = ((0x0f & b0)<<12) + ((0x3f & b1)<<6) + (0x3f & b2); // zzzz yyyy yyxx xxxx (0x800 to 0xffff)
                 try {
-                    fTempBuffer[outOffset] = (char)ch;
+                    tempBuffer[outOffset] = (char)ch;
                     outOffset++;
                 } catch (NullPointerException ex) {
-                    fTempBuffer = new char[CHUNK_SIZE];
-                    fTempBuffer[outOffset++] = (char)ch;
+                    tempBuffer = new char[CHUNK_SIZE];
+                    tempBuffer[outOffset++] = (char)ch;
                 } catch (ArrayIndexOutOfBoundsException ex) {
                     char[] newBuffer = new char[outOffset * 2];
-                    System.arraycopy(fTempBuffer, 0, newBuffer, 0, outOffset);
-                    fTempBuffer = newBuffer;
-                    fTempBuffer[outOffset++] = (char)ch;
+                    System.arraycopy(tempBuffer, 0, newBuffer, 0, outOffset);
+                    tempBuffer = newBuffer;
+                    tempBuffer[outOffset++] = (char)ch;
                 }
                 continue;
             }
-            int b3 = data[index++] & 0xff;  // 11110uuu 10uuzzzz 10yyyyyy 10xxxxxx
+            int b3 = data.get(index++) & 0xff;  // 11110uuu 10uuzzzz 10yyyyyy 10xxxxxx
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -226,47 +232,48 @@ public class UTF8DataChunk implements StringPool.StringProducer {
             int ch = ((0x0f & b0)<<18) + ((0x3f & b1)<<12) + ((0x3f & b2)<<6) + (0x3f & b3);
             if (ch < 0x10000) {
                 try {
-                    fTempBuffer[outOffset] = (char)ch;
+                    tempBuffer[outOffset] = (char)ch;
                     outOffset++;
                 } catch (NullPointerException ex) {
-                    fTempBuffer = new char[CHUNK_SIZE];
-                    fTempBuffer[outOffset++] = (char)ch;
+                    tempBuffer = new char[CHUNK_SIZE];
+                    tempBuffer[outOffset++] = (char)ch;
                 } catch (ArrayIndexOutOfBoundsException ex) {
                     char[] newBuffer = new char[outOffset * 2];
-                    System.arraycopy(fTempBuffer, 0, newBuffer, 0, outOffset);
-                    fTempBuffer = newBuffer;
-                    fTempBuffer[outOffset++] = (char)ch;
+                    System.arraycopy(tempBuffer, 0, newBuffer, 0, outOffset);
+                    tempBuffer = newBuffer;
+                    tempBuffer[outOffset++] = (char)ch;
                 }
             } else {
                 char ch1 = (char)(((ch-0x00010000)>>10)+0xd800);
                 char ch2 = (char)(((ch-0x00010000)&0x3ff)+0xdc00);
                 try {
-                    fTempBuffer[outOffset] = (char)ch1;
+                    tempBuffer[outOffset] = (char)ch1;
                     outOffset++;
                 } catch (NullPointerException ex) {
-                    fTempBuffer = new char[CHUNK_SIZE];
-                    fTempBuffer[outOffset++] = (char)ch1;
+                    tempBuffer = new char[CHUNK_SIZE];
+                    tempBuffer[outOffset++] = (char)ch1;
                 } catch (ArrayIndexOutOfBoundsException ex) {
                     char[] newBuffer = new char[outOffset * 2];
-                    System.arraycopy(fTempBuffer, 0, newBuffer, 0, outOffset);
-                    fTempBuffer = newBuffer;
-                    fTempBuffer[outOffset++] = (char)ch1;
+                    System.arraycopy(tempBuffer, 0, newBuffer, 0, outOffset);
+                    tempBuffer = newBuffer;
+                    tempBuffer[outOffset++] = (char)ch1;
                 }
                 try {
-                    fTempBuffer[outOffset] = (char)ch2;
+                    tempBuffer[outOffset] = (char)ch2;
                     outOffset++;
                 } catch (NullPointerException ex) {
-                    fTempBuffer = new char[CHUNK_SIZE];
-                    fTempBuffer[outOffset++] = (char)ch2;
+                    tempBuffer = new char[CHUNK_SIZE];
+                    tempBuffer[outOffset++] = (char)ch2;
                 } catch (ArrayIndexOutOfBoundsException ex) {
                     char[] newBuffer = new char[outOffset * 2];
-                    System.arraycopy(fTempBuffer, 0, newBuffer, 0, outOffset);
-                    fTempBuffer = newBuffer;
-                    fTempBuffer[outOffset++] = (char)ch2;
+                    System.arraycopy(tempBuffer, 0, newBuffer, 0, outOffset);
+                    tempBuffer = newBuffer;
+                    tempBuffer[outOffset++] = (char)ch2;
                 }
             }
         }
-        return new String(fTempBuffer, 0, outOffset);
+        freeList.fTempBuffer = tempBuffer;
+        return new String(tempBuffer, 0, outOffset);
     }
     //
     //
@@ -275,12 +282,12 @@ public class UTF8DataChunk implements StringPool.StringProducer {
         UTF8DataChunk dataChunk = this;
         int endOffset = offset + length;
         int index = offset & CHUNK_MASK;
-        byte[] data = fData;
+        ByteBuffer data = fData;
         boolean skiplf = false;
         while (offset < endOffset) {
             if (strLength-- == 0)
                 return false;
-            int b0 = data[index++] & 0xff;
+            int b0 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -301,7 +308,7 @@ public class UTF8DataChunk implements StringPool.StringProducer {
                     return false;
                 continue;
             }
-            int b1 = data[index++] & 0xff;
+            int b1 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -314,7 +321,7 @@ public class UTF8DataChunk implements StringPool.StringProducer {
                     return false;
                 continue;
             }
-            int b2 = data[index++] & 0xff;
+            int b2 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -327,7 +334,7 @@ public class UTF8DataChunk implements StringPool.StringProducer {
                     return false;
                 continue;
             }
-            int b3 = data[index++] & 0xff;  // 11110uuu 10uuzzzz 10yyyyyy 10xxxxxx
+            int b3 = data.get(index++) & 0xff;  // 11110uuu 10uuzzzz 10yyyyyy 10xxxxxx
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -408,10 +415,10 @@ public class UTF8DataChunk implements StringPool.StringProducer {
         UTF8DataChunk dataChunk = chunkFor(offset);
         int endOffset = offset + length;
         int index = offset & CHUNK_MASK;
-        byte[] data = dataChunk.fData;
+        ByteBuffer data = dataChunk.fData;
         boolean skiplf = false;
         while (offset < endOffset) {
-            int b0 = data[index++] & 0xff;
+            int b0 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -431,7 +438,7 @@ public class UTF8DataChunk implements StringPool.StringProducer {
                 charBuffer.append((char)b0);
                 continue;
             }
-            int b1 = data[index++] & 0xff;
+            int b1 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -443,7 +450,7 @@ public class UTF8DataChunk implements StringPool.StringProducer {
                 charBuffer.append((char)ch); // yyy yyxx xxxx (0x80 to 0x7ff)
                 continue;
             }
-            int b2 = data[index++] & 0xff;
+            int b2 = data.get(index++) & 0xff;
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -455,7 +462,7 @@ public class UTF8DataChunk implements StringPool.StringProducer {
                 charBuffer.append((char)ch); // zzzz yyyy yyxx xxxx (0x800 to 0xffff)
                 continue;
             }
-            int b3 = data[index++] & 0xff;  // 11110uuu 10uuzzzz 10yyyyyy 10xxxxxx
+            int b3 = data.get(index++) & 0xff;  // 11110uuu 10uuzzzz 10yyyyyy 10xxxxxx
             offset++;
             if (index == CHUNK_SIZE && offset < endOffset) {
                 dataChunk = dataChunk.fNextChunk;
@@ -478,26 +485,26 @@ public class UTF8DataChunk implements StringPool.StringProducer {
     private int getHashcode(int index, int length) {
         int endIndex = index + length;
         int hashcode = 0;
-        byte[] data = fData;
+        ByteBuffer data = fData;
         while (index < endIndex) {
-            int b0 = data[index++] & 0xff;
+            int b0 = data.get(index++) & 0xff;
             if ((b0 & 0x80) == 0) {
                 hashcode = StringHasher.hashChar(hashcode, b0);
                 continue;
             }
-            int b1 = data[index++] & 0xff;
+            int b1 = data.get(index++) & 0xff;
             if ((0xe0 & b0) == 0xc0) { // 110yyyyy 10xxxxxx
                 int ch = ((0x1f & b0)<<6) + (0x3f & b1); // yyy yyxx xxxx (0x80 to 0x7ff)
                 hashcode = StringHasher.hashChar(hashcode, ch);
                 continue;
             }
-            int b2 = data[index++] & 0xff;
+            int b2 = data.get(index++) & 0xff;
             if ((0xf0 & b0) == 0xe0) { // 1110zzzz 10yyyyyy 10xxxxxx
                 int ch = ((0x0f & b0)<<12) + ((0x3f & b1)<<6) + (0x3f & b2); // zzzz yyyy yyxx xxxx (0x800 to 0xffff)
                 hashcode = StringHasher.hashChar(hashcode, ch);
                 continue;
             }
-            int b3 = data[index++] & 0xff;  // 11110uuu 10uuzzzz 10yyyyyy 10xxxxxx
+            int b3 = data.get(index++) & 0xff;  // 11110uuu 10uuzzzz 10yyyyyy 10xxxxxx
             int ch = ((0x0f & b0)<<18) + ((0x3f & b1)<<12)
                     + ((0x3f & b2)<<6) + (0x3f & b3);
             if (ch < 0x10000)
@@ -563,10 +570,35 @@ public class UTF8DataChunk implements StringPool.StringProducer {
             fStringPool = null;
             fChunk = -1;
 //            fData = null;
+            if (fData != null && !fData.hasArray())
+                fData = null;   // do not hold on to the mapping
             fPreviousChunk = null;
-            fNextChunk = fgFreeChunks;
-            fgFreeChunks = this;
+            FreeList freeList = getFreeList();
+            if (freeList.fCount < MAX_FREE_CHUNKS) {
+                fNextChunk = freeList.fHead;
+                freeList.fHead = this;
+                freeList.fCount++;
+            } else {
+                fNextChunk = null;
+            }
+        }
+    }
+    //
+    // Each thread keeps its own list of free chunks, so that parsers
+    // running on different threads never share a chunk.
+    //
+    private static FreeList getFreeList() {
+        FreeList freeList = (FreeList)fgFreeList.get();
+        if (freeList == null) {
+            freeList = new FreeList();
+            fgFreeList.set(freeList);
         }
+        return freeList;
+    }
+    private static final class FreeList {
+        UTF8DataChunk fHead = null;
+        int fCount = 0;
+        char[] fTempBuffer = null;
     }
     //
     //
@@ -587,9 +619,9 @@ public class UTF8DataChunk implements StringPool.StringProducer {
     private StringPool fStringPool;
     private int fRefCount;
     private int fChunk;
-    private byte[] fData = null;
+    private ByteBuffer fData = null;
     private UTF8DataChunk fNextChunk;
     private UTF8DataChunk fPreviousChunk;
-    private static UTF8DataChunk fgFreeChunks = null;
-    private static char[] fTempBuffer = null;
+    private static final int MAX_FREE_CHUNKS = 16;
+    private static final ThreadLocal fgFreeList = new ThreadLocal();
 }
@@ -0,0 +1,173 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.validators.dtd;
+
+/**
+ * An open addressed hash index from (element, attribute name) pairs to
+ * attribute definitions. The element is the index of the element
+ * declaration and the attribute name is the full name of the attribute,
+ * so that all names that StringPool.equalNames considers equal map to
+ * the same entry.
+ *
+ * @version
+ */
+final class AttDefIndex {
+
+    //
+    // Constants
+    //
+
+    private static final int INITIAL_SIZE = 64;
+
+    //
+    // Data
+    //
+
+    private int[] fElement;
+    private int[] fAttName;
+    private int[] fAttDef;  // attDef index + 1, 0 if the slot is empty
+    private int fMask;
+    private int fCount = 0;
+
+    //
+    // Constructors
+    //
+
+    public AttDefIndex() {
+        allocate(INITIAL_SIZE);
+    }
+
+    //
+    // Public methods
+    //
+
+    /** Returns the attribute definition, or -1 if there is none. */
+    public int get(int elementIndex, int attName) {
+        int slot = hash(elementIndex, attName) & fMask;
+        int attDef;
+        while ((attDef = fAttDef[slot]) != 0) {
+            if (fElement[slot] == elementIndex && fAttName[slot] == attName)
+                return attDef - 1;
+            slot = (slot + 1) & fMask;
+        }
+        return -1;
+    }
+
+    /** Adds an attribute definition; the first definition is kept. */
+    public void put(int elementIndex, int attName, int attDefIndex) {
+        if ((fCount + 1) * 4 > fAttDef.length * 3)
+            rehash();
+        int slot = hash(elementIndex, attName) & fMask;
+        while (fAttDef[slot] != 0) {
+            if (fElement[slot] == elementIndex && fAttName[slot] == attName)
+                return;
+            slot = (slot + 1) & fMask;
+        }
+        fElement[slot] = elementIndex;
+        fAttName[slot] = attName;
+        fAttDef[slot] = attDefIndex + 1;
+        fCount++;
+    }
+
+    /** Removes all entries. */
+    public void clear() {
+        if (fCount == 0)
+            return;
+        if (fAttDef.length > INITIAL_SIZE * 16) {
+            allocate(INITIAL_SIZE);
+        } else {
+            for (int i = 0; i < fAttDef.length; i++)
+                fAttDef[i] = 0;
+        }
+        fCount = 0;
+    }
+
+    //
+    // Private methods
+    //
+
+    private void allocate(int size) {
+        fElement = new int[size];
+        fAttName = new int[size];
+        fAttDef = new int[size];
+        fMask = size - 1;
+    }
+
+    private void rehash() {
+        int[] element = fElement;
+        int[] attName = fAttName;
+        int[] attDef = fAttDef;
+        allocate(attDef.length * 2);
+        for (int i = 0; i < attDef.length; i++) {
+            if (attDef[i] != 0) {
+                int slot = hash(element[i], attName[i]) & fMask;
+                while (fAttDef[slot] != 0)
+                    slot = (slot + 1) & fMask;
+                fElement[slot] = element[i];
+                fAttName[slot] = attName[i];
+                fAttDef[slot] = attDef[i];
+            }
+        }
+    }
+
+    private static int hash(int elementIndex, int attName) {
+        int h = elementIndex * 0x9E3779B9 + attName;
+        return h ^ (h >>> 16);
+    }
+
+} // class AttDefIndex
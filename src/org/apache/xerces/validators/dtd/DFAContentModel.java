@@ -61,6 +61,10 @@ import org.apache.xerces.framework.*;
 import org.apache.xerces.utils.StringPool;
 import org.apache.xerces.utils.ImplementationMessages;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * DFAContentModel is the derivative of ContentModel that does
  * all of the non-trivial element content validation. This class does 
@@ -82,6 +86,11 @@ public class DFAContentModel implements XMLContentModel
     // Constants
     //
 
+    // element hash
+
+    /** Multiplier of the element hash (the golden ratio times 2^32). */
+    private static final int ELEM_HASH_MULTIPLIER = 0x9E3779B9;
+
     // special strings
 
     /** Epsilon string. */
@@ -144,6 +153,46 @@ public class DFAContentModel implements XMLContentModel
         buildDFA(syntaxTree);
     }
 
+    /**
+     * Constructs a DFA content model that shares the DFA of an existing
+     * model, using a different string pool. This is used to attach a
+     * cached grammar to a new parse without rebuilding the DFA.
+     *
+     * @param stringPool    The string pool.
+     * @param model         The model whose DFA is shared.
+     * @param elemMap       The element map, translated to the string pool.
+     */
+    DFAContentModel(StringPool stringPool, DFAContentModel model, int[] elemMap)
+    {
+        fStringPool = stringPool;
+        fLeafCount = model.fLeafCount;
+        fEpsilonIndex = fStringPool.addSymbol(fEpsilonString);
+        fEOCIndex = fStringPool.addSymbol(fEOCString);
+        fEOCPos = model.fEOCPos;
+        fElemMap = elemMap;
+        fElemMapSize = model.fElemMapSize;
+        for (int index = 0; index < fElemMapSize; index++)
+        {
+            // The end of content node is passed in as -1
+            if (fElemMap[index] == -1)
+                fElemMap[index] = fEOCIndex;
+        }
+        buildElemHash();
+        fTransTable = model.fTransTable;
+        fTransTableSize = model.fTransTableSize;
+        fFinalStateFlags = model.fFinalStateFlags;
+        fEmptyContentIsValid = model.fEmptyContentIsValid;
+    }
+
+    /**
+     * Constructs an empty DFA content model, to be filled in by copyDFA
+     * or readDFA. Such a model has no string pool or element map and is
+     * only used to share its DFA with models created for each parse.
+     */
+    private DFAContentModel()
+    {
+    }
+
 
     // -----------------------------------------------------------------------
     //  Public, inherited methods
@@ -210,7 +259,7 @@ public class DFAContentModel implements XMLContentModel
 
         //
         //  Lets loop through the children in the array and move our way
-        //  through the states. Note that we use the fElemMap array to map
+        //  through the states. Note that we use the element hash to map
         //  an element index to a state index.
         //
         int curState = 0;
@@ -220,15 +269,10 @@ public class DFAContentModel implements XMLContentModel
             final int curElem = children[childIndex];
 
             // Look up this child in our element map
-            int elemIndex = 0;
-            for (; elemIndex < fElemMapSize; elemIndex++)
-            {
-                if (fElemMap[elemIndex] == curElem)
-                    break;
-            }
+            final int elemIndex = getElemIndex(curElem);
 
             // If we didn't find it, then obviously not valid
-            if (elemIndex == fElemMapSize) {
+            if (elemIndex == -1) {
                 if (DEBUG_VALIDATE_CONTENT) 
                     System.out.println("!!! didn't find it");
                 return childIndex;
@@ -238,7 +282,7 @@ public class DFAContentModel implements XMLContentModel
             //  Look up the next state for this input symbol when in the
             //  current state.
             //
-            curState = fTransTable[curState][elemIndex];
+            curState = fTransTable[curState * fElemMapSize + elemIndex];
 
             // If its not a legal transition, then invalid
             if (curState == -1) {
@@ -304,22 +348,17 @@ public class DFAContentModel implements XMLContentModel
             final int curElem = info.curChildren[childIndex];
 
             // Look up this child in our element map
-            int elemIndex = 0;
-            for (; elemIndex < fElemMapSize; elemIndex++)
-            {
-                if (fElemMap[elemIndex] == curElem)
-                    break;
-            }
+            final int elemIndex = getElemIndex(curElem);
 
             // If we didn't find it, then not valid so return failure index
-            if (elemIndex == fElemMapSize)
+            if (elemIndex == -1)
                 return childIndex;
 
             //
             //  Look up the next state for this input symbol when in the
             //  current state.
             //
-            curState = fTransTable[curState][elemIndex];
+            curState = fTransTable[curState * fElemMapSize + elemIndex];
 
             // If its not a legal transition, then invalid
             if (curState == -1)
@@ -366,7 +405,7 @@ public class DFAContentModel implements XMLContentModel
         for (int index = 0; index < fElemMapSize; index++)
         {
             info.possibleChildren[index] = fElemMap[index];
-            info.results[index] = (fTransTable[insertState][index] != -1);
+            info.results[index] = (fTransTable[insertState * fElemMapSize + index] != -1);
         }
 
         //
@@ -400,6 +439,132 @@ public class DFAContentModel implements XMLContentModel
     }
 
 
+    /**
+     * Returns the state of this content model before any children have
+     * been seen, which is the first state of the DFA.
+     *
+     * @return The start state.
+     */
+    public int getStartState()
+    {
+        return 0;
+    }
+
+    /**
+     * Returns the DFA state that follows the given state when the next
+     * child is seen.
+     *
+     * @param state The current state.
+     * @param child The index of the child element name, or -1 for
+     *              character data.
+     *
+     * @return The next state, or -1 if the child is not allowed here.
+     */
+    public int nextState(int state, int child)
+    {
+        // Look up this child in our element map
+        final int elemIndex = getElemIndex(child);
+
+        // If we didn't find it, then obviously not valid
+        if (elemIndex == -1)
+            return -1;
+
+        return fTransTable[state * fElemMapSize + elemIndex];
+    }
+
+    /**
+     * Returns true if the given DFA state is a valid end of content.
+     *
+     * @param state The current state.
+     *
+     * @return True if the state is a valid end of content.
+     */
+    public boolean isFinalState(int state)
+    {
+        return fFinalStateFlags[state];
+    }
+
+
+    // -----------------------------------------------------------------------
+    //  Package methods
+    // -----------------------------------------------------------------------
+    int[] getElemMap()
+    {
+        return fElemMap;
+    }
+
+    int getElemMapSize()
+    {
+        return fElemMapSize;
+    }
+
+    int getEOCIndex()
+    {
+        return fEOCIndex;
+    }
+
+    int getTransTableSize()
+    {
+        return fTransTableSize;
+    }
+
+    //
+    //  Returns a model holding only the DFA of this model, without the
+    //  string pool or the element map, which depend on the parse.
+    //
+    DFAContentModel copyDFA()
+    {
+        DFAContentModel model = new DFAContentModel();
+        model.fLeafCount = fLeafCount;
+        model.fEOCPos = fEOCPos;
+        model.fElemMapSize = fElemMapSize;
+        model.fTransTable = fTransTable;
+        model.fTransTableSize = fTransTableSize;
+        model.fFinalStateFlags = fFinalStateFlags;
+        model.fEmptyContentIsValid = fEmptyContentIsValid;
+        return model;
+    }
+
+    //
+    //  Writes the DFA, without the element map, which depends on the
+    //  string pool and is written by the grammar that owns this model.
+    //
+    void writeDFA(DataOutputStream out) throws IOException
+    {
+        out.writeInt(fLeafCount);
+        out.writeInt(fEOCPos);
+        out.writeInt(fElemMapSize);
+        out.writeInt(fTransTableSize);
+        out.writeBoolean(fEmptyContentIsValid);
+        final int tableSize = fTransTableSize * fElemMapSize;
+        for (int index = 0; index < tableSize; index++)
+            out.writeInt(fTransTable[index]);
+        for (int index = 0; index < fTransTableSize; index++)
+            out.writeBoolean(fFinalStateFlags[index]);
+    }
+
+    //
+    //  Reads a DFA written by writeDFA.
+    //
+    static DFAContentModel readDFA(DataInputStream in) throws IOException
+    {
+        DFAContentModel model = new DFAContentModel();
+        model.fLeafCount = in.readInt();
+        model.fEOCPos = in.readInt();
+        model.fElemMapSize = in.readInt();
+        model.fTransTableSize = in.readInt();
+        model.fEmptyContentIsValid = in.readBoolean();
+        final int tableSize = model.fTransTableSize * model.fElemMapSize;
+        model.fTransTable = new int[tableSize];
+        for (int index = 0; index < tableSize; index++)
+            model.fTransTable[index] = in.readInt();
+        model.fFinalStateFlags = new boolean[model.fTransTableSize];
+        for (int index = 0; index < model.fTransTableSize; index++)
+            model.fFinalStateFlags[index] = in.readBoolean();
+        return model;
+    }
+
+
     // -----------------------------------------------------------------------
     //  Private methods
     // -----------------------------------------------------------------------
@@ -524,7 +689,7 @@ public class DFAContentModel implements XMLContentModel
         int curArraySize = fLeafCount * 4;
         CMStateSet[] statesToDo = new CMStateSet[curArraySize];
         fFinalStateFlags = new boolean[curArraySize];
-        fTransTable = new int[curArraySize][];
+        int[][] transTable = new int[curArraySize][];
 
         //
         //  Ok we start with the initial set as the first pos set of the
@@ -548,7 +713,7 @@ public class DFAContentModel implements XMLContentModel
         //  Init the first transition table entry, and put the initial state
         //  into the states to do list, then bump the current state.
         //
-        fTransTable[curState] = makeDefStateList();
+        transTable[curState] = makeDefStateList();
         statesToDo[curState] = setT;
         curState++;
 
@@ -564,7 +729,7 @@ public class DFAContentModel implements XMLContentModel
             //  And get the associated transition table entry.
             //
             setT = statesToDo[unmarkedState];
-            int[] transEntry = fTransTable[unmarkedState];
+            int[] transEntry = transTable[unmarkedState];
 
             // Mark this one final if it contains the EOC state
             fFinalStateFlags[unmarkedState] = setT.getBit(fEOCPos);
@@ -628,7 +793,7 @@ public class DFAContentModel implements XMLContentModel
                         //  table.
                         //
                         statesToDo[curState] = newSet;
-                        fTransTable[curState] = makeDefStateList();
+                        transTable[curState] = makeDefStateList();
 
                         // We now have a new state to do so bump the count
                         curState++;
@@ -667,19 +832,34 @@ public class DFAContentModel implements XMLContentModel
                         {
                             newToDo[expIndex] = statesToDo[expIndex];
                             newFinalFlags[expIndex] = fFinalStateFlags[expIndex];
-                            newTransTable[expIndex] = fTransTable[expIndex];
+                            newTransTable[expIndex] = transTable[expIndex];
                         }
 
                         // Store the new array size
                         curArraySize = newSize;
                         statesToDo = newToDo;
                         fFinalStateFlags = newFinalFlags;
-                        fTransTable = newTransTable;
+                        transTable = newTransTable;
                     }
                 }
             }
         }
 
+        fTransTableSize = curState;
+
+        //
+        //  Flatten the transition table into a single array, with the row
+        //  for each state fElemMapSize entries long, and build the hash
+        //  index of the element map.
+        //
+        fTransTable = new int[fTransTableSize * fElemMapSize];
+        for (int stateIndex = 0; stateIndex < fTransTableSize; stateIndex++)
+        {
+            System.arraycopy(transTable[stateIndex], 0, fTransTable,
+                             stateIndex * fElemMapSize, fElemMapSize);
+        }
+        buildElemHash();
+
         // Check to see if we can set the fEmptyContentIsValid flag.
         fEmptyContentIsValid = ((CMBinOp)fHeadNode).getLeft().isNullable();
 
@@ -842,6 +1022,56 @@ public class DFAContentModel implements XMLContentModel
     }
 
 
+    //
+    //  Builds the hash index from element indexes to positions in the
+    //  element map. The table is open addressed with linear probing and is
+    //  kept no more than half full. Each slot is a pair of ints, the element
+    //  index (-1 if the slot is empty) followed by its element map position.
+    //
+    private void buildElemHash()
+    {
+        int bits = 1;
+        while ((1 << bits) < fElemMapSize * 2)
+            bits++;
+        fElemHashShift = 32 - bits;
+        fElemHashMask = (1 << bits) - 1;
+        fElemHash = new int[2 << bits];
+        for (int index = 0; index < fElemHash.length; index += 2)
+            fElemHash[index] = -1;
+        for (int elemIndex = 0; elemIndex < fElemMapSize; elemIndex++)
+        {
+            final int curElem = fElemMap[elemIndex];
+            int slot = (curElem * ELEM_HASH_MULTIPLIER) >>> fElemHashShift;
+            while (fElemHash[slot << 1] != -1)
+                slot = (slot + 1) & fElemHashMask;
+            fElemHash[slot << 1] = curElem;
+            fElemHash[(slot << 1) + 1] = elemIndex;
+        }
+    }
+
+
+    //
+    //  Returns the position of the given element index in the element map,
+    //  or -1 if it is not an input symbol of this content model. Character
+    //  data (-1) is never an input symbol.
+    //
+    private int getElemIndex(int curElem)
+    {
+        if (curElem < 0)
+            return -1;
+        int slot = (curElem * ELEM_HASH_MULTIPLIER) >>> fElemHashShift;
+        while (true)
+        {
+            final int key = fElemHash[slot << 1];
+            if (key == curElem)
+                return fElemHash[(slot << 1) + 1];
+            if (key == -1)
+                return -1;
+            slot = (slot + 1) & fElemHashMask;
+        }
+    }
+
+
     private int postTreeBuildInit(CMNode nodeCur, int curIndex) throws CMException
     {
         // Set the maximum states on this node
@@ -893,6 +1123,14 @@ public class DFAContentModel implements XMLContentModel
     //      of the built DFA information that must be kept around to do the
     //      actual validation.
     //
+    //  fElemHash
+    //  fElemHashMask
+    //  fElemHashShift
+    //      The hash index of fElemMap, used to find the input symbol of a
+    //      child without searching the map. It is built from fElemMap after
+    //      the DFA is built, and again when a cached DFA is shared with a
+    //      new string pool, since the element indexes change.
+    //
     //  fEOCIndex
     //      The string index for the 'end of content' string that we add to
     //      the string pool. This is used as the special name of an element
@@ -946,21 +1184,23 @@ public class DFAContentModel implements XMLContentModel
     //  fTransTable
     //  fTransTableSize
     //      This is the transition table that is the main by product of all
-    //      of the effort here. It is an array of arrays of ints. The first
-    //      dimension is the number of states we end up with in the DFA. The
-    //      second dimensions is the number of unique elements in the content
-    //      model (fElemMapSize). Each entry in the second dimension indicates
-    //      the new state given that input for the first dimension's start
-    //      state.
+    //      of the effort here. It holds one row of ints for each state we end
+    //      up with in the DFA, stored one after another in a single array.
+    //      Each row is fElemMapSize entries long, one for each unique element
+    //      in the content model. The entry at (state * fElemMapSize + index)
+    //      indicates the new state given that input in that start state.
     //
     //      The fElemMap array handles mapping from element indexes to
-    //      positions in the second dimension of the transition table.
+    //      positions in each row of the transition table.
     //
     //      fTransTableSize is the number of valid entries in the transition
     //      table, and in the other related tables such as fFinalStateFlags.
     // -----------------------------------------------------------------------
     private int[]           fElemMap        = null;
     private int             fElemMapSize    = 0;
+    private int[]           fElemHash       = null;
+    private int             fElemHashMask   = 0;
+    private int             fElemHashShift  = 0;
     private int             fEOCIndex       = 0;
     private int             fEOCPos         = 0;
     private int             fEpsilonIndex   = 0;
@@ -970,7 +1210,7 @@ public class DFAContentModel implements XMLContentModel
     private int             fLeafCount      = 0;
     private CMLeaf[]        fLeafList       = null;
     private StringPool      fStringPool     = null;
-    private int[][]         fTransTable     = null;
+    private int[]           fTransTable     = null;
     private int             fTransTableSize = 0;
 
     /**
@@ -0,0 +1,535 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.validators.dtd;
+
+import org.apache.xerces.utils.StringPool;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Hashtable;
+
+/**
+ * A compiled external DTD subset that can be shared between parses.
+ * <p>
+ * StringPool handles are only meaningful within the pool that created
+ * them, and each parse gets a fresh pool, so the grammar records the
+ * declaration events seen by the DTDValidator with every handle replaced
+ * by an index into a pool independent name table. Attaching the grammar
+ * to a later parse interns the names once and replays the declarations,
+ * which is much cheaper than decoding and rescanning the DTD. The DFA
+ * content models that were built for the grammar are kept as well and
+ * are shared, with their element maps translated to the new pool.
+ * <p>
+ * Once a grammar has been stored in a DTDGrammarCache it is never
+ * modified again, so a single instance may be attached by any number of
+ * parsers at the same time.
+ * <p>
+ * Since nothing in a sealed grammar depends on a StringPool, it can also
+ * be written to a stream and read back in another process, which lets
+ * a DTDGrammarCache be saved and loaded without compiling the DTDs.
+ *
+ * @see DTDGrammarCache
+ * @version
+ */
+public final class DTDGrammar {
+
+    //
+    // Constants
+    //
+
+    // declaration events
+    static final int OP_ELEMENT = 0;                // elementType
+    static final int OP_ELEMENT_DECL = 1;           // elementType, contentSpecType, contentSpec
+    static final int OP_ATTDEF = 2;                 // elementIndex, attName, attType, enum, defaultType, defaultValue
+    static final int OP_UNIQUE_LEAF = 3;            // nodeValue
+    static final int OP_CONTENTSPEC_NODE = 4;       // nodeType, nodeValue, otherNodeValue
+    static final int OP_INTERNAL_PE = 5;            // name, value, location
+    static final int OP_EXTERNAL_PE = 6;            // name, publicId, systemId
+    static final int OP_INTERNAL_ENTITY = 7;        // name, value, location
+    static final int OP_EXTERNAL_ENTITY = 8;        // name, publicId, systemId
+    static final int OP_UNPARSED_ENTITY = 9;        // name, publicId, systemId, notationName
+    static final int OP_START_ENUMERATION = 10;     // enum
+    static final int OP_ENUMERATION_NAME = 11;      // enum, elementType, attrName, name, isNotationType
+    static final int OP_END_ENUMERATION = 12;       // enum
+    static final int OP_NOTATION = 13;              // name, publicId, systemId
+    static final int OP_COMMENT = 14;               // data
+    static final int OP_PI = 15;                    // target, data
+
+    // name kinds
+    static final byte KIND_SYMBOL = 0;
+    static final byte KIND_QNAME = 1;
+    static final byte KIND_STRING = 2;
+
+    //
+    // Data
+    //
+
+    private boolean fNamespacesEnabled = false;
+    private boolean fSealed = false;
+
+    // name table
+    private int fNameCount = 0;
+    private String[] fNameString = new String[64];
+    private byte[] fNameKind = new byte[64];
+    private int[] fNamePrefix = new int[64];
+    private int[] fNameLocalPart = new int[64];
+    private Hashtable fHandleMap = new Hashtable();
+
+    // declaration events
+    private int fOpCount = 0;
+    private int[] fOps = new int[256];
+    private int fEnumerationCount = 0;
+    private Hashtable fEnumerationMap = new Hashtable();
+
+    // shared DFA content models
+    private int fModelCount = 0;
+    private int[] fModelElementIndex = new int[8];
+    private DFAContentModel[] fModel = new DFAContentModel[8];
+    private int[][] fModelElemMap = new int[8][];
+
+    // approximate size, used by the cache
+    private int fSize = 0;
+
+    //
+    // Constructors
+    //
+
+    DTDGrammar(boolean namespacesEnabled) {
+        fNamespacesEnabled = namespacesEnabled;
+    }
+
+    //
+    // Public methods
+    //
+
+    /** Returns true if the element and attribute names are QNames. */
+    public boolean getNamespacesEnabled() {
+        return fNamespacesEnabled;
+    }
+
+    /** Returns the number of recorded declaration events. */
+    public int getDeclarationCount() {
+        return fOpCount == 0 ? 0 : countOps();
+    }
+
+    /**
+     * Returns the approximate size of this grammar, in array slots. This
+     * is the weight used by the cache when it decides what to evict.
+     */
+    public int getSize() {
+        return fSize + fOpCount + fNameCount * 4;
+    }
+
+    //
+    // Recording
+    //
+
+    boolean isEmpty() {
+        return fOpCount == 0;
+    }
+
+    void seal() {
+        fSealed = true;
+        fHandleMap = null;
+        fEnumerationMap = null;
+    }
+
+    boolean isSealed() {
+        return fSealed;
+    }
+
+    int name(StringPool stringPool, int handle) {
+        if (handle == -1)
+            return -1;
+        Integer key = new Integer(handle);
+        Integer value = (Integer)fHandleMap.get(key);
+        if (value != null)
+            return value.intValue();
+        int nameIndex;
+        int fullname = stringPool.getFullNameForQName(handle);
+        if (fullname != handle) {
+            int prefix = name(stringPool, stringPool.getPrefixForQName(handle));
+            int localpart = name(stringPool, stringPool.getLocalPartForQName(handle));
+            nameIndex = addName(stringPool.toString(fullname), KIND_QNAME);
+            fNamePrefix[nameIndex] = prefix;
+            fNameLocalPart[nameIndex] = localpart;
+        } else {
+            nameIndex = addName(stringPool.toString(handle), KIND_SYMBOL);
+        }
+        fHandleMap.put(key, new Integer(nameIndex));
+        return nameIndex;
+    }
+
+    int string(StringPool stringPool, int handle) {
+        if (handle == -1)
+            return -1;
+        return addName(stringPool.toString(handle), KIND_STRING);
+    }
+
+    int enumeration(int enumHandle) {
+        if (enumHandle == -1)
+            return -1;
+        Integer value = (Integer)fEnumerationMap.get(new Integer(enumHandle));
+        return value == null ? -1 : value.intValue();
+    }
+
+    int startEnumeration(int enumHandle) {
+        int enumIndex = fEnumerationCount++;
+        fEnumerationMap.put(new Integer(enumHandle), new Integer(enumIndex));
+        return enumIndex;
+    }
+
+    void addOp(int op, int arg1) {
+        ensureOpCapacity(2);
+        fOps[fOpCount++] = op;
+        fOps[fOpCount++] = arg1;
+    }
+
+    void addOp(int op, int arg1, int arg2) {
+        ensureOpCapacity(3);
+        fOps[fOpCount++] = op;
+        fOps[fOpCount++] = arg1;
+        fOps[fOpCount++] = arg2;
+    }
+
+    void addOp(int op, int arg1, int arg2, int arg3) {
+        ensureOpCapacity(4);
+        fOps[fOpCount++] = op;
+        fOps[fOpCount++] = arg1;
+        fOps[fOpCount++] = arg2;
+        fOps[fOpCount++] = arg3;
+    }
+
+    void addOp(int op, int arg1, int arg2, int arg3, int arg4) {
+        ensureOpCapacity(5);
+        fOps[fOpCount++] = op;
+        fOps[fOpCount++] = arg1;
+        fOps[fOpCount++] = arg2;
+        fOps[fOpCount++] = arg3;
+        fOps[fOpCount++] = arg4;
+    }
+
+    void addOp(int op, int arg1, int arg2, int arg3, int arg4, int arg5) {
+        ensureOpCapacity(6);
+        fOps[fOpCount++] = op;
+        fOps[fOpCount++] = arg1;
+        fOps[fOpCount++] = arg2;
+        fOps[fOpCount++] = arg3;
+        fOps[fOpCount++] = arg4;
+        fOps[fOpCount++] = arg5;
+    }
+
+    void addOp(int op, int arg1, int arg2, int arg3, int arg4, int arg5, int arg6) {
+        ensureOpCapacity(7);
+        fOps[fOpCount++] = op;
+        fOps[fOpCount++] = arg1;
+        fOps[fOpCount++] = arg2;
+        fOps[fOpCount++] = arg3;
+        fOps[fOpCount++] = arg4;
+        fOps[fOpCount++] = arg5;
+        fOps[fOpCount++] = arg6;
+    }
+
+    boolean addContentModel(StringPool stringPool, int elementIndex, DFAContentModel model) {
+        int[] elemMap = model.getElemMap();
+        int elemMapSize = model.getElemMapSize();
+        int[] names = new int[elemMapSize];
+        int eocIndex = model.getEOCIndex();
+        for (int i = 0; i < elemMapSize; i++) {
+            if (elemMap[i] == eocIndex) {
+                names[i] = -1;
+                continue;
+            }
+            Integer value = (Integer)fHandleMap.get(new Integer(elemMap[i]));
+            if (value == null)
+                return false;
+            names[i] = value.intValue();
+        }
+        if (fModelCount == fModel.length) {
+            int newSize = fModelCount * 2;
+            int[] newElementIndex = new int[newSize];
+            System.arraycopy(fModelElementIndex, 0, newElementIndex, 0, fModelCount);
+            fModelElementIndex = newElementIndex;
+            DFAContentModel[] newModel = new DFAContentModel[newSize];
+            System.arraycopy(fModel, 0, newModel, 0, fModelCount);
+            fModel = newModel;
+            int[][] newElemMap = new int[newSize][];
+            System.arraycopy(fModelElemMap, 0, newElemMap, 0, fModelCount);
+            fModelElemMap = newElemMap;
+        }
+        fModelElementIndex[fModelCount] = elementIndex;
+        fModel[fModelCount] = model.copyDFA();
+        fModelElemMap[fModelCount] = names;
+        fModelCount++;
+        fSize += model.getTransTableSize() * (elemMapSize + 1) + elemMapSize;
+        return true;
+    }
+
+    //
+    // Attaching
+    //
+
+    /**
+     * Interns the name table into the given string pool, returning the
+     * handle of each name indexed by its position in the table.
+     */
+    int[] createHandles(StringPool stringPool) {
+        int[] handles = new int[fNameCount];
+        for (int i = 0; i < fNameCount; i++) {
+            switch (fNameKind[i]) {
+            case KIND_SYMBOL:
+                handles[i] = stringPool.addSymbol(fNameString[i]);
+                break;
+            case KIND_QNAME:
+                int prefix = fNamePrefix[i] == -1 ? -1 : handles[fNamePrefix[i]];
+                int localpart = handles[fNameLocalPart[i]];
+                handles[i] = stringPool.addQName(stringPool.addSymbol(fNameString[i]), prefix, localpart);
+                break;
+            default:
+                handles[i] = stringPool.addString(fNameString[i]);
+                break;
+            }
+        }
+        return handles;
+    }
+
+    int getOpCount() {
+        return fOpCount;
+    }
+
+    int[] getOps() {
+        return fOps;
+    }
+
+    int getEnumerationCount() {
+        return fEnumerationCount;
+    }
+
+    int getContentModelCount() {
+        return fModelCount;
+    }
+
+    int getContentModelElementIndex(int modelIndex) {
+        return fModelElementIndex[modelIndex];
+    }
+
+    DFAContentModel createContentModel(int modelIndex, StringPool stringPool, int[] handles) {
+        int[] names = fModelElemMap[modelIndex];
+        int[] elemMap = new int[names.length];
+        for (int i = 0; i < names.length; i++)
+            elemMap[i] = names[i] == -1 ? -1 : handles[names[i]];
+        return new DFAContentModel(stringPool, fModel[modelIndex], elemMap);
+    }
+
+    /** Returns the number of arguments that follow the given op code. */
+    static int getArgCount(int op) {
+        switch (op) {
+        case OP_ELEMENT:
+        case OP_UNIQUE_LEAF:
+        case OP_START_ENUMERATION:
+        case OP_END_ENUMERATION:
+        case OP_COMMENT:
+            return 1;
+        case OP_PI:
+            return 2;
+        case OP_ELEMENT_DECL:
+        case OP_CONTENTSPEC_NODE:
+        case OP_INTERNAL_PE:
+        case OP_EXTERNAL_PE:
+        case OP_INTERNAL_ENTITY:
+        case OP_EXTERNAL_ENTITY:
+        case OP_NOTATION:
+            return 3;
+        case OP_UNPARSED_ENTITY:
+            return 4;
+        case OP_ENUMERATION_NAME:
+            return 5;
+        case OP_ATTDEF:
+            return 6;
+        }
+        throw new RuntimeException("DTDGrammar: unknown op " + op);
+    }
+
+    //
+    // Serialization
+    //
+
+    /** Writes this grammar, which must be sealed. */
+    void write(DataOutputStream out) throws IOException {
+        out.writeBoolean(fNamespacesEnabled);
+        out.writeInt(fSize);
+        out.writeInt(fNameCount);
+        for (int i = 0; i < fNameCount; i++) {
+            out.writeByte(fNameKind[i]);
+            out.writeInt(fNamePrefix[i]);
+            out.writeInt(fNameLocalPart[i]);
+            writeString(out, fNameString[i]);
+        }
+        out.writeInt(fOpCount);
+        for (int i = 0; i < fOpCount; i++)
+            out.writeInt(fOps[i]);
+        out.writeInt(fEnumerationCount);
+        out.writeInt(fModelCount);
+        for (int i = 0; i < fModelCount; i++) {
+            out.writeInt(fModelElementIndex[i]);
+            int[] names = fModelElemMap[i];
+            out.writeInt(names.length);
+            for (int j = 0; j < names.length; j++)
+                out.writeInt(names[j]);
+            fModel[i].writeDFA(out);
+        }
+    }
+
+    /** Reads a grammar written by write. The grammar is sealed. */
+    static DTDGrammar read(DataInputStream in) throws IOException {
+        DTDGrammar grammar = new DTDGrammar(in.readBoolean());
+        grammar.fSize = in.readInt();
+        int nameCount = in.readInt();
+        grammar.fNameCount = nameCount;
+        grammar.fNameString = new String[nameCount];
+        grammar.fNameKind = new byte[nameCount];
+        grammar.fNamePrefix = new int[nameCount];
+        grammar.fNameLocalPart = new int[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            grammar.fNameKind[i] = in.readByte();
+            grammar.fNamePrefix[i] = in.readInt();
+            grammar.fNameLocalPart[i] = in.readInt();
+            grammar.fNameString[i] = readString(in);
+        }
+        int opCount = in.readInt();
+        grammar.fOpCount = opCount;
+        grammar.fOps = new int[opCount];
+        for (int i = 0; i < opCount; i++)
+            grammar.fOps[i] = in.readInt();
+        grammar.fEnumerationCount = in.readInt();
+        int modelCount = in.readInt();
+        grammar.fModelCount = modelCount;
+        grammar.fModelElementIndex = new int[modelCount];
+        grammar.fModel = new DFAContentModel[modelCount];
+        grammar.fModelElemMap = new int[modelCount][];
+        for (int i = 0; i < modelCount; i++) {
+            grammar.fModelElementIndex[i] = in.readInt();
+            int[] names = new int[in.readInt()];
+            for (int j = 0; j < names.length; j++)
+                names[j] = in.readInt();
+            grammar.fModelElemMap[i] = names;
+            grammar.fModel[i] = DFAContentModel.readDFA(in);
+        }
+        grammar.seal();
+        return grammar;
+    }
+
+    //
+    // Private methods
+    //
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        int length = str.length();
+        out.writeInt(length);
+        for (int i = 0; i < length; i++)
+            out.writeChar(str.charAt(i));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = in.readChar();
+        return new String(chars);
+    }
+
+    private int countOps() {
+        int count = 0;
+        for (int i = 0; i < fOpCount; i += getArgCount(fOps[i]) + 1)
+            count++;
+        return count;
+    }
+
+    private int addName(String str, byte kind) {
+        if (fNameCount == fNameString.length) {
+            int newSize = fNameCount * 2;
+            String[] newString = new String[newSize];
+            System.arraycopy(fNameString, 0, newString, 0, fNameCount);
+            fNameString = newString;
+            byte[] newKind = new byte[newSize];
+            System.arraycopy(fNameKind, 0, newKind, 0, fNameCount);
+            fNameKind = newKind;
+            int[] newPrefix = new int[newSize];
+            System.arraycopy(fNamePrefix, 0, newPrefix, 0, fNameCount);
+            fNamePrefix = newPrefix;
+            int[] newLocalPart = new int[newSize];
+            System.arraycopy(fNameLocalPart, 0, newLocalPart, 0, fNameCount);
+            fNameLocalPart = newLocalPart;
+        }
+        fNameString[fNameCount] = str;
+        fNameKind[fNameCount] = kind;
+        fNamePrefix[fNameCount] = -1;
+        fNameLocalPart[fNameCount] = -1;
+        fSize += str.length();
+        return fNameCount++;
+    }
+
+    private void ensureOpCapacity(int count) {
+        if (fOpCount + count > fOps.length) {
+            int[] newOps = new int[fOps.length * 2];
+            System.arraycopy(fOps, 0, newOps, 0, fOpCount);
+            fOps = newOps;
+        }
+    }
+
+} // class DTDGrammar
@@ -0,0 +1,345 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.validators.dtd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Hashtable;
+
+/**
+ * A cache of compiled external DTD subsets that may be shared by any
+ * number of parsers, including parsers running on different threads.
+ * <p>
+ * Grammars are keyed by the expanded system identifier and the public
+ * identifier of the external subset. The cache is bounded by the total
+ * size of the grammars it holds (see <code>DTDGrammar.getSize()</code>);
+ * when a new grammar would exceed the bound, the least recently used
+ * grammars are evicted first.
+ * <p>
+ * A parser only uses the cache for documents whose DOCTYPE has no
+ * internal subset declarations, since those can change the meaning of
+ * the external subset.
+ * <p>
+ * The contents of a cache can be saved to a stream and loaded into
+ * another cache, for example when a service starts, so that the DTDs do
+ * not have to be scanned and their content models compiled again. The
+ * saved form is only read back by the same version of the parser.
+ *
+ * @see DTDGrammar
+ * @version
+ */
+public class DTDGrammarCache {
+
+    //
+    // Constants
+    //
+
+    /** Default maximum size of the cache. */
+    public static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+    /** Identifies a saved cache ("XDGC"). */
+    private static final int SAVED_MAGIC = 0x58444743;
+
+    /** Version of the saved cache format. */
+    private static final int SAVED_VERSION = 1;
+
+    //
+    // Data
+    //
+
+    private int fMaxSize;
+    private int fSize = 0;
+    private Hashtable fEntries = new Hashtable();
+    private Entry fHead = null;     // most recently used
+    private Entry fTail = null;     // least recently used
+
+    // statistics
+    private int fHitCount = 0;
+    private int fMissCount = 0;
+    private int fEvictionCount = 0;
+
+    //
+    // Constructors
+    //
+
+    /** Constructs a cache with the default maximum size. */
+    public DTDGrammarCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /** Constructs a cache bounded by the given size. */
+    public DTDGrammarCache(int maxSize) {
+        fMaxSize = maxSize;
+    }
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Returns the cached grammar for the given external subset, or null
+     * if there is none.
+     *
+     * @param publicId The public identifier, may be null.
+     * @param systemId The expanded system identifier.
+     * @param namespacesEnabled True if the parser is namespace aware.
+     */
+    public synchronized DTDGrammar getGrammar(String publicId, String systemId,
+                                              boolean namespacesEnabled) {
+        Entry entry = (Entry)fEntries.get(createKey(publicId, systemId, namespacesEnabled));
+        if (entry == null) {
+            fMissCount++;
+            return null;
+        }
+        fHitCount++;
+        unlink(entry);
+        link(entry);
+        return entry.grammar;
+    }
+
+    /**
+     * Adds a grammar to the cache, replacing any existing grammar for the
+     * same external subset. The grammar must not be modified afterwards.
+     */
+    public synchronized void putGrammar(String publicId, String systemId,
+                                        DTDGrammar grammar) {
+        putEntry(createKey(publicId, systemId, grammar.getNamespacesEnabled()), grammar);
+    }
+
+    /**
+     * Writes every grammar in the cache to the given stream, from the
+     * least to the most recently used. The stream is flushed but not
+     * closed.
+     *
+     * @see #load
+     */
+    public synchronized void save(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(SAVED_MAGIC);
+        out.writeInt(SAVED_VERSION);
+        out.writeInt(fEntries.size());
+        for (Entry entry = fTail; entry != null; entry = entry.prev) {
+            out.writeUTF(entry.key);
+            entry.grammar.write(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads grammars written by <code>save</code> and adds them to the
+     * cache, replacing any grammars for the same external subsets. The
+     * stream is read sequentially through a buffer, so it should hold
+     * nothing after the saved cache. It is not closed.
+     *
+     * @exception IOException Thrown if the stream cannot be read or was
+     *                        not written by this version of the cache.
+     */
+    public synchronized void load(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != SAVED_MAGIC)
+            throw new IOException("not a saved DTD grammar cache");
+        int version = in.readInt();
+        if (version != SAVED_VERSION)
+            throw new IOException("unsupported DTD grammar cache version " + version);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            putEntry(key, DTDGrammar.read(in));
+        }
+    }
+
+    /** Removes all grammars from the cache. */
+    public synchronized void clear() {
+        fEntries.clear();
+        fHead = null;
+        fTail = null;
+        fSize = 0;
+    }
+
+    /** Sets the maximum size, evicting grammars as needed. */
+    public synchronized void setMaxSize(int maxSize) {
+        fMaxSize = maxSize;
+        while (fSize > fMaxSize) {
+            removeEntry(fTail);
+            fEvictionCount++;
+        }
+    }
+
+    /** Returns the maximum size of the cache. */
+    public synchronized int getMaxSize() {
+        return fMaxSize;
+    }
+
+    /** Returns the total size of the cached grammars. */
+    public synchronized int getSize() {
+        return fSize;
+    }
+
+    /** Returns the number of cached grammars. */
+    public synchronized int getGrammarCount() {
+        return fEntries.size();
+    }
+
+    /** Returns the number of lookups that found a grammar. */
+    public synchronized int getHitCount() {
+        return fHitCount;
+    }
+
+    /** Returns the number of lookups that did not find a grammar. */
+    public synchronized int getMissCount() {
+        return fMissCount;
+    }
+
+    /** Returns the number of grammars evicted to stay within the size. */
+    public synchronized int getEvictionCount() {
+        return fEvictionCount;
+    }
+
+    /** Resets the hit, miss and eviction counters. */
+    public synchronized void resetStatistics() {
+        fHitCount = 0;
+        fMissCount = 0;
+        fEvictionCount = 0;
+    }
+
+    //
+    // Private methods
+    //
+
+    private void putEntry(String key, DTDGrammar grammar) {
+        removeEntry((Entry)fEntries.get(key));
+        int size = grammar.getSize();
+        if (size > fMaxSize)
+            return;
+        grammar.seal();
+        Entry entry = new Entry(key, grammar, size);
+        fEntries.put(key, entry);
+        link(entry);
+        fSize += size;
+        while (fSize > fMaxSize) {
+            removeEntry(fTail);
+            fEvictionCount++;
+        }
+    }
+
+    private static String createKey(String publicId, String systemId,
+                                    boolean namespacesEnabled) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(namespacesEnabled ? 'N' : 'X');
+        sb.append(systemId);
+        if (publicId != null) {
+            sb.append('\n');
+            sb.append(publicId);
+        }
+        return sb.toString();
+    }
+
+    private void link(Entry entry) {
+        entry.prev = null;
+        entry.next = fHead;
+        if (fHead != null)
+            fHead.prev = entry;
+        fHead = entry;
+        if (fTail == null)
+            fTail = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null)
+            entry.prev.next = entry.next;
+        else
+            fHead = entry.next;
+        if (entry.next != null)
+            entry.next.prev = entry.prev;
+        else
+            fTail = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private void removeEntry(Entry entry) {
+        if (entry == null)
+            return;
+        unlink(entry);
+        fEntries.remove(entry.key);
+        fSize -= entry.size;
+    }
+
+    //
+    // Classes
+    //
+
+    private static final class Entry {
+        String key;
+        DTDGrammar grammar;
+        int size;
+        Entry prev;
+        Entry next;
+        Entry(String key, DTDGrammar grammar, int size) {
+            this.key = key;
+            this.grammar = grammar;
+            this.size = size;
+        }
+    }
+
+} // class DTDGrammarCache
@@ -60,6 +60,7 @@ package org.apache.xerces.validators.dtd;
 import org.apache.xerces.framework.XMLAttrList;
 import org.apache.xerces.framework.XMLContentSpecNode;
 import org.apache.xerces.framework.XMLErrorReporter;
+import org.apache.xerces.framework.XMLValidationQueue;
 import org.apache.xerces.framework.XMLValidator;
 import org.apache.xerces.readers.XMLEntityHandler;
 import org.apache.xerces.utils.ChunkyCharArray;
@@ -75,8 +76,6 @@ import org.xml.sax.SAXParseException;
 
 import java.util.StringTokenizer;
 import java.util.Stack;
-import java.util.Enumeration;
-import java.util.Hashtable;
 
 // for scanning DTD
 import org.apache.xerces.framework.XMLDTDScanner;
@@ -115,8 +114,8 @@ public final class DTDValidator
     private int[] fElementTypeStack = new int[8];
     private int[] fElementIndexStack = new int[8];
     private int[] fContentSpecTypeStack = new int[8];
-    private int[] fElementChildCount = new int[8];
-    private int[][] fElementChildren = new int[8][];
+    private XMLContentModel[] fContentModelStack = new XMLContentModel[8];
+    private int[] fContentStateStack = new int[8];
     private int fElementDepth = -1;
     private boolean fNamespacesEnabled = false;
     private NamespacesScope fNamespacesScope = null;
@@ -150,6 +149,15 @@ public final class DTDValidator
     private int fFIXEDSymbol = -1;
     private int fEpsilonIndex = -1;
     //
+    private DTDGrammarCache fGrammarCache = null;
+    private DTDGrammar fGrammar = null;
+    private String fGrammarPublicId = null;
+    private String fGrammarSystemId = null;
+    private boolean fAttachingGrammar = false;
+    //
+    private XMLValidationQueue fValidationQueue = null;
+    private ContentBatch fContentBatch = null;
+    //
     //
     //
     public interface EventHandler {
@@ -325,6 +333,11 @@ public final class DTDValidator
         fAttrIndex = -1;
         fElementDeclCount = 0;
         fAttlistDeclCount = 0;
+        fGrammar = null;
+        fGrammarPublicId = null;
+        fGrammarSystemId = null;
+        fAttachingGrammar = false;
+        fContentBatch = null;
         init();
     }
     //
@@ -420,7 +433,27 @@ public final class DTDValidator
     public boolean getWarningOnUndeclaredElements() {
         return fWarningOnUndeclaredElements;
     }
+    public void setGrammarCache(DTDGrammarCache grammarCache) {
+        fGrammarCache = grammarCache;
+    }
+    public DTDGrammarCache getGrammarCache() {
+        return fGrammarCache;
+    }
+    public void setIdLimit(int limit) {
+        fIdTable.setLimit(limit);
+    }
+    public int getIdLimit() {
+        return fIdTable.getLimit();
+    }
+    public void setValidationQueue(XMLValidationQueue validationQueue) {
+        fValidationQueue = validationQueue;
+    }
+    public XMLValidationQueue getValidationQueue() {
+        return fValidationQueue;
+    }
     private boolean usingStandaloneReader() {
+        if (fAttachingGrammar) // replayed decls came from the external subset
+            return fStandaloneReader == -1;
         return fStandaloneReader == -1 || fEntityHandler.getReaderId() == fStandaloneReader;
     }
     protected boolean invalidStandaloneAttDef(int elementType, int attrName) {
@@ -443,6 +476,9 @@ public final class DTDValidator
         if (fDTDScanner.getReadingExternalEntity()) {
             fDTDScanner.scanDecls(true);
         }
+        if (fGrammar != null) {
+            storeGrammar();
+        }
         if (fValidating) {
             // check declared elements
             if (fWarningOnUndeclaredElements)
@@ -456,12 +492,18 @@ public final class DTDValidator
     }
     public void characters(char[] chars, int offset, int length) throws Exception {
         if (fValidating) {
-            charDataInContent();
+            if (fContentBatch != null)
+                fContentBatch.characters();
+            else
+                charDataInContent();
         }
     }
     public void characters(int stringIndex) throws Exception {
         if (fValidating) {
-            charDataInContent();
+            if (fContentBatch != null)
+                fContentBatch.characters();
+            else
+                charDataInContent();
         }
     }
     public void ignorableWhitespace(char[] chars, int offset, int length) throws Exception {
@@ -716,22 +758,8 @@ public final class DTDValidator
                 }
             }
         }
-        if (fElementDepth >= 0) {
-            int[] children = fElementChildren[fElementDepth];
-            int childCount = fElementChildCount[fElementDepth];
-            try {
-                children[childCount] = elementType;
-            } catch (NullPointerException ex) {
-                children = fElementChildren[fElementDepth] = new int[256];
-                childCount = 0; // should really assert this...
-                children[childCount] = elementType;
-            } catch (ArrayIndexOutOfBoundsException ex) {
-                int[] newChildren = new int[childCount * 2];
-                System.arraycopy(children, 0, newChildren, 0, childCount);
-                children = fElementChildren[fElementDepth] = newChildren;
-                children[childCount] = elementType;
-            }
-            fElementChildCount[fElementDepth] = ++childCount;
+        if (fElementDepth >= 0 && fValidating && fContentBatch == null) {
+            childInContent(elementType);
         }
         fElementDepth++;
         if (fElementDepth == fElementTypeStack.length) {
@@ -745,11 +773,11 @@ public final class DTDValidator
             System.arraycopy(fContentSpecTypeStack, 0, newStack, 0, fElementDepth);
             fContentSpecTypeStack = newStack;
             newStack = new int[fElementDepth * 2];
-            System.arraycopy(fElementChildCount, 0, newStack, 0, fElementDepth);
-            fElementChildCount = newStack;
-            int[][] newContentStack = new int[fElementDepth * 2][];
-            System.arraycopy(fElementChildren, 0, newContentStack, 0, fElementDepth);
-            fElementChildren = newContentStack;
+            System.arraycopy(fContentStateStack, 0, newStack, 0, fElementDepth);
+            fContentStateStack = newStack;
+            XMLContentModel[] newModelStack = new XMLContentModel[fElementDepth * 2];
+            System.arraycopy(fContentModelStack, 0, newModelStack, 0, fElementDepth);
+            fContentModelStack = newModelStack;
         }
         fCurrentElementType = elementType;
         fCurrentElementIndex = elementIndex;
@@ -757,7 +785,22 @@ public final class DTDValidator
         fElementTypeStack[fElementDepth] = elementType;
         fElementIndexStack[fElementDepth] = elementIndex;
         fContentSpecTypeStack[fElementDepth] = contentSpecType;
-        fElementChildCount[fElementDepth] = 0;
+        fContentModelStack[fElementDepth] = null;
+        fContentStateStack[fElementDepth] = 0;
+        if (fValidating && elementIndex != -1) {
+            startContent(elementIndex, contentSpecType);
+        }
+        if (fValidating && fValidationQueue != null && fElementDepth > 0) {
+            if (fContentBatch == null) {
+                fContentBatch = (ContentBatch)fValidationQueue.getBatch();
+                if (fContentBatch == null) {
+                    fContentBatch = new ContentBatch();
+                    fValidationQueue.startBatch(fContentBatch);
+                }
+            }
+            fContentBatch.startElement(elementType, elementIndex, contentSpecType,
+                                       fContentModelStack[fElementDepth], fElementDepth > 1);
+        }
         return contentSpecType == fCHILDRENSymbol;
     }
     public boolean endElement(int elementType) throws Exception {
@@ -766,20 +809,20 @@ public final class DTDValidator
         }
         if (fValidating) {
             int elementIndex = fCurrentElementIndex;
-            if (elementIndex != -1 && fCurrentContentSpecType != -1) {
-                int childCount = peekChildCount();
-                int result = checkContent(elementIndex, childCount, peekChildren());
-                if (result != -1) {
-                    int majorCode = result != childCount ? XMLMessages.MSG_CONTENT_INVALID : XMLMessages.MSG_CONTENT_INCOMPLETE;
-                    reportRecoverableXMLError(majorCode,
-                                              0,
-                                              fStringPool.toString(elementType),
-                                              getContentSpecAsString(elementIndex));
-                }
+            if (fContentBatch != null) {
+                fContentBatch.endElement();
+            } else if (elementIndex != -1 && fCurrentContentSpecType != -1) {
+                endContent(elementIndex);
             }
         }
+        if (fElementDepth >= 0)
+            fContentModelStack[fElementDepth] = null;
         if (fElementDepth-- < 0)
             throw new RuntimeException("Element stack underflow");
+        if (fElementDepth == 0 && fContentBatch != null) {
+            fContentBatch = null;
+            fValidationQueue.endTopLevelElement();
+        }
         if (fElementDepth < 0) {
             fCurrentElementType = -1;
             fCurrentElementIndex = -1;
@@ -789,7 +832,7 @@ public final class DTDValidator
             // (1) check that there was an element with a matching id for every
             //   IDREF and IDREFS attr (V_IDREF0)
             //
-            if (fValidating && fIdRefs != null)
+            if (fValidating)
                 checkIdRefs();
         } else {
             fCurrentElementType = fElementTypeStack[fElementDepth];
@@ -1155,28 +1198,188 @@ public final class DTDValidator
     //
     // element stack
     //
-    private void charDataInContent() {
-        int[] children = fElementChildren[fElementDepth];
-        int childCount = fElementChildCount[fElementDepth];
+    // The content of each open element is checked as its children arrive,
+    // by stepping its content model.  Only the model and its current state
+    // are kept for each level.  A state of -1 means that an error has
+    // already been reported for the element, so the rest of its content
+    // is not checked.
+    //
+    private void startContent(int elementIndex, int contentSpecType) throws Exception {
+        if (contentSpecType != fMIXEDSymbol && contentSpecType != fCHILDRENSymbol)
+            return;
         try {
-            children[childCount] = -1;
-        } catch (NullPointerException ex) {
-            children = fElementChildren[fElementDepth] = new int[256];
-            childCount = 0; // should really assert this...
-            children[childCount] = -1;
-        } catch (ArrayIndexOutOfBoundsException ex) {
-            int[] newChildren = new int[childCount * 2];
-            System.arraycopy(children, 0, newChildren, 0, childCount);
-            children = fElementChildren[fElementDepth] = newChildren;
-            children[childCount] = -1;
+            XMLContentModel cm = getContentModel(elementIndex);
+            fContentModelStack[fElementDepth] = cm;
+            fContentStateStack[fElementDepth] = cm.getStartState();
+        } catch (CMException excToCatch) {
+            // REVISIT - Translate the caught exception to the public error API
+            int majorCode = excToCatch.getErrorCode();
+            fErrorReporter.reportError(fErrorReporter.getLocator(),
+                                       ImplementationMessages.XERCES_IMPLEMENTATION_DOMAIN,
+                                       majorCode,
+                                       0,
+                                       null,
+                                       XMLErrorReporter.ERRORTYPE_FATAL_ERROR);
         }
-        fElementChildCount[fElementDepth] = ++childCount;
     }
-    private int peekChildCount() {
-        return fElementChildCount[fElementDepth];
-    }
-    private int[] peekChildren() {
-        return fElementChildren[fElementDepth];
+    private void childInContent(int child) throws Exception {
+        int elementIndex = fCurrentElementIndex;
+        int state = fContentStateStack[fElementDepth];
+        if (elementIndex == -1 || state == -1)
+            return;
+        if (fCurrentContentSpecType == fEMPTYSymbol) {
+            state = -1;
+        } else {
+            XMLContentModel cm = fContentModelStack[fElementDepth];
+            if (cm == null)
+                return;
+            state = cm.nextState(state, child);
+        }
+        fContentStateStack[fElementDepth] = state;
+        if (state == -1) {
+            reportRecoverableXMLError(XMLMessages.MSG_CONTENT_INVALID,
+                                      0,
+                                      fStringPool.toString(fCurrentElementType),
+                                      getContentSpecAsString(elementIndex));
+        }
+    }
+    private void charDataInContent() throws Exception {
+        childInContent(-1);
+    }
+    private void endContent(int elementIndex) throws Exception {
+        XMLContentModel cm = fContentModelStack[fElementDepth];
+        int state = fContentStateStack[fElementDepth];
+        if (cm == null || state == -1)
+            return;
+        if (!cm.isFinalState(state)) {
+            reportRecoverableXMLError(XMLMessages.MSG_CONTENT_INCOMPLETE,
+                                      0,
+                                      fStringPool.toString(fCurrentElementType),
+                                      getContentSpecAsString(elementIndex));
+        }
+    }
+    //
+    // With a validation queue, the content of each child of the root
+    // element is checked on another thread.  The batch records every
+    // element of the subtree with its content model, and the children
+    // and character data that step the models, and replays them on a
+    // stack of its own.  Content models are built here, on the scanning
+    // thread, and do not change once built; the error messages are made
+    // when the errors are reported, since they use the string pool.
+    //
+    private static final int EVENT_START = 0;
+    private static final int EVENT_CHILD = 1;
+    private static final int EVENT_CHARACTERS = 2;
+    private static final int EVENT_END = 3;
+    final class ContentBatch extends XMLValidationQueue.Batch {
+        private final int fEmptySymbol = fEMPTYSymbol;
+        // events
+        private int[] fEventType = new int[16];
+        private int[] fEventElementType = new int[16];
+        private int[] fEventElementIndex = new int[16];
+        private int[] fEventContentSpecType = new int[16];
+        private XMLContentModel[] fEventContentModel = new XMLContentModel[16];
+        // replay stack: the start event and the state of each open element
+        private int[] fStartStack = new int[8];
+        private int[] fStateStack = new int[8];
+        private int fDepth = -1;
+        void startElement(int elementType, int elementIndex, int contentSpecType, XMLContentModel cm, boolean child) {
+            int event = addEvent(child ? EVENT_CHILD : EVENT_START);
+            fEventElementType[event] = elementType;
+            fEventElementIndex[event] = elementIndex;
+            fEventContentSpecType[event] = contentSpecType;
+            fEventContentModel[event] = cm;
+        }
+        void characters() {
+            addEvent(EVENT_CHARACTERS);
+        }
+        void endElement() {
+            addEvent(EVENT_END);
+        }
+        private int addEvent(int type) {
+            int event = fValidationQueue.addEvent();
+            if (event == fEventType.length) {
+                int[] newInts = new int[event * 2];
+                System.arraycopy(fEventType, 0, newInts, 0, event);
+                fEventType = newInts;
+                newInts = new int[event * 2];
+                System.arraycopy(fEventElementType, 0, newInts, 0, event);
+                fEventElementType = newInts;
+                newInts = new int[event * 2];
+                System.arraycopy(fEventElementIndex, 0, newInts, 0, event);
+                fEventElementIndex = newInts;
+                newInts = new int[event * 2];
+                System.arraycopy(fEventContentSpecType, 0, newInts, 0, event);
+                fEventContentSpecType = newInts;
+                XMLContentModel[] newModels = new XMLContentModel[event * 2];
+                System.arraycopy(fEventContentModel, 0, newModels, 0, event);
+                fEventContentModel = newModels;
+            }
+            fEventType[event] = type;
+            return event;
+        }
+        protected void check(int first, int last) throws Exception {
+            for (int event = first; event < last; event++) {
+                switch (fEventType[event]) {
+                case EVENT_CHILD:
+                    step(event, fEventElementType[event]);
+                    // fall through
+                case EVENT_START:
+                    if (++fDepth == fStartStack.length) {
+                        int[] newStack = new int[fDepth * 2];
+                        System.arraycopy(fStartStack, 0, newStack, 0, fDepth);
+                        fStartStack = newStack;
+                        newStack = new int[fDepth * 2];
+                        System.arraycopy(fStateStack, 0, newStack, 0, fDepth);
+                        fStateStack = newStack;
+                    }
+                    XMLContentModel cm = fEventContentModel[event];
+                    fStartStack[fDepth] = event;
+                    fStateStack[fDepth] = cm == null ? 0 : cm.getStartState();
+                    break;
+                case EVENT_CHARACTERS:
+                    step(event, -1);
+                    break;
+                case EVENT_END:
+                    int start = fStartStack[fDepth];
+                    int state = fStateStack[fDepth];
+                    cm = fEventContentModel[start];
+                    if (cm != null && state != -1 && !cm.isFinalState(state))
+                        addError(event, new int[] { XMLMessages.MSG_CONTENT_INCOMPLETE, start });
+                    fDepth--;
+                    break;
+                }
+            }
+        }
+        private void step(int event, int child) throws Exception {
+            int start = fStartStack[fDepth];
+            int state = fStateStack[fDepth];
+            if (fEventElementIndex[start] == -1 || state == -1)
+                return;
+            if (fEventContentSpecType[start] == fEmptySymbol) {
+                state = -1;
+            } else {
+                XMLContentModel cm = fEventContentModel[start];
+                if (cm == null)
+                    return;
+                state = cm.nextState(state, child);
+            }
+            fStateStack[fDepth] = state;
+            if (state == -1)
+                addError(event, new int[] { XMLMessages.MSG_CONTENT_INVALID, start });
+        }
+        protected void reportError(XMLErrorReporter errorReporter, Locator locator, Object error) throws Exception {
+            int majorCode = ((int[])error)[0];
+            int start = ((int[])error)[1];
+            Object[] args = { fStringPool.toString(fEventElementType[start]),
+                              getContentSpecAsString(fEventElementIndex[start]) };
+            errorReporter.reportError(locator,
+                                      XMLMessages.XML_DOMAIN,
+                                      majorCode,
+                                      0,
+                                      args,
+                                      XMLErrorReporter.ERRORTYPE_RECOVERABLE_ERROR);
+        }
     }
 
     /**
@@ -1654,8 +1857,30 @@ public final class DTDValidator
     public void doctypeDecl(int rootElementType, int publicId, int systemId) throws Exception {
         fRootElementType = rootElementType;
         fEventHandler.startDTD(rootElementType, publicId, systemId);
+        if (fGrammarCache != null)
+            fGrammar = new DTDGrammar(fNamespacesEnabled);
     }
     public void startReadingFromExternalSubset(int publicId, int systemId) throws Exception {
+        if (fGrammar != null) {
+            //
+            // The external subset can only be shared when the internal
+            // subset did not declare anything that it might depend upon.
+            //
+            if (!fGrammar.isEmpty()) {
+                fGrammar = null;
+            } else {
+                fGrammarPublicId = publicId == -1 ? null : fStringPool.toString(publicId);
+                fGrammarSystemId = fEntityHandler.expandSystemId(fStringPool.toString(systemId));
+                DTDGrammar grammar = fGrammarCache.getGrammar(fGrammarPublicId, fGrammarSystemId, fNamespacesEnabled);
+                if (grammar != null) {
+                    fGrammar = null;
+                    fGrammarPublicId = null;
+                    fGrammarSystemId = null;
+                    attachGrammar(grammar);
+                    return;
+                }
+            }
+        }
         fEntityHandler.startReadingFromExternalSubset(fStringPool.toString(publicId),
                                                       fStringPool.toString(systemId),
                                                       fDTDScanner.markupDepth());
@@ -1664,10 +1889,18 @@ public final class DTDValidator
         fEntityHandler.stopReadingFromExternalSubset();
     }
     public int addElementDecl(int elementType) throws Exception {
+        if (fGrammar != null)
+            fGrammar.addOp(DTDGrammar.OP_ELEMENT, fGrammar.name(fStringPool, elementType));
         int elementIndex = addElement(elementType);
         return elementIndex;
     }
     public int addElementDecl(int elementType, int contentSpecType, int contentSpec) throws Exception {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_ELEMENT_DECL,
+                           fGrammar.name(fStringPool, elementType),
+                           fGrammar.name(fStringPool, contentSpecType),
+                           contentSpec);
+        }
         int elementIndex = addElementDecl(elementType, contentSpecType, contentSpec, !usingStandaloneReader());
         if (elementIndex == -1) {
             if (fValidating) {
@@ -1682,6 +1915,15 @@ public final class DTDValidator
         return elementIndex;
     }
     public int addAttDef(int elementIndex, int attName, int attType, int enumeration, int attDefaultType, int attDefaultValue) throws Exception {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_ATTDEF,
+                           elementIndex,
+                           fGrammar.name(fStringPool, attName),
+                           fGrammar.name(fStringPool, attType),
+                           fGrammar.enumeration(enumeration),
+                           fGrammar.name(fStringPool, attDefaultType),
+                           fGrammar.string(fStringPool, attDefaultValue));
+        }
         int attDefIndex = addAttDef(elementIndex, attName, attType, enumeration, attDefaultType, attDefaultValue, !usingStandaloneReader(), fValidating, fWarningOnDuplicateAttDef);
         if (attDefIndex != -1) {
             String enumString = (enumeration == -1) ? null : fStringPool.stringListAsString(enumeration);
@@ -1691,6 +1933,8 @@ public final class DTDValidator
         return attDefIndex;
     }
     public int addUniqueLeafNode(int nodeValue) throws Exception {
+        if (fGrammar != null)
+            fGrammar.addOp(DTDGrammar.OP_UNIQUE_LEAF, fGrammar.name(fStringPool, nodeValue));
         int csn = addContentSpecNode(XMLContentSpecNode.CONTENTSPECNODE_LEAF, nodeValue, -1, true);
         if (csn == -1 && fValidating) {
             reportRecoverableXMLError(XMLMessages.MSG_DUPLICATE_TYPE_IN_MIXED_CONTENT,
@@ -1700,12 +1944,27 @@ public final class DTDValidator
         return csn;
     }
     public int addContentSpecNode(int nodeType, int nodeValue) throws Exception {
+        if (fGrammar != null)
+            recordContentSpecNode(nodeType, nodeValue, -1);
         return addContentSpecNode(nodeType, nodeValue, -1, false);
     }
     public int addContentSpecNode(int nodeType, int nodeValue, int otherNodeValue) throws Exception {
+        if (fGrammar != null)
+            recordContentSpecNode(nodeType, nodeValue, otherNodeValue);
         return addContentSpecNode(nodeType, nodeValue, otherNodeValue, false);
     }
+    private void recordContentSpecNode(int nodeType, int nodeValue, int otherNodeValue) {
+        if (nodeType == XMLContentSpecNode.CONTENTSPECNODE_LEAF)
+            nodeValue = fGrammar.name(fStringPool, nodeValue);
+        fGrammar.addOp(DTDGrammar.OP_CONTENTSPEC_NODE, nodeType, nodeValue, otherNodeValue);
+    }
     public int addInternalPEDecl(int name, int value, int location) throws Exception {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_INTERNAL_PE,
+                           fGrammar.name(fStringPool, name),
+                           fGrammar.string(fStringPool, value),
+                           location);
+        }
         if (fParameterEntityPool == null)
             fParameterEntityPool = new EntityPool(fStringPool, fErrorReporter, false);
         int entityIndex = fParameterEntityPool.addEntityDecl(name, value, location, -1, -1, -1, !usingStandaloneReader());
@@ -1713,6 +1972,12 @@ public final class DTDValidator
         return entityIndex;
     }
     public int addExternalPEDecl(int name, int publicId, int systemId) throws Exception {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_EXTERNAL_PE,
+                           fGrammar.name(fStringPool, name),
+                           fGrammar.string(fStringPool, publicId),
+                           fGrammar.string(fStringPool, systemId));
+        }
         if (fParameterEntityPool == null)
             fParameterEntityPool = new EntityPool(fStringPool, fErrorReporter, false);
         int entityIndex = fParameterEntityPool.addEntityDecl(name, -1, -1, publicId, systemId, -1, !usingStandaloneReader());
@@ -1720,16 +1985,35 @@ public final class DTDValidator
         return entityIndex;
     }
     public int addInternalEntityDecl(int name, int value, int location) throws Exception {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_INTERNAL_ENTITY,
+                           fGrammar.name(fStringPool, name),
+                           fGrammar.string(fStringPool, value),
+                           location);
+        }
         int entityIndex = fEntityPool.addEntityDecl(name, value, location, -1, -1, -1, !usingStandaloneReader());
         fEventHandler.internalEntityDecl(name, value);
         return entityIndex;
     }
     public int addExternalEntityDecl(int name, int publicId, int systemId) throws Exception {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_EXTERNAL_ENTITY,
+                           fGrammar.name(fStringPool, name),
+                           fGrammar.string(fStringPool, publicId),
+                           fGrammar.string(fStringPool, systemId));
+        }
         int entityIndex = fEntityPool.addEntityDecl(name, -1, -1, publicId, systemId, -1, !usingStandaloneReader());
         fEventHandler.externalEntityDecl(name, publicId, systemId);
         return entityIndex;
     }
     public int addUnparsedEntityDecl(int name, int publicId, int systemId, int notationName) throws Exception {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_UNPARSED_ENTITY,
+                           fGrammar.name(fStringPool, name),
+                           fGrammar.string(fStringPool, publicId),
+                           fGrammar.string(fStringPool, systemId),
+                           fGrammar.name(fStringPool, notationName));
+        }
         int entityIndex = fEntityPool.addEntityDecl(name, -1, -1, publicId, systemId, notationName, !usingStandaloneReader());
         fEventHandler.unparsedEntityDecl(name, publicId, systemId, notationName);
         if (fEntityPool.lookupNotation(notationName) == -1) {
@@ -1744,9 +2028,20 @@ public final class DTDValidator
         return entityIndex;
     }
     public int startEnumeration() {
-        return fStringPool.startStringList();
+        int enumHandle = fStringPool.startStringList();
+        if (fGrammar != null)
+            fGrammar.addOp(DTDGrammar.OP_START_ENUMERATION, fGrammar.startEnumeration(enumHandle));
+        return enumHandle;
     }
     public void addNameToEnumeration(int enumHandle, int elementType, int attrName, int nameIndex, boolean isNotationType) {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_ENUMERATION_NAME,
+                           fGrammar.enumeration(enumHandle),
+                           fGrammar.name(fStringPool, elementType),
+                           fGrammar.name(fStringPool, attrName),
+                           fGrammar.name(fStringPool, nameIndex),
+                           isNotationType ? 1 : 0);
+        }
         fStringPool.addStringToList(enumHandle, nameIndex);
         if (isNotationType && fEntityPool.lookupNotation(nameIndex) == -1) {
             Object[] args = { fStringPool.toString(elementType),
@@ -1760,6 +2055,8 @@ public final class DTDValidator
         }
     }
     public void endEnumeration(int enumHandle) {
+        if (fGrammar != null)
+            fGrammar.addOp(DTDGrammar.OP_END_ENUMERATION, fGrammar.enumeration(enumHandle));
         fStringPool.finishStringList(enumHandle);
     }
     public int addNotationDecl(int notationName, int publicId, int systemId) throws Exception {
@@ -1772,17 +2069,144 @@ public final class DTDValidator
         //  return -1 if we already have a declaration for this name.  This will slow
         //  down the parser in direct relation to the number of NotationDecl names.
         //
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_NOTATION,
+                           fGrammar.name(fStringPool, notationName),
+                           fGrammar.string(fStringPool, publicId),
+                           fGrammar.string(fStringPool, systemId));
+        }
         int notationIndex = fEntityPool.addNotationDecl(notationName, publicId, systemId, !usingStandaloneReader());
         if (notationIndex != -1)
             fEventHandler.notationDecl(notationName, publicId, systemId);
         return notationIndex;
     }
     public void callProcessingInstruction(int target, int data) throws Exception {
+        if (fGrammar != null) {
+            fGrammar.addOp(DTDGrammar.OP_PI,
+                           fGrammar.name(fStringPool, target),
+                           fGrammar.string(fStringPool, data));
+        }
         fEventHandler.processingInstructionInDTD(target, data);
     }
     public void callComment(int comment) throws Exception {
+        if (fGrammar != null)
+            fGrammar.addOp(DTDGrammar.OP_COMMENT, fGrammar.string(fStringPool, comment));
         fEventHandler.commentInDTD(comment);
     }
+    //
+    // Grammar cache
+    //
+    private void storeGrammar() throws Exception {
+        DTDGrammar grammar = fGrammar;
+        String publicId = fGrammarPublicId;
+        String systemId = fGrammarSystemId;
+        fGrammar = null;
+        fGrammarPublicId = null;
+        fGrammarSystemId = null;
+        if (systemId == null) // no external subset
+            return;
+        if (fValidating) {
+            //
+            // Build the DFA content models now, so that every parse that
+            // attaches this grammar can share them.
+            //
+            for (int elementIndex = 0; elementIndex < fElementCount; elementIndex++) {
+                if (getContentSpecType(elementIndex) != fCHILDRENSymbol)
+                    continue;
+                try {
+                    XMLContentModel cm = getContentModel(elementIndex);
+                    if (cm instanceof DFAContentModel)
+                        grammar.addContentModel(fStringPool, elementIndex, (DFAContentModel)cm);
+                } catch (CMException ex) {
+                    // reported when the element is validated
+                }
+            }
+        }
+        fGrammarCache.putGrammar(publicId, systemId, grammar);
+    }
+    private void attachGrammar(DTDGrammar grammar) throws Exception {
+        int[] handles = grammar.createHandles(fStringPool);
+        int[] enumHandles = new int[grammar.getEnumerationCount()];
+        int[] ops = grammar.getOps();
+        int opCount = grammar.getOpCount();
+        fAttachingGrammar = true;
+        try {
+            int i = 0;
+            while (i < opCount) {
+                int op = ops[i];
+                switch (op) {
+                case DTDGrammar.OP_ELEMENT:
+                    addElementDecl(handle(handles, ops[i+1]));
+                    break;
+                case DTDGrammar.OP_ELEMENT_DECL:
+                    addElementDecl(handle(handles, ops[i+1]), handle(handles, ops[i+2]), ops[i+3]);
+                    break;
+                case DTDGrammar.OP_ATTDEF:
+                    addAttDef(ops[i+1], handle(handles, ops[i+2]), handle(handles, ops[i+3]),
+                              ops[i+4] == -1 ? -1 : enumHandles[ops[i+4]],
+                              handle(handles, ops[i+5]), handle(handles, ops[i+6]));
+                    break;
+                case DTDGrammar.OP_UNIQUE_LEAF:
+                    addUniqueLeafNode(handle(handles, ops[i+1]));
+                    break;
+                case DTDGrammar.OP_CONTENTSPEC_NODE:
+                    if (ops[i+1] == XMLContentSpecNode.CONTENTSPECNODE_LEAF)
+                        addContentSpecNode(ops[i+1], handle(handles, ops[i+2]), ops[i+3]);
+                    else
+                        addContentSpecNode(ops[i+1], ops[i+2], ops[i+3]);
+                    break;
+                case DTDGrammar.OP_INTERNAL_PE:
+                    addInternalPEDecl(handle(handles, ops[i+1]), handle(handles, ops[i+2]), ops[i+3]);
+                    break;
+                case DTDGrammar.OP_EXTERNAL_PE:
+                    addExternalPEDecl(handle(handles, ops[i+1]), handle(handles, ops[i+2]), handle(handles, ops[i+3]));
+                    break;
+                case DTDGrammar.OP_INTERNAL_ENTITY:
+                    addInternalEntityDecl(handle(handles, ops[i+1]), handle(handles, ops[i+2]), ops[i+3]);
+                    break;
+                case DTDGrammar.OP_EXTERNAL_ENTITY:
+                    addExternalEntityDecl(handle(handles, ops[i+1]), handle(handles, ops[i+2]), handle(handles, ops[i+3]));
+                    break;
+                case DTDGrammar.OP_UNPARSED_ENTITY:
+                    addUnparsedEntityDecl(handle(handles, ops[i+1]), handle(handles, ops[i+2]),
+                                          handle(handles, ops[i+3]), handle(handles, ops[i+4]));
+                    break;
+                case DTDGrammar.OP_START_ENUMERATION:
+                    enumHandles[ops[i+1]] = startEnumeration();
+                    break;
+                case DTDGrammar.OP_ENUMERATION_NAME:
+                    addNameToEnumeration(enumHandles[ops[i+1]], handle(handles, ops[i+2]),
+                                         handle(handles, ops[i+3]), handle(handles, ops[i+4]),
+                                         ops[i+5] != 0);
+                    break;
+                case DTDGrammar.OP_END_ENUMERATION:
+                    endEnumeration(enumHandles[ops[i+1]]);
+                    break;
+                case DTDGrammar.OP_NOTATION:
+                    addNotationDecl(handle(handles, ops[i+1]), handle(handles, ops[i+2]), handle(handles, ops[i+3]));
+                    break;
+                case DTDGrammar.OP_COMMENT:
+                    callComment(handle(handles, ops[i+1]));
+                    break;
+                case DTDGrammar.OP_PI:
+                    callProcessingInstruction(handle(handles, ops[i+1]), handle(handles, ops[i+2]));
+                    break;
+                }
+                i += DTDGrammar.getArgCount(op) + 1;
+            }
+        } finally {
+            fAttachingGrammar = false;
+        }
+        int modelCount = grammar.getContentModelCount();
+        for (int i = 0; i < modelCount; i++) {
+            int elementIndex = grammar.getContentModelElementIndex(i);
+            if (getContentSpecType(elementIndex) == fCHILDRENSymbol && getElementContentModel(elementIndex) == null)
+                setContentModel(elementIndex, grammar.createContentModel(i, fStringPool, handles));
+        }
+    }
+    private int handle(int[] handles, int nameIndex) {
+        return nameIndex == -1 ? -1 : handles[nameIndex];
+    }
     public int scanElementType(XMLEntityHandler.EntityReader entityReader, char fastchar) throws Exception {
         if (!fNamespacesEnabled) {
             return entityReader.scanName(fastchar);
@@ -2102,12 +2526,12 @@ public final class DTDValidator
     private int[][] fAttValue = new int[INITIAL_CHUNK_COUNT][];
     private byte[][] fAttDefIsExternal = new byte[INITIAL_CHUNK_COUNT][];
     private int[][] fNextAttDef = new int[INITIAL_CHUNK_COUNT][];
+    private AttDefIndex fAttDefIndex = new AttDefIndex();
     //
     //
     //
-    private Hashtable fIdDefs = null;
-    private Hashtable fIdRefs = null;
-    private Object fNullValue = null;
+    private IdTable fIdTable = new IdTable();
+    private boolean fIdLimitReported = false;
     private AttributeValidator fAttValidatorCDATA = null;
     private AttributeValidator fAttValidatorID = null;
     private AttributeValidator fAttValidatorIDREF = null;
@@ -2134,10 +2558,9 @@ public final class DTDValidator
         fElementCount = 0;
         fNodeCount = 0;
         fAttDefCount = 0;
-        if (fIdDefs != null)
-            fIdDefs.clear();
-        if (fIdRefs != null)
-            fIdRefs.clear();
+        fAttDefIndex.clear();
+        fIdTable.clear();
+        fIdLimitReported = false;
     }
     //
     // Element entries
@@ -2551,25 +2974,28 @@ public final class DTDValidator
         //
         int elemChunk = elementIndex >> CHUNK_SHIFT;
         int elemIndex = elementIndex & CHUNK_MASK;
-        int attlistIndex = fAttlistHead[elemChunk][elemIndex];
+        int attNameKey = fStringPool.getFullNameForQName(attName);
+        if (fAttDefIndex.get(elementIndex, attNameKey) != -1) {
+            if (warnOnDuplicate) {
+                Object[] args = { fStringPool.toString(fElementType[elemChunk][elemIndex]),
+                                  fStringPool.toString(attName) };
+                fErrorReporter.reportError(fErrorReporter.getLocator(),
+                                           XMLMessages.XML_DOMAIN,
+                                           XMLMessages.MSG_DUPLICATE_ATTDEF,
+                                           XMLMessages.P53_DUPLICATE,
+                                           args,
+                                           XMLErrorReporter.ERRORTYPE_WARNING);
+            }
+            return -1;
+        }
+        int attlistIndex = -1;
         int dupID = -1;
         int dupNotation = -1;
+        if (validationEnabled && (attType == fIDSymbol || attType == fNOTATIONSymbol))
+            attlistIndex = fAttlistHead[elemChunk][elemIndex];
         while (attlistIndex != -1) {
             int attrChunk = attlistIndex >> CHUNK_SHIFT;
             int attrIndex = attlistIndex & CHUNK_MASK;
-            if (fStringPool.equalNames(fAttName[attrChunk][attrIndex], attName)) {
-                if (warnOnDuplicate) {
-                    Object[] args = { fStringPool.toString(fElementType[elemChunk][elemIndex]),
-                                      fStringPool.toString(attName) };
-                    fErrorReporter.reportError(fErrorReporter.getLocator(),
-                                               XMLMessages.XML_DOMAIN,
-                                               XMLMessages.MSG_DUPLICATE_ATTDEF,
-                                               XMLMessages.P53_DUPLICATE,
-                                               args,
-                                               XMLErrorReporter.ERRORTYPE_WARNING);
-                }
-                return -1;
-            }
             if (validationEnabled) {
                 if (attType == fIDSymbol && fAttType[attrChunk][attrIndex] == fIDSymbol)
                     dupID = fAttName[attrChunk][attrIndex];
@@ -2637,6 +3063,7 @@ public final class DTDValidator
             }
         }
         fNextAttDef[chunk][index] = nextIndex;
+        fAttDefIndex.put(elementIndex, attNameKey, fAttDefCount);
         return fAttDefCount++;
     }
     private AttributeValidator getValidatorForAttType(int attType) {
@@ -2696,17 +3123,7 @@ public final class DTDValidator
         int elementIndex = fStringPool.getDeclaration(elementType);
         if (elementIndex == -1)
             return -1;
-        int chunk = elementIndex >> CHUNK_SHIFT;
-        int index = elementIndex & CHUNK_MASK;
-        int attDefIndex = fAttlistHead[chunk][index];
-        while (attDefIndex != -1) {
-            chunk = attDefIndex >> CHUNK_SHIFT;
-            index = attDefIndex & CHUNK_MASK;
-            if (fAttName[chunk][index] == attrName || fStringPool.equalNames(fAttName[chunk][index], attrName))
-                return attDefIndex;
-            attDefIndex = fNextAttDef[chunk][index];
-        }
-        return -1;
+        return fAttDefIndex.get(elementIndex, fStringPool.getFullNameForQName(attrName));
     }
     private boolean getAttDefIsExternal(int attDefIndex) {
         int chunk = attDefIndex >> CHUNK_SHIFT;
@@ -2842,30 +3259,30 @@ public final class DTDValidator
     //
     //
     //
-    protected boolean addId(int idIndex) {
+    protected boolean addId(int idIndex) throws Exception {
 //System.err.println("addId(" + fStringPool.toString(idIndex) + ") " + idIndex);
-        Integer key = new Integer(idIndex);
-        if (fIdDefs == null)
-            fIdDefs = new Hashtable();
-        else if (fIdDefs.containsKey(key))
-            return false;
-        if (fNullValue == null)
-            fNullValue = new Object();
-        fIdDefs.put(key, fNullValue/*new Integer(elementType)*/);
-        return true;
+        boolean unique = fIdTable.addId(idIndex);
+        if (fIdTable.limitExceeded())
+            reportIdLimitExceeded();
+        return unique;
     }
-    protected void addIdRef(int idIndex) {
+    protected void addIdRef(int idIndex) throws Exception {
 //System.err.println("addIdRef(" + fStringPool.toString(idIndex) + ") " + idIndex);
-        Integer key = new Integer(idIndex);
-        if (fIdDefs != null && fIdDefs.containsKey(key))
-            return;
-        if (fIdRefs == null)
-            fIdRefs = new Hashtable();
-        else if (fIdRefs.containsKey(key))
+        fIdTable.addIdRef(idIndex);
+        if (fIdTable.limitExceeded())
+            reportIdLimitExceeded();
+    }
+    private void reportIdLimitExceeded() throws Exception {
+        if (fIdLimitReported)
             return;
-        if (fNullValue == null)
-            fNullValue = new Object();
-        fIdRefs.put(key, fNullValue/*new Integer(elementType)*/);
+        fIdLimitReported = true;
+        Object[] args = { Integer.toString(fIdTable.getLimit()) };
+        fErrorReporter.reportError(fErrorReporter.getLocator(),
+                                   XMLMessages.XML_DOMAIN,
+                                   XMLMessages.MSG_ID_LIMIT_EXCEEDED,
+                                   XMLMessages.VC_ID,
+                                   args,
+                                   XMLErrorReporter.ERRORTYPE_RECOVERABLE_ERROR);
     }
     /**
      * Check that all ID references were to ID attributes present in the document.
@@ -2882,20 +3299,17 @@ public final class DTDValidator
      * @exception Exception Thrown on error.
      */
     private void checkIdRefs() throws Exception {
-        if (fIdRefs == null)
+        if (fIdTable.getUnresolvedCount() == 0)
             return;
-        Enumeration en = fIdRefs.keys();
-        while (en.hasMoreElements()) {
-            Integer key = (Integer)en.nextElement();
-            if (fIdDefs == null || !fIdDefs.containsKey(key)) {
-                Object[] args = { fStringPool.toString(key.intValue()) };
-                fErrorReporter.reportError(fErrorReporter.getLocator(),
-                                           XMLMessages.XML_DOMAIN,
-                                           XMLMessages.MSG_ELEMENT_WITH_ID_REQUIRED,
-                                           XMLMessages.VC_IDREF,
-                                           args,
-                                           XMLErrorReporter.ERRORTYPE_RECOVERABLE_ERROR);
-            }
+        int[] unresolved = fIdTable.getUnresolved();
+        for (int i = 0; i < unresolved.length; i++) {
+            Object[] args = { fStringPool.toString(unresolved[i]) };
+            fErrorReporter.reportError(fErrorReporter.getLocator(),
+                                       XMLMessages.XML_DOMAIN,
+                                       XMLMessages.MSG_ELEMENT_WITH_ID_REQUIRED,
+                                       XMLMessages.VC_IDREF,
+                                       args,
+                                       XMLErrorReporter.ERRORTYPE_RECOVERABLE_ERROR);
         }
     }
 
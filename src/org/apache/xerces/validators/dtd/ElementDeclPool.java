@@ -115,6 +115,7 @@ public final class ElementDeclPool {
     private int[][] fAttValue = new int[INITIAL_CHUNK_COUNT][];
     private byte[][] fAttDefIsExternal = new byte[INITIAL_CHUNK_COUNT][];
     private int[][] fNextAttDef = new int[INITIAL_CHUNK_COUNT][];
+    private AttDefIndex fAttDefIndex = new AttDefIndex();
     //
     // Element Type Hashtable
     //
@@ -157,6 +158,7 @@ public final class ElementDeclPool {
         fElementCount = 0;
         fNodeCount = 0;
         fAttDefCount = 0;
+        fAttDefIndex.clear();
         fIDSymbol = -1;
         fNotationSymbol = -1;
         fMIXEDSymbol = -1;
@@ -622,29 +624,32 @@ public final class ElementDeclPool {
         //
         int elemChunk = elementIndex >> CHUNK_SHIFT;
         int elemIndex = elementIndex & CHUNK_MASK;
-        int attlistIndex = fAttlistHead[elemChunk][elemIndex];
+        int attNameKey = fStringPool.getFullNameForQName(attName);
+        if (fAttDefIndex.get(elementIndex, attNameKey) != -1) {
+            if (warnOnDuplicate) {
+                Object[] args = { fStringPool.toString(fElementType[elemChunk][elemIndex]),
+                                  fStringPool.toString(attName) };
+                fErrorReporter.reportError(fErrorReporter.getLocator(),
+                                           XMLMessages.XML_DOMAIN,
+                                           XMLMessages.MSG_DUPLICATE_ATTDEF,
+                                           XMLMessages.P53_DUPLICATE,
+                                           args,
+                                           XMLErrorReporter.ERRORTYPE_WARNING);
+            }
+            return -1;
+        }
+        int attlistIndex = -1;
         int dupID = -1;
         int dupNotation = -1;
         if (validationEnabled && fIDSymbol == -1) {
             fIDSymbol = fStringPool.addSymbol("ID");
             fNotationSymbol = fStringPool.addSymbol("NOTATION");
         }
+        if (validationEnabled && (attType == fIDSymbol || attType == fNotationSymbol))
+            attlistIndex = fAttlistHead[elemChunk][elemIndex];
         while (attlistIndex != -1) {
             int attrChunk = attlistIndex >> CHUNK_SHIFT;
             int attrIndex = attlistIndex & CHUNK_MASK;
-            if (fStringPool.equalNames(fAttName[attrChunk][attrIndex], attName)) {
-                if (warnOnDuplicate) {
-                    Object[] args = { fStringPool.toString(fElementType[elemChunk][elemIndex]),
-                                      fStringPool.toString(attName) };
-                    fErrorReporter.reportError(fErrorReporter.getLocator(),
-                                               XMLMessages.XML_DOMAIN,
-                                               XMLMessages.MSG_DUPLICATE_ATTDEF,
-                                               XMLMessages.P53_DUPLICATE,
-                                               args,
-                                               XMLErrorReporter.ERRORTYPE_WARNING);
-                }
-                return -1;
-            }
             if (validationEnabled) {
                 if (attType == fIDSymbol && fAttType[attrChunk][attrIndex] == fIDSymbol)
                     dupID = fAttName[attrChunk][attrIndex];
@@ -711,31 +716,14 @@ public final class ElementDeclPool {
             }
         }
         fNextAttDef[chunk][index] = nextIndex;
+        fAttDefIndex.put(elementIndex, attNameKey, fAttDefCount);
         return fAttDefCount++;
     }
     public int getAttDef(int elementType, int attrNameIndex) {
-        int chunk = 0;
-        int index = 0;
-        int elementIndex;
-        for (elementIndex = 0; elementIndex < fElementCount; elementIndex++) {
-            if (fStringPool.equalNames(fElementType[chunk][index], elementType)) {
-                int attDefIndex = fAttlistHead[chunk][index];
-                while (true) {
-                    if (attDefIndex == -1)
-                        return -1;
-                    chunk = attDefIndex >> CHUNK_SHIFT;
-                    index = attDefIndex & CHUNK_MASK;
-                    if (fStringPool.equalNames(fAttName[chunk][index], attrNameIndex))
-                        return attDefIndex;
-                    attDefIndex = fNextAttDef[chunk][index];
-                }
-            }
-            if (++index == CHUNK_SIZE) {
-                chunk++;
-                index = 0;
-            }
-        }
-        return -1;
+        int elementIndex = getElement(elementType);
+        if (elementIndex == -1)
+            return -1;
+        return fAttDefIndex.get(elementIndex, fStringPool.getFullNameForQName(attrNameIndex));
     }
     
     // added by twl
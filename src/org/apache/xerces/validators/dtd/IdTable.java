@@ -0,0 +1,301 @@
+/*
+ * The Apache Software License, Version 1.1
+ *
+ *
+ * Copyright (c) 1999 The Apache Software Foundation.  All rights 
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer. 
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. The end-user documentation included with the redistribution,
+ *    if any, must include the following acknowledgment:  
+ *       "This product includes software developed by the
+ *        Apache Software Foundation (http://www.apache.org/)."
+ *    Alternately, this acknowledgment may appear in the software itself,
+ *    if and wherever such third-party acknowledgments normally appear.
+ *
+ * 4. The names "Xerces" and "Apache Software Foundation" must
+ *    not be used to endorse or promote products derived from this
+ *    software without prior written permission. For written 
+ *    permission, please contact apache@apache.org.
+ *
+ * 5. Products derived from this software may not be called "Apache",
+ *    nor may "Apache" appear in their name, without prior written
+ *    permission of the Apache Software Foundation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND ANY EXPRESSED OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE APACHE SOFTWARE FOUNDATION OR
+ * ITS CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF
+ * USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT
+ * OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation and was
+ * originally based on software copyright (c) 1999, International
+ * Business Machines, Inc., http://www.apache.org.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ */
+
+package org.apache.xerces.validators.dtd;
+
+/**
+ * The ID values defined in a document and the IDREF values that do not
+ * match one yet, kept as open addressed sets of string pool symbol
+ * handles. A reference to an ID that is already defined is never
+ * stored, and a pending reference is dropped as soon as its ID is
+ * defined, so at the end of the document only the dangling references
+ * remain.
+ * <p>
+ * The number of IDs and pending references together may be limited.
+ * Once the limit is reached no new values are stored: IDs and references
+ * seen after that point are still checked against the values already
+ * stored, but duplicates and dangling references among the new values
+ * go undetected.
+ *
+ * @version
+ */
+final class IdTable {
+
+    //
+    // Constants
+    //
+
+    private static final int INITIAL_SIZE = 64;
+
+    //
+    // Data
+    //
+
+    private IntSet fIds = new IntSet();
+    private IntSet fIdRefs = new IntSet();
+    private int fLimit = 0;
+    private boolean fLimitExceeded = false;
+
+    //
+    // Public methods
+    //
+
+    /**
+     * Sets the maximum number of IDs and pending references that are
+     * stored. A limit of zero or less means no limit.
+     */
+    public void setLimit(int limit) {
+        fLimit = limit;
+    }
+
+    /** Returns the maximum number of stored values, or zero. */
+    public int getLimit() {
+        return fLimit;
+    }
+
+    /** Returns true once a value was not stored because of the limit. */
+    public boolean limitExceeded() {
+        return fLimitExceeded;
+    }
+
+    /**
+     * Adds an ID value. Returns false if the ID is already defined.
+     */
+    public boolean addId(int id) {
+        if (fIds.contains(id))
+            return false;
+        fIdRefs.remove(id);
+        if (atLimit())
+            return true;
+        fIds.add(id);
+        return true;
+    }
+
+    /** Adds an IDREF value that must match an ID in the document. */
+    public void addIdRef(int id) {
+        if (fIds.contains(id) || fIdRefs.contains(id))
+            return;
+        if (atLimit())
+            return;
+        fIdRefs.add(id);
+    }
+
+    /** Returns the number of references that do not match an ID. */
+    public int getUnresolvedCount() {
+        return fIdRefs.size();
+    }
+
+    /** Returns the references that do not match an ID. */
+    public int[] getUnresolved() {
+        return fIdRefs.toArray();
+    }
+
+    /** Removes all values and clears the limit exceeded state. */
+    public void clear() {
+        fIds.clear();
+        fIdRefs.clear();
+        fLimitExceeded = false;
+    }
+
+    //
+    // Private methods
+    //
+
+    private boolean atLimit() {
+        if (fLimit > 0 && fIds.size() + fIdRefs.size() >= fLimit) {
+            fLimitExceeded = true;
+            return true;
+        }
+        return false;
+    }
+
+    //
+    // Classes
+    //
+
+    /**
+     * An open addressed set of non-negative ints using linear probing.
+     * Removal shifts the following entries back, so no deleted markers
+     * are left in the table.
+     */
+    static final class IntSet {
+
+        //
+        // Data
+        //
+
+        private int[] fKeys;  // key + 1, 0 if the slot is empty
+        private int fMask;
+        private int fCount = 0;
+
+        //
+        // Constructors
+        //
+
+        public IntSet() {
+            allocate(INITIAL_SIZE);
+        }
+
+        //
+        // Public methods
+        //
+
+        public int size() {
+            return fCount;
+        }
+
+        public boolean contains(int key) {
+            int slot = hash(key) & fMask;
+            int k;
+            while ((k = fKeys[slot]) != 0) {
+                if (k == key + 1)
+                    return true;
+                slot = (slot + 1) & fMask;
+            }
+            return false;
+        }
+
+        public void add(int key) {
+            if ((fCount + 1) * 4 > fKeys.length * 3)
+                rehash();
+            int slot = hash(key) & fMask;
+            int k;
+            while ((k = fKeys[slot]) != 0) {
+                if (k == key + 1)
+                    return;
+                slot = (slot + 1) & fMask;
+            }
+            fKeys[slot] = key + 1;
+            fCount++;
+        }
+
+        public void remove(int key) {
+            if (fCount == 0)
+                return;
+            int slot = hash(key) & fMask;
+            int k;
+            while ((k = fKeys[slot]) != key + 1) {
+                if (k == 0)
+                    return;
+                slot = (slot + 1) & fMask;
+            }
+            int hole = slot;
+            int next = (hole + 1) & fMask;
+            while ((k = fKeys[next]) != 0) {
+                int home = hash(k - 1) & fMask;
+                if (((next - home) & fMask) >= ((next - hole) & fMask)) {
+                    fKeys[hole] = k;
+                    hole = next;
+                }
+                next = (next + 1) & fMask;
+            }
+            fKeys[hole] = 0;
+            fCount--;
+        }
+
+        public int[] toArray() {
+            int[] keys = new int[fCount];
+            int count = 0;
+            for (int i = 0; i < fKeys.length; i++) {
+                if (fKeys[i] != 0)
+                    keys[count++] = fKeys[i] - 1;
+            }
+            return keys;
+        }
+
+        public void clear() {
+            if (fCount == 0)
+                return;
+            if (fKeys.length > INITIAL_SIZE * 16) {
+                allocate(INITIAL_SIZE);
+            } else {
+                for (int i = 0; i < fKeys.length; i++)
+                    fKeys[i] = 0;
+            }
+            fCount = 0;
+        }
+
+        //
+        // Private methods
+        //
+
+        private void allocate(int size) {
+            fKeys = new int[size];
+            fMask = size - 1;
+        }
+
+        private void rehash() {
+            int[] keys = fKeys;
+            allocate(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    int slot = hash(keys[i] - 1) & fMask;
+                    while (fKeys[slot] != 0)
+                        slot = (slot + 1) & fMask;
+                    fKeys[slot] = keys[i];
+                }
+            }
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+    } // class IntSet
+
+} // class IdTable
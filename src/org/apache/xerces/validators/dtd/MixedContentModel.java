@@ -250,6 +250,56 @@ public class MixedContentModel implements XMLContentModel
     }
 
 
+    /**
+     * Returns the state of this content model before any children have
+     * been seen. Mixed content has no order, so there is only one state.
+     *
+     * @return The start state.
+     */
+    public int getStartState()
+    {
+        return 0;
+    }
+
+    /**
+     * Returns the state that follows the given state when the next child
+     * is seen.
+     *
+     * @param state The current state.
+     * @param child The index of the child element name, or -1 for
+     *              character data.
+     *
+     * @return The next state, or -1 if the child is not allowed here.
+     */
+    public int nextState(int state, int child)
+    {
+        // If its PCDATA, then we just accept that
+        if (child == -1)
+            return state;
+
+        // And try to find it in our list
+        for (int index = 0; index < fCount; index++)
+        {
+            if (child == fChildren[index])
+                return state;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the given state is a valid end of content, which
+     * is always the case for mixed content.
+     *
+     * @param state The current state.
+     *
+     * @return True.
+     */
+    public boolean isFinalState(int state)
+    {
+        return true;
+    }
+
+
     // -----------------------------------------------------------------------
     //  Private data members
     //
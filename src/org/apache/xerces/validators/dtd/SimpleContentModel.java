@@ -492,6 +492,97 @@ public class SimpleContentModel implements XMLContentModel
     }
 
 
+    /**
+     * Returns the state of this content model before any children have
+     * been seen. The state is the number of children accepted so far.
+     *
+     * @return The start state.
+     */
+    public int getStartState()
+    {
+        return 0;
+    }
+
+    /**
+     * Returns the state that follows the given state when the next child
+     * is seen.
+     *
+     * @param state The current state.
+     * @param child The index of the child element name, or -1 for
+     *              character data.
+     *
+     * @return The next state, or -1 if the child is not allowed here.
+     *
+     * @exception CMException Thrown on error.
+     */
+    public int nextState(int state, int child) throws CMException
+    {
+        switch(fOp)
+        {
+            case XMLContentSpecNode.CONTENTSPECNODE_LEAF :
+            case XMLContentSpecNode.CONTENTSPECNODE_ZERO_OR_ONE :
+                if ((state == 0) && (child == fFirstChild))
+                    return 1;
+                break;
+
+            case XMLContentSpecNode.CONTENTSPECNODE_ZERO_OR_MORE :
+            case XMLContentSpecNode.CONTENTSPECNODE_ONE_OR_MORE :
+                if (child == fFirstChild)
+                    return 1;
+                break;
+
+            case XMLContentSpecNode.CONTENTSPECNODE_CHOICE :
+                if ((state == 0)
+                &&  ((child == fFirstChild) || (child == fSecondChild)))
+                {
+                    return 1;
+                }
+                break;
+
+            case XMLContentSpecNode.CONTENTSPECNODE_SEQ :
+                if ((state == 0) && (child == fFirstChild))
+                    return 1;
+                if ((state == 1) && (child == fSecondChild))
+                    return 2;
+                break;
+
+            default :
+                throw new CMException(ImplementationMessages.VAL_CST);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the given state is a valid end of content.
+     *
+     * @param state The current state.
+     *
+     * @return True if the state is a valid end of content.
+     *
+     * @exception CMException Thrown on error.
+     */
+    public boolean isFinalState(int state) throws CMException
+    {
+        switch(fOp)
+        {
+            case XMLContentSpecNode.CONTENTSPECNODE_ZERO_OR_ONE :
+            case XMLContentSpecNode.CONTENTSPECNODE_ZERO_OR_MORE :
+                return true;
+
+            case XMLContentSpecNode.CONTENTSPECNODE_LEAF :
+            case XMLContentSpecNode.CONTENTSPECNODE_ONE_OR_MORE :
+            case XMLContentSpecNode.CONTENTSPECNODE_CHOICE :
+                return state == 1;
+
+            case XMLContentSpecNode.CONTENTSPECNODE_SEQ :
+                return state == 2;
+
+            default :
+                throw new CMException(ImplementationMessages.VAL_CST);
+        }
+    }
+
+
     // -----------------------------------------------------------------------
     //  Private data members
     //
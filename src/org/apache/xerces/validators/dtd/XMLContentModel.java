@@ -73,6 +73,12 @@ package org.apache.xerces.validators.dtd;
  * So it is assumed that those same parameters will be passed to the content
  * model to be validated. Therefore the validateContent() method accepts
  * this standard view of the elements to be validated.
+ * <p>
+ * A content model can also be stepped through one child at a time, so
+ * that a validator does not have to collect all of the children of an
+ * element before checking them. The state is an integer owned by the
+ * model: start with getStartState(), pass each child to nextState(), and
+ * ask isFinalState() at the end of the element.
  *
  * @author  Dean Roddey
  * @version
@@ -141,4 +147,40 @@ public interface XMLContentModel {
         boolean                     fullyValid
         , InsertableElementsInfo    info
     )   throws Exception;
+
+    /**
+     * Returns the state of this content model before any children have
+     * been seen.
+     *
+     * @return The start state.
+     *
+     * @exception Exception Thrown on error.
+     */
+    public int getStartState() throws Exception;
+
+    /**
+     * Returns the state that follows the given state when the next child
+     * is seen.
+     *
+     * @param state The current state, never -1.
+     * @param child The index within the <code>StringPool</code> of the child
+     *              element name, or -1 for non-whitespace character data.
+     *
+     * @return The next state, or -1 if the child is not allowed here.
+     *
+     * @exception Exception Thrown on error.
+     */
+    public int nextState(int state, int child) throws Exception;
+
+    /**
+     * Returns true if the content seen so far is a valid ending of the
+     * element's content in the given state.
+     *
+     * @param state The current state, never -1.
+     *
+     * @return True if the state is a valid end of content.
+     *
+     * @exception Exception Thrown on error.
+     */
+    public boolean isFinalState(int state) throws Exception;
 }
@@ -524,4 +524,29 @@ public class DatatypeContentModel implements XMLContentModel
         return -1;
   */
     }
+
+    /**
+     * Returns the start state. The content is checked as a whole by
+     * validateContent, so stepping through the children accepts them all.
+     */
+    public int getStartState()
+    {
+        return 0;
+    }
+
+    /**
+     * Returns the next state, accepting every child.
+     */
+    public int nextState(int state, int child)
+    {
+        return state;
+    }
+
+    /**
+     * Returns true for every state.
+     */
+    public boolean isFinalState(int state)
+    {
+        return true;
+    }
   };
@@ -60,6 +60,7 @@ package org.apache.xerces.validators.schema;
 import org.apache.xerces.framework.XMLAttrList;
 import org.apache.xerces.framework.XMLContentSpecNode;
 import org.apache.xerces.framework.XMLErrorReporter;
+import org.apache.xerces.framework.XMLValidationQueue;
 import org.apache.xerces.framework.XMLValidator;
 import org.apache.xerces.readers.XMLEntityHandler;
 import org.apache.xerces.utils.ChunkyCharArray;
@@ -101,6 +102,7 @@ import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Hashtable;
 import java.util.Vector; // REVISIT remove
 import org.apache.xerces.validators.datatype.DatatypeValidator;
@@ -164,6 +166,8 @@ public class XSchemaValidator implements XMLValidator {
     private int fAttributeGroupCount = 0;
     private Hashtable fForwardRefs = new Hashtable(); // REVISIT w/ more efficient structure later
     private Hashtable fAttrGroupUses = new Hashtable();
+    private XMLValidationQueue fValidationQueue = null;
+    private ContentBatch fContentBatch = null;
 
     // constants
 
@@ -233,6 +237,7 @@ public class XSchemaValidator implements XMLValidator {
         fErrorReporter = errorReporter;
         fEntityHandler = entityHandler;
         fStringPool = stringPool;
+        fContentBatch = null;
 
         fSchemaDocument = null;
     }
@@ -302,6 +307,12 @@ public class XSchemaValidator implements XMLValidator {
     public boolean getWarningOnUndeclaredElements() {
         return fWarningOnUndeclaredElements;
     }
+    public void setValidationQueue(XMLValidationQueue validationQueue) {
+        fValidationQueue = validationQueue;
+    }
+    public XMLValidationQueue getValidationQueue() {
+        return fValidationQueue;
+    }
     private boolean usingStandaloneReader() {
         return fStandaloneReader == -1 || fEntityHandler.getReaderId() == fStandaloneReader;
     }
@@ -529,18 +540,25 @@ public class XSchemaValidator implements XMLValidator {
             int elementIndex = fElementDeclPool.getElement(elementTypeIndex);
             if (elementIndex != -1 && fElementDeclPool.getContentSpecType(elementIndex) != -1) {
                 int childCount = peekChildCount();
-                int result = checkContent(elementIndex, childCount, peekChildren());
-                if (result != -1) {
-                    int majorCode = result != childCount ? XMLMessages.MSG_CONTENT_INVALID : XMLMessages.MSG_CONTENT_INCOMPLETE;
-                    reportRecoverableXMLError(majorCode,
-                                              0,
-                                              fStringPool.toString(elementTypeIndex),
-                                              fElementDeclPool.getContentSpecAsString(elementIndex));
+                if (fValidationQueue == null || fElementDepth == 0 ||
+                    !deferContent(elementTypeIndex, elementIndex, childCount, peekChildren())) {
+                    int result = checkContent(elementIndex, childCount, peekChildren());
+                    if (result != -1) {
+                        int majorCode = result != childCount ? XMLMessages.MSG_CONTENT_INVALID : XMLMessages.MSG_CONTENT_INCOMPLETE;
+                        reportRecoverableXMLError(majorCode,
+                                                  0,
+                                                  fStringPool.toString(elementTypeIndex),
+                                                  fElementDeclPool.getContentSpecAsString(elementIndex));
+                    }
                 }
             }
             fBufferDatatype = false;
         }
         popElement();
+        if (fElementDepth == 0 && fContentBatch != null) {
+            fContentBatch = null;
+            fValidationQueue.endTopLevelElement();
+        }
         return peekContentSpecType() == fStringPool.addSymbol("CHILDREN");
     }
     private int normalizeAttributeValue(int elementTypeIndex, int attrNameIndex, int attValueIndex, int attType, int enumIndex) throws Exception {
@@ -869,6 +887,155 @@ public class XSchemaValidator implements XMLValidator {
                 checkIDRefNames();
         }
     }
+    //
+    // With a validation queue, the content of the elements inside each
+    // child of the root element is checked on another thread once that
+    // child ends.  For each element the batch keeps a copy of its children
+    // and its content model, or the validator and text of its datatype.
+    // Content models and datatype validators are looked up here, on the
+    // scanning thread; the error messages are made when the errors are
+    // reported, since they use the string pool.
+    //
+    private boolean deferContent(int elementTypeIndex, int elementIndex, int childCount, int[] children) throws Exception {
+        int contentSpec = fElementDeclPool.getContentSpecType(elementIndex);
+        XMLContentModel cm = null;
+        DatatypeValidator datatypeValidator = null;
+        String datatypeValue = null;
+        if (contentSpec == fStringPool.addSymbol("MIXED")
+            || contentSpec == fStringPool.addSymbol("CHILDREN")) {
+            try {
+                cm = getContentModel(elementIndex);
+            } catch (CMException excToCatch) {
+                return false; // reported by checkContent
+            }
+        } else if (contentSpec == fStringPool.addSymbol("DATATYPE")) {
+            int contentSpecIndex = fElementDeclPool.getContentSpec(elementIndex);
+            XMLContentSpecNode csn = new XMLContentSpecNode();
+            fElementDeclPool.getContentSpecNode(contentSpecIndex, csn);
+            datatypeValidator = fDatatypeRegistry.getValidatorFor(fStringPool.toString(csn.value));
+            if (datatypeValidator == null)
+                return false;
+            // added to the string pool as checkContent adds it, so that the
+            // string handles, and the order of the IDREF errors, are the same
+            datatypeValue = fDatatypeBuffer.toString();
+            fStringPool.addString(datatypeValue);
+        } else if (contentSpec != fStringPool.addSymbol("EMPTY")) {
+            return false;
+        }
+        if (fContentBatch == null) {
+            fContentBatch = (ContentBatch)fValidationQueue.getBatch();
+            if (fContentBatch == null) {
+                fContentBatch = new ContentBatch();
+                fValidationQueue.startBatch(fContentBatch);
+            }
+        }
+        fContentBatch.endElement(elementTypeIndex, elementIndex, childCount, children,
+                                 cm, datatypeValidator, datatypeValue);
+        return true;
+    }
+    final class ContentBatch extends XMLValidationQueue.Batch {
+        private int[] fElementType = new int[16];
+        private int[] fElementIndex = new int[16];
+        private int[][] fChildren = new int[16][];
+        private XMLContentModel[] fContentModel = new XMLContentModel[16];
+        private DatatypeValidator[] fDatatypeValidator = new DatatypeValidator[16];
+        private String[] fDatatypeValue = new String[16];
+        void endElement(int elementTypeIndex, int elementIndex, int childCount, int[] children,
+                        XMLContentModel cm, DatatypeValidator datatypeValidator, String datatypeValue) {
+            int event = fValidationQueue.addEvent();
+            if (event == fElementType.length) {
+                int[] newInts = new int[event * 2];
+                System.arraycopy(fElementType, 0, newInts, 0, event);
+                fElementType = newInts;
+                newInts = new int[event * 2];
+                System.arraycopy(fElementIndex, 0, newInts, 0, event);
+                fElementIndex = newInts;
+                int[][] newChildren = new int[event * 2][];
+                System.arraycopy(fChildren, 0, newChildren, 0, event);
+                fChildren = newChildren;
+                XMLContentModel[] newModels = new XMLContentModel[event * 2];
+                System.arraycopy(fContentModel, 0, newModels, 0, event);
+                fContentModel = newModels;
+                DatatypeValidator[] newValidators = new DatatypeValidator[event * 2];
+                System.arraycopy(fDatatypeValidator, 0, newValidators, 0, event);
+                fDatatypeValidator = newValidators;
+                String[] newValues = new String[event * 2];
+                System.arraycopy(fDatatypeValue, 0, newValues, 0, event);
+                fDatatypeValue = newValues;
+            }
+            int[] childrenCopy = new int[childCount];
+            if (childCount > 0)
+                System.arraycopy(children, 0, childrenCopy, 0, childCount);
+            fElementType[event] = elementTypeIndex;
+            fElementIndex[event] = elementIndex;
+            fChildren[event] = childrenCopy;
+            fContentModel[event] = cm;
+            fDatatypeValidator[event] = datatypeValidator;
+            fDatatypeValue[event] = datatypeValue;
+        }
+        protected void check(int first, int last) throws Exception {
+            for (int event = first; event < last; event++) {
+                int[] children = fChildren[event];
+                XMLContentModel cm = fContentModel[event];
+                DatatypeValidator v = fDatatypeValidator[event];
+                if (v != null) {
+                    try {
+                        v.validate(fDatatypeValue[event]);
+                    } catch (InvalidDatatypeValueException idve) {
+                        addError(event, idve.getMessage());
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        System.out.println("Internal error in datatype validation");
+                    }
+                } else if (cm != null) {
+                    try {
+                        int result = cm.validateContent(children.length, children);
+                        if (result != -1) {
+                            int majorCode = result != children.length ? XMLMessages.MSG_CONTENT_INVALID : XMLMessages.MSG_CONTENT_INCOMPLETE;
+                            addError(event, new int[] { majorCode, event });
+                        }
+                    } catch (CMException excToCatch) {
+                        addError(event, excToCatch);
+                    }
+                } else if (children.length != 0) {
+                    addError(event, new int[] { XMLMessages.MSG_CONTENT_INVALID, event });
+                }
+            }
+        }
+        protected void reportError(XMLErrorReporter errorReporter, Locator locator, Object error) throws Exception {
+            if (error instanceof String) {
+                // as reportSchemaError
+                try {
+                    errorReporter.reportError(locator,
+                                              SchemaMessageProvider.SCHEMA_DOMAIN,
+                                              SchemaMessageProvider.DatatypeError,
+                                              SchemaMessageProvider.MSG_NONE,
+                                              new Object[] { error },
+                                              XMLErrorReporter.ERRORTYPE_RECOVERABLE_ERROR);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            } else if (error instanceof CMException) {
+                errorReporter.reportError(locator,
+                                          ImplementationMessages.XERCES_IMPLEMENTATION_DOMAIN,
+                                          ((CMException)error).getErrorCode(),
+                                          0,
+                                          null,
+                                          XMLErrorReporter.ERRORTYPE_FATAL_ERROR);
+            } else {
+                int majorCode = ((int[])error)[0];
+                int event = ((int[])error)[1];
+                Object[] args = { fStringPool.toString(fElementType[event]),
+                                  fElementDeclPool.getContentSpecAsString(fElementIndex[event]) };
+                errorReporter.reportError(locator,
+                                          XMLMessages.XML_DOMAIN,
+                                          majorCode,
+                                          0,
+                                          args,
+                                          XMLErrorReporter.ERRORTYPE_RECOVERABLE_ERROR);
+            }
+        }
+    }
 
     /**
      * Check that the attributes for an element are valid.
@@ -3033,6 +3200,10 @@ public class XSchemaValidator implements XMLValidator {
             "http://www.w3.org/XML/Group/1999/09/23-xmlschema/structures/structures.dtd",
             "http://www.w3.org/XML/Group/1999/09/23-xmlschema/datatypes/datatypes.dtd",
             };
+        private static final String PUBLIC[] = {
+            "-//W3C/DTD XML Schema Version 1.0//EN",
+            "datatypes",
+            };
         private static final String PATH[] = {
             "structures.dtd",
             "datatypes.dtd",
@@ -3043,8 +3214,13 @@ public class XSchemaValidator implements XMLValidator {
 
             // looking for the schema DTDs?
             for (int i = 0; i < SYSTEM.length; i++) {
-                if (systemId.equals(SYSTEM[i])) {
-                    InputSource source = new InputSource(getClass().getResourceAsStream(PATH[i]));
+                if (systemId.equals(SYSTEM[i]) || PUBLIC[i].equals(publicId)) {
+                    InputStream stream = getClass().getResourceAsStream(PATH[i]);
+                    if (stream == null) {
+                        // bundled copy missing; never fall back to the network
+                        throw new IOException("missing resource "+PATH[i]);
+                    }
+                    InputSource source = new InputSource(stream);
                     source.setPublicId(publicId);
                     source.setSystemId(systemId);
                     return source;